@@ -3,6 +3,10 @@ package co.edu.udistrital.mdp.back.config;
 import org.modelmapper.ModelMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+
+import co.edu.udistrital.mdp.back.dto.ServiceDetailDTO;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.cors.CorsConfiguration;
@@ -21,6 +25,9 @@ public class ApplicationConfig {
         mapper.getConfiguration()
                 .setAmbiguityIgnored(true)
                 .setFullTypeMatchingRequired(false);
+        // A service's reviews are unbounded; they are read through /services/{id}/reviews/page
+        mapper.typeMap(ServiceEntity.class, ServiceDetailDTO.class)
+                .addMappings(m -> m.skip(ServiceDetailDTO::setReviews));
         return mapper;
     }
 
@@ -3,17 +3,28 @@ import java.lang.reflect.Type;
 
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService;
+import co.edu.udistrital.mdp.back.services.NotificationPurgeService;
+import co.edu.udistrital.mdp.back.services.NotificationPurgeService.PurgeResult;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService.Progress;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService.Segment;
+import co.edu.udistrital.mdp.back.services.NotificationDigestService;
+import co.edu.udistrital.mdp.back.services.NotificationDigestService.Submission;
 import co.edu.udistrital.mdp.back.services.NotificationService;
+import co.edu.udistrital.mdp.back.services.NotificationStreamHub;
 
 
 import org.modelmapper.ModelMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.modelmapper.TypeToken;
 
 import java.util.List;
 
 
+import co.edu.udistrital.mdp.back.dto.NotificationBroadcastDTO;
 import co.edu.udistrital.mdp.back.dto.NotificationDTO;
 
 @RestController
@@ -21,10 +32,21 @@ import co.edu.udistrital.mdp.back.dto.NotificationDTO;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationBroadcastService broadcastService;
+    private final NotificationStreamHub streamHub;
+    private final NotificationPurgeService purgeService;
+    private final NotificationDigestService digestService;
     private final ModelMapper modelMapper;
 
-    public NotificationController(NotificationService notificationService, ModelMapper modelMapper) {
+    public NotificationController(NotificationService notificationService,
+                                  NotificationBroadcastService broadcastService, NotificationStreamHub streamHub,
+                                  NotificationPurgeService purgeService, NotificationDigestService digestService,
+                                  ModelMapper modelMapper) {
         this.notificationService = notificationService;
+        this.broadcastService = broadcastService;
+        this.streamHub = streamHub;
+        this.purgeService = purgeService;
+        this.digestService = digestService;
         this.modelMapper = modelMapper;
     }
 
@@ -43,12 +65,71 @@ public class NotificationController {
         return modelMapper.map(notification, NotificationDTO.class);
     }
 
+    // Con el resumen activo el mensaje espera su ventana, así que aún no hay notificación que devolver
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public NotificationDTO create(@RequestBody NotificationDTO body)
-            throws EntityNotFoundException {
+    public ResponseEntity<Object> create(@RequestBody NotificationDTO body)
+            throws EntityNotFoundException, IllegalOperationException {
+        if (digestService.isEnabled()) {
+            return ResponseEntity.accepted().body(digestService.submit(body.getMessage(), body.getUserIds()));
+        }
         NotificationEntity notification = notificationService.createNotification(body.getMessage(), body.getUserIds());
-        return modelMapper.map(notification, NotificationDTO.class);
+        return ResponseEntity.status(HttpStatus.CREATED).body(modelMapper.map(notification, NotificationDTO.class));
+    }
+
+    // Para avisos automáticos en ráfaga: se agrupan por usuario y se entregan como un resumen
+    @PostMapping("/digest")
+    public ResponseEntity<Submission> submitToDigest(@RequestBody NotificationDTO body)
+            throws EntityNotFoundException, IllegalOperationException {
+        return ResponseEntity.accepted().body(digestService.submit(body.getMessage(), body.getUserIds()));
+    }
+
+    @GetMapping("/digest/metrics")
+    @ResponseStatus(HttpStatus.OK)
+    public NotificationDigestService.Metrics digestMetrics() {
+        return digestService.getMetrics();
+    }
+
+    /* ========================= DIFUSIÓN ========================= */
+
+    // Los destinatarios se vinculan en segundo plano; el avance se consulta con el GET de abajo
+    @PostMapping("/broadcast")
+    public ResponseEntity<Progress> broadcast(@RequestBody NotificationBroadcastDTO body)
+            throws IllegalOperationException {
+        Segment segment = new Segment(body.getMinLoyaltyPoints(), body.getMaxLoyaltyPoints(), body.getEmailDomain());
+        return ResponseEntity.accepted().body(broadcastService.broadcast(body.getMessage(), segment));
+    }
+
+    @GetMapping("/broadcast")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Progress> listBroadcasts() {
+        return broadcastService.getAllProgress();
+    }
+
+    @GetMapping("/broadcast/{notificationId}")
+    @ResponseStatus(HttpStatus.OK)
+    public Progress broadcastProgress(@PathVariable Long notificationId) throws EntityNotFoundException {
+        return broadcastService.getProgress(notificationId);
+    }
+
+    @GetMapping("/stream/metrics")
+    @ResponseStatus(HttpStatus.OK)
+    public NotificationStreamHub.Metrics streamMetrics() {
+        return streamHub.getMetrics();
+    }
+
+    /* ========================= RETENCIÓN ========================= */
+
+    // Corre ahora la purga nocturna
+    @PostMapping("/purge")
+    @ResponseStatus(HttpStatus.OK)
+    public PurgeResult purge() throws IllegalOperationException {
+        return purgeService.purge();
+    }
+
+    @GetMapping("/purge/metrics")
+    @ResponseStatus(HttpStatus.OK)
+    public NotificationPurgeService.Metrics purgeMetrics() {
+        return purgeService.getMetrics();
     }
 
     @PutMapping("/{notificationId}")
@@ -74,6 +155,13 @@ public class NotificationController {
         notificationService.markAsRead(notificationId);
     }
 
+    @PatchMapping("/{notificationId}/users/{userId}/read")
+    @ResponseStatus(HttpStatus.OK)
+    public void markAsReadForUser(@PathVariable Long notificationId, @PathVariable Long userId)
+            throws EntityNotFoundException {
+        notificationService.markAsReadForUser(notificationId, userId);
+    }
+
     /* (Opcional) marcar todas como leídas para un usuario */
     @PatchMapping("/users/{userId}/mark-all-read")
     @ResponseStatus(HttpStatus.OK)
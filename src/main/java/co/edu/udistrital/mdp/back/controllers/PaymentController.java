@@ -1,27 +1,53 @@
 package co.edu.udistrital.mdp.back.controllers;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.modelmapper.ModelMapper;
 import org.modelmapper.TypeToken;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import co.edu.udistrital.mdp.back.dto.PaymentDTO;
+import co.edu.udistrital.mdp.back.dto.PaymentDailyTotalDTO;
+import co.edu.udistrital.mdp.back.dto.PaymentLedgerDTO;
+import co.edu.udistrital.mdp.back.dto.PaymentPageDTO;
 import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.PaymentLedgerService;
+import co.edu.udistrital.mdp.back.services.PaymentLedgerService.DailyTotal;
+import co.edu.udistrital.mdp.back.services.PaymentProcessingWorker;
+import co.edu.udistrital.mdp.back.services.PaymentProcessingWorker.Metrics;
+import co.edu.udistrital.mdp.back.services.PaymentReconciliationService;
+import co.edu.udistrital.mdp.back.services.PaymentReconciliationService.FileResult;
 import co.edu.udistrital.mdp.back.services.PaymentService;
+import co.edu.udistrital.mdp.back.services.PaymentService.PaymentFilter;
+import co.edu.udistrital.mdp.back.services.PaymentService.PaymentPage;
 
 @RestController
 @RequestMapping("/payments")
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentProcessingWorker paymentWorker;
+    private final PaymentReconciliationService reconciliationService;
+    private final PaymentLedgerService ledgerService;
     private final ModelMapper modelMapper;
 
-    public PaymentController(PaymentService paymentService, ModelMapper modelMapper) {
+    public PaymentController(PaymentService paymentService, PaymentProcessingWorker paymentWorker,
+            PaymentReconciliationService reconciliationService, PaymentLedgerService ledgerService,
+            ModelMapper modelMapper) {
         this.paymentService = paymentService;
+        this.paymentWorker = paymentWorker;
+        this.reconciliationService = reconciliationService;
+        this.ledgerService = ledgerService;
         this.modelMapper = modelMapper;
     }
 
@@ -32,6 +58,55 @@ public class PaymentController {
         return modelMapper.map(payments, new TypeToken<List<PaymentDTO>>() {}.getType());
     }
 
+    // Búsqueda para administración: más recientes primero, por cursor en lugar de número de página
+    @GetMapping("/search")
+    @ResponseStatus(code = HttpStatus.OK)
+    public PaymentPageDTO search(@RequestParam(required = false) Long cartId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) throws IllegalOperationException {
+        PaymentStatus statusFilter = null;
+        if (status != null) {
+            statusFilter = PaymentStatus.find(status)
+                    .orElseThrow(() -> new IllegalOperationException("Unknown payment status: " + status));
+        }
+        PaymentPage page = paymentService.searchPayments(new PaymentFilter(cartId, statusFilter, method, from, to),
+                before, limit);
+        PaymentPageDTO dto = new PaymentPageDTO();
+        dto.setPayments(modelMapper.map(page.payments(), new TypeToken<List<PaymentDTO>>() {}.getType()));
+        dto.setNextCursor(page.nextCursor());
+        return dto;
+    }
+
+    // Saldos por día, método y estado, leídos de los totales del libro
+    @GetMapping("/ledger/daily")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<PaymentDailyTotalDTO> dailyTotals(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String method) throws IllegalOperationException {
+        List<PaymentDailyTotalDTO> dtos = new ArrayList<>();
+        for (DailyTotal total : ledgerService.getDailyTotals(from, to, method)) {
+            PaymentDailyTotalDTO dto = new PaymentDailyTotalDTO();
+            dto.setDay(total.day());
+            dto.setMethod(total.method());
+            dto.setStatus(total.status());
+            dto.setPayments(total.payments());
+            dto.setAmount(total.amount());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    @GetMapping("/{id}/ledger")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<PaymentLedgerDTO> ledger(@PathVariable("id") Long id) {
+        return modelMapper.map(ledgerService.getEntries(id), new TypeToken<List<PaymentLedgerDTO>>() {}.getType());
+    }
+
     @GetMapping("/{id}")
     @ResponseStatus(code = HttpStatus.OK)
     public PaymentDTO findOne(@PathVariable("id") Long id) throws EntityNotFoundException {
@@ -70,6 +145,29 @@ public class PaymentController {
         return modelMapper.map(payment, PaymentDTO.class);
     }
 
+    // 202 once queued; 503 with Retry-After when the queue is full
+    @PostMapping("/{id}/submit")
+    public ResponseEntity<Void> submit(@PathVariable("id") Long id)
+            throws EntityNotFoundException, IllegalOperationException {
+        if (paymentWorker.submitPayment(id)) {
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+    }
+
+    @GetMapping("/worker/metrics")
+    @ResponseStatus(code = HttpStatus.OK)
+    public Metrics workerMetrics() {
+        return paymentWorker.getMetrics();
+    }
+
+    // Runs the nightly reconciliation now over the files waiting in the inbox
+    @PostMapping("/reconciliation")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<FileResult> reconcile() {
+        return reconciliationService.reconcileInbox();
+    }
+
     @PutMapping("/{id}/complete")
     @ResponseStatus(code = HttpStatus.OK)
     public PaymentDTO complete(@PathVariable("id") Long id) throws EntityNotFoundException, IllegalOperationException {
@@ -11,6 +11,7 @@ import co.edu.udistrital.mdp.back.dto.ShoppingCartDTO;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore;
 import co.edu.udistrital.mdp.back.services.ProductShoppingCartService;
 
 @RestController
@@ -18,11 +19,13 @@ import co.edu.udistrital.mdp.back.services.ProductShoppingCartService;
 public class ProductShoppingCartController {
 
     private final ProductShoppingCartService productShoppingCartService;
+    private final CartWriteBehindStore cartStore;
     private final ModelMapper modelMapper;
 
     public ProductShoppingCartController(ProductShoppingCartService productShoppingCartService, 
-                                        ModelMapper modelMapper) {
+                                        CartWriteBehindStore cartStore, ModelMapper modelMapper) {
         this.productShoppingCartService = productShoppingCartService;
+        this.cartStore = cartStore;
         this.modelMapper = modelMapper;
     }
 
@@ -44,8 +47,10 @@ public class ProductShoppingCartController {
     @PostMapping("/{productId}/shoppingcarts/{shoppingCartId}")
     @ResponseStatus(code = HttpStatus.OK)
     public ShoppingCartDTO addShoppingCart(@PathVariable Long productId, @PathVariable Long shoppingCartId)
-            throws EntityNotFoundException {
-        ShoppingCartEntity cart = productShoppingCartService.addShoppingCart(productId, shoppingCartId);
+            throws EntityNotFoundException, IllegalOperationException {
+        // Changes the cart lines around the store: cached lines go first and the copy is dropped
+        ShoppingCartEntity cart = cartStore.writeThrough(shoppingCartId,
+                () -> productShoppingCartService.addShoppingCart(productId, shoppingCartId));
         return modelMapper.map(cart, ShoppingCartDTO.class);
     }
 
@@ -56,13 +61,17 @@ public class ProductShoppingCartController {
         List<ShoppingCartEntity> carts = modelMapper.map(shoppingCartDTOs,
                 new TypeToken<List<ShoppingCartEntity>>() {}.getType());
         List<ShoppingCartEntity> updatedCarts = productShoppingCartService.replaceShoppingCarts(productId, carts);
+        updatedCarts.forEach(cart -> cartStore.discard(cart.getId()));
         return modelMapper.map(updatedCarts, new TypeToken<List<ShoppingCartDTO>>() {}.getType());
     }
 
     @DeleteMapping("/{productId}/shoppingcarts/{shoppingCartId}")
     @ResponseStatus(code = HttpStatus.NO_CONTENT)
     public void removeShoppingCart(@PathVariable Long productId, @PathVariable Long shoppingCartId)
-            throws EntityNotFoundException {
-        productShoppingCartService.removeShoppingCart(productId, shoppingCartId);
+            throws EntityNotFoundException, IllegalOperationException {
+        cartStore.writeThrough(shoppingCartId, () -> {
+            productShoppingCartService.removeShoppingCart(productId, shoppingCartId);
+            return null;
+        });
     }
 }
\ No newline at end of file
@@ -1,18 +1,26 @@
 package co.edu.udistrital.mdp.back.controllers;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.modelmapper.ModelMapper;
 import org.modelmapper.TypeToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import co.edu.udistrital.mdp.back.dto.DayClosingDTO;
+import co.edu.udistrital.mdp.back.dto.FreeSlotDTO;
 import co.edu.udistrital.mdp.back.dto.ReservationDTO;
 import co.edu.udistrital.mdp.back.entities.BranchEntity;
 import co.edu.udistrital.mdp.back.entities.ServiceEntity;
 import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.ReservationAvailabilityService;
+import co.edu.udistrital.mdp.back.services.ReservationClosingService;
 import co.edu.udistrital.mdp.back.services.ReservationService;
 
 @RestController
@@ -22,6 +30,12 @@ public class ReservationController {
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private ReservationAvailabilityService reservationAvailabilityService;
+
+    @Autowired
+    private ReservationClosingService reservationClosingService;
+
     @Autowired
     private ModelMapper modelMapper;
 
@@ -43,6 +57,44 @@ public class ReservationController {
             dto.setBranchId(entity.getBranch() != null ? entity.getBranch().getId() : null);
             dto.setServiceId(entity.getService() != null ? entity.getService().getId() : null);
             dto.setUserId(entity.getUser() != null ? entity.getUser().getId() : null);
+            dto.setStaffId(entity.getStaff() != null ? entity.getStaff().getId() : null);
+        }
+        return dtos;
+    }
+
+    @GetMapping("/free-slots")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<FreeSlotDTO> findFreeSlots(@RequestParam Long serviceId, @RequestParam Long branchId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(defaultValue = "14") int days,
+            @RequestParam(defaultValue = "5") int limit) {
+        List<FreeSlotDTO> dtos = new ArrayList<>();
+        for (var slot : reservationAvailabilityService.findNearestFreeSlots(serviceId, branchId, from, days, limit)) {
+            FreeSlotDTO dto = new FreeSlotDTO();
+            dto.setBranchId(slot.branchId());
+            dto.setBranchName(slot.branchName());
+            dto.setZone(slot.zone());
+            dto.setDate(slot.date());
+            dto.setStartTime(slot.startTime());
+            dto.setEndTime(slot.endTime());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    // Cierre manual del día; sin branchId se cierran todas las sedes
+    @PostMapping("/close-day")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<DayClosingDTO> closeDay(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) Long branchId) {
+        List<DayClosingDTO> dtos = new ArrayList<>();
+        for (var closing : reservationClosingService.closeDay(date != null ? date : LocalDate.now(), branchId)) {
+            DayClosingDTO dto = new DayClosingDTO();
+            dto.setBranchId(closing.branchId());
+            dto.setCompleted(closing.completed());
+            dto.setNoShow(closing.noShow());
+            dtos.add(dto);
         }
         return dtos;
     }
@@ -55,6 +107,7 @@ public class ReservationController {
         dto.setBranchId(reservation.getBranch() != null ? reservation.getBranch().getId() : null);
         dto.setServiceId(reservation.getService() != null ? reservation.getService().getId() : null);
         dto.setUserId(reservation.getUser() != null ? reservation.getUser().getId() : null);
+        dto.setStaffId(reservation.getStaff() != null ? reservation.getStaff().getId() : null);
         return dto;
     }
 
@@ -67,6 +120,7 @@ public class ReservationController {
         dto.setBranchId(newReservation.getBranch() != null ? newReservation.getBranch().getId() : null);
         dto.setServiceId(newReservation.getService() != null ? newReservation.getService().getId() : null);
         dto.setUserId(newReservation.getUser() != null ? newReservation.getUser().getId() : null);
+        dto.setStaffId(newReservation.getStaff() != null ? newReservation.getStaff().getId() : null);
         return dto;
     }
 
@@ -80,6 +134,20 @@ public class ReservationController {
         dto.setBranchId(updatedReservation.getBranch() != null ? updatedReservation.getBranch().getId() : null);
         dto.setServiceId(updatedReservation.getService() != null ? updatedReservation.getService().getId() : null);
         dto.setUserId(updatedReservation.getUser() != null ? updatedReservation.getUser().getId() : null);
+        dto.setStaffId(updatedReservation.getStaff() != null ? updatedReservation.getStaff().getId() : null);
+        return dto;
+    }
+
+    @PutMapping("/{id}/status")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ReservationDTO changeStatus(@PathVariable("id") Long id, @RequestParam ReservationStatus status)
+            throws IllegalOperationException {
+        ReservationEntity updatedReservation = reservationService.changeStatus(id, status);
+        ReservationDTO dto = modelMapper.map(updatedReservation, ReservationDTO.class);
+        dto.setBranchId(updatedReservation.getBranch() != null ? updatedReservation.getBranch().getId() : null);
+        dto.setServiceId(updatedReservation.getService() != null ? updatedReservation.getService().getId() : null);
+        dto.setUserId(updatedReservation.getUser() != null ? updatedReservation.getUser().getId() : null);
+        dto.setStaffId(updatedReservation.getStaff() != null ? updatedReservation.getStaff().getId() : null);
         return dto;
     }
 
@@ -0,0 +1,132 @@
+package co.edu.udistrital.mdp.back.controllers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import co.edu.udistrital.mdp.back.dto.ReservationOccurrenceDTO;
+import co.edu.udistrital.mdp.back.dto.ReservationSeriesDTO;
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.ReservationSeriesService;
+import co.edu.udistrital.mdp.back.services.ReservationSeriesService.Occurrence;
+
+@RestController
+@RequestMapping("/reservation-series")
+public class ReservationSeriesController {
+
+    @Autowired
+    private ReservationSeriesService reservationSeriesService;
+
+    @GetMapping("/{id}")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ReservationSeriesDTO findOne(@PathVariable("id") Long id) throws EntityNotFoundException {
+        return toDTO(reservationSeriesService.getSeries(id));
+    }
+
+    @GetMapping("/{id}/occurrences")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<ReservationOccurrenceDTO> findOccurrences(@PathVariable("id") Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+            throws EntityNotFoundException, IllegalOperationException {
+        return toDTOs(reservationSeriesService.getOccurrences(id, from, to));
+    }
+
+    @GetMapping("/occurrences")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<ReservationOccurrenceDTO> findBranchOccurrences(@RequestParam Long branchId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+            throws IllegalOperationException {
+        return toDTOs(reservationSeriesService.getBranchOccurrences(branchId, from, to));
+    }
+
+    @PostMapping
+    @ResponseStatus(code = HttpStatus.CREATED)
+    public ReservationSeriesDTO create(@RequestBody ReservationSeriesDTO dto)
+            throws EntityNotFoundException, IllegalOperationException {
+        ReservationSeriesEntity series = new ReservationSeriesEntity();
+        series.setFrequency(dto.getFrequency());
+        series.setStartDate(dto.getStartDate());
+        series.setEndDate(dto.getEndDate());
+        series.setStartTime(dto.getStartTime());
+        series.setEndTime(dto.getEndTime());
+        series.setPetName(dto.getPetName());
+
+        if (dto.getBranchId() != null) {
+            BranchEntity b = new BranchEntity();
+            b.setId(dto.getBranchId());
+            series.setBranch(b);
+        }
+        if (dto.getServiceId() != null) {
+            ServiceEntity s = new ServiceEntity();
+            s.setId(dto.getServiceId());
+            series.setService(s);
+        }
+        if (dto.getUserId() != null) {
+            UserEntity u = new UserEntity();
+            u.setId(dto.getUserId());
+            series.setUser(u);
+        }
+
+        return toDTO(reservationSeriesService.createSeries(series));
+    }
+
+    @PutMapping("/{id}/end")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ReservationSeriesDTO end(@PathVariable("id") Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate lastDate)
+            throws EntityNotFoundException, IllegalOperationException {
+        return toDTO(reservationSeriesService.endSeries(id, lastDate));
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(code = HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable("id") Long id) throws EntityNotFoundException {
+        reservationSeriesService.deleteSeries(id);
+    }
+
+    // Associations are lazy, so only their ids are read (no extra queries)
+    private ReservationSeriesDTO toDTO(ReservationSeriesEntity series) {
+        ReservationSeriesDTO dto = new ReservationSeriesDTO();
+        dto.setId(series.getId());
+        dto.setFrequency(series.getFrequency());
+        dto.setStartDate(series.getStartDate());
+        dto.setEndDate(series.getEndDate());
+        dto.setStartTime(series.getStartTime());
+        dto.setEndTime(series.getEndTime());
+        dto.setPetName(series.getPetName());
+        dto.setBranchId(series.getBranch() != null ? series.getBranch().getId() : null);
+        dto.setServiceId(series.getService() != null ? series.getService().getId() : null);
+        dto.setUserId(series.getUser() != null ? series.getUser().getId() : null);
+        return dto;
+    }
+
+    private List<ReservationOccurrenceDTO> toDTOs(List<Occurrence> occurrences) {
+        List<ReservationOccurrenceDTO> dtos = new ArrayList<>();
+        for (Occurrence occurrence : occurrences) {
+            ReservationSeriesEntity series = occurrence.series();
+            ReservationOccurrenceDTO dto = new ReservationOccurrenceDTO();
+            dto.setSeriesId(series.getId());
+            dto.setDate(occurrence.date());
+            dto.setStartTime(occurrence.startTime());
+            dto.setEndTime(occurrence.endTime());
+            dto.setPetName(series.getPetName());
+            dto.setBranchId(series.getBranch() != null ? series.getBranch().getId() : null);
+            dto.setServiceId(series.getService() != null ? series.getService().getId() : null);
+            dto.setUserId(series.getUser() != null ? series.getUser().getId() : null);
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+}
@@ -3,17 +3,19 @@ package co.edu.udistrital.mdp.back.controllers;
 import java.util.List;
 
 import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import co.edu.udistrital.mdp.back.dto.ReviewDTO;
+import co.edu.udistrital.mdp.back.dto.ReviewPageDTO;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.entities.ReviewEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.ReviewRepository.ReviewView;
 import co.edu.udistrital.mdp.back.services.ReviewService;
+import co.edu.udistrital.mdp.back.services.ReviewService.ReviewPage;
 
 @RestController
 @RequestMapping("/reviews")
@@ -28,17 +30,17 @@ public class ReviewController {
     @GetMapping
     @ResponseStatus(code = HttpStatus.OK)
     public List<ReviewDTO> findAll() {
-        List<ReviewEntity> reviews = reviewService.getReviews();
-        List<ReviewDTO> dtos = modelMapper.map(reviews, new TypeToken<List<ReviewDTO>>() {}.getType());
-        for (int i = 0; i < reviews.size(); i++) {
-            ReviewEntity re = reviews.get(i);
-            ReviewDTO rd = dtos.get(i);
-            if (re.getAuthor() != null) {
-                rd.setAuthorId(re.getAuthor().getId());
-                rd.setAuthorName(re.getAuthor().getName());
-            }
-        }
-        return dtos;
+        return reviewService.getReviewViews(null).stream().map(ReviewController::toDTO).toList();
+    }
+
+    // Por cursor en lugar de número de página, ordenadas por fecha o calificación
+    @GetMapping("/page")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ReviewPageDTO findPage(@RequestParam(required = false) Long serviceId,
+            @RequestParam(defaultValue = "date") String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) throws IllegalOperationException {
+        return toPageDTO(reviewService.getReviewPage(serviceId, sort, after, limit));
     }
 
     @GetMapping("/{id}")
@@ -104,4 +106,22 @@ public class ReviewController {
         }
         reviewService.deleteReview(id);
     }
-}
\ No newline at end of file
+
+    static ReviewDTO toDTO(ReviewView view) {
+        ReviewDTO dto = new ReviewDTO();
+        dto.setId(view.getId());
+        dto.setRating(view.getRating());
+        dto.setComments(view.getComments());
+        dto.setReviewDate(view.getReviewDate());
+        dto.setAuthorId(view.getAuthorId());
+        dto.setAuthorName(view.getAuthorName());
+        return dto;
+    }
+
+    static ReviewPageDTO toPageDTO(ReviewPage page) {
+        ReviewPageDTO dto = new ReviewPageDTO();
+        dto.setReviews(page.reviews().stream().map(ReviewController::toDTO).toList());
+        dto.setNextCursor(page.nextCursor());
+        return dto;
+    }
+}
@@ -1,6 +1,7 @@
 package co.edu.udistrital.mdp.back.controllers;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Map;
 
 import org.modelmapper.ModelMapper;
 import org.modelmapper.TypeToken;
@@ -12,13 +13,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import co.edu.udistrital.mdp.back.dto.ReviewPageDTO;
 import co.edu.udistrital.mdp.back.dto.ServiceDTO;
 import co.edu.udistrital.mdp.back.dto.ServiceDetailDTO;
+import co.edu.udistrital.mdp.back.dto.ServiceRatingDTO;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceRatingEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.ServiceRatingService;
 import co.edu.udistrital.mdp.back.services.ServiceService;
 
 
@@ -29,43 +37,57 @@ public class ServiceController {
     private final ServiceService serviceService;
     private final ModelMapper modelMapper;
     private final co.edu.udistrital.mdp.back.services.ReviewService reviewService;
+    private final ServiceRatingService serviceRatingService;
 
-    public ServiceController(ServiceService serviceService, ModelMapper modelMapper, co.edu.udistrital.mdp.back.services.ReviewService reviewService) {
+    public ServiceController(ServiceService serviceService, ModelMapper modelMapper, co.edu.udistrital.mdp.back.services.ReviewService reviewService,
+            ServiceRatingService serviceRatingService) {
         this.serviceService = serviceService;
         this.modelMapper = modelMapper;
         this.reviewService = reviewService;
+        this.serviceRatingService = serviceRatingService;
     }
 
+    // Sin reseñas ni sedes: el detalle las trae, y aquí serían una consulta por servicio
     @GetMapping
     @ResponseStatus(code = HttpStatus.OK)
-    public List<ServiceDetailDTO> findAll() {
+    public List<ServiceDTO> findAll() {
         List<ServiceEntity> entities = serviceService.getAllServices();
-        Type listType = new TypeToken<List<ServiceDetailDTO>>() {}.getType();
-        return modelMapper.map(entities, listType);
+        Type listType = new TypeToken<List<ServiceDTO>>() {}.getType();
+        List<ServiceDTO> dtos = modelMapper.map(entities, listType);
+        Map<Long, ServiceRatingEntity> ratings = serviceRatingService.getRatings(entities.stream().map(ServiceEntity::getId).toList());
+        dtos.forEach(dto -> dto.setRating(toRatingDTO(ratings.get(dto.getId()))));
+        return dtos;
     }
 
     @GetMapping(value = "/{id}")
     @ResponseStatus(code = HttpStatus.OK)
     public ServiceDetailDTO findOne(@PathVariable Long id) throws EntityNotFoundException {
         ServiceEntity entity = serviceService.getServiceById(id);
-        return modelMapper.map(entity, ServiceDetailDTO.class);
+        ServiceDetailDTO dto = modelMapper.map(entity, ServiceDetailDTO.class);
+        dto.setRating(toRatingDTO(serviceRatingService.getRatings(List.of(id)).get(id)));
+        return dto;
+    }
+
+    @GetMapping("/{id}/reservation-counts")
+    @ResponseStatus(code = HttpStatus.OK)
+    public Map<ReservationStatus, Long> getReservationCounts(@PathVariable Long id) throws EntityNotFoundException {
+        return serviceService.getReservationCounts(id);
     }
 
     @GetMapping("/{id}/reviews")
     @ResponseStatus(code = org.springframework.http.HttpStatus.OK)
     public java.util.List<co.edu.udistrital.mdp.back.dto.ReviewDTO> getReviewsForService(@PathVariable Long id) {
-        java.util.List<co.edu.udistrital.mdp.back.entities.ReviewEntity> reviews = reviewService.getReviewsByService(id);
-        java.lang.reflect.Type listType = new org.modelmapper.TypeToken<java.util.List<co.edu.udistrital.mdp.back.dto.ReviewDTO>>() {}.getType();
-        java.util.List<co.edu.udistrital.mdp.back.dto.ReviewDTO> dtos = modelMapper.map(reviews, listType);
-        for (int i = 0; i < reviews.size(); i++) {
-            var re = reviews.get(i);
-            var rd = dtos.get(i);
-            if (re.getAuthor() != null) {
-                rd.setAuthorId(re.getAuthor().getId());
-                rd.setAuthorName(re.getAuthor().getName());
-            }
-        }
-        return dtos;
+        return reviewService.getReviewViews(id).stream().map(ReviewController::toDTO).toList();
+    }
+
+    @GetMapping("/{id}/reviews/page")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ReviewPageDTO getReviewPageForService(@PathVariable Long id,
+            @RequestParam(defaultValue = "date") String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) throws EntityNotFoundException, IllegalOperationException {
+        serviceService.getServiceById(id);
+        return ReviewController.toPageDTO(reviewService.getReviewPage(id, sort, after, limit));
     }
 
     @PostMapping("/{id}/reviews")
@@ -119,4 +141,19 @@ public class ServiceController {
     public void delete(@PathVariable Long id) throws EntityNotFoundException {
         serviceService.delete(id);
     }
+
+    // Aggregates kept by ServiceRatingService; the reviews themselves are never read here
+    private ServiceRatingDTO toRatingDTO(ServiceRatingEntity rating) {
+        ServiceRatingDTO dto = new ServiceRatingDTO();
+        if (rating == null) {
+            return dto;
+        }
+        dto.setCount(rating.getRatingCount());
+        dto.setAverage(rating.getAverage());
+        long[] histogram = rating.getHistogram();
+        for (int stars = 1; stars <= histogram.length; stars++) {
+            dto.getHistogram().put(stars, histogram[stars - 1]);
+        }
+        return dto;
+    }
 }
@@ -1,5 +1,6 @@
 package co.edu.udistrital.mdp.back.controllers;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.modelmapper.ModelMapper;
@@ -7,10 +8,22 @@ import org.modelmapper.TypeToken;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import co.edu.udistrital.mdp.back.dto.CartItemDTO;
+import co.edu.udistrital.mdp.back.dto.CartSweepDTO;
+import co.edu.udistrital.mdp.back.dto.CheckoutDTO;
 import co.edu.udistrital.mdp.back.dto.ShoppingCartDTO;
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.CartCheckoutService;
+import co.edu.udistrital.mdp.back.services.CartCheckoutService.Checkout;
+import co.edu.udistrital.mdp.back.services.CartSweeperService;
+import co.edu.udistrital.mdp.back.services.CartSweeperService.SweepResult;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore.CartView;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore.Line;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore.Metrics;
 import co.edu.udistrital.mdp.back.services.ShoppingCartService;
 
 @RestController
@@ -18,10 +31,18 @@ import co.edu.udistrital.mdp.back.services.ShoppingCartService;
 public class ShoppingCartController {
 
     private final ShoppingCartService shoppingCartService;
+    private final CartWriteBehindStore cartStore;
+    private final CartCheckoutService cartCheckoutService;
+    private final CartSweeperService cartSweeperService;
     private final ModelMapper modelMapper;
 
-    public ShoppingCartController(ShoppingCartService shoppingCartService, ModelMapper modelMapper) {
+    public ShoppingCartController(ShoppingCartService shoppingCartService, CartWriteBehindStore cartStore,
+            CartCheckoutService cartCheckoutService, CartSweeperService cartSweeperService,
+            ModelMapper modelMapper) {
         this.shoppingCartService = shoppingCartService;
+        this.cartStore = cartStore;
+        this.cartCheckoutService = cartCheckoutService;
+        this.cartSweeperService = cartSweeperService;
         this.modelMapper = modelMapper;
     }
 
@@ -35,6 +56,9 @@ public class ShoppingCartController {
     @GetMapping("/{id}")
     @ResponseStatus(code = HttpStatus.OK)
     public ShoppingCartDTO findOne(@PathVariable("id") Long id) throws EntityNotFoundException {
+        if (cartStore.isEnabled()) {
+            return toDTO(cartStore.getCart(id));
+        }
         ShoppingCartEntity cart = shoppingCartService.getShoppingCart(id);
         return modelMapper.map(cart, ShoppingCartDTO.class);
     }
@@ -53,7 +77,9 @@ public class ShoppingCartController {
     public ShoppingCartDTO update(@PathVariable("id") Long id, @RequestBody ShoppingCartDTO shoppingCartDTO)
             throws EntityNotFoundException, IllegalOperationException {
         ShoppingCartEntity cart = modelMapper.map(shoppingCartDTO, ShoppingCartEntity.class);
-        ShoppingCartEntity updatedCart = shoppingCartService.updateShoppingCart(id, cart);
+        // Written around the store: cached lines go first, and the cached copy is dropped afterwards
+        ShoppingCartEntity updatedCart = cartStore.writeThrough(id,
+                () -> shoppingCartService.updateShoppingCart(id, cart));
         return modelMapper.map(updatedCart, ShoppingCartDTO.class);
     }
 
@@ -61,5 +87,100 @@ public class ShoppingCartController {
     @ResponseStatus(code = HttpStatus.NO_CONTENT)
     public void delete(@PathVariable("id") Long id) throws EntityNotFoundException, IllegalOperationException {
         shoppingCartService.deleteShoppingCart(id);
+        cartStore.forget(id);
     }
-}
\ No newline at end of file
+
+    // Barrido manual de carritos abandonados; el programado corre cada noche
+    @PostMapping("/sweep")
+    @ResponseStatus(code = HttpStatus.OK)
+    public CartSweepDTO sweep() {
+        SweepResult result = cartSweeperService.sweep();
+        CartSweepDTO dto = new CartSweepDTO();
+        dto.setCarts(result.carts());
+        dto.setItems(result.items());
+        dto.setProductLinks(result.productLinks());
+        return dto;
+    }
+
+    @GetMapping("/write-behind/metrics")
+    @ResponseStatus(code = HttpStatus.OK)
+    public Metrics writeBehindMetrics() {
+        return cartStore.getMetrics();
+    }
+
+    @GetMapping("/{id}/items")
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<CartItemDTO> findItems(@PathVariable("id") Long id) throws EntityNotFoundException {
+        if (cartStore.isEnabled()) {
+            return toItemDTOs(cartStore.getCart(id));
+        }
+        List<CartItemDTO> dtos = new ArrayList<>();
+        for (CartItemEntity item : shoppingCartService.getItems(id)) {
+            CartItemDTO dto = new CartItemDTO();
+            dto.setId(item.getId());
+            dto.setProductId(item.getProduct().getId());
+            dto.setProductName(item.getProduct().getName());
+            dto.setQuantity(item.getQuantity());
+            dto.setUnitPrice(item.getUnitPrice());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    @PostMapping("/{id}/items")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ShoppingCartDTO addItem(@PathVariable("id") Long id, @RequestParam Long productId,
+            @RequestParam(defaultValue = "1") int quantity)
+            throws EntityNotFoundException, IllegalOperationException {
+        if (cartStore.isEnabled()) {
+            return toDTO(cartStore.addItem(id, productId, quantity));
+        }
+        ShoppingCartEntity cart = shoppingCartService.addProductToCart(id, productId, quantity);
+        return modelMapper.map(cart, ShoppingCartDTO.class);
+    }
+
+    @DeleteMapping("/{id}/items/{productId}")
+    @ResponseStatus(code = HttpStatus.OK)
+    public ShoppingCartDTO removeItem(@PathVariable("id") Long id, @PathVariable("productId") Long productId)
+            throws EntityNotFoundException, IllegalOperationException {
+        if (cartStore.isEnabled()) {
+            return toDTO(cartStore.removeItem(id, productId));
+        }
+        ShoppingCartEntity cart = shoppingCartService.removeProductFromCart(id, productId);
+        return modelMapper.map(cart, ShoppingCartDTO.class);
+    }
+
+    // Pedido, detalles, stock y pago pendiente en una sola transacción
+    @PostMapping("/{id}/checkout")
+    @ResponseStatus(code = HttpStatus.CREATED)
+    public CheckoutDTO checkout(@PathVariable("id") Long id, @RequestParam String method)
+            throws EntityNotFoundException, IllegalOperationException {
+        Checkout checkout = cartCheckoutService.checkout(id, method);
+        CheckoutDTO dto = new CheckoutDTO();
+        dto.setOrderId(checkout.orderId());
+        dto.setPaymentId(checkout.paymentId());
+        dto.setTotal(checkout.total());
+        dto.setLines(checkout.lines());
+        return dto;
+    }
+
+    private ShoppingCartDTO toDTO(CartView view) {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setId(view.cartId());
+        dto.setTotal(view.total());
+        return dto;
+    }
+
+    private List<CartItemDTO> toItemDTOs(CartView view) {
+        List<CartItemDTO> dtos = new ArrayList<>();
+        for (Line line : view.lines()) {
+            CartItemDTO dto = new CartItemDTO();
+            dto.setProductId(line.productId());
+            dto.setProductName(line.productName());
+            dto.setQuantity(line.quantity());
+            dto.setUnitPrice(line.unitPrice());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+}
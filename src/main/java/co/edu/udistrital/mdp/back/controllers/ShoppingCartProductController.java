@@ -11,6 +11,7 @@ import co.edu.udistrital.mdp.back.dto.ProductDTO;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore;
 import co.edu.udistrital.mdp.back.services.ShoppingCartProductService;
 
 @RestController
@@ -18,11 +19,13 @@ import co.edu.udistrital.mdp.back.services.ShoppingCartProductService;
 public class ShoppingCartProductController {
 
     private final ShoppingCartProductService shoppingCartProductService;
+    private final CartWriteBehindStore cartStore;
     private final ModelMapper modelMapper;
 
     public ShoppingCartProductController(ShoppingCartProductService shoppingCartProductService, 
-                                        ModelMapper modelMapper) {
+                                        CartWriteBehindStore cartStore, ModelMapper modelMapper) {
         this.shoppingCartProductService = shoppingCartProductService;
+        this.cartStore = cartStore;
         this.modelMapper = modelMapper;
     }
 
@@ -45,7 +48,9 @@ public class ShoppingCartProductController {
     @ResponseStatus(code = HttpStatus.OK)
     public ProductDTO addProduct(@PathVariable Long shoppingCartId, @PathVariable Long productId)
             throws EntityNotFoundException, IllegalOperationException {
-        ProductEntity product = shoppingCartProductService.addProduct(shoppingCartId, productId);
+        // These endpoints write the cart around the store: cached lines go first and the copy is dropped
+        ProductEntity product = cartStore.writeThrough(shoppingCartId,
+                () -> shoppingCartProductService.addProduct(shoppingCartId, productId));
         return modelMapper.map(product, ProductDTO.class);
     }
 
@@ -54,7 +59,8 @@ public class ShoppingCartProductController {
     public List<ProductDTO> replaceProducts(@PathVariable Long shoppingCartId,
             @RequestBody List<ProductDTO> productDTOs) throws EntityNotFoundException {
         List<ProductEntity> products = modelMapper.map(productDTOs, new TypeToken<List<ProductEntity>>() {}.getType());
-        List<ProductEntity> updatedProducts = shoppingCartProductService.replaceProducts(shoppingCartId, products);
+        List<ProductEntity> updatedProducts = cartStore.writeThrough(shoppingCartId,
+                () -> shoppingCartProductService.replaceProducts(shoppingCartId, products));
         return modelMapper.map(updatedProducts, new TypeToken<List<ProductDTO>>() {}.getType());
     }
 
@@ -62,6 +68,9 @@ public class ShoppingCartProductController {
     @ResponseStatus(code = HttpStatus.NO_CONTENT)
     public void removeProduct(@PathVariable Long shoppingCartId, @PathVariable Long productId)
             throws EntityNotFoundException {
-        shoppingCartProductService.removeProduct(shoppingCartId, productId);
+        cartStore.writeThrough(shoppingCartId, () -> {
+            shoppingCartProductService.removeProduct(shoppingCartId, productId);
+            return null;
+        });
     }
 }
\ No newline at end of file
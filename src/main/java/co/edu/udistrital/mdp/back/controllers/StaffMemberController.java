@@ -0,0 +1,103 @@
+package co.edu.udistrital.mdp.back.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import co.edu.udistrital.mdp.back.dto.StaffMemberDTO;
+import co.edu.udistrital.mdp.back.dto.StaffShiftDTO;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
+import co.edu.udistrital.mdp.back.entities.StaffShiftEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.StaffMemberService;
+
+@RestController
+@RequestMapping("/branches/{branchId}/staff")
+public class StaffMemberController {
+
+    @Autowired
+    private StaffMemberService staffMemberService;
+
+    @GetMapping
+    @ResponseStatus(code = HttpStatus.OK)
+    public List<StaffMemberDTO> findAll(@PathVariable("branchId") Long branchId) throws EntityNotFoundException {
+        List<StaffMemberDTO> dtos = new ArrayList<>();
+        for (StaffMemberEntity staff : staffMemberService.getStaffMembers(branchId)) {
+            dtos.add(toDTO(staff));
+        }
+        return dtos;
+    }
+
+    @GetMapping("/{staffId}")
+    @ResponseStatus(code = HttpStatus.OK)
+    public StaffMemberDTO findOne(@PathVariable("branchId") Long branchId, @PathVariable("staffId") Long staffId)
+            throws EntityNotFoundException {
+        return toDTO(staffMemberService.getStaffMember(branchId, staffId));
+    }
+
+    @PostMapping
+    @ResponseStatus(code = HttpStatus.CREATED)
+    public StaffMemberDTO create(@PathVariable("branchId") Long branchId, @RequestBody StaffMemberDTO dto)
+            throws EntityNotFoundException, IllegalOperationException {
+        return toDTO(staffMemberService.createStaffMember(branchId, toEntity(dto)));
+    }
+
+    @PutMapping("/{staffId}")
+    @ResponseStatus(code = HttpStatus.OK)
+    public StaffMemberDTO update(@PathVariable("branchId") Long branchId, @PathVariable("staffId") Long staffId,
+            @RequestBody StaffMemberDTO dto) throws EntityNotFoundException, IllegalOperationException {
+        return toDTO(staffMemberService.updateStaffMember(branchId, staffId, toEntity(dto)));
+    }
+
+    @DeleteMapping("/{staffId}")
+    @ResponseStatus(code = HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable("branchId") Long branchId, @PathVariable("staffId") Long staffId)
+            throws EntityNotFoundException {
+        staffMemberService.deleteStaffMember(branchId, staffId);
+    }
+
+    private StaffMemberEntity toEntity(StaffMemberDTO dto) {
+        StaffMemberEntity staff = new StaffMemberEntity();
+        staff.setName(dto.getName());
+        if (dto.getServiceIds() != null) {
+            for (Long serviceId : dto.getServiceIds()) {
+                ServiceEntity service = new ServiceEntity();
+                service.setId(serviceId);
+                staff.getSkills().add(service);
+            }
+        }
+        if (dto.getShifts() != null) {
+            for (StaffShiftDTO shiftDTO : dto.getShifts()) {
+                StaffShiftEntity shift = new StaffShiftEntity();
+                shift.setDayOfWeek(shiftDTO.getDayOfWeek());
+                shift.setStartTime(shiftDTO.getStartTime());
+                shift.setEndTime(shiftDTO.getEndTime());
+                staff.getShifts().add(shift);
+            }
+        }
+        return staff;
+    }
+
+    private StaffMemberDTO toDTO(StaffMemberEntity staff) {
+        StaffMemberDTO dto = new StaffMemberDTO();
+        dto.setId(staff.getId());
+        dto.setName(staff.getName());
+        dto.setBranchId(staff.getBranch() != null ? staff.getBranch().getId() : null);
+        for (ServiceEntity service : staff.getSkills()) {
+            dto.getServiceIds().add(service.getId());
+        }
+        for (StaffShiftEntity shift : staff.getShifts()) {
+            StaffShiftDTO shiftDTO = new StaffShiftDTO();
+            shiftDTO.setDayOfWeek(shift.getDayOfWeek());
+            shiftDTO.setStartTime(shift.getStartTime());
+            shiftDTO.setEndTime(shift.getEndTime());
+            dto.getShifts().add(shiftDTO);
+        }
+        return dto;
+    }
+}
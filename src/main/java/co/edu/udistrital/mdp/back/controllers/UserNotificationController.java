@@ -1,13 +1,19 @@
 package co.edu.udistrital.mdp.back.controllers;
 
 import java.util.List;
+import java.util.Set;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.TypeToken;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import co.edu.udistrital.mdp.back.dto.NotificationDTO;
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.services.NotificationStreamHub;
 import co.edu.udistrital.mdp.back.services.UserNotificationService;
 
 @RestController
@@ -15,18 +21,44 @@ import co.edu.udistrital.mdp.back.services.UserNotificationService;
 public class UserNotificationController {
 
     private final UserNotificationService userNotificationService;
+    private final NotificationStreamHub streamHub;
     private final ModelMapper modelMapper;
 
-    public UserNotificationController(UserNotificationService userNotificationService, ModelMapper modelMapper) {
+    public UserNotificationController(UserNotificationService userNotificationService,
+            NotificationStreamHub streamHub, ModelMapper modelMapper) {
         this.userNotificationService = userNotificationService;
+        this.streamHub = streamHub;
         this.modelMapper = modelMapper;
     }
 
     @GetMapping("/{userId}/notifications")
     @ResponseStatus(HttpStatus.OK)
-    public List<NotificationDTO> getNotifications(@PathVariable Long userId) throws EntityNotFoundException {
-        List<NotificationEntity> notifications = userNotificationService.getNotifications(userId);
-        return modelMapper.map(notifications, new TypeToken<List<NotificationDTO>>() {}.getType());
+    public List<NotificationDTO> getNotifications(@PathVariable Long userId,
+            @RequestParam(defaultValue = "false") boolean unreadOnly) throws EntityNotFoundException {
+        List<NotificationEntity> notifications = userNotificationService.getNotifications(userId, unreadOnly);
+        List<NotificationDTO> dtos = modelMapper.map(notifications, new TypeToken<List<NotificationDTO>>() {}.getType());
+        // Read state as seen by this user, not by every recipient
+        Set<Long> unread = userNotificationService.getUnreadIds(userId);
+        dtos.forEach(dto -> dto.setRead(!unread.contains(dto.getId())));
+        return dtos;
+    }
+
+    @GetMapping("/{userId}/notifications/unread-count")
+    @ResponseStatus(HttpStatus.OK)
+    public long getUnreadCount(@PathVariable Long userId) throws EntityNotFoundException {
+        return userNotificationService.getUnreadCount(userId);
+    }
+
+    // Reemplaza el sondeo: las nuevas notificaciones llegan como eventos y al reconectar se
+    // reenvían las posteriores a Last-Event-ID
+    @GetMapping(value = "/{userId}/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@PathVariable Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId)
+            throws EntityNotFoundException {
+        return streamHub.subscribe(userId, lastEventId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "10").build());
     }
 
     @PostMapping("/{userId}/notifications/{notificationId}")
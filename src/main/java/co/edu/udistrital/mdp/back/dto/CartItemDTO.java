@@ -0,0 +1,12 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import lombok.Data;
+
+@Data
+public class CartItemDTO {
+    private Long id;
+    private Long productId;
+    private String productName;
+    private int quantity;
+    private double unitPrice;
+}
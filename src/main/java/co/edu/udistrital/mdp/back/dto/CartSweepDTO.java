@@ -0,0 +1,10 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import lombok.Data;
+
+@Data
+public class CartSweepDTO {
+    private int carts;
+    private int items;
+    private int productLinks;
+}
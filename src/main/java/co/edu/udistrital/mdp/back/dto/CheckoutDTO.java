@@ -0,0 +1,11 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import lombok.Data;
+
+@Data
+public class CheckoutDTO {
+    private Long orderId;
+    private Long paymentId;
+    private double total;
+    private int lines;
+}
@@ -0,0 +1,10 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import lombok.Data;
+
+@Data
+public class DayClosingDTO {
+    private Long branchId;
+    private int completed;
+    private int noShow;
+}
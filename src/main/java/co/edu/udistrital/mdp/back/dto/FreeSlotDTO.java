@@ -0,0 +1,15 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import lombok.Data;
+
+@Data
+public class FreeSlotDTO {
+    private Long branchId;
+    private String branchName;
+    private String zone;
+    private LocalDate date;
+    private LocalTime startTime;
+    private LocalTime endTime;
+}
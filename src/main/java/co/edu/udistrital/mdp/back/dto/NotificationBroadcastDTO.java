@@ -0,0 +1,12 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import lombok.Data;
+
+@Data
+public class NotificationBroadcastDTO {
+    private String message;
+    // Filtros del segmento; los que lleguen nulos no se aplican
+    private Integer minLoyaltyPoints;
+    private Integer maxLoyaltyPoints;
+    private String emailDomain;
+}
@@ -1,6 +1,8 @@
 package co.edu.udistrital.mdp.back.dto;
 import java.time.LocalDateTime;
 
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+
 import lombok.Data;
 @Data
 
@@ -9,5 +11,5 @@ public class PaymentDTO {
     private double amount;
     private String method;
     private LocalDateTime date;
-    private String status;
+    private PaymentStatus status;
 }
@@ -0,0 +1,16 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.LocalDate;
+
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+
+import lombok.Data;
+
+@Data
+public class PaymentDailyTotalDTO {
+    private LocalDate day;
+    private String method;
+    private PaymentStatus status;
+    private long payments;
+    private double amount;
+}
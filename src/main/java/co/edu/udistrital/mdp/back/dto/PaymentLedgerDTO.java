@@ -0,0 +1,17 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.LocalDateTime;
+
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+
+import lombok.Data;
+
+@Data
+public class PaymentLedgerDTO {
+    private Long id;
+    private Long paymentId;
+    private PaymentStatus status;
+    private double amount;
+    private String method;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,13 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class PaymentPageDTO {
+    private List<PaymentDTO> payments = new ArrayList<>();
+    // Se envía como "before" para pedir la siguiente página; null en la última
+    private Long nextCursor;
+}
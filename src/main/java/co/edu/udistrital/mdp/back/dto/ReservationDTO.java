@@ -2,13 +2,14 @@ package co.edu.udistrital.mdp.back.dto;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 import lombok.Data;
 
 @Data
 public class ReservationDTO {
     private Long id;
     private LocalDate reservationDate;
-    private String reservationStatus;
+    private ReservationStatus reservationStatus;
     private LocalTime startTime;
     private LocalTime endTime;
 
@@ -21,4 +22,5 @@ public class ReservationDTO {
     private Long branchId;
     private Long serviceId;
     private Long userId;
+    private Long staffId;
 }
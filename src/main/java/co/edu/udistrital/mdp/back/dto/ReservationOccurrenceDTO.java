@@ -0,0 +1,17 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import lombok.Data;
+
+@Data
+public class ReservationOccurrenceDTO {
+    private Long seriesId;
+    private LocalDate date;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private String petName;
+    private Long branchId;
+    private Long serviceId;
+    private Long userId;
+}
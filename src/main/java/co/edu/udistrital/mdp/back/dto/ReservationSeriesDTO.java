@@ -0,0 +1,20 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import co.edu.udistrital.mdp.back.entities.RecurrenceFrequency;
+import lombok.Data;
+
+@Data
+public class ReservationSeriesDTO {
+    private Long id;
+    private RecurrenceFrequency frequency;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private String petName;
+    private Long branchId;
+    private Long serviceId;
+    private Long userId;
+}
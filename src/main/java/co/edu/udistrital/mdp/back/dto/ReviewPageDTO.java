@@ -0,0 +1,13 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class ReviewPageDTO {
+    private List<ReviewDTO> reviews = new ArrayList<>();
+    // Se envía como "after" para pedir la siguiente página; null en la última
+    private String nextCursor;
+}
@@ -13,4 +13,5 @@ public class ServiceDTO {
     private Double price;
     private Integer duration;
     private List<MultimediaDTO> multimedia = new ArrayList<>();
+    private ServiceRatingDTO rating;
 }
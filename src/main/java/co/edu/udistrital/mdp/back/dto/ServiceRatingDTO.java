@@ -0,0 +1,14 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class ServiceRatingDTO {
+    private long count;
+    private double average;
+    // Number of reviews by stars, from 1 to 5
+    private Map<Integer, Long> histogram = new LinkedHashMap<>();
+}
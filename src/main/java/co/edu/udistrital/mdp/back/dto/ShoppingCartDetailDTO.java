@@ -10,4 +10,5 @@ import lombok.EqualsAndHashCode;
 public class ShoppingCartDetailDTO extends ShoppingCartDTO {
     private List<PaymentDTO> payments = new ArrayList<>();
     private List<ProductDTO> products = new ArrayList<>();
+    private List<CartItemDTO> items = new ArrayList<>();
 }
\ No newline at end of file
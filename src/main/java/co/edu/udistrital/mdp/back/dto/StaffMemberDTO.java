@@ -0,0 +1,14 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class StaffMemberDTO {
+    private Long id;
+    private String name;
+    private Long branchId;
+    private List<Long> serviceIds = new ArrayList<>();
+    private List<StaffShiftDTO> shifts = new ArrayList<>();
+}
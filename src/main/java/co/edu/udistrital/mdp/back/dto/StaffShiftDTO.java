@@ -0,0 +1,12 @@
+package co.edu.udistrital.mdp.back.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import lombok.Data;
+
+@Data
+public class StaffShiftDTO {
+    private DayOfWeek dayOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+}
@@ -0,0 +1,40 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import uk.co.jemos.podam.common.PodamExclude;
+
+/**
+ * Línea de un carrito: un producto con su cantidad y el precio unitario que
+ * tenía al agregarse. Hay una sola línea por producto en cada carrito.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "shopping_cart_id", "product_id" }),
+        indexes = @Index(columnList = "product_id"))
+public class CartItemEntity extends BaseEntity {
+
+    private int quantity;
+
+    // Precio del producto al momento de agregarlo
+    private double unitPrice;
+
+    // ProductEntity.priceVersion del precio guardado en unitPrice
+    private long priceVersion;
+
+    @PodamExclude
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(optional = false)
+    private ShoppingCartEntity shoppingCart;
+
+    @PodamExclude
+    @ManyToOne(optional = false)
+    private ProductEntity product;
+}
@@ -15,6 +15,7 @@ public class NotificationEntity extends BaseEntity {
     private String message;
     private Date date;
 
+    // Read by every recipient; each user's own state is in UserNotificationEntity
     @Column(name = "is_read")
     private Boolean read;
 
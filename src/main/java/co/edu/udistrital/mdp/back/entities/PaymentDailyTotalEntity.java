@@ -0,0 +1,36 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Totales del libro de pagos por día, método y estado: cuántos pagos entraron
+ * a ese estado ese día y por qué monto. Se actualiza junto con cada
+ * movimiento para no tener que recorrer los pagos.
+ */
+@Data
+@Entity
+@Table(name = "payment_daily_total",
+        uniqueConstraints = @UniqueConstraint(columnNames = { "settlement_day", "method", "status" }))
+public class PaymentDailyTotalEntity extends BaseEntity {
+
+    @Column(nullable = false)
+    private LocalDate settlementDay;
+
+    @Column(nullable = false)
+    private String method;
+
+    @Convert(converter = PaymentStatusConverter.class)
+    @Column(length = 20, nullable = false)
+    private PaymentStatus status;
+
+    private long payments;
+
+    private double amount;
+}
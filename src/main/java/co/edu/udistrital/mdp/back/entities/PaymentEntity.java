@@ -2,7 +2,10 @@ package co.edu.udistrital.mdp.back.entities;
 
 import java.time.LocalDateTime;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -12,15 +15,32 @@ import uk.co.jemos.podam.common.PodamExclude;
 
 @Data
 @Entity
-@Table(name = "payment")
+// Each filter of the payment search ends in id, so the newest-first keyset scan reads the index in order
+@Table(name = "payment", indexes = {
+        @Index(columnList = "shopping_cart_id, id"),
+        @Index(columnList = "status, id"),
+        @Index(columnList = "method, id"),
+        @Index(columnList = "date") })
 public class PaymentEntity extends BaseEntity {
     private double amount;
     private String method;
     private LocalDateTime date;
-    private String status;
+
+    @Convert(converter = PaymentStatusConverter.class)
+    @Column(length = 20)
+    private PaymentStatus status;
+
+    // Último cobro tomado por el trabajador en segundo plano; pasado el plazo otro puede retomarlo
+    private LocalDateTime claimedAt;
 
     @PodamExclude
     @ManyToOne
     @JoinColumn(name = "shopping_cart_id")
     private ShoppingCartEntity shoppingCart;
+
+    // Pedido generado en el checkout del carrito, si lo hay
+    @PodamExclude
+    @ManyToOne
+    @JoinColumn(name = "order_id")
+    private OrderEntity order;
 }
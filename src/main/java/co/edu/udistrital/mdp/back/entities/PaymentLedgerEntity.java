@@ -0,0 +1,43 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Movimiento del libro de pagos: una fila por cada estado al que entra un
+ * pago, con el monto y el método de ese momento. Nunca se modifica ni se
+ * borra, aunque el pago se borre.
+ */
+@Data
+@Entity
+@Immutable
+@Table(name = "payment_ledger", indexes = {
+        @Index(columnList = "payment_id, id"),
+        @Index(columnList = "occurred_at") })
+public class PaymentLedgerEntity extends BaseEntity {
+
+    // Plain id instead of a relation, so entries outlive the payment
+    @Column(name = "payment_id", nullable = false, updatable = false)
+    private Long paymentId;
+
+    @Convert(converter = PaymentStatusConverter.class)
+    @Column(length = 20, nullable = false, updatable = false)
+    private PaymentStatus status;
+
+    @Column(updatable = false)
+    private double amount;
+
+    @Column(updatable = false)
+    private String method;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+}
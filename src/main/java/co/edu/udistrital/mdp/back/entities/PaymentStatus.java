@@ -0,0 +1,82 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Estados de un pago. Se guardan y se exponen en minúsculas ("pending",
+ * "processing", ...), como antes de que existiera el enum.
+ */
+public enum PaymentStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED,
+    CANCELLED;
+
+    // Valores que guardaban versiones anteriores; el arranque los reescribe (PaymentService.migrate)
+    private static final Map<String, PaymentStatus> ALIASES = Map.of(
+            "paid", COMPLETED,
+            "approved", COMPLETED,
+            "declined", FAILED,
+            "rejected", FAILED,
+            "canceled", CANCELLED,
+            "in_process", PROCESSING);
+
+    /** States from which a payment may move to this one. */
+    public Set<PaymentStatus> sources() {
+        return switch (this) {
+            case PENDING -> EnumSet.noneOf(PaymentStatus.class);
+            case PROCESSING -> EnumSet.of(PENDING);
+            case COMPLETED, FAILED -> EnumSet.of(PROCESSING);
+            case CANCELLED -> EnumSet.of(PENDING, PROCESSING, FAILED);
+        };
+    }
+
+    public boolean canMoveTo(PaymentStatus target) {
+        return target.sources().contains(this);
+    }
+
+    @JsonValue
+    public String getValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds the status for a stored or received value, in any case and
+     * including the aliases of earlier versions.
+     *
+     * @return Empty for a null or unknown value
+     */
+    public static Optional<PaymentStatus> find(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        String key = value.trim().toLowerCase(Locale.ROOT);
+        for (PaymentStatus status : values()) {
+            if (status.getValue().equals(key)) {
+                return Optional.of(status);
+            }
+        }
+        return Optional.ofNullable(ALIASES.get(key));
+    }
+
+    @JsonCreator
+    public static PaymentStatus fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        return find(value).orElseThrow(() -> new IllegalArgumentException("Unknown payment status: " + value));
+    }
+
+    // For messages; a payment whose stored status could not be read has none
+    public static String describe(PaymentStatus status) {
+        return status == null ? "unknown" : status.getValue();
+    }
+}
@@ -0,0 +1,28 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.extern.slf4j.Slf4j;
+
+// Keeps the lowercase values already stored in the payment table
+@Slf4j
+@Converter
+public class PaymentStatusConverter implements AttributeConverter<PaymentStatus, String> {
+
+    @Override
+    public String convertToDatabaseColumn(PaymentStatus status) {
+        return status == null ? null : status.getValue();
+    }
+
+    // An unknown value must not make the whole payment unreadable: it is loaded without status
+    @Override
+    public PaymentStatus convertToEntityAttribute(String value) {
+        if (value == null) {
+            return null;
+        }
+        return PaymentStatus.find(value).orElseGet(() -> {
+            log.warn("Unknown payment status '{}' loaded without status", value);
+            return null;
+        });
+    }
+}
@@ -1,6 +1,8 @@
 package co.edu.udistrital.mdp.back.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.OneToMany;
 import lombok.Data;
@@ -19,8 +21,15 @@ public class ProductEntity extends BaseEntity {
     private Double price;
     private Integer stock;
 
+    // Sube con cada cambio de precio; las líneas de carrito guardan la versión con la que se tomó su precio
+    private long priceVersion;
+
+    // Mismos nombres que el mapeo por defecto; ProductRepository los usa en consultas nativas
     @PodamExclude
     @ManyToMany
+    @JoinTable(name = "product_entity_shopping_carts",
+            joinColumns = @JoinColumn(name = "products_id"),
+            inverseJoinColumns = @JoinColumn(name = "shopping_carts_id"))
     private List<ShoppingCartEntity> shoppingCarts = new ArrayList<>();
 
     @PodamExclude
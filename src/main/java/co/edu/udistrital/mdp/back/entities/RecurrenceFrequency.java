@@ -0,0 +1,52 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+public enum RecurrenceFrequency {
+    WEEKLY(7),
+    BIWEEKLY(14),
+    MONTHLY(0);
+
+    private final int stepDays;
+
+    RecurrenceFrequency(int stepDays) {
+        this.stepDays = stepDays;
+    }
+
+    /**
+     * Fechas de una serie que empieza en {@code start} (y termina en
+     * {@code until}, si no es null) que caen dentro de [from, to]. Salta
+     * directamente a la primera ocurrencia de la ventana, así que el costo
+     * depende solo del tamaño de la ventana.
+     */
+    public List<LocalDate> datesBetween(LocalDate start, LocalDate until, LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate first = from.isAfter(start) ? from : start;
+        LocalDate last = until != null && until.isBefore(to) ? until : to;
+        if (first.isAfter(last)) {
+            return dates;
+        }
+
+        if (this == MONTHLY) {
+            // Always offset from the start date so a series on the 31st doesn't drift to the 28th
+            long k = ChronoUnit.MONTHS.between(start, first);
+            LocalDate date = start.plusMonths(k);
+            while (date.isBefore(first)) {
+                date = start.plusMonths(++k);
+            }
+            while (!date.isAfter(last)) {
+                dates.add(date);
+                date = start.plusMonths(++k);
+            }
+        } else {
+            long k = (ChronoUnit.DAYS.between(start, first) + stepDays - 1) / stepDays;
+            for (LocalDate date = start.plusDays(k * stepDays); !date.isAfter(last); date = date.plusDays(stepDays)) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+}
@@ -3,17 +3,27 @@ package co.edu.udistrital.mdp.back.entities;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.Data;
 import uk.co.jemos.podam.common.PodamExclude;
 
 @Data
 @Entity
+@Table(indexes = @Index(columnList = "service_id, reservation_status"))
 public class ReservationEntity extends BaseEntity {
 
     private LocalDate reservationDate;
-    private String reservationStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reservation_status")
+    private ReservationStatus reservationStatus;
+
     private LocalTime startTime;
     private LocalTime endTime;
     private String petName;
@@ -29,4 +39,9 @@ public class ReservationEntity extends BaseEntity {
     @PodamExclude
     @ManyToOne
     private ServiceEntity service;
-}
\ No newline at end of file
+
+    // Asignado por StaffAssignmentService; null en sedes sin personal registrado
+    @PodamExclude
+    @ManyToOne
+    private StaffMemberEntity staff;
+}
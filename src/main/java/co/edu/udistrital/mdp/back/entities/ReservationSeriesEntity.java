@@ -0,0 +1,53 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Data;
+import uk.co.jemos.podam.common.PodamExclude;
+
+/**
+ * Reserva recurrente. Se guarda una sola fila por serie y las ocurrencias se
+ * calculan bajo demanda dentro de la ventana consultada.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(columnList = "branch_id, start_date, end_date"))
+public class ReservationSeriesEntity extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RecurrenceFrequency frequency;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+
+    // null = sin fecha de fin
+    @Column(name = "end_date")
+    private LocalDate endDate;
+
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private String petName;
+
+    // Lazy: expanding occurrences only needs the dates and times of the series
+    @PodamExclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    private BranchEntity branch;
+
+    @PodamExclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    private UserEntity user;
+
+    @PodamExclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    private ServiceEntity service;
+}
@@ -0,0 +1,19 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum ReservationStatus {
+    SCHEDULED,
+    CONFIRMED,
+    COMPLETED,
+    CANCELLED,
+    NO_SHOW;
+
+
+// --- Regla: reservas que todavía ocupan agenda ---
+public static Set<ReservationStatus> activeStatuses() {
+    return EnumSet.of(SCHEDULED, CONFIRMED);
+}
+
+}
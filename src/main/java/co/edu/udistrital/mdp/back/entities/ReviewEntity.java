@@ -1,14 +1,18 @@
 package co.edu.udistrital.mdp.back.entities;
 import java.time.LocalDate;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import lombok.Data;
 import uk.co.jemos.podam.common.PodamExclude;
 
 
+// The id is the tie-breaker of both orders; InnoDB appends it to every secondary index
 @Data
 @Entity
+@Table(indexes = { @Index(columnList = "service_id, review_date"), @Index(columnList = "service_id, rating") })
 public class ReviewEntity extends BaseEntity {
     private Integer rating;
     private String comments;
@@ -0,0 +1,39 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Agregado de calificaciones de un servicio: cantidad, suma y cuántas reseñas
+ * dieron cada número de estrellas. ReviewService lo ajusta en la misma
+ * transacción en que crea, cambia o borra una reseña, así que el promedio se
+ * obtiene sin leer las reseñas.
+ */
+@Data
+@Entity
+@Table(name = "service_rating")
+public class ServiceRatingEntity {
+
+    @Id
+    @Column(name = "service_id")
+    private Long serviceId;
+
+    private long ratingCount;
+    private long ratingSum;
+    private long stars1;
+    private long stars2;
+    private long stars3;
+    private long stars4;
+    private long stars5;
+
+    public double getAverage() {
+        return ratingCount == 0 ? 0.0 : (double) ratingSum / ratingCount;
+    }
+
+    public long[] getHistogram() {
+        return new long[] { stars1, stars2, stars3, stars4, stars5 };
+    }
+}
@@ -0,0 +1,31 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+import uk.co.jemos.podam.common.PodamExclude;
+
+/**
+ * Contador de reservas por servicio y estado. Se mantiene en cada transición
+ * de ReservationService para no tener que contar filas de reservas.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "service_id", "status" }))
+public class ServiceReservationCountEntity extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReservationStatus status;
+
+    private long total;
+
+    @PodamExclude
+    @ManyToOne(optional = false)
+    private ServiceEntity service;
+}
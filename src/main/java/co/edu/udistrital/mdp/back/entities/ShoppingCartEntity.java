@@ -1,25 +1,42 @@
 package co.edu.udistrital.mdp.back.entities;
 
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Entity;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import uk.co.jemos.podam.common.PodamExclude;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 
 @Data
 @Entity
+@Table(indexes = @Index(columnList = "last_activity"))
 public class ShoppingCartEntity extends BaseEntity {
+    // Lo calcula el servidor a partir de las líneas (CartItemEntity)
     private double total;
 
+    // Último cambio hecho por el cliente; el barrido de carritos abandonados se guía por él
+    private LocalDateTime lastActivity;
+
     @PodamExclude
     @ManyToMany(mappedBy= "shoppingCarts")
     private List<ProductEntity> products = new ArrayList<>();
 
+    @PodamExclude
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "shoppingCart", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<CartItemEntity> items = new ArrayList<>();
+
     @PodamExclude
     @OneToOne
     private UserEntity user;
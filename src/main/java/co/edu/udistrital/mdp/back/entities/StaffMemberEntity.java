@@ -0,0 +1,36 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Entity;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import uk.co.jemos.podam.common.PodamExclude;
+
+@Data
+@Entity
+public class StaffMemberEntity extends BaseEntity {
+
+    private String name;
+
+    @PodamExclude
+    @ManyToOne
+    private BranchEntity branch;
+
+    // Servicios que puede realizar
+    @PodamExclude
+    @ManyToMany
+    private List<ServiceEntity> skills = new ArrayList<>();
+
+    @PodamExclude
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "staff", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<StaffShiftEntity> shifts = new ArrayList<>();
+}
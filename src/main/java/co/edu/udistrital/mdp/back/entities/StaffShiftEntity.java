@@ -0,0 +1,35 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.ManyToOne;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import uk.co.jemos.podam.common.PodamExclude;
+
+/**
+ * Turno semanal de un miembro del personal.
+ */
+@Data
+@Entity
+public class StaffShiftEntity extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DayOfWeek dayOfWeek;
+
+    private LocalTime startTime;
+    private LocalTime endTime;
+
+    @PodamExclude
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne
+    private StaffMemberEntity staff;
+}
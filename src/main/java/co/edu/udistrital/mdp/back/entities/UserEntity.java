@@ -1,6 +1,8 @@
 package co.edu.udistrital.mdp.back.entities;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
@@ -24,8 +26,14 @@ public class UserEntity extends PersonEntity {
     @OneToOne(mappedBy = "user")
     private ShoppingCartEntity shoppingCart;
     
+    // Read only: read state lives in the join row (UserNotificationEntity) and any change
+    // to this bag makes Hibernate rewrite all the user's rows, resetting it. Links are
+    // created and removed through UserNotificationRepository.
     @PodamExclude
     @ManyToMany
+    @JoinTable(name = UserNotificationEntity.TABLE,
+            joinColumns = @JoinColumn(name = "users_id"),
+            inverseJoinColumns = @JoinColumn(name = "notifications_id"))
     private List<NotificationEntity> notifications = new ArrayList<>();
 
     @PodamExclude
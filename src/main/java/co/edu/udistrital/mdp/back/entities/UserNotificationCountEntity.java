@@ -0,0 +1,25 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Cantidad de notificaciones sin leer de un usuario. Se mantiene en cada
+ * vínculo, lectura y borrado para que el contador de la app no tenga que
+ * contar filas de la tabla de unión; la fila se crea la primera vez que se
+ * consulta.
+ */
+@Data
+@Entity
+@Table(name = "user_notification_count")
+public class UserNotificationCountEntity {
+
+    @Id
+    @Column(name = "users_id")
+    private Long userId;
+
+    private long unread;
+}
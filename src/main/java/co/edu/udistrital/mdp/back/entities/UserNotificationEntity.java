@@ -0,0 +1,48 @@
+package co.edu.udistrital.mdp.back.entities;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fila de la tabla que une usuarios y notificaciones, con el estado de
+ * lectura de ese usuario. Los vínculos se crean y se borran con
+ * UserNotificationRepository, nunca desde {@link UserEntity#getNotifications()},
+ * que sólo se lee.
+ */
+@Data
+@Entity
+@IdClass(UserNotificationEntity.Key.class)
+@Table(name = UserNotificationEntity.TABLE, indexes = @Index(columnList = "users_id, is_read"))
+public class UserNotificationEntity {
+
+    public static final String TABLE = "person_entity_notifications";
+
+    @Id
+    @Column(name = "users_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "notifications_id")
+    private Long notificationId;
+
+    // Inserts that only write the ids get the default, unread
+    @Column(name = "is_read", nullable = false, columnDefinition = "boolean default false")
+    private boolean read;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Long notificationId;
+    }
+}
@@ -1,9 +1,24 @@
 package co.edu.udistrital.mdp.back.repositories;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaRepository; 
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import jakarta.persistence.LockModeType;
 
 @Repository
 public interface BranchRepository extends JpaRepository<BranchEntity, Long> {
+
+    List<BranchEntity> findByServices_Id(Long serviceId);
+
+    // Row lock held until commit: bookings of the same branch are checked and saved one after another
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BranchEntity b WHERE b.id = :id")
+    Optional<BranchEntity> findByIdForUpdate(@Param("id") Long id);
 }
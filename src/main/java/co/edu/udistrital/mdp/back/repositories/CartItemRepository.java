@@ -0,0 +1,61 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItemEntity, Long> {
+
+    // Products in the same query to avoid one select per line
+    @Query("SELECT i FROM CartItemEntity i JOIN FETCH i.product WHERE i.shoppingCart.id = :shoppingCartId ORDER BY i.id")
+    List<CartItemEntity> findByShoppingCart_Id(@Param("shoppingCartId") Long shoppingCartId);
+
+    Optional<CartItemEntity> findByShoppingCart_IdAndProduct_Id(Long shoppingCartId, Long productId);
+
+    // Compares versions in the database, so no product is loaded
+    @Query("SELECT CASE WHEN COUNT(i) > 0 THEN true ELSE false END FROM CartItemEntity i "
+            + "WHERE i.shoppingCart.id = :shoppingCartId AND i.priceVersion <> i.product.priceVersion")
+    boolean existsStalePrice(@Param("shoppingCartId") Long shoppingCartId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE CartItemEntity i SET "
+            + "i.unitPrice = (SELECT COALESCE(p.price, 0) FROM ProductEntity p WHERE p.id = i.product.id), "
+            + "i.priceVersion = (SELECT p.priceVersion FROM ProductEntity p WHERE p.id = i.product.id) "
+            + "WHERE i.shoppingCart.id = :shoppingCartId "
+            + "AND i.priceVersion <> (SELECT p.priceVersion FROM ProductEntity p WHERE p.id = i.product.id)")
+    int refreshPrices(@Param("shoppingCartId") Long shoppingCartId);
+
+    @Query("SELECT COALESCE(SUM(i.quantity * i.unitPrice), 0) FROM CartItemEntity i "
+            + "WHERE i.shoppingCart.id = :shoppingCartId")
+    double sumTotal(@Param("shoppingCartId") Long shoppingCartId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM CartItemEntity i WHERE i.shoppingCart.id = :shoppingCartId")
+    int deleteByShoppingCartId(@Param("shoppingCartId") Long shoppingCartId);
+
+    // Lines of the products that are no longer listed; the others keep their quantity and price
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItemEntity i WHERE i.shoppingCart.id = :shoppingCartId AND i.product.id NOT IN :productIds")
+    int deleteOtherLines(@Param("shoppingCartId") Long shoppingCartId, @Param("productIds") Collection<Long> productIds);
+
+    // One unit at the current price for each listed product that has no line yet
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO cart_item_entity (quantity, unit_price, price_version, shopping_cart_id, product_id) "
+            + "SELECT 1, COALESCE(p.price, 0), p.price_version, :shoppingCartId, p.id FROM product_entity p "
+            + "WHERE p.id IN :productIds AND NOT EXISTS (SELECT 1 FROM cart_item_entity i "
+            + "WHERE i.shopping_cart_id = :shoppingCartId AND i.product_id = p.id)", nativeQuery = true)
+    int insertMissingLines(@Param("shoppingCartId") Long shoppingCartId, @Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CartItemEntity i WHERE i.shoppingCart.id IN :shoppingCartIds")
+    int deleteByShoppingCartIds(@Param("shoppingCartIds") Collection<Long> shoppingCartIds);
+}
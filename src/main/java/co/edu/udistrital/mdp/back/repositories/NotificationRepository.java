@@ -1,7 +1,13 @@
 package co.edu.udistrital.mdp.back.repositories;
+import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 
@@ -9,5 +15,30 @@ import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 public interface NotificationRepository extends JpaRepository<NotificationEntity, Long>{
     
     List<NotificationEntity> findByUsers_Id(Long userId);
-    List<NotificationEntity> findByUsers_IdAndReadFalse(Long userId);
-}
\ No newline at end of file
+
+    // Served by the (users_id, is_read) index of the join table
+    @Query("SELECT n FROM NotificationEntity n JOIN UserNotificationEntity un ON un.notificationId = n.id "
+            + "WHERE un.userId = :userId AND un.read = false ORDER BY n.id DESC")
+    List<NotificationEntity> findUnreadByUserId(@Param("userId") Long userId);
+
+    // What a reconnecting stream missed, oldest first
+    @Query("SELECT n FROM NotificationEntity n JOIN UserNotificationEntity un ON un.notificationId = n.id "
+            + "WHERE un.userId = :userId AND n.id > :afterId ORDER BY n.id")
+    List<NotificationEntity> findByUserIdAfter(@Param("userId") Long userId, @Param("afterId") long afterId,
+            Pageable pageable);
+
+    // Retention: past the maximum age, or past the read age with nobody left to read it
+    @Query("SELECT n.id FROM NotificationEntity n WHERE n.id > :afterId AND (n.date < :expiredBefore "
+            + "OR (n.date < :readBefore AND NOT EXISTS (SELECT un FROM UserNotificationEntity un "
+            + "WHERE un.notificationId = n.id AND un.read = false))) ORDER BY n.id")
+    List<Long> findPurgeableIds(@Param("expiredBefore") Date expiredBefore, @Param("readBefore") Date readBefore,
+            @Param("afterId") long afterId, Pageable pageable);
+
+    // Held by each broadcast chunk and by a delete, so neither runs while the other is in progress
+    @Query(value = "SELECT id FROM notification_entity WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM NotificationEntity n WHERE n.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
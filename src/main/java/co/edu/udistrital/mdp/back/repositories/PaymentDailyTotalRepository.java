@@ -0,0 +1,33 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.PaymentDailyTotalEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+
+@Repository
+public interface PaymentDailyTotalRepository extends JpaRepository<PaymentDailyTotalEntity, Long> {
+
+    boolean existsBySettlementDayAndMethodAndStatus(LocalDate settlementDay, String method, PaymentStatus status);
+
+    // In-place increment, so concurrent transitions don't overwrite each other
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE PaymentDailyTotalEntity t SET t.payments = t.payments + :payments, t.amount = t.amount + :amount "
+            + "WHERE t.settlementDay = :day AND t.method = :method AND t.status = :status")
+    int addToTotal(@Param("day") LocalDate day, @Param("method") String method,
+            @Param("status") PaymentStatus status, @Param("payments") long payments,
+            @Param("amount") double amount);
+
+    @Query("SELECT t FROM PaymentDailyTotalEntity t WHERE t.settlementDay BETWEEN :from AND :to "
+            + "AND (:method IS NULL OR t.method = :method) "
+            + "ORDER BY t.settlementDay, t.method, t.status")
+    List<PaymentDailyTotalEntity> findBetween(@Param("from") LocalDate from, @Param("to") LocalDate to,
+            @Param("method") String method);
+}
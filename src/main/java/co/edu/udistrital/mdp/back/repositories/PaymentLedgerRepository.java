@@ -0,0 +1,14 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.PaymentLedgerEntity;
+
+@Repository
+public interface PaymentLedgerRepository extends JpaRepository<PaymentLedgerEntity, Long> {
+
+    List<PaymentLedgerEntity> findByPaymentIdOrderByIdAsc(Long paymentId);
+}
@@ -1,9 +1,107 @@
 package co.edu.udistrital.mdp.back.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import jakarta.persistence.LockModeType;
 
 public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
-    
-}
\ No newline at end of file
+
+    // Check and change in one statement: 0 rows means the payment is missing or not in a source state
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentEntity p SET p.status = :to WHERE p.id = :id AND p.status IN :from")
+    int transition(@Param("id") Long id, @Param("from") Collection<PaymentStatus> from,
+            @Param("to") PaymentStatus to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentEntity p SET p.status = :to WHERE p.id IN :ids AND p.status IN :from")
+    int transitionAll(@Param("ids") Collection<Long> ids, @Param("from") Collection<PaymentStatus> from,
+            @Param("to") PaymentStatus to);
+
+    // Worker claim: the transition plus the start of its lease
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentEntity p SET p.status = :to, p.claimedAt = :now WHERE p.id = :id AND p.status IN :from")
+    int claim(@Param("id") Long id, @Param("from") Collection<PaymentStatus> from, @Param("to") PaymentStatus to,
+            @Param("now") LocalDateTime now);
+
+    // Takes over a claim whose lease expired; payments processed by hand have no claim and are never taken
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentEntity p SET p.claimedAt = :now "
+            + "WHERE p.id = :id AND p.status = :status AND p.claimedAt < :expiredBefore")
+    int renewExpiredClaim(@Param("id") Long id, @Param("status") PaymentStatus status,
+            @Param("now") LocalDateTime now, @Param("expiredBefore") LocalDateTime expiredBefore);
+
+    @Query("SELECT p.id FROM PaymentEntity p WHERE p.status = :status AND p.claimedAt < :expiredBefore "
+            + "AND p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsWithExpiredClaim(@Param("status") PaymentStatus status,
+            @Param("expiredBefore") LocalDateTime expiredBefore, @Param("afterId") long afterId, Pageable pageable);
+
+    // Rows a batch transition will change, locked so the ledger records exactly those
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM PaymentEntity p WHERE p.id IN :ids AND p.status IN :from ORDER BY p.id")
+    List<PaymentEntity> lockInStatus(@Param("ids") Collection<Long> ids,
+            @Param("from") Collection<PaymentStatus> from);
+
+    @Query("SELECT p.id AS id, p.amount AS amount, p.status AS status, p.date AS date "
+            + "FROM PaymentEntity p WHERE p.id IN :ids")
+    List<SettlementView> findSettlementViews(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p FROM PaymentEntity p WHERE p.shoppingCart.id = :cartId ORDER BY p.id")
+    List<PaymentEntity> findByShoppingCartId(@Param("cartId") Long cartId);
+
+    // Newest first, one page after the cursor; every filter is optional
+    @Query("SELECT p FROM PaymentEntity p WHERE p.id < :beforeId "
+            + "AND (:cartId IS NULL OR p.shoppingCart.id = :cartId) "
+            + "AND (:status IS NULL OR p.status = :status) "
+            + "AND (:method IS NULL OR p.method = :method) "
+            + "AND (:fromDate IS NULL OR p.date >= :fromDate) "
+            + "AND (:toDate IS NULL OR p.date < :toDate) "
+            + "ORDER BY p.id DESC")
+    List<PaymentEntity> search(@Param("cartId") Long cartId, @Param("status") PaymentStatus status,
+            @Param("method") String method, @Param("fromDate") LocalDateTime fromDate,
+            @Param("toDate") LocalDateTime toDate, @Param("beforeId") long beforeId, Pageable pageable);
+
+    @Query("SELECT p.id FROM PaymentEntity p WHERE p.status = :status AND p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsByStatus(@Param("status") PaymentStatus status, @Param("afterId") long afterId,
+            Pageable pageable);
+
+    // Values of earlier versions: any case, surrounding spaces and the aliases of PaymentStatus
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payment SET status = CASE LOWER(TRIM(status)) "
+            + "WHEN 'paid' THEN 'completed' WHEN 'approved' THEN 'completed' "
+            + "WHEN 'declined' THEN 'failed' WHEN 'rejected' THEN 'failed' "
+            + "WHEN 'canceled' THEN 'cancelled' WHEN 'in_process' THEN 'processing' "
+            + "ELSE LOWER(TRIM(status)) END "
+            + "WHERE status NOT IN ('pending', 'processing', 'completed', 'failed', 'cancelled')",
+            nativeQuery = true)
+    int normalizeLegacyStatuses();
+
+    @Query(value = "SELECT COUNT(*) FROM payment "
+            + "WHERE status NOT IN ('pending', 'processing', 'completed', 'failed', 'cancelled')",
+            nativeQuery = true)
+    long countUnknownStatuses();
+
+    default int transition(Long id, PaymentStatus to) {
+        return transition(id, to.sources(), to);
+    }
+
+    interface SettlementView {
+        Long getId();
+
+        double getAmount();
+
+        PaymentStatus getStatus();
+
+        LocalDateTime getDate();
+    }
+}
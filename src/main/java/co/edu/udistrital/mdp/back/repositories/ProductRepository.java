@@ -1,9 +1,67 @@
 package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
 
 @Repository
 public interface ProductRepository extends JpaRepository<ProductEntity, Long>{
 
-}
\ No newline at end of file
+    // Product <-> cart links are read and written as rows so a replace only
+    // touches what changed, instead of Hibernate recreating the whole bag. They
+    // mirror the cart lines and are written together with them
+
+    @Query(value = "SELECT products_id FROM product_entity_shopping_carts WHERE shopping_carts_id = :cartId",
+            nativeQuery = true)
+    List<Long> findLinkedProductIds(@Param("cartId") Long cartId);
+
+    @Query(value = "SELECT shopping_carts_id FROM product_entity_shopping_carts WHERE products_id = :productId",
+            nativeQuery = true)
+    List<Long> findLinkedCartIds(@Param("productId") Long productId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO product_entity_shopping_carts (products_id, shopping_carts_id) "
+            + "SELECT p.id, c.id FROM product_entity p, shopping_cart_entity c "
+            + "WHERE c.id = :cartId AND p.id IN :productIds AND NOT EXISTS (SELECT 1 FROM product_entity_shopping_carts l "
+            + "WHERE l.products_id = p.id AND l.shopping_carts_id = c.id)", nativeQuery = true)
+    int linkProducts(@Param("cartId") Long cartId, @Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM product_entity_shopping_carts WHERE shopping_carts_id = :cartId "
+            + "AND products_id IN :productIds", nativeQuery = true)
+    int unlinkProducts(@Param("cartId") Long cartId, @Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM product_entity_shopping_carts WHERE shopping_carts_id IN :cartIds", nativeQuery = true)
+    int unlinkAllProducts(@Param("cartIds") Collection<Long> cartIds);
+
+    // Takes the units only if they are all still available, so two checkouts cannot oversell
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock - :quantity WHERE p.id = :productId AND p.stock >= :quantity")
+    int reserveStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+
+    /** Leaves the cart linked to exactly {@code productIds}, writing only the rows that change. */
+    default void replaceCartProducts(Long cartId, Collection<Long> productIds) {
+        Set<Long> current = new HashSet<>(findLinkedProductIds(cartId));
+        Set<Long> wanted = new HashSet<>(productIds);
+
+        Set<Long> removed = new HashSet<>(current);
+        removed.removeAll(wanted);
+        wanted.removeAll(current);
+
+        if (!removed.isEmpty()) {
+            unlinkProducts(cartId, removed);
+        }
+        if (!wanted.isEmpty()) {
+            linkProducts(cartId, wanted);
+        }
+    }
+}
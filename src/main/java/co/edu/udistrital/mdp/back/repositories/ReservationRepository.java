@@ -1,12 +1,152 @@
 package co.edu.udistrital.mdp.back.repositories;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.stereotype.Repository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<ReservationEntity, Long> {
-    int countByService_IdAndReservationStatus(Long serviceId, String status);
-
     java.util.List<ReservationEntity> findByUserId(Long userId);
+
+    // A locking read, so it does not fix the transaction's snapshot before the branch is locked
+    @Query(value = "SELECT branch_id FROM reservation_entity WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long findBranchIdForUpdate(@Param("id") Long id);
+
+    // Only the columns needed to compute availability, so the eager
+    // branch/user/service associations are not loaded per row
+    @Query("SELECT r.reservationDate AS reservationDate, r.startTime AS startTime, r.endTime AS endTime "
+            + "FROM ReservationEntity r WHERE r.branch.id = :branchId "
+            + "AND r.reservationDate BETWEEN :from AND :to "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED) "
+            + "ORDER BY r.reservationDate, r.startTime")
+    List<BookedSlot> findBookedSlots(@Param("branchId") Long branchId, @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+
+    @Query("SELECT r.reservationDate AS reservationDate, r.startTime AS startTime, r.endTime AS endTime "
+            + "FROM ReservationEntity r WHERE r.branch.id = :branchId AND r.reservationDate IN :dates "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED)")
+    List<BookedSlot> findBookedSlotsOnDates(@Param("branchId") Long branchId,
+            @Param("dates") Collection<LocalDate> dates);
+
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM ReservationEntity r "
+            + "WHERE r.branch.id = :branchId AND r.reservationDate = :date "
+            + "AND r.startTime < :endTime AND r.endTime > :startTime "
+            + "AND (:reservationId IS NULL OR r.id <> :reservationId) "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED)")
+    boolean existsOverlapping(@Param("branchId") Long branchId, @Param("date") LocalDate date,
+            @Param("startTime") LocalTime startTime, @Param("endTime") LocalTime endTime,
+            @Param("reservationId") Long reservationId);
+
+    @Query("SELECT r.staff.id AS staffId, r.startTime AS startTime, r.endTime AS endTime "
+            + "FROM ReservationEntity r WHERE r.branch.id = :branchId AND r.reservationDate = :date "
+            + "AND r.staff IS NOT NULL "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED)")
+    List<StaffSlot> findStaffSlots(@Param("branchId") Long branchId, @Param("date") LocalDate date);
+
+    // The same slots for every day a new series falls on, in one query
+    @Query("SELECT r.reservationDate AS reservationDate, r.staff.id AS staffId, r.startTime AS startTime, "
+            + "r.endTime AS endTime FROM ReservationEntity r WHERE r.branch.id = :branchId "
+            + "AND r.reservationDate IN :dates AND r.staff IS NOT NULL "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED)")
+    List<DatedStaffSlot> findStaffSlotsOnDates(@Param("branchId") Long branchId,
+            @Param("dates") Collection<LocalDate> dates);
+
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM ReservationEntity r "
+            + "WHERE r.staff.id = :staffId AND r.reservationDate = :date "
+            + "AND r.startTime < :endTime AND r.endTime > :startTime "
+            + "AND (r.reservationStatus IS NULL OR r.reservationStatus <> co.edu.udistrital.mdp.back.entities.ReservationStatus.CANCELLED)")
+    boolean existsStaffOverlapping(@Param("staffId") Long staffId, @Param("date") LocalDate date,
+            @Param("startTime") LocalTime startTime, @Param("endTime") LocalTime endTime);
+
+    // Past bookings keep their data when a staff member is removed
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ReservationEntity r SET r.staff = null WHERE r.staff.id = :staffId")
+    int clearStaff(@Param("staffId") Long staffId);
+
+    // Reservations still open at the cutoff, in id order so the closing job can page by id
+    @Query("SELECT r.id AS id, r.service.id AS serviceId, r.user.id AS userId, r.reservationStatus AS reservationStatus "
+            + "FROM ReservationEntity r WHERE r.branch.id = :branchId AND r.id > :afterId "
+            + "AND r.reservationStatus IN :statuses "
+            + "AND (r.reservationDate < :date OR (r.reservationDate = :date AND r.endTime <= :until)) "
+            + "ORDER BY r.id")
+    List<OpenReservation> findOpenUntil(@Param("branchId") Long branchId, @Param("statuses") Collection<ReservationStatus> statuses,
+            @Param("date") LocalDate date, @Param("until") LocalTime until, @Param("afterId") Long afterId,
+            Pageable page);
+
+    @Query("SELECT DISTINCT r.branch.id FROM ReservationEntity r WHERE r.reservationStatus IN :statuses "
+            + "AND (r.reservationDate < :date OR (r.reservationDate = :date AND r.endTime <= :until))")
+    List<Long> findBranchIdsWithOpenUntil(@Param("statuses") Collection<ReservationStatus> statuses,
+            @Param("date") LocalDate date, @Param("until") LocalTime until);
+
+    // Only rows still in the expected status change, so the returned count is exact
+    // Locking read of the ids still in the status; an UPDATE on them in the same transaction changes exactly these
+    @Query(value = "SELECT id FROM reservation_entity WHERE id IN :ids AND reservation_status = :status FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockInStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ReservationEntity r SET r.reservationStatus = :to WHERE r.id IN :ids AND r.reservationStatus = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") ReservationStatus from,
+            @Param("to") ReservationStatus to);
+
+    // Free-text statuses saved before the column became an enum, mapped to their enum names
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE reservation_entity SET reservation_status = CASE UPPER(TRIM(reservation_status)) "
+            + "WHEN 'PENDING' THEN 'SCHEDULED' WHEN 'PENDIENTE' THEN 'SCHEDULED' WHEN 'PROGRAMADA' THEN 'SCHEDULED' "
+            + "WHEN 'CONFIRMADA' THEN 'CONFIRMED' "
+            + "WHEN 'DONE' THEN 'COMPLETED' WHEN 'FINISHED' THEN 'COMPLETED' WHEN 'COMPLETADA' THEN 'COMPLETED' "
+            + "WHEN 'CANCELED' THEN 'CANCELLED' WHEN 'CANCELADA' THEN 'CANCELLED' "
+            + "WHEN 'NO-SHOW' THEN 'NO_SHOW' WHEN 'NO SHOW' THEN 'NO_SHOW' WHEN 'NOSHOW' THEN 'NO_SHOW' "
+            + "ELSE UPPER(TRIM(reservation_status)) END "
+            + "WHERE reservation_status NOT IN ('SCHEDULED', 'CONFIRMED', 'COMPLETED', 'CANCELLED', 'NO_SHOW')",
+            nativeQuery = true)
+    int normalizeLegacyStatuses();
+
+    // Whatever is still not an enum name cannot be loaded; it is left without status
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE reservation_entity SET reservation_status = NULL "
+            + "WHERE reservation_status NOT IN ('SCHEDULED', 'CONFIRMED', 'COMPLETED', 'CANCELLED', 'NO_SHOW')",
+            nativeQuery = true)
+    int clearUnknownStatuses();
+
+    interface BookedSlot {
+        LocalDate getReservationDate();
+
+        LocalTime getStartTime();
+
+        LocalTime getEndTime();
+    }
+
+    interface OpenReservation {
+        Long getId();
+
+        Long getServiceId();
+
+        Long getUserId();
+
+        ReservationStatus getReservationStatus();
+    }
+
+    interface StaffSlot {
+        Long getStaffId();
+
+        LocalTime getStartTime();
+
+        LocalTime getEndTime();
+    }
+
+    interface DatedStaffSlot extends StaffSlot {
+        LocalDate getReservationDate();
+    }
 }
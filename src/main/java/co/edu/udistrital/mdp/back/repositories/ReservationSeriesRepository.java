@@ -0,0 +1,21 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+
+@Repository
+public interface ReservationSeriesRepository extends JpaRepository<ReservationSeriesEntity, Long> {
+
+    // Series of the branch that have at least one day inside [from, to]
+    @Query("SELECT s FROM ReservationSeriesEntity s WHERE s.branch.id = :branchId "
+            + "AND s.startDate <= :to AND (s.endDate IS NULL OR s.endDate >= :from)")
+    List<ReservationSeriesEntity> findActiveInWindow(@Param("branchId") Long branchId,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
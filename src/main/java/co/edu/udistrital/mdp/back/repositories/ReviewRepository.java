@@ -1,10 +1,55 @@
 package co.edu.udistrital.mdp.back.repositories;
 
+import java.time.LocalDate;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import co.edu.udistrital.mdp.back.entities.ReviewEntity;
 
 public interface ReviewRepository extends JpaRepository<ReviewEntity, Long> {
 	// Find reviews associated to a given service id
 	java.util.List<ReviewEntity> findByService_Id(Long serviceId);
+
+	// Columns only, author included: loading the entities would also load each service and author
+	@Query("SELECT r.id AS id, r.rating AS rating, r.comments AS comments, r.reviewDate AS reviewDate, "
+			+ "a.id AS authorId, a.name AS authorName FROM ReviewEntity r LEFT JOIN r.author a "
+			+ "WHERE (:serviceId IS NULL OR r.service.id = :serviceId) ORDER BY r.id")
+	java.util.List<ReviewView> findViews(@Param("serviceId") Long serviceId);
+
+	// Newest first, one page after the (date, id) cursor; the service filter is optional
+	@Query("SELECT r.id AS id, r.rating AS rating, r.comments AS comments, r.reviewDate AS reviewDate, "
+			+ "a.id AS authorId, a.name AS authorName FROM ReviewEntity r LEFT JOIN r.author a "
+			+ "WHERE (:serviceId IS NULL OR r.service.id = :serviceId) AND r.reviewDate IS NOT NULL "
+			+ "AND (:afterDate IS NULL OR r.reviewDate < :afterDate "
+			+ "OR (r.reviewDate = :afterDate AND r.id < :afterId)) "
+			+ "ORDER BY r.reviewDate DESC, r.id DESC")
+	java.util.List<ReviewView> findPageByDate(@Param("serviceId") Long serviceId,
+			@Param("afterDate") LocalDate afterDate, @Param("afterId") long afterId, Pageable pageable);
+
+	// Best rated first, one page after the (rating, id) cursor
+	@Query("SELECT r.id AS id, r.rating AS rating, r.comments AS comments, r.reviewDate AS reviewDate, "
+			+ "a.id AS authorId, a.name AS authorName FROM ReviewEntity r LEFT JOIN r.author a "
+			+ "WHERE (:serviceId IS NULL OR r.service.id = :serviceId) AND r.rating IS NOT NULL "
+			+ "AND (:afterRating IS NULL OR r.rating < :afterRating "
+			+ "OR (r.rating = :afterRating AND r.id < :afterId)) "
+			+ "ORDER BY r.rating DESC, r.id DESC")
+	java.util.List<ReviewView> findPageByRating(@Param("serviceId") Long serviceId,
+			@Param("afterRating") Integer afterRating, @Param("afterId") long afterId, Pageable pageable);
+
+	interface ReviewView {
+		Long getId();
+
+		Integer getRating();
+
+		String getComments();
+
+		LocalDate getReviewDate();
+
+		Long getAuthorId();
+
+		String getAuthorName();
+	}
 }
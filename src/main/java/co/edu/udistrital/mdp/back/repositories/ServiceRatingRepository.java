@@ -0,0 +1,41 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.ServiceRatingEntity;
+
+@Repository
+public interface ServiceRatingRepository extends JpaRepository<ServiceRatingEntity, Long> {
+
+    List<ServiceRatingEntity> findByServiceIdIn(Collection<Long> serviceIds);
+
+    // In-place update, so concurrent reviews of the same service don't overwrite each other
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ServiceRatingEntity r SET r.ratingCount = r.ratingCount + :count, "
+            + "r.ratingSum = r.ratingSum + :sum, r.stars1 = r.stars1 + :stars1, r.stars2 = r.stars2 + :stars2, "
+            + "r.stars3 = r.stars3 + :stars3, r.stars4 = r.stars4 + :stars4, r.stars5 = r.stars5 + :stars5 "
+            + "WHERE r.serviceId = :serviceId")
+    int adjust(@Param("serviceId") Long serviceId, @Param("count") long count, @Param("sum") long sum,
+            @Param("stars1") long stars1, @Param("stars2") long stars2, @Param("stars3") long stars3,
+            @Param("stars4") long stars4, @Param("stars5") long stars5);
+
+    // Built from the committed reviews; must not run in a transaction that already wrote reviews of the service
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO service_rating "
+            + "(service_id, rating_count, rating_sum, stars1, stars2, stars3, stars4, stars5) "
+            + "SELECT :serviceId, COUNT(r.rating), COALESCE(SUM(r.rating), 0), "
+            + "COALESCE(SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), 0), "
+            + "COALESCE(SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END), 0) "
+            + "FROM review_entity r WHERE r.service_id = :serviceId", nativeQuery = true)
+    int initialize(@Param("serviceId") Long serviceId);
+}
@@ -1,9 +1,15 @@
 package co.edu.udistrital.mdp.back.repositories;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import co.edu.udistrital.mdp.back.entities.ServiceEntity;
 
 @Repository
 public interface ServiceRepository extends JpaRepository<ServiceEntity, Long>{
-    
+
+    // The listing shows each service's multimedia; one query instead of one per service
+    @Query("SELECT DISTINCT s FROM ServiceEntity s LEFT JOIN FETCH s.multimedia ORDER BY s.id")
+    List<ServiceEntity> findAllWithMultimedia();
 }
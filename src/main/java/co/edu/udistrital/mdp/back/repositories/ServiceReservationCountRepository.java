@@ -0,0 +1,71 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.entities.ServiceReservationCountEntity;
+
+@Repository
+public interface ServiceReservationCountRepository extends JpaRepository<ServiceReservationCountEntity, Long> {
+
+    String STATUSES = "(SELECT 'SCHEDULED' AS status UNION ALL SELECT 'CONFIRMED' UNION ALL SELECT 'COMPLETED' "
+            + "UNION ALL SELECT 'CANCELLED' UNION ALL SELECT 'NO_SHOW')";
+
+    List<ServiceReservationCountEntity> findByService_Id(Long serviceId);
+
+    boolean existsByService_IdAndStatus(Long serviceId, ReservationStatus status);
+
+    // In-place increment, so concurrent transitions don't overwrite each other
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ServiceReservationCountEntity c SET c.total = c.total + :delta "
+            + "WHERE c.service.id = :serviceId AND c.status = :status")
+    int addToTotal(@Param("serviceId") Long serviceId, @Param("status") ReservationStatus status,
+            @Param("delta") long delta);
+
+    // Adds the zero row only if no one else has; addToTotal then applies the change either way
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO service_reservation_count_entity (service_id, status, total) "
+            + "SELECT s.id, st.status, 0 FROM service_entity s CROSS JOIN " + STATUSES + " st "
+            + "WHERE s.id = :serviceId AND st.status = :status AND NOT EXISTS "
+            + "(SELECT 1 FROM service_reservation_count_entity c WHERE c.service_id = s.id AND c.status = st.status)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("serviceId") Long serviceId, @Param("status") String status);
+
+    // Zero rows for every status, so later changes of the service's reservations only ever update
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO service_reservation_count_entity (service_id, status, total) "
+            + "SELECT s.id, st.status, 0 FROM service_entity s CROSS JOIN " + STATUSES + " st "
+            + "WHERE s.id = :serviceId AND NOT EXISTS "
+            + "(SELECT 1 FROM service_reservation_count_entity c WHERE c.service_id = s.id AND c.status = st.status)",
+            nativeQuery = true)
+    int createRows(@Param("serviceId") Long serviceId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO service_reservation_count_entity (service_id, status, total) "
+            + "SELECT s.id, st.status, 0 FROM service_entity s CROSS JOIN " + STATUSES + " st "
+            + "WHERE NOT EXISTS "
+            + "(SELECT 1 FROM service_reservation_count_entity c WHERE c.service_id = s.id AND c.status = st.status)",
+            nativeQuery = true)
+    int createMissingRows();
+
+    // Rewrites only the counters that differ from the reservations table
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ServiceReservationCountEntity c SET c.total = "
+            + "(SELECT COUNT(r) FROM ReservationEntity r WHERE r.service = c.service AND r.reservationStatus = c.status) "
+            + "WHERE c.total <> "
+            + "(SELECT COUNT(r) FROM ReservationEntity r WHERE r.service = c.service AND r.reservationStatus = c.status)")
+    int reconcile();
+
+    @Query("SELECT COALESCE(SUM(c.total), 0) FROM ServiceReservationCountEntity c "
+            + "WHERE c.service.id = :serviceId AND c.status IN :statuses")
+    long sumTotals(@Param("serviceId") Long serviceId, @Param("statuses") Collection<ReservationStatus> statuses);
+
+    void deleteByService_Id(Long serviceId);
+}
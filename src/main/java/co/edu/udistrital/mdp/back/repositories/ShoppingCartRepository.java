@@ -1,9 +1,45 @@
 package co.edu.udistrital.mdp.back.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import jakarta.persistence.LockModeType;
 
 public interface ShoppingCartRepository extends JpaRepository<ShoppingCartEntity, Long> {
-    
+
+    // Row lock held until commit: changes to the same cart run one after another, on any node
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ShoppingCartEntity c WHERE c.id = :id")
+    Optional<ShoppingCartEntity> findByIdForUpdate(@Param("id") Long id);
+
+    // Keyset by id over the last_activity index; carts with payments are never swept
+    @Query("SELECT c.id FROM ShoppingCartEntity c WHERE c.lastActivity < :cutoff AND c.id > :afterId "
+            + "AND NOT EXISTS (SELECT p FROM PaymentEntity p WHERE p.shoppingCart = c) ORDER BY c.id")
+    List<Long> findIdleIds(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // Same conditions again under the row locks, in case a cart was used since it was listed
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ShoppingCartEntity c WHERE c.id IN :ids AND c.lastActivity < :cutoff "
+            + "AND NOT EXISTS (SELECT p FROM PaymentEntity p WHERE p.shoppingCart = c)")
+    List<ShoppingCartEntity> lockIdle(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    // Carts from before activity was tracked start counting from now
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ShoppingCartEntity c SET c.lastActivity = :now WHERE c.lastActivity IS NULL")
+    int initLastActivity(@Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM ShoppingCartEntity c WHERE c.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,22 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
+
+@Repository
+public interface StaffMemberRepository extends JpaRepository<StaffMemberEntity, Long> {
+
+    List<StaffMemberEntity> findByBranch_Id(Long branchId);
+
+    boolean existsByBranch_Id(Long branchId);
+
+    // Skills in the same query; shifts are loaded separately to avoid fetching two bags at once
+    @Query("SELECT DISTINCT s FROM StaffMemberEntity s LEFT JOIN FETCH s.skills WHERE s.branch.id = :branchId")
+    List<StaffMemberEntity> findWithSkillsByBranchId(@Param("branchId") Long branchId);
+}
@@ -0,0 +1,14 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.StaffShiftEntity;
+
+@Repository
+public interface StaffShiftRepository extends JpaRepository<StaffShiftEntity, Long> {
+
+    List<StaffShiftEntity> findByStaff_Branch_Id(Long branchId);
+}
@@ -0,0 +1,65 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.UserNotificationCountEntity;
+
+// Every change is an in-place UPDATE; users without a row yet are skipped and counted when first read
+@Repository
+public interface UserNotificationCountRepository extends JpaRepository<UserNotificationCountEntity, Long> {
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = c.unread + :delta WHERE c.userId = :userId")
+    int addToUnread(@Param("userId") Long userId, @Param("delta") long delta);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = c.unread + 1 WHERE c.userId IN :userIds")
+    int incrementAll(@Param("userIds") Collection<Long> userIds);
+
+    // Must run before the notification's rows are marked read or deleted
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = c.unread - 1 WHERE c.userId IN "
+            + "(SELECT un.userId FROM UserNotificationEntity un "
+            + "WHERE un.notificationId = :notificationId AND un.read = false)")
+    int decrementUnreadRecipients(@Param("notificationId") Long notificationId);
+
+    // Same, for a batch of notifications about to be deleted
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = c.unread - "
+            + "(SELECT COUNT(un) FROM UserNotificationEntity un WHERE un.userId = c.userId "
+            + "AND un.notificationId IN :notificationIds AND un.read = false) "
+            + "WHERE c.userId IN (SELECT un.userId FROM UserNotificationEntity un "
+            + "WHERE un.notificationId IN :notificationIds AND un.read = false)")
+    int subtractUnreadOf(@Param("notificationIds") Collection<Long> notificationIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = c.unread - 1 WHERE c.userId = :userId AND EXISTS "
+            + "(SELECT un FROM UserNotificationEntity un WHERE un.userId = :userId "
+            + "AND un.notificationId = :notificationId AND un.read = false)")
+    int decrementIfUnread(@Param("userId") Long userId, @Param("notificationId") Long notificationId);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO user_notification_count (users_id, unread) "
+            + "SELECT :userId, COUNT(*) FROM person_entity_notifications "
+            + "WHERE users_id = :userId AND is_read = false", nativeQuery = true)
+    int initialize(@Param("userId") Long userId);
+
+    @Query("SELECT c.userId FROM UserNotificationCountEntity c WHERE c.userId > :afterId ORDER BY c.userId")
+    List<Long> findUserIds(@Param("afterId") long afterId, Pageable pageable);
+
+    // Rewrites only the counters that drifted from the join table
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationCountEntity c SET c.unread = "
+            + "(SELECT COUNT(un) FROM UserNotificationEntity un WHERE un.userId = c.userId AND un.read = false) "
+            + "WHERE c.userId IN :userIds AND c.unread <> "
+            + "(SELECT COUNT(un) FROM UserNotificationEntity un WHERE un.userId = c.userId AND un.read = false)")
+    int reconcile(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,78 @@
+package co.edu.udistrital.mdp.back.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.edu.udistrital.mdp.back.entities.UserNotificationEntity;
+
+@Repository
+public interface UserNotificationRepository
+        extends JpaRepository<UserNotificationEntity, UserNotificationEntity.Key> {
+
+    // The only way links are created: one statement per chunk of recipients, skipping existing links.
+    // Adding through UserEntity.notifications would rewrite all the user's rows and reset their read state.
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO person_entity_notifications (users_id, notifications_id, is_read) "
+            + "SELECT u.id, n.id, false FROM person_entity u, notification_entity n "
+            + "WHERE n.id = :notificationId AND u.id IN :userIds AND NOT EXISTS "
+            + "(SELECT 1 FROM person_entity_notifications x WHERE x.users_id = u.id AND x.notifications_id = n.id)",
+            nativeQuery = true)
+    int link(@Param("notificationId") Long notificationId, @Param("userIds") Collection<Long> userIds);
+
+    @Query("SELECT un.userId FROM UserNotificationEntity un "
+            + "WHERE un.notificationId = :notificationId AND un.userId IN :userIds")
+    List<Long> findLinkedUserIds(@Param("notificationId") Long notificationId,
+            @Param("userIds") Collection<Long> userIds);
+
+    /** @return Whether the link was created, false if it already existed */
+    default boolean linkUser(Long notificationId, Long userId) {
+        return link(notificationId, List.of(userId)) > 0;
+    }
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationEntity un SET un.read = true WHERE un.userId = :userId AND un.read = false")
+    int markAllRead(@Param("userId") Long userId);
+
+    // 0 when the row is missing or was already read
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationEntity un SET un.read = true "
+            + "WHERE un.userId = :userId AND un.notificationId = :notificationId AND un.read = false")
+    int markRead(@Param("userId") Long userId, @Param("notificationId") Long notificationId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationEntity un SET un.read = true "
+            + "WHERE un.notificationId = :notificationId AND un.read = false")
+    int markReadForAll(@Param("notificationId") Long notificationId);
+
+    // Rows of notifications read before the state moved to the join table
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserNotificationEntity un SET un.read = true WHERE un.read = false "
+            + "AND un.notificationId IN (SELECT n.id FROM NotificationEntity n WHERE n.read = true)")
+    int copyNotificationReadFlags();
+
+    @Query("SELECT un.notificationId FROM UserNotificationEntity un WHERE un.userId = :userId AND un.read = false")
+    List<Long> findUnreadNotificationIds(@Param("userId") Long userId);
+
+    @Query("SELECT CASE WHEN COUNT(un) > 0 THEN true ELSE false END FROM UserNotificationEntity un "
+            + "WHERE un.notificationId = :notificationId AND un.read = false")
+    boolean existsUnread(@Param("notificationId") Long notificationId);
+
+    // Direct delete: going through the bag would rewrite the user's other rows
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserNotificationEntity un WHERE un.userId = :userId AND un.notificationId = :notificationId")
+    int unlink(@Param("userId") Long userId, @Param("notificationId") Long notificationId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserNotificationEntity un WHERE un.notificationId = :notificationId")
+    int unlinkAll(@Param("notificationId") Long notificationId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserNotificationEntity un WHERE un.notificationId IN :notificationIds")
+    int unlinkNotifications(@Param("notificationIds") Collection<Long> notificationIds);
+}
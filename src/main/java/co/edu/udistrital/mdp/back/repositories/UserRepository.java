@@ -1,5 +1,11 @@
 package co.edu.udistrital.mdp.back.repositories;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.stereotype.Repository;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
@@ -7,4 +13,26 @@ import co.edu.udistrital.mdp.back.entities.UserEntity;
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
 	Optional<UserEntity> findByEmail(String email);
+
+	// Reads the join table; a managed user's notifications bag may not show links created in bulk
+	List<UserEntity> findByNotifications_Id(Long notificationId);
+
+	@Query("SELECT u.id FROM UserEntity u WHERE u.id IN :ids")
+	List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+	// Notification segments; every filter is optional and the email pattern is already lower case
+	@Query("SELECT u.id FROM UserEntity u WHERE u.id > :afterId "
+			+ "AND (:minPoints IS NULL OR u.loyaltypoints >= :minPoints) "
+			+ "AND (:maxPoints IS NULL OR u.loyaltypoints <= :maxPoints) "
+			+ "AND (:emailPattern IS NULL OR LOWER(u.email) LIKE :emailPattern) "
+			+ "ORDER BY u.id")
+	List<Long> findSegmentIds(@Param("minPoints") Integer minPoints, @Param("maxPoints") Integer maxPoints,
+			@Param("emailPattern") String emailPattern, @Param("afterId") long afterId, Pageable pageable);
+
+	@Query("SELECT COUNT(u) FROM UserEntity u WHERE "
+			+ "(:minPoints IS NULL OR u.loyaltypoints >= :minPoints) "
+			+ "AND (:maxPoints IS NULL OR u.loyaltypoints <= :maxPoints) "
+			+ "AND (:emailPattern IS NULL OR LOWER(u.email) LIKE :emailPattern)")
+	long countSegment(@Param("minPoints") Integer minPoints, @Param("maxPoints") Integer maxPoints,
+			@Param("emailPattern") String emailPattern);
 }
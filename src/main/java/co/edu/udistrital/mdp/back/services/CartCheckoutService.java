@@ -0,0 +1,129 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.OrderEntity;
+import co.edu.udistrital.mdp.back.entities.OrderStatus;
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
+import co.edu.udistrital.mdp.back.repositories.OrderDetailRepository;
+import co.edu.udistrital.mdp.back.repositories.OrderRepository;
+import co.edu.udistrital.mdp.back.repositories.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Convierte un carrito en un pedido en una sola transacción: las líneas pasan
+ * a detalles del pedido, se descuenta el stock, se crea el pago pendiente y
+ * el carrito queda vacío. Si algo falla no queda nada a medias.
+ */
+@Slf4j
+@Service
+public class CartCheckoutService {
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ShoppingCartService shoppingCartService;
+    private final PaymentService paymentService;
+    private final CartWriteBehindStore cartStore;
+    private final TransactionTemplate transactionTemplate;
+
+    public record Checkout(Long orderId, Long paymentId, double total, int lines) {
+    }
+
+    public CartCheckoutService(CartItemRepository cartItemRepository, ProductRepository productRepository,
+            OrderRepository orderRepository, OrderDetailRepository orderDetailRepository,
+            ShoppingCartService shoppingCartService,
+            PaymentService paymentService, CartWriteBehindStore cartStore,
+            PlatformTransactionManager transactionManager) {
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.shoppingCartService = shoppingCartService;
+        this.paymentService = paymentService;
+        this.cartStore = cartStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Checks out a shopping cart.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @param method Payment method for the pending payment
+     * @return The created order and payment
+     * @throws EntityNotFoundException If the cart does not exist
+     * @throws IllegalOperationException If the cart is empty, a product has
+     * not enough stock or the payment method is not valid
+     */
+    public Checkout checkout(Long shoppingCartId, String method)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting checkout of shopping cart with id = {}", shoppingCartId);
+
+        // Cached changes are written before the cart is read, and outside this transaction
+        // so a failed checkout does not lose them; the cart stays locked in the store until it commits
+        Checkout result = cartStore.writeThrough(shoppingCartId,
+                () -> transactionTemplate.execute(status -> placeOrder(shoppingCartId, method)));
+
+        log.info("Shopping cart with id = {} checked out as order = {}", shoppingCartId, result.orderId());
+        return result;
+    }
+
+    private Checkout placeOrder(Long shoppingCartId, String method) {
+        // Lock first, then reprice under it: two checkouts of one cart run one after the other
+        ShoppingCartEntity cart = shoppingCartService.lockForUpdate(shoppingCartId);
+
+        List<CartItemEntity> items = new ArrayList<>(cartItemRepository.findByShoppingCart_Id(shoppingCartId));
+        if (items.isEmpty()) {
+            throw new IllegalOperationException("Cannot check out an empty shopping cart");
+        }
+
+        // Same product order in every checkout, so two of them never wait on each other's rows
+        items.sort(Comparator.comparing(item -> item.getProduct().getId()));
+        double total = 0.0;
+        for (CartItemEntity item : items) {
+            if (productRepository.reserveStock(item.getProduct().getId(), item.getQuantity()) == 0) {
+                throw new IllegalOperationException("Not enough stock for product: " + item.getProduct().getName());
+            }
+            total += ShoppingCartService.toMoney(item.getQuantity() * item.getUnitPrice());
+        }
+        total = ShoppingCartService.toMoney(total);
+
+        OrderEntity order = new OrderEntity();
+        order.setStatus(OrderStatus.PENDING);
+        order.setOrderDate(Date.valueOf(LocalDate.now()));
+        order.setTotalAmount(total);
+        order.setUser(cart.getUser());
+        orderRepository.save(order);
+        orderDetailRepository.insertFromCart(order.getId(), shoppingCartId);
+
+        PaymentEntity payment = new PaymentEntity();
+        payment.setMethod(method);
+        payment.setAmount(total);
+        payment.setShoppingCart(cart);
+        payment.setOrder(order);
+        paymentService.createPayment(payment);
+
+        cart.setTotal(0.0);
+        cart.setLastActivity(LocalDateTime.now());
+        productRepository.replaceCartProducts(shoppingCartId, List.of());
+        // Last statement: it also clears the persistence context
+        cartItemRepository.deleteByShoppingCartId(shoppingCartId);
+
+        return new Checkout(order.getId(), payment.getId(), total, items.size());
+    }
+}
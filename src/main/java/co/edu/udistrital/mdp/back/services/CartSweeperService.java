@@ -0,0 +1,104 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
+import co.edu.udistrital.mdp.back.repositories.ProductRepository;
+import co.edu.udistrital.mdp.back.repositories.ShoppingCartRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Borra los carritos sin actividad por más del tiempo configurado, junto con
+ * sus líneas y sus vínculos con productos. Trabaja en bloques, cada uno en su
+ * propia transacción, y nunca toca carritos con pagos.
+ */
+@Slf4j
+@Service
+public class CartSweeperService {
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final CartWriteBehindStore cartStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration idleTime;
+    private final int chunkSize;
+
+    public record SweepResult(int carts, int items, int productLinks) {
+    }
+
+    public CartSweeperService(ShoppingCartRepository shoppingCartRepository, CartItemRepository cartItemRepository,
+            ProductRepository productRepository, CartWriteBehindStore cartStore,
+            PlatformTransactionManager transactionManager,
+            @Value("${carts.sweeper.idle-days:30}") int idleDays,
+            @Value("${carts.sweeper.chunk-size:500}") int chunkSize) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.cartStore = cartStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleTime = Duration.ofDays(Math.max(1, idleDays));
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(cron = "${carts.sweeper.cron:0 30 3 * * *}")
+    public void sweepScheduled() {
+        sweep();
+    }
+
+    /**
+     * Deletes every cart idle for longer than the configured time.
+     *
+     * @return Rows reclaimed by this run
+     */
+    public SweepResult sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer initialized = transactionTemplate.execute(status -> shoppingCartRepository.initLastActivity(now));
+        if (initialized != null && initialized > 0) {
+            log.info("Started tracking activity of {} shopping carts", initialized);
+        }
+
+        LocalDateTime cutoff = now.minus(idleTime);
+        int[] totals = new int[3];
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = shoppingCartRepository.findIdleIds(cutoff, afterId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> sweepChunk(ids, cutoff, totals));
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+
+        SweepResult result = new SweepResult(totals[0], totals[1], totals[2]);
+        log.info("Swept shopping carts idle since {}: {} carts, {} lines, {} product links", cutoff,
+                result.carts(), result.items(), result.productLinks());
+        return result;
+    }
+
+    private void sweepChunk(List<Long> candidates, LocalDateTime cutoff, int[] totals) {
+        List<Long> ids = shoppingCartRepository.lockIdle(candidates, cutoff).stream()
+                .map(ShoppingCartEntity::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        totals[1] += cartItemRepository.deleteByShoppingCartIds(ids);
+        totals[2] += productRepository.unlinkAllProducts(ids);
+        totals[0] += shoppingCartRepository.deleteByIds(ids);
+        ids.forEach(cartStore::discard);
+    }
+}
@@ -0,0 +1,567 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.ProductEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
+import co.edu.udistrital.mdp.back.repositories.ProductRepository;
+import co.edu.udistrital.mdp.back.repositories.ShoppingCartRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Almacén opcional de carritos activos en memoria. Las operaciones sobre las
+ * líneas se aplican aquí y se escriben a la base de datos agrupadas: en cada
+ * ciclo del temporizador, al pagar y al apagar la aplicación.
+ */
+@Slf4j
+@Service
+public class CartWriteBehindStore {
+
+    private static final String SHOPPING_CART_NOT_FOUND = "Shopping cart with id = %d not found";
+    private static final String PRODUCT_NOT_FOUND = "Product with id = %d not found";
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final ShoppingCartService shoppingCartService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int maxCarts;
+    private final int maxDirtyCarts;
+
+    // Access-ordered, so the first entry is the least recently used cart
+    private final Map<Long, CartState> carts = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicInteger dirtyCarts = new AtomicInteger();
+    private final AtomicLong flushedCarts = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong lastFlushLagMillis = new AtomicLong();
+    private final AtomicLong maxFlushLagMillis = new AtomicLong();
+
+    public record Line(Long productId, String productName, int quantity, double unitPrice) {
+    }
+
+    public record CartView(Long cartId, double total, List<Line> lines) {
+    }
+
+    public record Metrics(int cachedCarts, int dirtyCarts, long oldestUnflushedMillis, long lastFlushLagMillis,
+            long maxFlushLagMillis, long flushedCarts, long failedFlushes) {
+    }
+
+    private static final class LineState {
+        private final String productName;
+        private final double unitPrice;
+        private final long priceVersion;
+        private int quantity;
+        private int persistedQuantity;
+
+        private LineState(String productName, double unitPrice, long priceVersion, int quantity) {
+            this.productName = productName;
+            this.unitPrice = unitPrice;
+            this.priceVersion = priceVersion;
+            this.quantity = quantity;
+            this.persistedQuantity = quantity;
+        }
+    }
+
+    private static final class CartState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, LineState> lines = new LinkedHashMap<>();
+        // Time of the oldest change not yet written, 0 when clean
+        private volatile long dirtySince;
+        private long lastModified;
+
+        private boolean isDirty() {
+            return dirtySince != 0;
+        }
+    }
+
+    public CartWriteBehindStore(ShoppingCartRepository shoppingCartRepository, CartItemRepository cartItemRepository,
+            ProductRepository productRepository, ShoppingCartService shoppingCartService,
+            PlatformTransactionManager transactionManager,
+            @Value("${carts.write-behind.enabled:false}") boolean enabled,
+            @Value("${carts.write-behind.max-carts:10000}") int maxCarts,
+            @Value("${carts.write-behind.max-dirty-carts:1000}") int maxDirtyCarts) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.shoppingCartService = shoppingCartService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxCarts = Math.max(1, maxCarts);
+        this.maxDirtyCarts = Math.max(0, maxDirtyCarts);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CartView addItem(Long cartId, Long productId, int quantity)
+            throws EntityNotFoundException, IllegalOperationException {
+        if (quantity <= 0) {
+            throw new IllegalOperationException("The quantity must be greater than 0");
+        }
+        CartState state = lockedState(cartId);
+        try {
+            LineState line = state.lines.get(productId);
+            if (line == null) {
+                ProductEntity product = productRepository.findById(productId)
+                        .orElseThrow(() -> new EntityNotFoundException(String.format(PRODUCT_NOT_FOUND, productId)));
+                line = new LineState(product.getName(), product.getPrice() != null ? product.getPrice() : 0.0,
+                        product.getPriceVersion(), 0);
+                state.lines.put(productId, line);
+            }
+            line.quantity += quantity;
+            markDirty(state);
+            return view(cartId, state);
+        } finally {
+            state.lock.unlock();
+            limitDirty();
+        }
+    }
+
+    public CartView removeItem(Long cartId, Long productId) throws EntityNotFoundException, IllegalOperationException {
+        CartState state = lockedState(cartId);
+        try {
+            LineState line = state.lines.get(productId);
+            if (line == null || line.quantity == 0) {
+                throw new IllegalOperationException("Product with id = " + productId + " is not in the shopping cart");
+            }
+            line.quantity--;
+            markDirty(state);
+            return view(cartId, state);
+        } finally {
+            state.lock.unlock();
+            limitDirty();
+        }
+    }
+
+    public CartView getCart(Long cartId) throws EntityNotFoundException {
+        CartState state = lockedState(cartId);
+        try {
+            return view(cartId, state);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /** Writes a cart now; used before anything that reads the cart from the database, like checkout. */
+    public void flush(Long cartId) {
+        CartState state;
+        synchronized (carts) {
+            state = carts.get(cartId);
+        }
+        if (state != null) {
+            flush(cartId, state);
+        }
+    }
+
+    /**
+     * Runs a write that goes around the store. The cart stays locked from
+     * before its cached lines are written until the write has committed and
+     * the cached copy is dropped, so a change made through the store in
+     * between waits instead of being lost; the next use loads the cart again.
+     *
+     * @param cartId The ID of the shopping cart
+     * @param write The write, committed by the time it returns
+     * @return What the write returned
+     * @throws IllegalOperationException If the cached lines could not be written first
+     */
+    public <T> T writeThrough(Long cartId, Supplier<T> write) throws IllegalOperationException {
+        if (!enabled) {
+            return write.get();
+        }
+        CartState state = guard(cartId);
+        try {
+            flush(cartId, state);
+            if (state.isDirty()) {
+                throw new IllegalOperationException("The pending changes of the shopping cart could not be saved");
+            }
+            return write.get();
+        } finally {
+            synchronized (carts) {
+                carts.remove(cartId, state);
+            }
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a cart and drops it from memory, so the next use loads it again.
+     * For writes to several carts that cannot go through {@link #writeThrough}.
+     */
+    public void discard(Long cartId) {
+        CartState state;
+        synchronized (carts) {
+            state = carts.get(cartId);
+        }
+        if (state == null) {
+            return;
+        }
+        state.lock.lock();
+        try {
+            flush(cartId, state);
+            if (state.isDirty()) {
+                // The write failed; keep it in memory rather than lose the changes
+                return;
+            }
+            synchronized (carts) {
+                carts.remove(cartId, state);
+            }
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /** Drops a cart without writing it, for a cart that is being deleted. */
+    public void forget(Long cartId) {
+        CartState removed;
+        synchronized (carts) {
+            removed = carts.remove(cartId);
+        }
+        if (removed == null) {
+            return;
+        }
+        removed.lock.lock();
+        try {
+            if (removed.isDirty()) {
+                removed.dirtySince = 0;
+                dirtyCarts.decrementAndGet();
+            }
+        } finally {
+            removed.lock.unlock();
+        }
+    }
+
+    /**
+     * Call when the price of a product changes. Once the change commits, the
+     * cached carts holding the product are written and dropped, so they are
+     * repriced from the database when next used.
+     */
+    public void repriced(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dropCartsWith(productId);
+                }
+            });
+        } else {
+            dropCartsWith(productId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${carts.write-behind.flush-interval-ms:2000}")
+    public void flushDirty() {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<Long, CartState> entry : snapshot()) {
+            if (entry.getValue().isDirty()) {
+                flush(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (enabled) {
+            log.info("Flushing cached carts before shutdown");
+            flushDirty();
+        }
+    }
+
+    public Metrics getMetrics() {
+        long now = System.currentTimeMillis();
+        int dirty = 0;
+        long oldest = 0;
+        List<Map.Entry<Long, CartState>> entries = snapshot();
+        for (Map.Entry<Long, CartState> entry : entries) {
+            long since = entry.getValue().dirtySince;
+            if (since != 0) {
+                dirty++;
+                oldest = Math.max(oldest, now - since);
+            }
+        }
+        return new Metrics(entries.size(), dirty, oldest, lastFlushLagMillis.get(), maxFlushLagMillis.get(),
+                flushedCarts.get(), failedFlushes.get());
+    }
+
+    // =========================================================
+    // Estado en memoria
+    // =========================================================
+
+    private CartState state(Long cartId) throws EntityNotFoundException {
+        synchronized (carts) {
+            CartState cached = carts.get(cartId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        CartState loaded = load(cartId);
+        CartState state;
+        synchronized (carts) {
+            // Another request may have loaded it meanwhile; keep the first one
+            state = carts.computeIfAbsent(cartId, k -> loaded);
+        }
+        evictIfNeeded();
+        return state;
+    }
+
+    // An evicted or discarded state must not take new changes, so the lookup is retried under the lock
+    private CartState lockedState(Long cartId) throws EntityNotFoundException {
+        while (true) {
+            CartState state = state(cartId);
+            state.lock.lock();
+            boolean current;
+            synchronized (carts) {
+                current = carts.get(cartId) == state;
+            }
+            if (current) {
+                return state;
+            }
+            state.lock.unlock();
+        }
+    }
+
+    // Locks the cached cart, or an empty stand-in that makes loads of the cart wait until it is removed
+    private CartState guard(Long cartId) {
+        while (true) {
+            CartState state;
+            synchronized (carts) {
+                state = carts.computeIfAbsent(cartId, k -> new CartState());
+            }
+            state.lock.lock();
+            boolean current;
+            synchronized (carts) {
+                current = carts.get(cartId) == state;
+            }
+            if (current) {
+                return state;
+            }
+            state.lock.unlock();
+        }
+    }
+
+    private CartState load(Long cartId) throws EntityNotFoundException {
+        if (!shoppingCartRepository.existsById(cartId)) {
+            throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, cartId));
+        }
+        // Lines priced before a price change are repriced once, with the total, before they are cached
+        shoppingCartService.repriceIfStale(cartId);
+        CartState state = new CartState();
+        for (CartItemEntity item : cartItemRepository.findByShoppingCart_Id(cartId)) {
+            state.lines.put(item.getProduct().getId(),
+                    new LineState(item.getProduct().getName(), item.getUnitPrice(), item.getPriceVersion(),
+                            item.getQuantity()));
+        }
+        return state;
+    }
+
+    private void markDirty(CartState state) {
+        state.lastModified = System.currentTimeMillis();
+        if (state.dirtySince == 0) {
+            state.dirtySince = System.currentTimeMillis();
+            dirtyCarts.incrementAndGet();
+        }
+    }
+
+    // Bounds the changes that a crash could lose
+    private void limitDirty() {
+        if (maxDirtyCarts > 0 && dirtyCarts.get() > maxDirtyCarts) {
+            flushDirty();
+        }
+    }
+
+    // Least recently used carts go first; dirty ones are written before leaving memory
+    private void evictIfNeeded() {
+        while (true) {
+            Map.Entry<Long, CartState> eldest;
+            synchronized (carts) {
+                if (carts.size() <= maxCarts) {
+                    return;
+                }
+                eldest = carts.entrySet().iterator().next();
+            }
+            CartState state = eldest.getValue();
+            state.lock.lock();
+            try {
+                flush(eldest.getKey(), state);
+                if (state.isDirty()) {
+                    // The write failed; keep it in memory rather than lose the changes
+                    return;
+                }
+                synchronized (carts) {
+                    carts.remove(eldest.getKey(), state);
+                }
+            } finally {
+                state.lock.unlock();
+            }
+            log.debug("Evicted cart = {} from the write-behind store", eldest.getKey());
+        }
+    }
+
+    // Package-private for the tests, which cannot wait for a commit
+    void dropCartsWith(Long productId) {
+        for (Map.Entry<Long, CartState> entry : snapshot()) {
+            CartState state = entry.getValue();
+            state.lock.lock();
+            try {
+                if (!state.lines.containsKey(productId)) {
+                    continue;
+                }
+                flush(entry.getKey(), state);
+                if (state.isDirty()) {
+                    // The write failed; the changes stay cached, at the old price, until a later flush
+                    log.warn("Cart = {} keeps the old price of product = {}", entry.getKey(), productId);
+                    continue;
+                }
+                synchronized (carts) {
+                    carts.remove(entry.getKey(), state);
+                }
+            } finally {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    private List<Map.Entry<Long, CartState>> snapshot() {
+        synchronized (carts) {
+            return new ArrayList<>(carts.entrySet());
+        }
+    }
+
+    private CartView view(Long cartId, CartState state) {
+        List<Line> lines = new ArrayList<>();
+        double total = 0.0;
+        List<Long> added = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (Map.Entry<Long, LineState> entry : state.lines.entrySet()) {
+            LineState line = entry.getValue();
+            if (line.quantity > 0) {
+                lines.add(new Line(entry.getKey(), line.productName, line.quantity, line.unitPrice));
+                total += line.quantity * line.unitPrice;
+            }
+        }
+        return new CartView(cartId, ShoppingCartService.toMoney(total), Collections.unmodifiableList(lines));
+    }
+
+    // =========================================================
+    // Escritura
+    // =========================================================
+
+    private void flush(Long cartId, CartState state) {
+        state.lock.lock();
+        try {
+            if (!state.isDirty()) {
+                return;
+            }
+            long dirtySince = state.dirtySince;
+            Boolean written = transactionTemplate.execute(status -> write(cartId, state));
+            if (!Boolean.TRUE.equals(written)) {
+                log.warn("Cart = {} no longer exists, dropping its cached changes", cartId);
+                forget(cartId);
+                return;
+            }
+
+            for (LineState line : state.lines.values()) {
+                line.persistedQuantity = line.quantity;
+            }
+            state.lines.values().removeIf(line -> line.quantity == 0);
+            state.dirtySince = 0;
+            dirtyCarts.decrementAndGet();
+
+            long lag = System.currentTimeMillis() - dirtySince;
+            lastFlushLagMillis.set(lag);
+            maxFlushLagMillis.accumulateAndGet(lag, Math::max);
+            flushedCarts.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Stays dirty and is retried on the next cycle
+            failedFlushes.incrementAndGet();
+            log.warn("Could not flush cart = {}", cartId, e);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    // Only the lines whose quantity changed since the last write are touched
+    private boolean write(Long cartId, CartState state) {
+        ShoppingCartEntity cart = shoppingCartRepository.findByIdForUpdate(cartId).orElse(null);
+        if (cart == null) {
+            return false;
+        }
+
+        Map<Long, CartItemEntity> rows = new HashMap<>();
+        for (CartItemEntity item : cartItemRepository.findByShoppingCart_Id(cartId)) {
+            rows.put(item.getProduct().getId(), item);
+        }
+
+        double total = 0.0;
+        for (Map.Entry<Long, LineState> entry : state.lines.entrySet()) {
+            LineState line = entry.getValue();
+            total += line.quantity * line.unitPrice;
+            if (line.quantity == line.persistedQuantity) {
+                continue;
+            }
+            CartItemEntity row = rows.get(entry.getKey());
+            if (line.quantity == 0) {
+                if (row != null) {
+                    cartItemRepository.delete(row);
+                    removed.add(entry.getKey());
+                }
+            } else if (row != null) {
+                row.setQuantity(line.quantity);
+            } else {
+                CartItemEntity item = new CartItemEntity();
+                item.setShoppingCart(cart);
+                item.setProduct(productRepository.getReferenceById(entry.getKey()));
+                item.setQuantity(line.quantity);
+                item.setUnitPrice(line.unitPrice);
+                item.setPriceVersion(line.priceVersion);
+                cartItemRepository.save(item);
+                added.add(entry.getKey());
+            }
+        }
+        // The product links mirror the lines
+        if (!removed.isEmpty()) {
+            productRepository.unlinkProducts(cartId, removed);
+        }
+        if (!added.isEmpty()) {
+            productRepository.linkProducts(cartId, added);
+        }
+        cart.setTotal(ShoppingCartService.toMoney(total));
+        // The change happened when it was cached, not when it is written
+        cart.setLastActivity(LocalDateTime.ofInstant(Instant.ofEpochMilli(state.lastModified), ZoneId.systemDefault()));
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import co.edu.udistrital.mdp.back.entities.BaseEntity;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+
+/**
+ * Carga en una sola consulta las entidades que llegan referenciadas solo por
+ * id, como los productos de un carrito o los carritos de un producto.
+ */
+final class EntityLookup {
+
+    private EntityLookup() {
+    }
+
+    /**
+     * Loads the entities with the ids of {@code references}, in one query and
+     * in the order received. Every entity can be linked only once, so a
+     * missing or repeated id is rejected instead of being silently dropped.
+     *
+     * @param repository The repository of the referenced entities
+     * @param references Entities carrying only their id
+     * @param label      Name of the entity, for the error messages
+     * @param notFound   Builds the exception thrown for an id that does not exist
+     * @throws IllegalOperationException If an id is null or repeated
+     */
+    static <T extends BaseEntity> List<T> findAllInOrder(JpaRepository<T, Long> repository,
+            List<? extends BaseEntity> references, String label, LongFunction<RuntimeException> notFound) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (BaseEntity reference : references) {
+            Long id = reference.getId();
+            if (id == null) {
+                throw new IllegalOperationException("Cannot link a " + label + " without ID");
+            }
+            if (!ids.add(id)) {
+                throw new IllegalOperationException("The " + label + " with id = " + id + " is listed more than once");
+            }
+        }
+
+        Map<Long, T> found = new HashMap<>();
+        for (T entity : repository.findAllById(ids)) {
+            found.put(entity.getId(), entity);
+        }
+
+        List<T> resolved = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = found.get(id);
+            if (entity == null) {
+                throw notFound.apply(id);
+            }
+            resolved.add(entity);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,238 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Envía una notificación a todos los usuarios o a los de un segmento. La
+ * notificación se crea de inmediato y los destinatarios se vinculan en segundo
+ * plano, por bloques de ids y con un INSERT ... SELECT por bloque, cada uno en
+ * su propia transacción. El avance de cada envío se puede consultar mientras
+ * corre; si la notificación se elimina, el envío se detiene en el siguiente
+ * bloque.
+ */
+@Slf4j
+@Service
+public class NotificationBroadcastService {
+
+    private static final Duration FINISHED_RETENTION = Duration.ofDays(1);
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final UnreadNotificationCountService unreadCounts;
+    private final NotificationStreamHub streamHub;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    /** Users to reach; a null filter matches everyone. */
+    public record Segment(Integer minLoyaltyPoints, Integer maxLoyaltyPoints, String emailDomain) {
+
+        public static Segment all() {
+            return new Segment(null, null, null);
+        }
+
+        String emailPattern() {
+            if (emailDomain == null || emailDomain.isBlank()) {
+                return null;
+            }
+            String domain = emailDomain.trim().toLowerCase(Locale.ROOT);
+            return "%@" + (domain.startsWith("@") ? domain.substring(1) : domain);
+        }
+    }
+
+    public record Progress(Long notificationId, Status status, long targeted, long delivered, int chunks,
+            LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+    }
+
+    public NotificationBroadcastService(NotificationRepository notificationRepository, UserRepository userRepository,
+            UnreadNotificationCountService unreadCounts, NotificationStreamHub streamHub,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.broadcast.chunk-size:1000}") int chunkSize,
+            @Value("${notifications.broadcast.max-running:2}") int maxRunning) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.unreadCounts = unreadCounts;
+        this.streamHub = streamHub;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+        // Broadcasts beyond this wait queued, so a burst of promos cannot take every connection
+        this.executor = Executors.newFixedThreadPool(Math.max(1, maxRunning),
+                Thread.ofVirtual().name("notification-broadcast-", 0).factory());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a notification and links it to every user of the segment in the
+     * background.
+     *
+     * @param message The notification message
+     * @param segment Users to reach
+     * @return The progress of the new broadcast, still queued
+     * @throws IllegalOperationException If the message is empty, the segment
+     * is not valid or no user matches it
+     */
+    public Progress broadcast(String message, Segment segment) throws IllegalOperationException {
+        if (message == null || message.trim().isEmpty()) {
+            throw new IllegalOperationException("Message cannot be empty");
+        }
+        Segment target = segment == null ? Segment.all() : segment;
+        if (target.minLoyaltyPoints() != null && target.maxLoyaltyPoints() != null
+                && target.minLoyaltyPoints() > target.maxLoyaltyPoints()) {
+            throw new IllegalOperationException("Minimum loyalty points cannot be greater than the maximum");
+        }
+        long targeted = userRepository.countSegment(target.minLoyaltyPoints(), target.maxLoyaltyPoints(),
+                target.emailPattern());
+        if (targeted == 0) {
+            throw new IllegalOperationException("No users match the segment");
+        }
+
+        NotificationEntity notification = transactionTemplate.execute(status -> {
+            NotificationEntity created = new NotificationEntity();
+            created.setMessage(message.trim());
+            created.setDate(new Date(System.currentTimeMillis()));
+            created.setRead(false);
+            return notificationRepository.save(created);
+        });
+
+        pruneFinished();
+        Job job = new Job(notification.getId(), targeted);
+        jobs.put(job.notificationId, job);
+        executor.execute(() -> run(job, target, notification));
+        log.info("Queued broadcast of notification with id = {} to about {} users", job.notificationId, targeted);
+        return job.snapshot();
+    }
+
+    /**
+     * Returns the progress of a broadcast started in the last day.
+     *
+     * @param notificationId The broadcast notification
+     * @throws EntityNotFoundException If no such broadcast is tracked
+     */
+    public Progress getProgress(Long notificationId) throws EntityNotFoundException {
+        Job job = jobs.get(notificationId);
+        if (job == null) {
+            throw new EntityNotFoundException("No broadcast found for notification with id = " + notificationId);
+        }
+        return job.snapshot();
+    }
+
+    public List<Progress> getAllProgress() {
+        return jobs.values().stream().map(Job::snapshot).toList();
+    }
+
+    /** @return Whether the notification is being broadcast, or waits to be */
+    public boolean isInFlight(Long notificationId) {
+        Job job = jobs.get(notificationId);
+        return job != null && (job.status == Status.QUEUED || job.status == Status.RUNNING);
+    }
+
+    private void run(Job job, Segment segment, NotificationEntity notification) {
+        job.status = Status.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        String emailPattern = segment.emailPattern();
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = userRepository.findSegmentIds(segment.minLoyaltyPoints(),
+                        segment.maxLoyaltyPoints(), emailPattern, afterId, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer delivered = transactionTemplate.execute(status -> {
+                    if (notificationRepository.lockById(job.notificationId) == null) {
+                        return null;
+                    }
+                    List<Long> linked = unreadCounts.link(job.notificationId, ids);
+                    if (!linked.isEmpty()) {
+                        streamHub.publishAfterCommit(notification, linked);
+                    }
+                    return linked.size();
+                });
+                if (delivered == null) {
+                    job.finishedAt = LocalDateTime.now();
+                    job.status = Status.CANCELLED;
+                    log.warn("Broadcast of notification with id = {} stopped after {} users: notification deleted",
+                            job.notificationId, job.delivered.get());
+                    return;
+                }
+                job.delivered.addAndGet(delivered);
+                job.chunks++;
+                afterId = ids.get(ids.size() - 1);
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+            }
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.COMPLETED;
+            log.info("Broadcast of notification with id = {} reached {} users in {} chunks", job.notificationId,
+                    job.delivered.get(), job.chunks);
+        } catch (RuntimeException e) {
+            // Chunks already committed stay delivered; the progress shows where it stopped
+            job.error = e.getMessage();
+            job.finishedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            log.error("Broadcast of notification with id = {} failed after {} users", job.notificationId,
+                    job.delivered.get(), e);
+        }
+    }
+
+    private void pruneFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(FINISHED_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static final class Job {
+        private final Long notificationId;
+        private final long targeted;
+        private final AtomicLong delivered = new AtomicLong();
+        private volatile Status status = Status.QUEUED;
+        private volatile int chunks;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Job(Long notificationId, long targeted) {
+            this.notificationId = notificationId;
+            this.targeted = targeted;
+        }
+
+        private Progress snapshot() {
+            return new Progress(notificationId, status, targeted, delivered.get(), chunks, startedAt, finishedAt,
+                    error);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Etapa opcional delante de {@link NotificationService#createNotification},
+ * por la que pasan el POST de notificaciones y los avisos automáticos.
+ * Los mensajes de cada usuario se acumulan durante una ventana que empieza con
+ * el primero; al cerrarse se entregan como una sola notificación, y los
+ * usuarios que acumularon exactamente los mismos mensajes comparten la misma
+ * notificación. Si está apagada, o hay demasiados usuarios en espera, los
+ * mensajes se crean de inmediato. Un resumen que no se pudo entregar vuelve a
+ * la espera y se intenta de nuevo en la siguiente ventana.
+ */
+@Slf4j
+@Service
+public class NotificationDigestService {
+
+    private static final int MAX_DELIVERY_ATTEMPTS = 5;
+
+    private final NotificationService notificationService;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxLines;
+    private final int maxPendingUsers;
+
+    // Insertion order is window order, so the due users are always at the head
+    private final Map<Long, Pending> pending = new LinkedHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong notificationsCreated = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public record Submission(boolean buffered, int users, Long notificationId) {
+    }
+
+    public record Metrics(boolean enabled, long windowMillis, int pendingUsers, long submitted, long delivered,
+            long notificationsCreated, long bypassed, long requeued, long dropped) {
+    }
+
+    // Same messages, same digest: the key users are grouped by when flushing
+    private record Digest(List<String> messages, int more) {
+
+        String text() {
+            if (messages.size() == 1) {
+                return messages.get(0);
+            }
+            StringBuilder text = new StringBuilder();
+            text.append(messages.size() + more).append(" notificaciones nuevas:");
+            messages.forEach(message -> text.append("\n- ").append(message));
+            if (more > 0) {
+                text.append("\n- y ").append(more).append(" más");
+            }
+            return text.toString();
+        }
+    }
+
+    private static final class Pending {
+        private final long dueAt;
+        private final List<String> messages = new ArrayList<>();
+        private int more;
+        private int attempts;
+
+        private Pending(long dueAt) {
+            this.dueAt = dueAt;
+        }
+    }
+
+    public NotificationDigestService(NotificationService notificationService, UserRepository userRepository,
+            @Value("${notifications.digest.enabled:false}") boolean enabled,
+            @Value("${notifications.digest.window-ms:60000}") long windowMillis,
+            @Value("${notifications.digest.max-lines:10}") int maxLines,
+            @Value("${notifications.digest.max-pending-users:10000}") int maxPendingUsers) {
+        this.notificationService = notificationService;
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.windowMillis = Math.max(0, windowMillis);
+        this.maxLines = Math.max(1, maxLines);
+        this.maxPendingUsers = Math.max(1, maxPendingUsers);
+    }
+
+    /**
+     * Queues a message for each user, to be delivered in their next digest.
+     *
+     * @param message The notification message
+     * @param userIds The recipients
+     * @return How many users it was queued for, or the notification created
+     * right away when coalescing is off
+     * @throws IllegalOperationException If the message is empty
+     * @throws EntityNotFoundException If none of the users exist
+     */
+    public Submission submit(String message, List<Long> userIds)
+            throws IllegalOperationException, EntityNotFoundException {
+        if (message == null || message.trim().isEmpty()) {
+            throw new IllegalOperationException("Message cannot be empty");
+        }
+        if (userIds == null || userIds.isEmpty()) {
+            throw new EntityNotFoundException("No users found for notification");
+        }
+        if (!isEnabled()) {
+            Long id = notificationService.createNotification(message.trim(), userIds).getId();
+            return new Submission(false, 0, id);
+        }
+        List<Long> users = userRepository.findExistingIds(new LinkedHashSet<>(userIds));
+        if (users.isEmpty()) {
+            throw new EntityNotFoundException("No users found for notification");
+        }
+
+        String text = message.trim();
+        List<Long> overflow = new ArrayList<>();
+        long dueAt = System.currentTimeMillis() + windowMillis;
+        synchronized (pending) {
+            for (Long userId : users) {
+                Pending buffer = pending.get(userId);
+                if (buffer == null) {
+                    if (pending.size() >= maxPendingUsers) {
+                        overflow.add(userId);
+                        continue;
+                    }
+                    buffer = new Pending(dueAt);
+                    pending.put(userId, buffer);
+                }
+                add(buffer, text);
+            }
+        }
+        submitted.addAndGet(users.size());
+        if (!overflow.isEmpty()) {
+            // Memory stays bounded: users beyond the limit get the message undigested
+            bypassed.addAndGet(overflow.size());
+            notificationService.createNotification(text, overflow);
+            notificationsCreated.incrementAndGet();
+            delivered.addAndGet(overflow.size());
+        }
+        return new Submission(true, users.size() - overflow.size(), null);
+    }
+
+    /** @return Whether messages wait for a digest, rather than being created right away */
+    public boolean isEnabled() {
+        return enabled && windowMillis > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.digest.flush-interval-ms:1000}")
+    public void flushDue() {
+        if (enabled) {
+            flush(System.currentTimeMillis());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (enabled) {
+            log.info("Delivering pending notification digests before shutdown");
+            flush(Long.MAX_VALUE);
+            int left = getMetrics().pendingUsers();
+            if (left > 0) {
+                log.warn("The notification digests of {} users could not be delivered before shutdown", left);
+            }
+        }
+    }
+
+    public Metrics getMetrics() {
+        int users;
+        synchronized (pending) {
+            users = pending.size();
+        }
+        return new Metrics(enabled, windowMillis, users, submitted.get(), delivered.get(),
+                notificationsCreated.get(), bypassed.get(), requeued.get(), dropped.get());
+    }
+
+    /**
+     * Delivers the digests whose window closed by {@code now}. A digest that
+     * fails goes back to its users' buffers, due one window from now.
+     *
+     * @return Notifications created
+     */
+    int flush(long now) {
+        Map<Digest, List<Long>> digests = new LinkedHashMap<>();
+        Map<Digest, Integer> attempts = new LinkedHashMap<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<Long, Pending>> entries = pending.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Long, Pending> entry = entries.next();
+                Pending buffer = entry.getValue();
+                if (buffer.dueAt > now) {
+                    break;
+                }
+                entries.remove();
+                Digest digest = new Digest(List.copyOf(buffer.messages), buffer.more);
+                digests.computeIfAbsent(digest, k -> new ArrayList<>()).add(entry.getKey());
+                attempts.merge(digest, buffer.attempts, Math::max);
+            }
+        }
+
+        int created = 0;
+        for (Map.Entry<Digest, List<Long>> digest : digests.entrySet()) {
+            try {
+                notificationService.createNotification(digest.getKey().text(), digest.getValue());
+                created++;
+                delivered.addAndGet(digest.getValue().size());
+            } catch (EntityNotFoundException e) {
+                // The users were deleted in the meantime
+                log.info("Dropped notification digest to {} users that no longer exist", digest.getValue().size());
+                dropped.addAndGet(digest.getValue().size());
+            } catch (RuntimeException e) {
+                int attempt = attempts.get(digest.getKey()) + 1;
+                if (attempt >= MAX_DELIVERY_ATTEMPTS) {
+                    log.error("Dropped notification digest to {} users after {} attempts: {}",
+                            digest.getValue().size(), attempt, e.getMessage());
+                    dropped.addAndGet(digest.getValue().size());
+                } else {
+                    log.warn("Could not deliver notification digest to {} users, retrying: {}",
+                            digest.getValue().size(), e.getMessage());
+                    requeue(digest.getKey(), digest.getValue(), attempt);
+                }
+            }
+        }
+        notificationsCreated.addAndGet(created);
+        return created;
+    }
+
+    private void add(Pending buffer, String text) {
+        if (buffer.messages.size() < maxLines) {
+            buffer.messages.add(text);
+        } else {
+            buffer.more++;
+        }
+    }
+
+    // Due one window from now, which is not before any buffer already waiting, so the map stays in window order
+    private void requeue(Digest digest, List<Long> userIds, int attempt) {
+        long dueAt = System.currentTimeMillis() + windowMillis;
+        synchronized (pending) {
+            for (Long userId : userIds) {
+                Pending buffer = new Pending(dueAt);
+                digest.messages().forEach(message -> add(buffer, message));
+                buffer.more += digest.more();
+                buffer.attempts = attempt;
+                // A buffer opened meanwhile keeps its place and its window, with the failed messages first
+                Pending newer = pending.get(userId);
+                if (newer == null) {
+                    pending.put(userId, buffer);
+                    continue;
+                }
+                newer.messages.forEach(message -> add(buffer, message));
+                buffer.more += newer.more;
+                newer.messages.clear();
+                newer.messages.addAll(buffer.messages);
+                newer.more = buffer.more;
+                newer.attempts = attempt;
+            }
+        }
+        requeued.addAndGet(userIds.size());
+    }
+}
@@ -0,0 +1,177 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Borra las notificaciones vencidas según la política de retención: las que
+ * ya leyeron todos sus destinatarios después de unos días y todas después de
+ * una edad máxima. Trabaja en bloques de ids, cada uno en su propia
+ * transacción (primero los vínculos y luego las notificaciones), con una
+ * pausa entre bloques y un tope de filas por pasada para no acaparar las
+ * tablas.
+ */
+@Slf4j
+@Service
+public class NotificationPurgeService {
+
+    // Cutoff for a disabled policy: no notification is that old
+    private static final Date NEVER = Date.valueOf(LocalDate.of(1970, 1, 1));
+
+    private final NotificationRepository notificationRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final UnreadNotificationCountService unreadCounts;
+    private final TransactionTemplate transactionTemplate;
+    private final int readDays;
+    private final int maxDays;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final int maxPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalNotifications = new AtomicLong();
+    private final AtomicLong totalLinks = new AtomicLong();
+    private volatile PurgeResult lastRun;
+
+    public record PurgeResult(LocalDateTime startedAt, long durationMillis, int notifications, int links,
+            int chunks, boolean complete) {
+    }
+
+    public record Metrics(int readDays, int maxDays, long runs, long totalNotifications, long totalLinks,
+            PurgeResult lastRun) {
+    }
+
+    public NotificationPurgeService(NotificationRepository notificationRepository,
+            UserNotificationRepository userNotificationRepository, UnreadNotificationCountService unreadCounts,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.retention.read-days:30}") int readDays,
+            @Value("${notifications.retention.max-days:180}") int maxDays,
+            @Value("${notifications.purge.chunk-size:500}") int chunkSize,
+            @Value("${notifications.purge.pause-ms:200}") long pauseMillis,
+            @Value("${notifications.purge.max-per-run:50000}") int maxPerRun) {
+        this.notificationRepository = notificationRepository;
+        this.userNotificationRepository = userNotificationRepository;
+        this.unreadCounts = unreadCounts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readDays = readDays;
+        this.maxDays = maxDays;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+        this.maxPerRun = Math.max(1, maxPerRun);
+    }
+
+    @Scheduled(cron = "${notifications.purge.cron:0 15 3 * * *}")
+    public void purgeScheduled() {
+        if (running.get()) {
+            log.info("Notification purge still running, skipping this run");
+            return;
+        }
+        purge();
+    }
+
+    /**
+     * Deletes the notifications past their retention, up to the per-run limit.
+     *
+     * @return What this run deleted; {@code complete} is false if it stopped
+     * at the limit with more left
+     * @throws IllegalOperationException If a purge is already running
+     */
+    public PurgeResult purge() throws IllegalOperationException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalOperationException("A notification purge is already running");
+        }
+        try {
+            return doPurge();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(readDays, maxDays, runs.get(), totalNotifications.get(), totalLinks.get(), lastRun);
+    }
+
+    private PurgeResult doPurge() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        LocalDate today = startedAt.toLocalDate();
+        Date expiredBefore = maxDays > 0 ? Date.valueOf(today.minusDays(maxDays)) : NEVER;
+        Date readBefore = readDays > 0 ? Date.valueOf(today.minusDays(readDays)) : NEVER;
+
+        int[] totals = new int[2];
+        int chunks = 0;
+        boolean complete = true;
+        long afterId = 0;
+        while (true) {
+            if (totals[0] >= maxPerRun) {
+                complete = false;
+                break;
+            }
+            int limit = Math.min(chunkSize, maxPerRun - totals[0]);
+            List<Long> ids = notificationRepository.findPurgeableIds(expiredBefore, readBefore, afterId,
+                    PageRequest.of(0, limit));
+            if (ids.isEmpty()) {
+                break;
+            }
+            transactionTemplate.executeWithoutResult(status -> purgeChunk(ids, totals));
+            chunks++;
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < limit) {
+                break;
+            }
+            if (!pause()) {
+                complete = false;
+                break;
+            }
+        }
+
+        PurgeResult result = new PurgeResult(startedAt, (System.nanoTime() - start) / 1_000_000, totals[0],
+                totals[1], chunks, complete);
+        runs.incrementAndGet();
+        totalNotifications.addAndGet(result.notifications());
+        totalLinks.addAndGet(result.links());
+        lastRun = result;
+        log.info("Purged {} notifications and {} links in {} chunks ({} ms){}", result.notifications(),
+                result.links(), chunks, result.durationMillis(),
+                complete ? "" : ", more left for the next run");
+        return result;
+    }
+
+    private void purgeChunk(List<Long> ids, int[] totals) {
+        // Counters first, while the unread rows they count still exist
+        unreadCounts.leavingAll(ids);
+        totals[1] += userNotificationRepository.unlinkNotifications(ids);
+        totals[0] += notificationRepository.deleteByIds(ids);
+    }
+
+    // Gives other transactions room between chunks; false if the thread was interrupted
+    private boolean pause() {
+        if (pauseMillis == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -2,28 +2,58 @@ package co.edu.udistrital.mdp.back.services;
 
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.entities.UserNotificationEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+@Slf4j
 @Service
 public class NotificationService {
 
     private static final String NOTIFICATION_NOT_FOUND_MESSAGE = "Notification not found";
     private static final String USER_NOT_FOUND_MESSAGE = "User not found";
+    private static final int LINK_CHUNK_SIZE = 500;
 
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final UnreadNotificationCountService unreadCounts;
+    private final NotificationStreamHub streamHub;
+    private final NotificationBroadcastService broadcastService;
 
     // Constructor injection
-    public NotificationService(NotificationRepository notificationRepository, UserRepository userRepository) {
+    public NotificationService(NotificationRepository notificationRepository, UserRepository userRepository,
+            UserNotificationRepository userNotificationRepository, UnreadNotificationCountService unreadCounts,
+            NotificationStreamHub streamHub, NotificationBroadcastService broadcastService) {
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
+        this.userNotificationRepository = userNotificationRepository;
+        this.unreadCounts = unreadCounts;
+        this.streamHub = streamHub;
+        this.broadcastService = broadcastService;
+    }
+
+    // Las notificaciones leídas antes de que el estado pasara a la tabla de unión quedan leídas para todos
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void copyLegacyReadFlags() {
+        int copied = userNotificationRepository.copyNotificationReadFlags();
+        if (copied > 0) {
+            log.info("Copied read state of {} user notifications to the join table", copied);
+            unreadCounts.resetAll();
+        }
     }
 
     // Regla: Crear notificación para uno o varios usuarios
@@ -32,16 +62,28 @@ public class NotificationService {
         if (message == null || message.trim().isEmpty()) {
             throw new IllegalArgumentException("Message cannot be empty");
         }
-        List<UserEntity> users = userRepository.findAllById(userIds);
-        if (users.isEmpty()) {
+        // Only the ids are needed; the join rows are written in bulk, not through the users' bags
+        List<Long> requested = userIds == null ? List.of() : new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<Long> found = new ArrayList<>();
+        for (int from = 0; from < requested.size(); from += LINK_CHUNK_SIZE) {
+            found.addAll(userRepository.findExistingIds(
+                    requested.subList(from, Math.min(from + LINK_CHUNK_SIZE, requested.size()))));
+        }
+        if (found.isEmpty()) {
             throw new EntityNotFoundException("No users found for notification");
         }
         NotificationEntity notification = new NotificationEntity();
         notification.setMessage(message);
         notification.setDate(new Date(System.currentTimeMillis()));
         notification.setRead(false);
-        notification.setUsers(users);
-        return notificationRepository.save(notification);
+        notification = notificationRepository.save(notification);
+        List<Long> linked = new ArrayList<>();
+        for (int from = 0; from < found.size(); from += LINK_CHUNK_SIZE) {
+            List<Long> chunk = found.subList(from, Math.min(from + LINK_CHUNK_SIZE, found.size()));
+            linked.addAll(unreadCounts.link(notification.getId(), chunk));
+        }
+        streamHub.publishAfterCommit(notification, linked);
+        return notification;
     }
 
     public List<NotificationEntity> getAll() {
@@ -54,28 +96,40 @@ public class NotificationService {
     }
 
 
-    // Regla: Marcar notificación como leída
+    // Regla: Marcar notificación como leída (para todos sus destinatarios)
     @Transactional
     public void markAsRead(Long notificationId) throws EntityNotFoundException {
         NotificationEntity notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND_MESSAGE));
         notification.setRead(true);
         notificationRepository.save(notification);
+        unreadCounts.leavingAll(notificationId);
+        userNotificationRepository.markReadForAll(notificationId);
+    }
+
+    // Regla: Marcar notificación como leída sólo para un usuario
+    @Transactional
+    public void markAsReadForUser(Long notificationId, Long userId) throws EntityNotFoundException {
+        if (userNotificationRepository.markRead(userId, notificationId) == 1) {
+            unreadCounts.read(userId, 1);
+        } else if (!userNotificationRepository.existsById(new UserNotificationEntity.Key(userId, notificationId))) {
+            throw new EntityNotFoundException("Notification not found for user");
+        }
     }
 
+    // Un solo UPDATE sobre las filas no leídas del usuario
     @Transactional
     public int markAllAsReadForUser(Long userId) {
-        List<NotificationEntity> list = notificationRepository.findByUsers_IdAndReadFalse(userId);
-        list.forEach(n -> n.setRead(true));
-        notificationRepository.saveAll(list);
-        return list.size();
+        int marked = userNotificationRepository.markAllRead(userId);
+        unreadCounts.read(userId, marked);
+        return marked;
     }
 
 
     // Regla: Obtener notificaciones de un usuario (no leídas o todas)
     public List<NotificationEntity> getUserNotifications(Long userId, boolean onlyUnread) {
         if (onlyUnread) {
-            return notificationRepository.findByUsers_IdAndReadFalse(userId);
+            return notificationRepository.findUnreadByUserId(userId);
         } else {
             return notificationRepository.findByUsers_Id(userId);
         }
@@ -98,8 +152,10 @@ public class NotificationService {
         NotificationEntity n = getById(notificationId);
         UserEntity u = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND_MESSAGE));
-        if (!n.getUsers().contains(u)) {
-            n.getUsers().add(u);
+        // Straight to the join table; the notification is unread again until the new user reads it
+        if (userNotificationRepository.linkUser(notificationId, u.getId())) {
+            n.setRead(false);
+            unreadCounts.linked(userId);
         }
         return notificationRepository.save(n);
     }
@@ -107,22 +163,33 @@ public class NotificationService {
     @Transactional
     public void removeUserFromNotification(Long notificationId, Long userId)
             throws EntityNotFoundException {
-        NotificationEntity n = getById(notificationId);
-        UserEntity u = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND_MESSAGE));
-        n.getUsers().remove(u);
-        notificationRepository.save(n);
+        getById(notificationId);
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException(USER_NOT_FOUND_MESSAGE);
+        }
+        unreadCounts.leaving(userId, notificationId);
+        userNotificationRepository.unlink(userId, notificationId);
     }
 
 
-    // Regla: Eliminar notificación (solo si ya fue leída)
+    // Regla: Eliminar notificación (solo si ya la leyeron todos sus destinatarios)
     @Transactional
     public void deleteNotification(Long notificationId) throws EntityNotFoundException {
+        // Locked first, so a broadcast chunk either finished or sees the notification gone
+        if (notificationRepository.lockById(notificationId) == null) {
+            throw new EntityNotFoundException(NOTIFICATION_NOT_FOUND_MESSAGE);
+        }
         NotificationEntity notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND_MESSAGE));
-        if (!Boolean.TRUE.equals(notification.getRead())) {
+        // Until its first chunk is linked a broadcast has no unread rows, so check the job itself
+        if (broadcastService.isInFlight(notificationId)) {
+            throw new IllegalArgumentException("Cannot delete a notification while it is being broadcast");
+        }
+        if (!Boolean.TRUE.equals(notification.getRead()) && userNotificationRepository.existsUnread(notificationId)) {
             throw new IllegalArgumentException("Cannot delete unread notification");
         }
+        unreadCounts.leavingAll(notificationId);
+        userNotificationRepository.unlinkAll(notificationId);
         notificationRepository.delete(notification);
     }
 }
\ No newline at end of file
@@ -0,0 +1,252 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Canal de eventos (SSE) de notificaciones. Cada conexión tiene una cola
+ * acotada y un hilo virtual que pasa casi todo el tiempo estacionado
+ * esperando eventos o el siguiente latido. Las notificaciones se publican
+ * después del commit; el id de cada evento es el de la notificación, así que
+ * al reconectar con Last-Event-ID lo perdido se lee de la base de datos. Una
+ * conexión que no alcanza a vaciar su cola se cierra y el cliente se
+ * recupera reconectando.
+ */
+@Slf4j
+@Service
+public class NotificationStreamHub {
+
+    private static final String EVENT_NAME = "notification";
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final int bufferSize;
+    private final long heartbeatMillis;
+    private final long timeoutMillis;
+    private final int maxConnections;
+    private final int replayLimit;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public record NotificationEvent(Long id, String message, Date date) {
+
+        static NotificationEvent of(NotificationEntity notification) {
+            return new NotificationEvent(notification.getId(), notification.getMessage(), notification.getDate());
+        }
+    }
+
+    public record Metrics(int connections, long published, long dropped) {
+    }
+
+    public NotificationStreamHub(NotificationRepository notificationRepository, UserRepository userRepository,
+            @Value("${notifications.stream.buffer-size:64}") int bufferSize,
+            @Value("${notifications.stream.heartbeat-ms:15000}") long heartbeatMillis,
+            @Value("${notifications.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${notifications.stream.max-connections:10000}") int maxConnections,
+            @Value("${notifications.stream.replay-limit:100}") int replayLimit) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.heartbeatMillis = Math.max(1, heartbeatMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.replayLimit = Math.max(1, replayLimit);
+    }
+
+    @PreDestroy
+    void stop() {
+        subscribers.values().forEach(set -> set.forEach(this::close));
+    }
+
+    /**
+     * Opens a stream of the user's new notifications.
+     *
+     * @param userId The user identifier
+     * @param lastEventId Last event the client received, to replay what it missed
+     * @return The emitter, or empty when the server is at its connection limit
+     * @throws EntityNotFoundException If the user does not exist
+     */
+    public Optional<SseEmitter> subscribe(Long userId, Long lastEventId) throws EntityNotFoundException {
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        if (!subscribe(userId, lastEventId, emitter)) {
+            return Optional.empty();
+        }
+        return Optional.of(emitter);
+    }
+
+    boolean subscribe(Long userId, Long lastEventId, SseEmitter emitter) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            return false;
+        }
+        Subscriber subscriber = new Subscriber(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        // Registered before the replay query, so nothing committed in between is missed
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+        subscriber.thread = Thread.ofVirtual().name("notification-stream-" + userId)
+                .start(() -> pump(subscriber, lastEventId));
+        return true;
+    }
+
+    /** Publishes the notification to its connected recipients once the current transaction commits. */
+    public void publishAfterCommit(NotificationEntity notification, Collection<Long> userIds) {
+        NotificationEvent event = NotificationEvent.of(notification);
+        List<Long> recipients = List.copyOf(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(event, recipients);
+                }
+            });
+        } else {
+            publish(event, recipients);
+        }
+    }
+
+    void publish(NotificationEvent event, Collection<Long> userIds) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // Large broadcasts reach few connected users, so walk whichever side is smaller
+        if (userIds.size() > subscribers.size()) {
+            Set<Long> targets = new HashSet<>(userIds);
+            subscribers.forEach((userId, set) -> {
+                if (targets.contains(userId)) {
+                    offer(set, event);
+                }
+            });
+        } else {
+            for (Long userId : userIds) {
+                Set<Subscriber> set = subscribers.get(userId);
+                if (set != null) {
+                    offer(set, event);
+                }
+            }
+        }
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(connections.get(), published.get(), dropped.get());
+    }
+
+    private void offer(Set<Subscriber> set, NotificationEvent event) {
+        for (Subscriber subscriber : set) {
+            if (subscriber.queue.offer(event)) {
+                published.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+                log.debug("Closing slow notification stream of user = {}", subscriber.userId);
+                close(subscriber);
+            }
+        }
+    }
+
+    private void pump(Subscriber subscriber, Long lastEventId) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("connected"));
+            Set<Long> replayed = new HashSet<>();
+            if (lastEventId != null) {
+                List<NotificationEntity> missed = notificationRepository.findByUserIdAfter(subscriber.userId,
+                        lastEventId, PageRequest.of(0, replayLimit));
+                for (NotificationEntity notification : missed) {
+                    send(subscriber, NotificationEvent.of(notification));
+                    replayed.add(notification.getId());
+                }
+            }
+            while (!subscriber.closed) {
+                NotificationEvent event = subscriber.queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else if (!replayed.remove(event.id())) {
+                    send(subscriber, event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Notification stream of user = {} is gone: {}", subscriber.userId, e.getMessage());
+        } finally {
+            close(subscriber);
+        }
+    }
+
+    private static void send(Subscriber subscriber, NotificationEvent event) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name(EVENT_NAME)
+                .data(event, MediaType.APPLICATION_JSON));
+    }
+
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+        }
+        connections.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        if (subscriber.thread != null && subscriber.thread != Thread.currentThread()) {
+            subscriber.thread.interrupt();
+        }
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            log.debug("Notification stream of user = {} already closed", subscriber.userId);
+        }
+    }
+
+    private static final class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<NotificationEvent> queue;
+        private volatile Thread thread;
+        private volatile boolean closed;
+
+        private Subscriber(Long userId, SseEmitter emitter, BlockingQueue<NotificationEvent> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,10 +19,15 @@ public class NotificationUserService {
 
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final UnreadNotificationCountService unreadCounts;
 
-    public NotificationUserService(NotificationRepository notificationRepository, UserRepository userRepository) {
+    public NotificationUserService(NotificationRepository notificationRepository, UserRepository userRepository,
+            UserNotificationRepository userNotificationRepository, UnreadNotificationCountService unreadCounts) {
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
+        this.userNotificationRepository = userNotificationRepository;
+        this.unreadCounts = unreadCounts;
     }
 
     @Transactional
@@ -31,25 +37,30 @@ public class NotificationUserService {
         UserEntity user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND));
 
-        notification.getUsers().add(user);
-        notificationRepository.save(notification);
+        // Straight to the join table, so the user's other links keep their read state
+        if (userNotificationRepository.linkUser(notificationId, user.getId())) {
+            notification.setRead(false);
+            unreadCounts.linked(userId);
+        }
         return user;
     }
 
     public List<UserEntity> getUsers(Long notificationId) throws EntityNotFoundException {
-        NotificationEntity notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND));
-        return notification.getUsers();
+        if (!notificationRepository.existsById(notificationId)) {
+            throw new EntityNotFoundException(NOTIFICATION_NOT_FOUND);
+        }
+        return userRepository.findByNotifications_Id(notificationId);
     }
 
     @Transactional
     public void removeUserFromNotification(Long notificationId, Long userId) throws EntityNotFoundException {
-        NotificationEntity notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND));
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND));
-
-        notification.getUsers().remove(user);
-        notificationRepository.save(notification);
+        if (!notificationRepository.existsById(notificationId)) {
+            throw new EntityNotFoundException(NOTIFICATION_NOT_FOUND);
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException(USER_NOT_FOUND);
+        }
+        unreadCounts.leaving(userId, notificationId);
+        userNotificationRepository.unlink(userId, notificationId);
     }
 }
@@ -0,0 +1,34 @@
+package co.edu.udistrital.mdp.back.services;
+
+/**
+ * Procesador externo que cobra los pagos. La implementación activa se elige
+ * con la propiedad payments.gateway; por defecto es el simulador local.
+ */
+public interface PaymentGateway {
+
+    record Charge(Long paymentId, double amount, String method) {
+    }
+
+    record Result(boolean approved, String message) {
+
+        public static Result approved(String message) {
+            return new Result(true, message);
+        }
+
+        public static Result declined(String message) {
+            return new Result(false, message);
+        }
+    }
+
+    /**
+     * Charges a payment. May block while the processor answers; it is always
+     * called from a worker thread and outside any transaction. The payment id
+     * is the idempotency key: a payment whose first answer never arrived is
+     * charged again, and the processor must answer with the first outcome.
+     * An exception means the outcome is unknown, not that it was declined.
+     *
+     * @param charge The payment to charge
+     * @return Whether the processor approved it
+     */
+    Result charge(Charge charge);
+}
@@ -0,0 +1,196 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.PaymentDailyTotalEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentLedgerEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.PaymentDailyTotalRepository;
+import co.edu.udistrital.mdp.back.repositories.PaymentLedgerRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Libro de pagos de solo escritura. PaymentService registra aquí cada estado
+ * al que entra un pago, en la misma transacción que el cambio, y con cada
+ * movimiento se suman los totales del día, método y estado.
+ */
+@Slf4j
+@Service
+public class PaymentLedgerService {
+
+    private static final String UNKNOWN_METHOD = "unknown";
+    private static final int MAX_DAYS = 366;
+
+    private final PaymentLedgerRepository ledgerRepository;
+    private final PaymentDailyTotalRepository dailyTotalRepository;
+    private final TransactionTemplate newTransaction;
+
+    public record DailyTotal(LocalDate day, String method, PaymentStatus status, long payments, double amount) {
+    }
+
+    // One payment entering (payments = 1) or leaving (payments = -1) a total
+    private record Posting(Long paymentId, String method, long payments, double amount) {
+    }
+
+    public PaymentLedgerService(PaymentLedgerRepository ledgerRepository,
+            PaymentDailyTotalRepository dailyTotalRepository, PlatformTransactionManager transactionManager) {
+        this.ledgerRepository = ledgerRepository;
+        this.dailyTotalRepository = dailyTotalRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Appends one entry per payment, all entering {@code status} now.
+     *
+     * @param payments The payments, with their current amount and method
+     * @param status The status they entered
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(List<PaymentEntity> payments, PaymentStatus status) {
+        List<Posting> postings = new ArrayList<>(payments.size());
+        for (PaymentEntity payment : payments) {
+            postings.add(new Posting(payment.getId(), methodOf(payment.getMethod()), 1, payment.getAmount()));
+        }
+        post(postings, status);
+    }
+
+    public void record(PaymentEntity payment, PaymentStatus status) {
+        record(List.of(payment), status);
+    }
+
+    /**
+     * Records that a payment changed amount or method without changing
+     * status: the entry made with the old values is reversed and a new one
+     * is made with the current values, both dated now.
+     *
+     * @param payment The payment, with its new amount and method
+     * @param oldAmount The amount it had
+     * @param oldMethod The method it had
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void corrected(PaymentEntity payment, double oldAmount, String oldMethod) {
+        post(List.of(
+                new Posting(payment.getId(), methodOf(oldMethod), -1, -oldAmount),
+                new Posting(payment.getId(), methodOf(payment.getMethod()), 1, payment.getAmount())),
+                payment.getStatus());
+    }
+
+    /**
+     * Gets the daily totals of a date range, reading one row per day, method
+     * and status instead of the payments.
+     *
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @param method Only this method, or null for all
+     * @return Totals ordered by day, method and status
+     */
+    @Transactional(readOnly = true)
+    public List<DailyTotal> getDailyTotals(LocalDate from, LocalDate to, String method)
+            throws IllegalOperationException {
+        if (from.isAfter(to)) {
+            throw new IllegalOperationException("The start date must not be after the end date");
+        }
+        if (from.plusDays(MAX_DAYS).isBefore(to)) {
+            throw new IllegalOperationException("The range cannot be longer than " + MAX_DAYS + " days");
+        }
+        String filter = method == null || method.isBlank() ? null : method.toLowerCase().trim();
+        return dailyTotalRepository.findBetween(from, to, filter).stream()
+                .map(t -> new DailyTotal(t.getSettlementDay(), t.getMethod(), t.getStatus(), t.getPayments(),
+                        ShoppingCartService.toMoney(t.getAmount())))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentLedgerEntity> getEntries(Long paymentId) {
+        return ledgerRepository.findByPaymentIdOrderByIdAsc(paymentId);
+    }
+
+    private void post(List<Posting> postings, PaymentStatus status) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate day = now.toLocalDate();
+        List<PaymentLedgerEntity> entries = new ArrayList<>(postings.size());
+        Map<String, double[]> byMethod = new HashMap<>();
+        for (Posting posting : postings) {
+            PaymentLedgerEntity entry = new PaymentLedgerEntity();
+            entry.setPaymentId(posting.paymentId());
+            entry.setStatus(status);
+            entry.setAmount(posting.amount());
+            entry.setMethod(posting.method());
+            entry.setOccurredAt(now);
+            entries.add(entry);
+
+            double[] total = byMethod.computeIfAbsent(posting.method(), k -> new double[2]);
+            total[0] += posting.payments();
+            total[1] += posting.amount();
+        }
+
+        // Missing totals rows are created before this transaction touches the table:
+        // an UPDATE that matches nothing would leave a gap lock the separate insert waits on
+        for (String method : byMethod.keySet()) {
+            prepareTotal(day, method, status);
+        }
+        ledgerRepository.saveAll(entries);
+        for (Map.Entry<String, double[]> total : byMethod.entrySet()) {
+            addToTotal(day, total.getKey(), status, (long) total.getValue()[0], total.getValue()[1]);
+        }
+    }
+
+    private static String methodOf(String method) {
+        return method == null ? UNKNOWN_METHOD : method;
+    }
+
+    // First entry of the day for this method and status. The empty row is
+    // committed on its own so two transactions creating it at once do not
+    // fail: the loser just finds it and both increment it
+    private void prepareTotal(LocalDate day, String method, PaymentStatus status) {
+        if (dailyTotalRepository.existsBySettlementDayAndMethodAndStatus(day, method, status)) {
+            return;
+        }
+        try {
+            newTransaction.executeWithoutResult(tx -> {
+                PaymentDailyTotalEntity total = new PaymentDailyTotalEntity();
+                total.setSettlementDay(day);
+                total.setMethod(method);
+                total.setStatus(status);
+                dailyTotalRepository.save(total);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Daily payment total for {} {} {} created concurrently", day, method, status);
+        }
+    }
+
+    private void addToTotal(LocalDate day, String method, PaymentStatus status, long payments, double amount) {
+        if (payments == 0 && amount == 0) {
+            return;
+        }
+        if (dailyTotalRepository.addToTotal(day, method, status, payments, amount) == 0) {
+            // Only if the prepared row was deleted in between; created here, in this transaction
+            PaymentDailyTotalEntity total = new PaymentDailyTotalEntity();
+            total.setSettlementDay(day);
+            total.setMethod(method);
+            total.setStatus(status);
+            total.setPayments(payments);
+            total.setAmount(amount);
+            dailyTotalRepository.save(total);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.PaymentRepository;
+import co.edu.udistrital.mdp.back.services.PaymentGateway.Charge;
+import co.edu.udistrital.mdp.back.services.PaymentGateway.Result;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Procesa los pagos pendientes en segundo plano. Los ids entran a una cola
+ * acotada y un grupo fijo de hilos virtuales los cobra con el
+ * {@link PaymentGateway}; el resultado se aplica con las mismas transiciones
+ * de {@link PaymentService}. Si la cola está llena el pago se rechaza y queda
+ * pendiente hasta la siguiente pasada del alimentador. Cada pago tomado tiene
+ * un plazo: si el trabajador muere o el procesador no responde, el pago sigue
+ * en proceso y, vencido el plazo, el alimentador lo vuelve a encolar.
+ */
+@Slf4j
+@Service
+public class PaymentProcessingWorker {
+
+    private static final int FEED_PAGE_SIZE = 200;
+    private static final int RATE_WINDOW_SECONDS = 60;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final PaymentService paymentService;
+    private final PaymentRepository paymentRepository;
+    private final PaymentGateway gateway;
+
+    private final boolean enabled;
+    private final int workers;
+    private final int queueCapacity;
+    private final Duration lease;
+    private final BlockingQueue<Long> queue;
+    // Ids queued or in flight, so the feeder never queues a payment twice
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong totalGatewayMillis = new AtomicLong();
+
+    // Payments finished per second over the last minute, indexed by epoch second
+    private final long[] rateSeconds = new long[RATE_WINDOW_SECONDS];
+    private final long[] rateCounts = new long[RATE_WINDOW_SECONDS];
+
+    public record Metrics(boolean enabled, int workers, int queueDepth, int queueCapacity, int inFlight,
+            long submitted, long rejected, long completed, long failed, long skipped, long unresolved,
+            double throughputPerSecond, double averageGatewayMillis) {
+    }
+
+    public PaymentProcessingWorker(PaymentService paymentService, PaymentRepository paymentRepository,
+            PaymentGateway gateway,
+            @Value("${payments.worker.enabled:false}") boolean enabled,
+            @Value("${payments.worker.threads:32}") int workers,
+            @Value("${payments.worker.queue-capacity:1000}") int queueCapacity,
+            @Value("${payments.worker.lease-seconds:300}") long leaseSeconds) {
+        this.paymentService = paymentService;
+        this.paymentRepository = paymentRepository;
+        this.gateway = gateway;
+        this.enabled = enabled;
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.lease = Duration.ofSeconds(Math.max(1, leaseSeconds));
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        // Gateway calls mostly wait on the network, so each worker is a virtual thread;
+        // the pool size is what bounds concurrent calls to the processor
+        Thread.Builder builder = Thread.ofVirtual().name("payment-worker-", 0);
+        for (int i = 0; i < workers; i++) {
+            threads.add(builder.start(this::work));
+        }
+        log.info("Started {} payment workers with a queue of {}", workers, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        // Workers notice within one poll; a charge already sent gets what is left of one shared timeout
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_TIMEOUT_SECONDS);
+        int stillRunning = 0;
+        for (Thread thread : threads) {
+            long remaining = deadline - System.nanoTime();
+            if (!thread.join(Duration.ofNanos(Math.max(0, remaining)))) {
+                stillRunning++;
+            }
+        }
+        if (stillRunning > 0) {
+            log.warn("{} payment workers were still charging at shutdown; their payments are retaken after the lease",
+                    stillRunning);
+        }
+        threads.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a payment requested through the API.
+     *
+     * @param paymentId The payment identifier
+     * @return false if the queue is full; the payment stays pending
+     * @throws EntityNotFoundException If payment does not exist
+     * @throws IllegalOperationException If the worker is off or the payment is not pending
+     */
+    public boolean submitPayment(Long paymentId) throws EntityNotFoundException, IllegalOperationException {
+        if (!enabled) {
+            throw new IllegalOperationException("Asynchronous payment processing is disabled");
+        }
+        PaymentEntity payment = paymentService.getPayment(paymentId);
+        if (payment.getStatus() != PaymentStatus.PENDING) {
+            throw new IllegalOperationException(
+                    "Only pending payments can be processed. Current status: " + PaymentStatus.describe(payment.getStatus()));
+        }
+        return submit(paymentId);
+    }
+
+    /**
+     * Queues a pending payment for processing.
+     *
+     * @param paymentId The payment identifier
+     * @return false if the queue is full; the payment stays pending
+     */
+    public boolean submit(Long paymentId) {
+        if (!enabled) {
+            return false;
+        }
+        if (!queued.add(paymentId)) {
+            return true;
+        }
+        if (!queue.offer(paymentId)) {
+            queued.remove(paymentId);
+            rejected.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Queues pending payments, oldest first, until the queue is full. Picks up
+     * payments that were rejected or created while the worker was down, and
+     * then processing payments whose lease expired without an answer.
+     *
+     * @return Payments queued by this run
+     */
+    @Scheduled(fixedDelayString = "${payments.worker.poll-interval-ms:5000}")
+    public int enqueuePending() {
+        if (!enabled) {
+            return 0;
+        }
+        int added = feed(afterId -> paymentRepository.findIdsByStatus(PaymentStatus.PENDING, afterId,
+                PageRequest.of(0, FEED_PAGE_SIZE)));
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(lease);
+        added += feed(afterId -> paymentRepository.findIdsWithExpiredClaim(PaymentStatus.PROCESSING, expiredBefore,
+                afterId, PageRequest.of(0, FEED_PAGE_SIZE)));
+        return added;
+    }
+
+    public Metrics getMetrics() {
+        long done = completed.get() + failed.get() + unresolved.get();
+        return new Metrics(enabled, workers, queue.size(), queueCapacity, inFlight.get(),
+                submitted.get(), rejected.get(), completed.get(), failed.get(), skipped.get(), unresolved.get(),
+                throughput(), done == 0 ? 0.0 : (double) totalGatewayMillis.get() / done);
+    }
+
+    private int feed(LongFunction<List<Long>> nextPage) {
+        int added = 0;
+        long afterId = 0;
+        while (queue.remainingCapacity() > 0) {
+            List<Long> ids = nextPage.apply(afterId);
+            for (Long id : ids) {
+                if (queued.contains(id)) {
+                    continue;
+                }
+                if (!submit(id)) {
+                    return added;
+                }
+                added++;
+            }
+            if (ids.size() < FEED_PAGE_SIZE) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        return added;
+    }
+
+    private void work() {
+        while (running) {
+            Long paymentId;
+            try {
+                paymentId = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (paymentId == null) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            try {
+                process(paymentId);
+            } catch (RuntimeException e) {
+                log.error("Payment worker failed on payment with id = {}", paymentId, e);
+            } finally {
+                // Released before the worker counts as idle, so the next feed may queue it again
+                queued.remove(paymentId);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private void process(Long paymentId) {
+        // Claiming the payment is the pending -> processing transition (or the takeover
+        // of an expired lease), so a payment cancelled or processed by hand in the meantime is skipped
+        if (!paymentService.claim(paymentId, lease)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        PaymentEntity payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null) {
+            skipped.incrementAndGet();
+            return;
+        }
+
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = gateway.charge(new Charge(paymentId, payment.getAmount(), payment.getMethod()));
+        } catch (RuntimeException e) {
+            // The charge may have gone through: the payment stays processing for reconciliation
+            // or for a new attempt once the lease expires
+            log.warn("Gateway error on payment with id = {}, left processing: {}", paymentId, e.getMessage());
+            unresolved.incrementAndGet();
+            return;
+        } finally {
+            totalGatewayMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        PaymentStatus target = result.approved() ? PaymentStatus.COMPLETED : PaymentStatus.FAILED;
+        if (!paymentService.tryTransition(paymentId, target)) {
+            // Cancelled while the charge was in flight
+            log.warn("Payment with id = {} left processing before the gateway answered {}", paymentId,
+                    target.getValue());
+            skipped.incrementAndGet();
+            return;
+        }
+        (result.approved() ? completed : failed).incrementAndGet();
+        recordFinished();
+    }
+
+    private void recordFinished() {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % RATE_WINDOW_SECONDS);
+        synchronized (rateCounts) {
+            if (rateSeconds[slot] != second) {
+                rateSeconds[slot] = second;
+                rateCounts[slot] = 0;
+            }
+            rateCounts[slot]++;
+        }
+    }
+
+    private double throughput() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        synchronized (rateCounts) {
+            for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+                if (now - rateSeconds[i] < RATE_WINDOW_SECONDS) {
+                    total += rateCounts[i];
+                }
+            }
+        }
+        return (double) total / RATE_WINDOW_SECONDS;
+    }
+}
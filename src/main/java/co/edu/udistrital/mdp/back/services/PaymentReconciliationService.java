@@ -0,0 +1,313 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.repositories.PaymentRepository;
+import co.edu.udistrital.mdp.back.repositories.PaymentRepository.SettlementView;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Concilia los archivos de liquidación del procesador contra los pagos. El
+ * archivo se lee línea por línea y se procesa en bloques: una consulta por
+ * bloque para traer los pagos, un UPDATE por estado para las correcciones y
+ * cada diferencia se escribe de inmediato al reporte, así que la memoria no
+ * depende del tamaño del archivo.
+ *
+ * Formato esperado, con encabezado: payment_id,amount,status,settled_on
+ * (status: settled o declined; settled_on: yyyy-MM-dd).
+ */
+@Slf4j
+@Service
+public class PaymentReconciliationService {
+
+    private static final double AMOUNT_TOLERANCE = 0.005;
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path inbox;
+    private final int batchSize;
+    private final Duration dateWindow;
+
+    public enum Discrepancy {
+        /** The processor settled an id we do not have. */
+        MISSING_PAYMENT,
+        AMOUNT_MISMATCH,
+        /** Settled too far from the payment date. */
+        DATE_MISMATCH,
+        /** The processor's outcome cannot be reached from the payment's status. */
+        STATUS_CONFLICT,
+        /** Status corrected from the file; listed so the change can be audited. */
+        STATUS_CORRECTED,
+        MALFORMED_LINE
+    }
+
+    public record Result(long lines, long matched, long corrected, long discrepancies, long malformed) {
+    }
+
+    public record FileResult(String file, String report, Result result) {
+    }
+
+    private record Settlement(long line, Long paymentId, double amount, PaymentStatus outcome, LocalDate settledOn) {
+    }
+
+    // Running totals of one file
+    private static final class Counters {
+        private long lines;
+        private long matched;
+        private long corrected;
+        private long discrepancies;
+        private long malformed;
+
+        private Result toResult() {
+            return new Result(lines, matched, corrected, discrepancies, malformed);
+        }
+    }
+
+    public PaymentReconciliationService(PaymentRepository paymentRepository, PaymentService paymentService,
+            PlatformTransactionManager transactionManager,
+            @Value("${payments.reconciliation.dir:settlements}") String inbox,
+            @Value("${payments.reconciliation.batch-size:1000}") int batchSize,
+            @Value("${payments.reconciliation.date-window-days:3}") int dateWindowDays) {
+        this.paymentRepository = paymentRepository;
+        this.paymentService = paymentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inbox = Path.of(inbox);
+        this.batchSize = Math.max(1, batchSize);
+        this.dateWindow = Duration.ofDays(Math.max(0, dateWindowDays));
+    }
+
+    @Scheduled(cron = "${payments.reconciliation.cron:0 0 4 * * *}")
+    public void reconcileScheduled() {
+        reconcileInbox();
+    }
+
+    /**
+     * Reconciles every CSV file waiting in the inbox directory. Each report is
+     * written to {@code reports/} and the file is then moved to
+     * {@code processed/}.
+     *
+     * @return One entry per file
+     */
+    public List<FileResult> reconcileInbox() {
+        List<FileResult> results = new ArrayList<>();
+        if (!Files.isDirectory(inbox)) {
+            return results;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox, "*.csv")) {
+            for (Path file : files) {
+                results.add(reconcileFile(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Reconciles one settlement file.
+     *
+     * @param file The settlement file
+     * @return Totals and the path of the report
+     */
+    public FileResult reconcileFile(Path file) {
+        String name = file.getFileName().toString();
+        Path dir = file.toAbsolutePath().getParent();
+        try {
+            Path reports = Files.createDirectories(dir.resolve("reports"));
+            Path processed = Files.createDirectories(dir.resolve("processed"));
+            Path report = reports.resolve(name.replaceFirst("\\.csv$", "") + ".report.csv");
+
+            Result result;
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                    Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                result = reconcile(reader, writer);
+            }
+            Files.move(file, processed.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            log.info("Reconciled settlement file {}: {}", name, result);
+            return new FileResult(name, report.toString(), result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reconciles a settlement stream, writing one CSV line per discrepancy
+     * and correction to {@code report}.
+     *
+     * @param settlement The settlement file contents
+     * @param report Where the discrepancy report is written
+     * @return Totals of the run
+     */
+    public Result reconcile(Reader settlement, Writer report) throws IOException {
+        BufferedReader reader = settlement instanceof BufferedReader buffered
+                ? buffered
+                : new BufferedReader(settlement);
+        report.write("line,payment_id,discrepancy,expected,actual\n");
+
+        Counters counters = new Counters();
+        List<Settlement> batch = new ArrayList<>(batchSize);
+        String line = reader.readLine();
+        long number = 1;
+        // The header is skipped; a file without one still reconciles its first line
+        if (line != null && !line.isBlank() && Character.isDigit(line.trim().charAt(0))) {
+            number = 0;
+        } else {
+            line = reader.readLine();
+        }
+        for (; line != null; line = reader.readLine()) {
+            number++;
+            if (line.isBlank()) {
+                continue;
+            }
+            counters.lines++;
+            Settlement parsed = parse(number, line);
+            if (parsed == null) {
+                counters.malformed++;
+                counters.discrepancies++;
+                write(report, number, null, Discrepancy.MALFORMED_LINE, "", line);
+                continue;
+            }
+            batch.add(parsed);
+            if (batch.size() == batchSize) {
+                reconcileBatch(batch, report, counters);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            reconcileBatch(batch, report, counters);
+        }
+        report.flush();
+        return counters.toResult();
+    }
+
+    private void reconcileBatch(List<Settlement> batch, Writer report, Counters counters) throws IOException {
+        // Lookups and corrections of a batch share one transaction; the report is
+        // written afterwards so a failed batch does not leave lines for changes that rolled back
+        List<String> lines = transactionTemplate.execute(status -> compare(batch, counters));
+        for (String line : lines) {
+            report.write(line);
+        }
+    }
+
+    private List<String> compare(List<Settlement> batch, Counters counters) {
+        Map<Long, SettlementView> payments = new HashMap<>();
+        List<Long> ids = batch.stream().map(Settlement::paymentId).toList();
+        for (SettlementView view : paymentRepository.findSettlementViews(ids)) {
+            payments.put(view.getId(), view);
+        }
+
+        List<String> lines = new ArrayList<>();
+        Map<PaymentStatus, List<Settlement>> corrections = new EnumMap<>(PaymentStatus.class);
+        for (Settlement settlement : batch) {
+            SettlementView payment = payments.get(settlement.paymentId());
+            if (payment == null) {
+                counters.discrepancies++;
+                lines.add(line(settlement, Discrepancy.MISSING_PAYMENT, "", ""));
+                continue;
+            }
+            boolean clean = true;
+            if (Math.abs(payment.getAmount() - settlement.amount()) > AMOUNT_TOLERANCE) {
+                clean = false;
+                lines.add(line(settlement, Discrepancy.AMOUNT_MISMATCH, String.valueOf(payment.getAmount()),
+                        String.valueOf(settlement.amount())));
+            }
+            if (payment.getDate() != null && outsideWindow(payment.getDate(), settlement.settledOn())) {
+                clean = false;
+                lines.add(line(settlement, Discrepancy.DATE_MISMATCH, payment.getDate().toLocalDate().toString(),
+                        settlement.settledOn().toString()));
+            }
+            if (payment.getStatus() != settlement.outcome()) {
+                if (payment.getStatus() != null && payment.getStatus().canMoveTo(settlement.outcome())) {
+                    corrections.computeIfAbsent(settlement.outcome(), k -> new ArrayList<>()).add(settlement);
+                } else {
+                    clean = false;
+                    lines.add(line(settlement, Discrepancy.STATUS_CONFLICT, value(payment.getStatus()),
+                            settlement.outcome().getValue()));
+                }
+            }
+            if (!clean) {
+                counters.discrepancies++;
+            } else if (payment.getStatus() == settlement.outcome()) {
+                counters.matched++;
+            }
+        }
+
+        for (Map.Entry<PaymentStatus, List<Settlement>> entry : corrections.entrySet()) {
+            List<Settlement> settlements = entry.getValue();
+            List<Long> correctedIds = settlements.stream().map(Settlement::paymentId).toList();
+            counters.corrected += paymentService.transitionAll(correctedIds, entry.getKey());
+            for (Settlement settlement : settlements) {
+                lines.add(line(settlement, Discrepancy.STATUS_CORRECTED,
+                        value(payments.get(settlement.paymentId()).getStatus()), entry.getKey().getValue()));
+            }
+        }
+        return lines;
+    }
+
+    private boolean outsideWindow(LocalDateTime paid, LocalDate settledOn) {
+        Duration gap = Duration.between(paid.toLocalDate().atStartOfDay(), settledOn.atStartOfDay()).abs();
+        return gap.compareTo(dateWindow) > 0;
+    }
+
+    private Settlement parse(long number, String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 4) {
+            return null;
+        }
+        try {
+            PaymentStatus outcome = switch (fields[2].trim().toLowerCase(Locale.ROOT)) {
+                case "settled", "completed" -> PaymentStatus.COMPLETED;
+                case "declined", "failed" -> PaymentStatus.FAILED;
+                default -> null;
+            };
+            if (outcome == null) {
+                return null;
+            }
+            return new Settlement(number, Long.valueOf(fields[0].trim()), Double.parseDouble(fields[1].trim()),
+                    outcome, LocalDate.parse(fields[3].trim()));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String value(PaymentStatus status) {
+        return status == null ? "" : status.getValue();
+    }
+
+    private static String line(Settlement settlement, Discrepancy discrepancy, String expected, String actual) {
+        return settlement.line() + "," + settlement.paymentId() + "," + discrepancy + "," + expected + "," + actual + "\n";
+    }
+
+    private static void write(Writer report, long number, Long paymentId, Discrepancy discrepancy, String expected,
+            String actual) throws IOException {
+        report.write(number + "," + (paymentId == null ? "" : paymentId) + "," + discrepancy + "," + expected + ","
+                + "\"" + actual.replace("\"", "\"\"") + "\"\n");
+    }
+}
@@ -1,13 +1,20 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
@@ -29,6 +36,7 @@ public class PaymentService {
     // Campos final para inyección por constructor
     private final PaymentRepository paymentRepository;
     private final ShoppingCartRepository shoppingCartRepository;
+    private final PaymentLedgerService ledgerService;
 
     // Constantes para mensajes de error duplicados
     private static final String PAYMENT_NOT_FOUND = "Payment with id = %d not found";
@@ -38,12 +46,30 @@ public class PaymentService {
     private static final List<String> VALID_PAYMENT_METHODS = Arrays.asList(
             "cash", "credit_card", "debit_card", "transfer", "pse", "nequi", "daviplata", "paypal");
 
-    // Estados de pago
-    private static final String STATUS_PENDING = "pending";
-    private static final String STATUS_PROCESSING = "processing";
-    private static final String STATUS_COMPLETED = "completed";
-    private static final String STATUS_FAILED = "failed";
-    private static final String STATUS_CANCELLED = "cancelled";
+    private static final int MAX_PAGE_SIZE = 200;
+
+    // Filtros de la búsqueda de pagos; los nulos no filtran
+    public record PaymentFilter(Long shoppingCartId, PaymentStatus status, String method, LocalDateTime from,
+            LocalDateTime to) {
+    }
+
+    public record PaymentPage(List<PaymentEntity> payments, Long nextCursor) {
+    }
+
+    // Estados de texto libre de versiones anteriores; los que no se reconocen se dejan para revisarlos a mano
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void migrate() {
+        int normalized = paymentRepository.normalizeLegacyStatuses();
+        if (normalized > 0) {
+            log.info("Normalized the status of {} legacy payments", normalized);
+        }
+        long unknown = paymentRepository.countUnknownStatuses();
+        if (unknown > 0) {
+            log.warn("{} payments have an unknown status; they load without status and cannot change state",
+                    unknown);
+        }
+    }
 
     /**
      * Returns all payments
@@ -56,6 +82,31 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
 
+    /**
+     * Searches payments, newest first, one page at a time. Every filter is
+     * optional; {@code before} is the cursor returned with the previous page.
+     * 
+     * @param filter The search filters
+     * @param before Only payments with a lower id, or null for the first page
+     * @param limit Page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return The page and the cursor of the next one, null on the last page
+     */
+    @Transactional
+    public PaymentPage searchPayments(PaymentFilter filter, Long before, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String method = filter.method() == null || filter.method().isBlank()
+                ? null
+                : filter.method().toLowerCase().trim();
+        // One extra row tells whether there is a next page without counting
+        List<PaymentEntity> payments = paymentRepository.search(filter.shoppingCartId(), filter.status(), method,
+                filter.from(), filter.to(), before == null ? Long.MAX_VALUE : before, PageRequest.of(0, size + 1));
+        if (payments.size() <= size) {
+            return new PaymentPage(payments, null);
+        }
+        List<PaymentEntity> page = payments.subList(0, size);
+        return new PaymentPage(page, page.get(size - 1).getId());
+    }
+
     /**
      * Finds a payment by ID
      * 
@@ -117,16 +168,20 @@ public class PaymentService {
             paymentEntity.setDate(LocalDateTime.now());
         }
         
-        if (paymentEntity.getStatus() == null || paymentEntity.getStatus().trim().isEmpty()) {
-            paymentEntity.setStatus(STATUS_PENDING);
+        if (paymentEntity.getStatus() == null) {
+            paymentEntity.setStatus(PaymentStatus.PENDING);
         }
 
+        PaymentEntity saved = paymentRepository.save(paymentEntity);
+        ledgerService.record(saved, saved.getStatus());
+
         log.info("Finishing process to create payment");
-        return paymentRepository.save(paymentEntity);
+        return saved;
     }
 
     /**
-     * Updates a payment
+     * Updates a payment. A new status is applied as a state transition, so it
+     * must be reachable from the current one.
      * 
      * Business Rule: Cannot update payment if it has already been processed
      * 
@@ -144,14 +199,22 @@ public class PaymentService {
         PaymentEntity existingPayment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new EntityNotFoundException(String.format(PAYMENT_NOT_FOUND, paymentId)));
 
-        if (STATUS_COMPLETED.equalsIgnoreCase(existingPayment.getStatus())) {
+        if (existingPayment.getStatus() == null) {
+            // Saving it would overwrite the stored value that could not be read
+            throw new IllegalOperationException("Cannot update a payment with an unknown status");
+        }
+
+        if (existingPayment.getStatus() == PaymentStatus.COMPLETED) {
             throw new IllegalOperationException("Cannot update a payment that has already been completed");
         }
 
-        if (STATUS_FAILED.equalsIgnoreCase(existingPayment.getStatus())) {
+        if (existingPayment.getStatus() == PaymentStatus.FAILED) {
             throw new IllegalOperationException("Cannot update a payment that has failed");
         }
 
+        double oldAmount = existingPayment.getAmount();
+        String oldMethod = existingPayment.getMethod();
+
         if (payment.getMethod() != null && !payment.getMethod().trim().isEmpty()) {
             String method = payment.getMethod().toLowerCase().trim();
             if (!VALID_PAYMENT_METHODS.contains(method)) {
@@ -166,12 +229,17 @@ public class PaymentService {
             existingPayment.setAmount(payment.getAmount());
         }
 
-        if (payment.getStatus() != null && !payment.getStatus().trim().isEmpty()) {
-            existingPayment.setStatus(payment.getStatus());
+        PaymentEntity saved = paymentRepository.save(existingPayment);
+        // The ledger entry of the current status was made with the old values
+        if (saved.getAmount() != oldAmount || !Objects.equals(saved.getMethod(), oldMethod)) {
+            ledgerService.corrected(saved, oldAmount, oldMethod);
+        }
+        if (payment.getStatus() != null && payment.getStatus() != existingPayment.getStatus()) {
+            saved = transition(paymentId, payment.getStatus());
         }
 
         log.info("Finishing process to update payment with id = {}", paymentId);
-        return paymentRepository.save(existingPayment);
+        return saved;
     }
 
     /**
@@ -190,7 +258,7 @@ public class PaymentService {
         PaymentEntity payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new EntityNotFoundException(String.format(PAYMENT_NOT_FOUND, paymentId)));
 
-        if (STATUS_COMPLETED.equalsIgnoreCase(payment.getStatus())) {
+        if (payment.getStatus() == PaymentStatus.COMPLETED) {
             throw new IllegalOperationException("Cannot delete a payment associated with a completed order");
         }
 
@@ -209,18 +277,9 @@ public class PaymentService {
     @Transactional
     public PaymentEntity processPayment(Long paymentId) throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to process payment with id = {}", paymentId);
-
-        PaymentEntity payment = paymentRepository.findById(paymentId)
-                .orElseThrow(() -> new EntityNotFoundException(String.format(PAYMENT_NOT_FOUND, paymentId)));
-
-        if (!STATUS_PENDING.equalsIgnoreCase(payment.getStatus())) {
-            throw new IllegalOperationException(
-                    "Only pending payments can be processed. Current status: " + payment.getStatus());
-        }
-
-        payment.setStatus(STATUS_PROCESSING);
+        PaymentEntity payment = transition(paymentId, PaymentStatus.PROCESSING);
         log.info("Finishing process to process payment with id = {}", paymentId);
-        return paymentRepository.save(payment);
+        return payment;
     }
 
     /**
@@ -234,18 +293,25 @@ public class PaymentService {
     @Transactional
     public PaymentEntity completePayment(Long paymentId) throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to complete payment with id = {}", paymentId);
-
-        PaymentEntity payment = paymentRepository.findById(paymentId)
-                .orElseThrow(() -> new EntityNotFoundException(String.format(PAYMENT_NOT_FOUND, paymentId)));
-
-        if (!STATUS_PROCESSING.equalsIgnoreCase(payment.getStatus())) {
-            throw new IllegalOperationException(
-                    "Only processing payments can be completed. Current status: " + payment.getStatus());
-        }
-
-        payment.setStatus(STATUS_COMPLETED);
+        PaymentEntity payment = transition(paymentId, PaymentStatus.COMPLETED);
         log.info("Finishing process to complete payment with id = {}", paymentId);
-        return paymentRepository.save(payment);
+        return payment;
+    }
+
+    /**
+     * Marks a payment as failed (only from processing)
+     * 
+     * @param paymentId The payment identifier
+     * @return The updated payment
+     * @throws EntityNotFoundException If payment does not exist
+     * @throws IllegalOperationException If payment is not being processed
+     */
+    @Transactional
+    public PaymentEntity failPayment(Long paymentId) throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting process to fail payment with id = {}", paymentId);
+        PaymentEntity payment = transition(paymentId, PaymentStatus.FAILED);
+        log.info("Finishing process to fail payment with id = {}", paymentId);
+        return payment;
     }
 
     /**
@@ -259,17 +325,102 @@ public class PaymentService {
     @Transactional
     public PaymentEntity cancelPayment(Long paymentId) throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to cancel payment with id = {}", paymentId);
+        PaymentEntity payment = transition(paymentId, PaymentStatus.CANCELLED);
+        log.info("Finishing process to cancel payment with id = {}", paymentId);
+        return payment;
+    }
+
+    /**
+     * Moves a payment to {@code target} if its current status allows it. The
+     * check and the change are a single conditional UPDATE, so two concurrent
+     * transitions cannot both succeed.
+     * 
+     * The UPDATE clears the persistence context: payments loaded earlier in
+     * the transaction are detached afterwards, so callers read them again
+     * instead of changing the instances they hold.
+     * 
+     * @param paymentId The payment identifier
+     * @param target The new status
+     * @return Whether the payment changed
+     */
+    @Transactional
+    public boolean tryTransition(Long paymentId, PaymentStatus target) {
+        if (target.sources().isEmpty()) {
+            return false;
+        }
+        if (paymentRepository.transition(paymentId, target) == 0) {
+            return false;
+        }
+        paymentRepository.findById(paymentId).ifPresent(payment -> ledgerService.record(payment, target));
+        return true;
+    }
+
+    /**
+     * Claims a payment for the background worker. A pending payment moves to
+     * processing like in {@link #tryTransition}; a processing one whose lease
+     * expired is taken over without a new ledger entry. Either way the lease
+     * starts again.
+     * 
+     * @param paymentId The payment identifier
+     * @param lease How long a claim keeps other workers away
+     * @return Whether the caller now holds the payment
+     */
+    @Transactional
+    public boolean claim(Long paymentId, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        PaymentStatus target = PaymentStatus.PROCESSING;
+        if (paymentRepository.claim(paymentId, target.sources(), target, now) > 0) {
+            paymentRepository.findById(paymentId).ifPresent(payment -> ledgerService.record(payment, target));
+            return true;
+        }
+        return paymentRepository.renewExpiredClaim(paymentId, target, now, now.minus(lease)) > 0;
+    }
 
+    /**
+     * Moves every listed payment that allows it to {@code target} with a
+     * single UPDATE, and records them in the ledger. Like
+     * {@link #tryTransition}, it detaches the payments loaded before it.
+     * 
+     * @param paymentIds The payment identifiers
+     * @param target The new status
+     * @return How many payments changed
+     */
+    @Transactional
+    public int transitionAll(Collection<Long> paymentIds, PaymentStatus target) {
+        if (paymentIds.isEmpty() || target.sources().isEmpty()) {
+            return 0;
+        }
+        List<PaymentEntity> payments = paymentRepository.lockInStatus(paymentIds, target.sources());
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = payments.stream().map(PaymentEntity::getId).toList();
+        int changed = paymentRepository.transitionAll(ids, target.sources(), target);
+        ledgerService.record(payments, target);
+        return changed;
+    }
+
+    // The payment is only read afterwards, to return it or to explain why nothing changed
+    private PaymentEntity transition(Long paymentId, PaymentStatus target)
+            throws EntityNotFoundException, IllegalOperationException {
+        boolean changed = tryTransition(paymentId, target);
         PaymentEntity payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new EntityNotFoundException(String.format(PAYMENT_NOT_FOUND, paymentId)));
-
-        if (STATUS_COMPLETED.equalsIgnoreCase(payment.getStatus())) {
-            throw new IllegalOperationException("Cannot cancel a completed payment");
+        if (!changed) {
+            throw new IllegalOperationException(transitionError(payment.getStatus(), target));
         }
+        return payment;
+    }
 
-        payment.setStatus(STATUS_CANCELLED);
-        log.info("Finishing process to cancel payment with id = {}", paymentId);
-        return paymentRepository.save(payment);
+    private String transitionError(PaymentStatus current, PaymentStatus target) {
+        String from = PaymentStatus.describe(current);
+        return switch (target) {
+            case PROCESSING -> "Only pending payments can be processed. Current status: " + from;
+            case COMPLETED -> "Only processing payments can be completed. Current status: " + from;
+            case FAILED -> "Only processing payments can fail. Current status: " + from;
+            case CANCELLED -> "Cannot cancel a " + from + " payment";
+            default -> "Cannot move a " + from + " payment to " + target.getValue();
+        };
     }
 
     /**
@@ -283,10 +434,11 @@ public class PaymentService {
     public List<PaymentEntity> getPaymentsByShoppingCart(Long shoppingCartId) throws EntityNotFoundException {
         log.info("Starting process to query payments for shopping cart with id = {}", shoppingCartId);
 
-        ShoppingCartEntity shoppingCart = shoppingCartRepository.findById(shoppingCartId)
-                .orElseThrow(() -> new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId)));
+        if (!shoppingCartRepository.existsById(shoppingCartId)) {
+            throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
+        }
 
         log.info("Finishing process to query payments for shopping cart with id = {}", shoppingCartId);
-        return shoppingCart.getPayments();
+        return paymentRepository.findByShoppingCartId(shoppingCartId);
     }
 }
\ No newline at end of file
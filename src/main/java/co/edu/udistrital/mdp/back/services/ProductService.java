@@ -19,11 +19,14 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final CartWriteBehindStore cartStore;
 
     // Constructor injection
-    public ProductService(ProductRepository productRepository, OrderDetailRepository orderDetailRepository) {
+    public ProductService(ProductRepository productRepository, OrderDetailRepository orderDetailRepository,
+            CartWriteBehindStore cartStore) {
         this.productRepository = productRepository;
         this.orderDetailRepository = orderDetailRepository;
+        this.cartStore = cartStore;
     }
 
     public List<ProductEntity> findAll() {
@@ -55,7 +58,13 @@ public class ProductService {
 
         if (incoming.getPrice() != null) {
             validatePrice(incoming.getPrice());
-            current.setPrice(roundToTwoDecimals(incoming.getPrice()));
+            Double newPrice = roundToTwoDecimals(incoming.getPrice());
+            if (!newPrice.equals(current.getPrice())) {
+                // Carts holding the old price reprice their lines the next time they are read
+                current.setPriceVersion(current.getPriceVersion() + 1);
+                cartStore.repriced(productId);
+            }
+            current.setPrice(newPrice);
         }
        
         if (incoming.getStock() != null) {
@@ -1,7 +1,10 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +30,8 @@ public class ProductShoppingCartService {
     // Campos final para inyección por constructor
     private final ProductRepository productRepository;
     private final ShoppingCartRepository shoppingCartRepository;
+    // Los vínculos reflejan las líneas de los carritos, que solo cambia este servicio
+    private final ShoppingCartService shoppingCartService;
 
     @Transactional
     public ShoppingCartEntity addShoppingCart(Long productId, Long shoppingCartId) 
@@ -42,9 +47,9 @@ public class ProductShoppingCartService {
         if (shoppingCartEntity.isEmpty())
             throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
 
-        if (!productEntity.get().getShoppingCarts().contains(shoppingCartEntity.get())) {
-            productEntity.get().getShoppingCarts().add(shoppingCartEntity.get());
-            productRepository.save(productEntity.get());
+        // Se asocia agregando una unidad al carrito; si ya tiene el producto queda igual
+        if (!productRepository.findLinkedCartIds(productId).contains(shoppingCartId)) {
+            shoppingCartService.addProductToCart(shoppingCartId, productId);
         }
 
         log.info("Finishing process to associate shopping cart with id = {} to product with id = {}", 
@@ -61,7 +66,7 @@ public class ProductShoppingCartService {
             throw new EntityNotFoundException(String.format(PRODUCT_NOT_FOUND, productId));
 
         log.info("Finishing process to query all shopping carts of product with id = {}", productId);
-        return productEntity.get().getShoppingCarts();
+        return shoppingCartRepository.findAllById(productRepository.findLinkedCartIds(productId));
     }
 
     @Transactional
@@ -81,7 +86,7 @@ public class ProductShoppingCartService {
         log.info("Finishing process to query shopping cart with id = {} of product with id = {}", 
                 shoppingCartId, productId);
         
-        if (!productEntity.get().getShoppingCarts().contains(shoppingCartEntity.get()))
+        if (!productRepository.findLinkedCartIds(productId).contains(shoppingCartId))
             throw new IllegalOperationException("The shopping cart is not associated to the product");
 
         return shoppingCartEntity.get();
@@ -89,24 +94,33 @@ public class ProductShoppingCartService {
 
     @Transactional
     public List<ShoppingCartEntity> replaceShoppingCarts(Long productId, List<ShoppingCartEntity> shoppingCarts) 
-            throws EntityNotFoundException {
+            throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to replace shopping carts associated with product with id = {}", productId);
         
         Optional<ProductEntity> productEntity = productRepository.findById(productId);
         if (productEntity.isEmpty())
             throw new EntityNotFoundException(String.format(PRODUCT_NOT_FOUND, productId));
 
-        for (ShoppingCartEntity cart : shoppingCarts) {
-            Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(cart.getId());
-            if (shoppingCartEntity.isEmpty())
-                throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, cart.getId()));
+        // Una sola consulta para validar todos los carritos
+        List<ShoppingCartEntity> resolved = EntityLookup.findAllInOrder(shoppingCartRepository, shoppingCarts,
+                "shopping cart", id -> new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, id)));
+
+        // Solo cambian los carritos que entran o salen, en orden de id para bloquearlos siempre igual
+        Set<Long> current = new HashSet<>(productRepository.findLinkedCartIds(productId));
+        Set<Long> wanted = new HashSet<>();
+        resolved.forEach(cart -> wanted.add(cart.getId()));
+        Set<Long> touched = new TreeSet<>(current);
+        touched.addAll(wanted);
+        for (Long cartId : touched) {
+            if (!wanted.contains(cartId)) {
+                shoppingCartService.removeLineFromCart(cartId, productId);
+            } else if (!current.contains(cartId)) {
+                shoppingCartService.addProductToCart(cartId, productId);
+            }
         }
 
-        productEntity.get().setShoppingCarts(shoppingCarts);
-        productRepository.save(productEntity.get());
-
         log.info("Finishing process to replace shopping carts associated with product with id = {}", productId);
-        return productEntity.get().getShoppingCarts();
+        return resolved;
     }
 
     @Transactional
@@ -122,10 +136,7 @@ public class ProductShoppingCartService {
         if (shoppingCartEntity.isEmpty())
             throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
 
-        productEntity.get().getShoppingCarts().remove(shoppingCartEntity.get());
-        shoppingCartEntity.get().getProducts().remove(productEntity.get());
-        
-        productRepository.save(productEntity.get());
+        shoppingCartService.removeLineFromCart(shoppingCartId, productId);
 
         log.info("Finishing process to remove shopping cart with id = {} from product with id = {}", 
                 shoppingCartId, productId);
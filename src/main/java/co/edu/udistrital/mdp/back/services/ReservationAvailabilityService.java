@@ -0,0 +1,236 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.stereotype.Service;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.BranchRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.BookedSlot;
+import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import co.edu.udistrital.mdp.back.services.ReservationSeriesService.Occurrence;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Busca el primer horario libre de un servicio en todas las sedes que lo
+ * ofrecen, priorizando las sedes de la misma zona que la sede preferida.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservationAvailabilityService {
+
+    static final LocalTime OPENING_TIME = LocalTime.of(8, 0);
+    static final LocalTime CLOSING_TIME = LocalTime.of(18, 0);
+    static final int SLOT_STEP_MINUTES = 15;
+    static final int DEFAULT_DURATION_MINUTES = 60;
+    static final int MAX_HORIZON_DAYS = 31;
+    // Limits concurrent lookups so a search cannot drain the connection pool
+    static final int MAX_PARALLEL_LOOKUPS = 8;
+
+    private static final Comparator<FreeSlot> EARLIEST_FIRST = Comparator
+            .comparing(FreeSlot::date)
+            .thenComparing(FreeSlot::startTime)
+            .thenComparing(FreeSlot::branchId);
+
+    private static final Comparator<Interval> BY_START = Comparator
+            .comparing(Interval::date)
+            .thenComparing(Interval::start);
+
+    private final BranchRepository branchRepository;
+    private final ServiceRepository serviceRepository;
+    private final ReservationRepository reservationRepository;
+    private final ReservationSeriesService reservationSeriesService;
+
+    // Time taken by a reservation or a series occurrence
+    private record Interval(LocalDate date, LocalTime start, LocalTime end) {
+    }
+
+    public record FreeSlot(Long branchId, String branchName, String zone, LocalDate date,
+            LocalTime startTime, LocalTime endTime) {
+    }
+
+    /**
+     * Returns up to {@code limit} suggestions (at most one per branch) ordered by
+     * zone proximity to the preferred branch and then by earliest start.
+     */
+    public List<FreeSlot> findNearestFreeSlots(Long serviceId, Long preferredBranchId, LocalDate from,
+            int days, int limit) throws EntityNotFoundException, IllegalOperationException {
+        if (days < 1 || days > MAX_HORIZON_DAYS) {
+            throw new IllegalOperationException("The search horizon must be between 1 and " + MAX_HORIZON_DAYS + " days.");
+        }
+        if (limit < 1) {
+            throw new IllegalOperationException("The limit must be greater than 0.");
+        }
+
+        ServiceEntity service = serviceRepository.findById(serviceId)
+                .orElseThrow(() -> new EntityNotFoundException("Service not found with id " + serviceId));
+        BranchEntity preferred = branchRepository.findById(preferredBranchId)
+                .orElseThrow(() -> new EntityNotFoundException("Branch not found with id " + preferredBranchId));
+
+        int duration = service.getDuration() != null && service.getDuration() > 0
+                ? service.getDuration()
+                : DEFAULT_DURATION_MINUTES;
+        LocalDate start = from != null ? from : LocalDate.now();
+        LocalDate end = start.plusDays(days - 1L);
+        LocalDateTime notBefore = LocalDateTime.now();
+
+        List<BranchEntity> candidates = branchRepository.findByServices_Id(serviceId);
+        log.info("Searching free slots for service = {} in {} branches", serviceId, candidates.size());
+
+        Map<Integer, List<BranchEntity>> tiers = new TreeMap<>();
+        for (BranchEntity branch : candidates) {
+            tiers.computeIfAbsent(zoneRank(preferred.getZone(), branch.getZone()), k -> new ArrayList<>()).add(branch);
+        }
+
+        List<FreeSlot> result = new ArrayList<>();
+        Semaphore permits = new Semaphore(MAX_PARALLEL_LOOKUPS);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            // A tier is submitted only when the nearer ones did not reach the limit;
+            // within a tier every branch is needed to rank by earliest start
+            for (List<BranchEntity> tier : tiers.values()) {
+                List<Future<Optional<FreeSlot>>> lookups = new ArrayList<>(tier.size());
+                for (BranchEntity branch : tier) {
+                    Long branchId = branch.getId();
+                    String name = branch.getName();
+                    String zone = branch.getZone();
+                    lookups.add(executor.submit(
+                            () -> lookup(permits, branchId, name, zone, start, end, duration, notBefore)));
+                }
+
+                List<FreeSlot> found = new ArrayList<>();
+                for (Future<Optional<FreeSlot>> future : lookups) {
+                    await(future).ifPresent(found::add);
+                }
+                found.sort(EARLIEST_FIRST);
+                result.addAll(found);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        } finally {
+            // Interrupts whatever is still running if the search is interrupted
+            executor.shutdownNow();
+        }
+
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * 0 for branches in the same zone as the preferred branch, 1 otherwise.
+     */
+    int zoneRank(String preferredZone, String zone) {
+        if (preferredZone != null && zone != null && preferredZone.trim().equalsIgnoreCase(zone.trim())) {
+            return 0;
+        }
+        return 1;
+    }
+
+    private Optional<FreeSlot> lookup(Semaphore permits, Long branchId, String name, String zone, LocalDate from,
+            LocalDate to, int duration, LocalDateTime notBefore) throws InterruptedException {
+        List<Interval> busy = new ArrayList<>();
+        permits.acquire();
+        try {
+            for (BookedSlot slot : reservationRepository.findBookedSlots(branchId, from, to)) {
+                addInterval(busy, slot.getReservationDate(), slot.getStartTime(), slot.getEndTime());
+            }
+            for (Occurrence occurrence : reservationSeriesService.getBranchOccurrences(branchId, from, to)) {
+                addInterval(busy, occurrence.date(), occurrence.startTime(), occurrence.endTime());
+            }
+        } finally {
+            permits.release();
+        }
+        busy.sort(BY_START);
+
+        int index = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            List<Interval> sameDay = new ArrayList<>();
+            while (index < busy.size() && !busy.get(index).date().isAfter(day)) {
+                if (day.equals(busy.get(index).date())) {
+                    sameDay.add(busy.get(index));
+                }
+                index++;
+            }
+            if (day.isBefore(notBefore.toLocalDate())) {
+                continue;
+            }
+
+            Integer startMinute = firstFreeMinute(sameDay, earliestMinute(day, notBefore), duration);
+            if (startMinute != null) {
+                return Optional.of(new FreeSlot(branchId, name, zone, day,
+                        LocalTime.ofSecondOfDay(startMinute * 60L),
+                        LocalTime.ofSecondOfDay((startMinute + duration) * 60L)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static void addInterval(List<Interval> busy, LocalDate date, LocalTime start, LocalTime end) {
+        if (date != null && start != null && end != null) {
+            busy.add(new Interval(date, start, end));
+        }
+    }
+
+    private int earliestMinute(LocalDate day, LocalDateTime notBefore) {
+        int opening = minuteOfDay(OPENING_TIME);
+        if (!day.equals(notBefore.toLocalDate())) {
+            return opening;
+        }
+        int now = minuteOfDay(notBefore.toLocalTime()) + 1;
+        return Math.max(opening, alignToSlot(now));
+    }
+
+    // Slots are sorted by start time, so a single sweep finds the first gap
+    private Integer firstFreeMinute(List<Interval> sameDay, int candidate, int duration) {
+        for (Interval slot : sameDay) {
+            int start = minuteOfDay(slot.start());
+            int end = minuteOfDay(slot.end());
+            if (candidate + duration <= start) {
+                break;
+            }
+            // Slots start on the grid even after a booking that ends off it
+            candidate = Math.max(candidate, alignToSlot(end));
+        }
+        return candidate + duration <= minuteOfDay(CLOSING_TIME) ? candidate : null;
+    }
+
+    private Optional<FreeSlot> await(Future<Optional<FreeSlot>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Free slot search was interrupted", e);
+        } catch (ExecutionException e) {
+            log.warn("Availability lookup failed, skipping branch", e.getCause());
+            return Optional.empty();
+        }
+    }
+
+    // Next start on the SLOT_STEP_MINUTES grid at or after minute
+    private static int alignToSlot(int minute) {
+        return ((minute + SLOT_STEP_MINUTES - 1) / SLOT_STEP_MINUTES) * SLOT_STEP_MINUTES;
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
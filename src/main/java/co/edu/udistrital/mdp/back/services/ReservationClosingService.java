@@ -0,0 +1,214 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.BranchRepository;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.OpenReservation;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cierra las reservas que siguen abiertas al final del día: las confirmadas
+ * pasan a COMPLETED y las que nunca se confirmaron al estado configurado.
+ * Trabaja por sede y en bloques, cada bloque en su propia transacción.
+ */
+@Slf4j
+@Service
+public class ReservationClosingService {
+
+    private static final int LINK_CHUNK_SIZE = 500;
+
+    private final ReservationRepository reservationRepository;
+    private final ServiceReservationCountService reservationCounts;
+    private final BranchRepository branchRepository;
+    private final NotificationRepository notificationRepository;
+    private final UnreadNotificationCountService unreadCounts;
+    private final NotificationStreamHub streamHub;
+    private final NotificationDigestService digestService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ReservationStatus unconfirmedOutcome;
+
+    public record BranchClosing(Long branchId, int completed, int noShow) {
+    }
+
+    public ReservationClosingService(ReservationRepository reservationRepository,
+            ServiceReservationCountService reservationCounts,
+            BranchRepository branchRepository, NotificationRepository notificationRepository,
+            UnreadNotificationCountService unreadCounts, NotificationStreamHub streamHub,
+            NotificationDigestService digestService, PlatformTransactionManager transactionManager,
+            @Value("${reservations.closing.chunk-size:500}") int chunkSize,
+            @Value("${reservations.closing.unconfirmed-status:NO_SHOW}") ReservationStatus unconfirmedOutcome) {
+        if (unconfirmedOutcome != ReservationStatus.COMPLETED && unconfirmedOutcome != ReservationStatus.NO_SHOW) {
+            throw new IllegalArgumentException("reservations.closing.unconfirmed-status must be COMPLETED or NO_SHOW");
+        }
+        this.reservationRepository = reservationRepository;
+        this.reservationCounts = reservationCounts;
+        this.branchRepository = branchRepository;
+        this.notificationRepository = notificationRepository;
+        this.unreadCounts = unreadCounts;
+        this.streamHub = streamHub;
+        this.digestService = digestService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.unconfirmedOutcome = unconfirmedOutcome;
+    }
+
+    @Scheduled(cron = "${reservations.closing.cron:0 0 21 * * *}")
+    public void closeToday() {
+        List<BranchClosing> result = closeDay(LocalDate.now(), null);
+        log.info("Scheduled day closing finished for {} branches", result.size());
+    }
+
+    /**
+     * Closes every reservation that ended on or before {@code date} (up to the
+     * current time when {@code date} is today). With a null branch id every
+     * branch with open reservations is closed.
+     */
+    public List<BranchClosing> closeDay(LocalDate date, Long branchId)
+            throws EntityNotFoundException, IllegalOperationException {
+        LocalDate today = LocalDate.now();
+        if (date == null || date.isAfter(today)) {
+            throw new IllegalOperationException("Only past days or today can be closed.");
+        }
+        LocalTime until = date.isBefore(today) ? LocalTime.MAX : LocalTime.now();
+
+        List<Long> branchIds;
+        if (branchId != null) {
+            if (!branchRepository.existsById(branchId)) {
+                throw new EntityNotFoundException("Branch not found with id " + branchId);
+            }
+            branchIds = List.of(branchId);
+        } else {
+            branchIds = reservationRepository.findBranchIdsWithOpenUntil(ReservationStatus.activeStatuses(), date,
+                    until);
+        }
+
+        List<BranchClosing> result = new ArrayList<>();
+        for (Long id : branchIds) {
+            result.add(closeBranch(id, date, until));
+        }
+        return result;
+    }
+
+    private BranchClosing closeBranch(Long branchId, LocalDate date, LocalTime until) {
+        log.info("Closing reservations of branch = {} until {} {}", branchId, date, until);
+        int[] totals = new int[2];
+        Set<Long> userIds = new LinkedHashSet<>();
+        long afterId = 0;
+
+        while (true) {
+            long from = afterId;
+            List<OpenReservation> chunk = reservationRepository.findOpenUntil(branchId,
+                    ReservationStatus.activeStatuses(), date, until, from, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Set<Long> closed = transactionTemplate.execute(status -> closeChunk(chunk, totals));
+            // Only the users whose reservation this run actually closed are notified
+            for (OpenReservation reservation : chunk) {
+                if (reservation.getUserId() != null && closed.contains(reservation.getId())) {
+                    userIds.add(reservation.getUserId());
+                }
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+
+        if (!userIds.isEmpty()) {
+            notifyUsers(branchId, date, userIds);
+        }
+        log.info("Closed branch = {}: {} completed, {} no-show", branchId, totals[0], totals[1]);
+        return new BranchClosing(branchId, totals[0], totals[1]);
+    }
+
+    // One UPDATE per (current status, service) pair in the chunk; counters move by the rows actually changed.
+    // Returns the ids of the reservations closed
+    private Set<Long> closeChunk(List<OpenReservation> chunk, int[] totals) {
+        Set<Long> closed = new HashSet<>();
+        Map<ReservationStatus, Map<Long, List<Long>>> groups = new HashMap<>();
+        for (OpenReservation reservation : chunk) {
+            groups.computeIfAbsent(reservation.getReservationStatus(), k -> new HashMap<>())
+                    .computeIfAbsent(reservation.getServiceId(), k -> new ArrayList<>())
+                    .add(reservation.getId());
+        }
+
+        groups.forEach((current, byService) -> {
+            ReservationStatus target = outcome(current);
+            byService.forEach((serviceId, ids) -> {
+                // Locked first, so the UPDATE changes exactly the rows still in the status
+                List<Long> open = reservationRepository.lockInStatus(ids, current.name());
+                if (open.isEmpty()) {
+                    return;
+                }
+                int changed = reservationRepository.updateStatus(open, current, target);
+                closed.addAll(open);
+                reservationCounts.adjust(serviceId, current, -changed);
+                reservationCounts.adjust(serviceId, target, changed);
+                totals[target == ReservationStatus.COMPLETED ? 0 : 1] += changed;
+            });
+        });
+        return closed;
+    }
+
+    private ReservationStatus outcome(ReservationStatus current) {
+        return current == ReservationStatus.CONFIRMED ? ReservationStatus.COMPLETED : unconfirmedOutcome;
+    }
+
+    // Una sola notificación por sede, enlazada a todos los usuarios afectados, o al resumen de cada uno si está activo
+    private void notifyUsers(Long branchId, LocalDate date, Set<Long> userIds) {
+        String branchName = branchRepository.findById(branchId).map(BranchEntity::getName).orElse("#" + branchId);
+        String message = "Las reservas hasta el " + date + " en " + branchName
+                + " fueron cerradas. Consulta el estado final en tu historial.";
+        if (digestService.isEnabled()) {
+            try {
+                digestService.submit(message, new ArrayList<>(userIds));
+            } catch (EntityNotFoundException e) {
+                log.info("No users left to notify of the closing of branch = {}", branchId);
+            }
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> createNotification(message, userIds));
+    }
+
+    private void createNotification(String message, Set<Long> userIds) {
+        NotificationEntity notification = new NotificationEntity();
+        notification.setMessage(message);
+        notification.setDate(new Date(System.currentTimeMillis()));
+        notification.setRead(false);
+        notificationRepository.save(notification);
+
+        // Bulk inserts into the join table, like NotificationService; users that no longer exist are skipped
+        List<Long> ids = new ArrayList<>(userIds);
+        List<Long> linked = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += LINK_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(start, Math.min(start + LINK_CHUNK_SIZE, ids.size()));
+            linked.addAll(unreadCounts.link(notification.getId(), chunk));
+        }
+        streamHub.publishAfterCommit(notification, linked);
+    }
+}
@@ -0,0 +1,218 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.BranchRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.BookedSlot;
+import co.edu.udistrital.mdp.back.repositories.ReservationSeriesRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservationSeriesService {
+
+    private static final String SERIES_NOT_FOUND_MESSAGE = "No reservation series found with ID: ";
+
+    static final int MAX_WINDOW_DAYS = 366;
+    // Open-ended series are checked for conflicts over this horizon only
+    static final int CONFLICT_HORIZON_DAYS = 365;
+
+    private static final Comparator<Occurrence> BY_DATE_AND_TIME = Comparator
+            .comparing(Occurrence::date)
+            .thenComparing(Occurrence::startTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ReservationSeriesRepository seriesRepository;
+    private final ReservationRepository reservationRepository;
+    private final BranchRepository branchRepository;
+    private final ServiceRepository serviceRepository;
+    private final UserRepository userRepository;
+    private final StaffAssignmentService staffAssignmentService;
+
+    public record Occurrence(ReservationSeriesEntity series, LocalDate date, LocalTime startTime,
+            LocalTime endTime) {
+    }
+
+    @Transactional
+    public ReservationSeriesEntity createSeries(ReservationSeriesEntity series)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting reservation series creation process");
+        validateSeries(series);
+
+        Long branchId = series.getBranch().getId();
+        // Locked like in ReservationService, so the conflict check sees every committed booking
+        series.setBranch(branchRepository.findByIdForUpdate(branchId)
+                .orElseThrow(() -> new EntityNotFoundException("Branch not found with id " + branchId)));
+
+        if (series.getService() != null && series.getService().getId() != null) {
+            Long serviceId = series.getService().getId();
+            series.setService(serviceRepository.findById(serviceId)
+                    .orElseThrow(() -> new EntityNotFoundException("Service not found with id " + serviceId)));
+        }
+
+        if (series.getUser() != null && series.getUser().getId() != null) {
+            Long userId = series.getUser().getId();
+            series.setUser(userRepository.findById(userId)
+                    .orElseThrow(() -> new EntityNotFoundException("User not found with id " + userId)));
+        }
+
+        checkConflicts(series);
+
+        ReservationSeriesEntity saved = seriesRepository.save(series);
+        log.info("Reservation series creation process finished with id = {}", saved.getId());
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public ReservationSeriesEntity getSeries(Long id) throws EntityNotFoundException {
+        return seriesRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(SERIES_NOT_FOUND_MESSAGE + id));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Occurrence> getOccurrences(Long seriesId, LocalDate from, LocalDate to)
+            throws EntityNotFoundException, IllegalOperationException {
+        validateWindow(from, to);
+        return expand(getSeries(seriesId), from, to);
+    }
+
+    // Calendario de una sede: solo se cargan las series que tocan la ventana
+    @Transactional(readOnly = true)
+    public List<Occurrence> getBranchOccurrences(Long branchId, LocalDate from, LocalDate to)
+            throws IllegalOperationException {
+        validateWindow(from, to);
+        List<Occurrence> occurrences = new ArrayList<>();
+        for (ReservationSeriesEntity series : seriesRepository.findActiveInWindow(branchId, from, to)) {
+            occurrences.addAll(expand(series, from, to));
+        }
+        occurrences.sort(BY_DATE_AND_TIME);
+        return occurrences;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean overlaps(Long branchId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        for (Occurrence occurrence : getBranchOccurrences(branchId, date, date)) {
+            if (overlaps(occurrence.startTime(), occurrence.endTime(), startTime, endTime)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Termina la serie en lastDate (inclusive); solo se permite acortarla
+    @Transactional
+    public ReservationSeriesEntity endSeries(Long id, LocalDate lastDate)
+            throws EntityNotFoundException, IllegalOperationException {
+        ReservationSeriesEntity series = getSeries(id);
+        if (lastDate == null || lastDate.isBefore(series.getStartDate())) {
+            throw new IllegalOperationException("The last date must be on or after the series start date.");
+        }
+        if (series.getEndDate() != null && lastDate.isAfter(series.getEndDate())) {
+            throw new IllegalOperationException("A reservation series can only be shortened.");
+        }
+        series.setEndDate(lastDate);
+        return seriesRepository.save(series);
+    }
+
+    @Transactional
+    public void deleteSeries(Long id) throws EntityNotFoundException {
+        ReservationSeriesEntity series = getSeries(id);
+        seriesRepository.delete(series);
+    }
+
+    private List<Occurrence> expand(ReservationSeriesEntity series, LocalDate from, LocalDate to) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        for (LocalDate date : series.getFrequency().datesBetween(series.getStartDate(), series.getEndDate(), from, to)) {
+            occurrences.add(new Occurrence(series, date, series.getStartTime(), series.getEndTime()));
+        }
+        return occurrences;
+    }
+
+    private void checkConflicts(ReservationSeriesEntity series) throws IllegalOperationException {
+        LocalDate start = series.getStartDate();
+        List<LocalDate> dates = series.getFrequency().datesBetween(start, series.getEndDate(), start,
+                start.plusDays(CONFLICT_HORIZON_DAYS));
+        if (dates.isEmpty()) {
+            return;
+        }
+        // With staff registered, the occurrences must fit the staff like any other booking
+        if (staffAssignmentService.checkSeries(series, dates)) {
+            return;
+        }
+        Long branchId = series.getBranch().getId();
+
+        for (BookedSlot slot : reservationRepository.findBookedSlotsOnDates(branchId, dates)) {
+            if (overlaps(slot.getStartTime(), slot.getEndTime(), series.getStartTime(), series.getEndTime())) {
+                throw new IllegalOperationException(
+                        "The series overlaps an existing reservation on " + slot.getReservationDate() + ".");
+            }
+        }
+
+        LocalDate first = dates.get(0);
+        LocalDate last = dates.get(dates.size() - 1);
+        Set<LocalDate> dateSet = new HashSet<>(dates);
+        for (ReservationSeriesEntity other : seriesRepository.findActiveInWindow(branchId, first, last)) {
+            if (!overlaps(other.getStartTime(), other.getEndTime(), series.getStartTime(), series.getEndTime())) {
+                continue;
+            }
+            for (LocalDate date : other.getFrequency().datesBetween(other.getStartDate(), other.getEndDate(), first, last)) {
+                if (dateSet.contains(date)) {
+                    throw new IllegalOperationException(
+                            "The series overlaps reservation series " + other.getId() + " on " + date + ".");
+                }
+            }
+        }
+    }
+
+    private void validateSeries(ReservationSeriesEntity series) throws IllegalOperationException {
+        if (series.getFrequency() == null) {
+            throw new IllegalOperationException("The series frequency is required.");
+        }
+        if (series.getStartDate() == null) {
+            throw new IllegalOperationException("The series start date is required.");
+        }
+        if (series.getEndDate() != null && series.getEndDate().isBefore(series.getStartDate())) {
+            throw new IllegalOperationException("The series end date must be on or after its start date.");
+        }
+        if (series.getStartTime() == null || series.getEndTime() == null
+                || !series.getEndTime().isAfter(series.getStartTime())) {
+            throw new IllegalOperationException("End time must be after start time.");
+        }
+        if (series.getBranch() == null || series.getBranch().getId() == null) {
+            throw new IllegalOperationException("The series branch is required.");
+        }
+    }
+
+    private void validateWindow(LocalDate from, LocalDate to) throws IllegalOperationException {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalOperationException("A valid date window is required.");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_WINDOW_DAYS) {
+            throw new IllegalOperationException("The date window cannot exceed " + MAX_WINDOW_DAYS + " days.");
+        }
+    }
+
+    private static boolean overlaps(LocalTime startA, LocalTime endA, LocalTime startB, LocalTime endB) {
+        if (startA == null || endA == null || startB == null || endB == null) {
+            return false;
+        }
+        return startA.isBefore(endB) && endA.isAfter(startB);
+    }
+}
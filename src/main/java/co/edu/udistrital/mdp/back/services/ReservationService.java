@@ -1,12 +1,20 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import javax.validation.Valid;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
 import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
 import co.edu.udistrital.mdp.back.repositories.BranchRepository;
@@ -23,6 +31,9 @@ public class ReservationService {
     private final ReservationRepository reservationRepository;
     private final BranchRepository branchRepository;
     private final ServiceRepository serviceRepository;
+    private final ServiceReservationCountService reservationCounts;
+    private final ReservationSeriesService reservationSeriesService;
+    private final StaffAssignmentService staffAssignmentService;
 
     @Transactional
     public ReservationEntity createReservation(@Valid ReservationEntity reservation)
@@ -30,7 +41,8 @@ public class ReservationService {
         validateReservationTimes(reservation);
         // Resolve branch and service entities if only ID provided
         if (reservation.getBranch() != null && reservation.getBranch().getId() != null) {
-            var branch = branchRepository.findById(reservation.getBranch().getId())
+            // First statement of the transaction: the overlap checks below then see every committed booking
+            var branch = branchRepository.findByIdForUpdate(reservation.getBranch().getId())
                     .orElseThrow(() -> new EntityNotFoundException(
                             "Branch not found with id " + reservation.getBranch().getId()));
             reservation.setBranch(branch);
@@ -43,7 +55,24 @@ public class ReservationService {
             reservation.setService(service);
         }
 
-        return reservationRepository.save(reservation);
+        if (reservation.getReservationStatus() == null) {
+            reservation.setReservationStatus(ReservationStatus.SCHEDULED);
+        } else if (!ReservationStatus.activeStatuses().contains(reservation.getReservationStatus())) {
+            throw new IllegalOperationException(
+                    "A reservation cannot be created in status " + reservation.getReservationStatus() + ".");
+        }
+
+        // Branches with staff are limited by staff; the rest keep one booking per time slot
+        StaffMemberEntity staff = staffAssignmentService.assignStaff(reservation);
+        if (staff != null) {
+            reservation.setStaff(staff);
+        } else {
+            validateNoOverlap(reservation);
+        }
+
+        ReservationEntity saved = reservationRepository.save(reservation);
+        adjustCount(saved.getService(), saved.getReservationStatus(), 1);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -65,6 +94,8 @@ public class ReservationService {
     @Transactional
     public ReservationEntity updateReservation(Long id, @Valid ReservationEntity reservation)
             throws IllegalOperationException {
+        // Both agendas are locked before anything is read, as in createReservation
+        lockBranches(reservationRepository.findBranchIdForUpdate(id), branchId(reservation));
         ReservationEntity existing = reservationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RESERVATION_NOT_FOUND_MESSAGE + id));
 
@@ -74,23 +105,130 @@ public class ReservationService {
             throw new IllegalOperationException("End time must be after start time.");
         }
 
+        ReservationStatus current = existing.getReservationStatus();
+        ReservationStatus target = reservation.getReservationStatus() != null
+                ? reservation.getReservationStatus()
+                : current;
+        if (!isValidTransition(current, target)) {
+            throw new IllegalOperationException("Invalid transition: " + current + " → " + target);
+        }
+        moveCount(existing.getService(), current, target);
+
+        boolean rescheduled = !Objects.equals(existing.getReservationDate(), reservation.getReservationDate())
+                || !Objects.equals(existing.getStartTime(), reservation.getStartTime())
+                || !Objects.equals(existing.getEndTime(), reservation.getEndTime())
+                || !Objects.equals(branchId(existing), branchId(reservation));
+        staffAssignmentService.evictDay(branchId(existing), existing.getReservationDate());
+
         existing.setReservationDate(reservation.getReservationDate());
-        existing.setReservationStatus(reservation.getReservationStatus());
+        existing.setReservationStatus(target);
         existing.setStartTime(reservation.getStartTime());
         existing.setEndTime(reservation.getEndTime());
         existing.setBranch(reservation.getBranch());
         existing.setUser(reservation.getUser());
 
+        if (rescheduled) {
+            existing.setStaff(null);
+            if (ReservationStatus.activeStatuses().contains(target)) {
+                StaffMemberEntity staff = staffAssignmentService.assignStaff(existing);
+                if (staff != null) {
+                    existing.setStaff(staff);
+                } else {
+                    validateNoOverlap(existing);
+                }
+            }
+        }
+
         return reservationRepository.save(existing);
     }
 
+    @Transactional
+    public ReservationEntity changeStatus(Long id, ReservationStatus newStatus)
+            throws IllegalOperationException {
+        // The row is locked before it is read, so two changes cannot both move the counters from the same status
+        reservationRepository.findBranchIdForUpdate(id);
+        ReservationEntity reservation = reservationRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(RESERVATION_NOT_FOUND_MESSAGE + id));
+
+        ReservationStatus current = reservation.getReservationStatus();
+        if (newStatus == null || !isValidTransition(current, newStatus)) {
+            throw new IllegalOperationException("Invalid transition: " + current + " → " + newStatus);
+        }
+        moveCount(reservation.getService(), current, newStatus);
+        reservation.setReservationStatus(newStatus);
+        staffAssignmentService.evictDay(branchId(reservation), reservation.getReservationDate());
+        return reservationRepository.save(reservation);
+    }
+
     @Transactional
     public void deleteReservation(Long id) {
+        // Locked first, as in changeStatus: a second delete waits and then finds the row gone
+        reservationRepository.findBranchIdForUpdate(id);
         ReservationEntity reservation = reservationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RESERVATION_NOT_FOUND_MESSAGE + id));
+        adjustCount(reservation.getService(), reservation.getReservationStatus(), -1);
+        staffAssignmentService.evictDay(branchId(reservation), reservation.getReservationDate());
         reservationRepository.delete(reservation);
     }
 
+    // =========================================================
+    // Máquina de estados y contadores por servicio
+    // =========================================================
+
+    private boolean isValidTransition(ReservationStatus current, ReservationStatus target) {
+        if (current == null || current == target) {
+            return true;
+        }
+        Set<ReservationStatus> allowed = switch (current) {
+            case SCHEDULED -> EnumSet.of(ReservationStatus.CONFIRMED, ReservationStatus.COMPLETED,
+                    ReservationStatus.CANCELLED, ReservationStatus.NO_SHOW);
+            case CONFIRMED -> EnumSet.of(ReservationStatus.COMPLETED, ReservationStatus.CANCELLED,
+                    ReservationStatus.NO_SHOW);
+            case COMPLETED, CANCELLED, NO_SHOW -> EnumSet.noneOf(ReservationStatus.class);
+        };
+        return allowed.contains(target);
+    }
+
+    private void moveCount(ServiceEntity service, ReservationStatus from, ReservationStatus to) {
+        if (from == to) {
+            return;
+        }
+        adjustCount(service, from, -1);
+        adjustCount(service, to, 1);
+    }
+
+    private void adjustCount(ServiceEntity service, ReservationStatus status, long delta) {
+        if (service != null) {
+            reservationCounts.adjust(service.getId(), status, delta);
+        }
+    }
+
+    // Always in id order, so two moves between the same branches cannot deadlock
+    private void lockBranches(Long... branchIds) {
+        new TreeSet<>(Arrays.stream(branchIds).filter(Objects::nonNull).toList())
+                .forEach(branchRepository::findByIdForUpdate);
+    }
+
+    // The slot must be free both of other reservations and of recurring series occurrences
+    private void validateNoOverlap(ReservationEntity reservation) throws IllegalOperationException {
+        if (reservation.getBranch() == null || reservation.getBranch().getId() == null
+                || reservation.getReservationDate() == null
+                || reservation.getStartTime() == null || reservation.getEndTime() == null) {
+            return;
+        }
+        Long branchId = reservation.getBranch().getId();
+        if (reservationRepository.existsOverlapping(branchId, reservation.getReservationDate(),
+                reservation.getStartTime(), reservation.getEndTime(), reservation.getId())
+                || reservationSeriesService.overlaps(branchId, reservation.getReservationDate(),
+                        reservation.getStartTime(), reservation.getEndTime())) {
+            throw new IllegalOperationException("The branch already has a reservation at that time.");
+        }
+    }
+
+    private static Long branchId(ReservationEntity reservation) {
+        return reservation.getBranch() != null ? reservation.getBranch().getId() : null;
+    }
+
     private void validateReservationTimes(ReservationEntity reservation)
             throws IllegalOperationException {
         if (reservation.getStartTime() != null && reservation.getEndTime() != null
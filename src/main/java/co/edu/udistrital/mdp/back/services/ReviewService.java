@@ -1,9 +1,12 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -11,6 +14,7 @@ import co.edu.udistrital.mdp.back.entities.ReviewEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
 import co.edu.udistrital.mdp.back.repositories.ReviewRepository;
+import co.edu.udistrital.mdp.back.repositories.ReviewRepository.ReviewView;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -18,16 +22,30 @@ import lombok.extern.slf4j.Slf4j;
 public class ReviewService {
 
     private static final String REVIEW_NOT_FOUND_MESSAGE = "The review was not found.";
+    private static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
     private ReviewRepository reviewRepository;
 
+    @Autowired
+    private ServiceRatingService serviceRatingService;
+
+    public record ReviewPage(List<ReviewView> reviews, String nextCursor) {
+    }
+
     @Transactional
     public ReviewEntity createReview(ReviewEntity review) throws IllegalOperationException {
         log.info("Starting review creation process with date = {}", review.getReviewDate());
         validateReview(review);
 
+        Long serviceId = serviceIdOf(review);
+        if (serviceId != null) {
+            serviceRatingService.prepare(serviceId);
+        }
         ReviewEntity savedReview = reviewRepository.save(review);
+        if (serviceId != null) {
+            serviceRatingService.added(serviceId, savedReview.getRating());
+        }
         log.info("Review creation process finished with id = {}", savedReview.getId());
         return savedReview;
     }
@@ -59,6 +77,94 @@ public class ReviewService {
         return reviews;
     }
 
+    /**
+     * Returns review rows with their author, without loading the entities.
+     *
+     * @param serviceId Only reviews of this service, or null for all
+     * @return The reviews in id order
+     */
+    @Transactional(readOnly = true)
+    public List<ReviewView> getReviewViews(Long serviceId) {
+        return reviewRepository.findViews(serviceId);
+    }
+
+    /**
+     * Lists reviews one page at a time, newest or best rated first. The
+     * cursor is {@code <date or rating>_<id>} of the last review of the
+     * previous page, so pages stay stable while new reviews arrive.
+     *
+     * @param serviceId Only reviews of this service, or null for all
+     * @param sort "date" or "rating"
+     * @param after The cursor returned with the previous page, or null for the first one
+     * @param limit Page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return The page and the cursor of the next one, null on the last page
+     * @throws IllegalOperationException If the sort or the cursor is not valid
+     */
+    @Transactional(readOnly = true)
+    public ReviewPage getReviewPage(Long serviceId, String sort, String after, int limit)
+            throws IllegalOperationException {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean byRating = parseSort(sort);
+        String afterValue = null;
+        long afterId = Long.MAX_VALUE;
+        if (after != null && !after.isBlank()) {
+            int separator = after.lastIndexOf('_');
+            if (separator <= 0) {
+                throw new IllegalOperationException("Invalid review cursor: " + after);
+            }
+            afterValue = after.substring(0, separator);
+            afterId = parseId(after.substring(separator + 1), after);
+        }
+
+        // One extra row tells whether there is a next page without counting
+        PageRequest pageable = PageRequest.of(0, size + 1);
+        List<ReviewView> reviews = byRating
+                ? reviewRepository.findPageByRating(serviceId, afterValue == null ? null : parseRating(afterValue, after),
+                        afterId, pageable)
+                : reviewRepository.findPageByDate(serviceId, afterValue == null ? null : parseDate(afterValue, after),
+                        afterId, pageable);
+        if (reviews.size() <= size) {
+            return new ReviewPage(reviews, null);
+        }
+        List<ReviewView> page = reviews.subList(0, size);
+        ReviewView last = page.get(size - 1);
+        return new ReviewPage(page, (byRating ? last.getRating() : last.getReviewDate()) + "_" + last.getId());
+    }
+
+    private static boolean parseSort(String sort) throws IllegalOperationException {
+        if (sort == null || sort.isBlank() || sort.equalsIgnoreCase("date")) {
+            return false;
+        }
+        if (sort.equalsIgnoreCase("rating")) {
+            return true;
+        }
+        throw new IllegalOperationException("Reviews can only be sorted by date or rating");
+    }
+
+    private static long parseId(String value, String cursor) throws IllegalOperationException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalOperationException("Invalid review cursor: " + cursor);
+        }
+    }
+
+    private static Integer parseRating(String value, String cursor) throws IllegalOperationException {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalOperationException("Invalid review cursor: " + cursor);
+        }
+    }
+
+    private static LocalDate parseDate(String value, String cursor) throws IllegalOperationException {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalOperationException("Invalid review cursor: " + cursor);
+        }
+    }
+
     @Transactional
     public ReviewEntity updateReview(Long id, ReviewEntity review)
             throws EntityNotFoundException, IllegalOperationException {
@@ -67,6 +173,16 @@ public class ReviewService {
         ReviewEntity existing = getReview(id);
         validateReview(review);
 
+        Long serviceId = serviceIdOf(existing);
+        if (serviceId != null) {
+            serviceRatingService.prepare(serviceId);
+            if (existing.getRating() == null) {
+                serviceRatingService.added(serviceId, review.getRating());
+            } else {
+                serviceRatingService.changed(serviceId, existing.getRating(), review.getRating());
+            }
+        }
+
         existing.setRating(review.getRating());
         existing.setComments(review.getComments());
         existing.setReviewDate(review.getReviewDate());
@@ -80,10 +196,19 @@ public class ReviewService {
     public void deleteReview(Long id) throws EntityNotFoundException {
         log.info("Starting review deletion process with id = {}", id);
         ReviewEntity review = getReview(id);
+        Long serviceId = serviceIdOf(review);
+        if (serviceId != null && review.getRating() != null) {
+            serviceRatingService.prepare(serviceId);
+            serviceRatingService.removed(serviceId, review.getRating());
+        }
         reviewRepository.delete(review);
         log.info("Review deletion process finished with id = {}", id);
     }
 
+    private static Long serviceIdOf(ReviewEntity review) {
+        return review.getService() == null ? null : review.getService().getId();
+    }
+
     private void validateReview(ReviewEntity review) throws IllegalOperationException {
         if (review.getRating() == null || review.getRating() < 1 || review.getRating() > 5) {
             throw new IllegalOperationException("The rating must be between 1 and 5.");
@@ -0,0 +1,121 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.ServiceRatingEntity;
+import co.edu.udistrital.mdp.back.repositories.ServiceRatingRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Calificación agregada de cada servicio. La fila de un servicio se crea a
+ * partir de sus reseñas la primera vez que se necesita; desde ahí cada cambio
+ * de una reseña la ajusta en su propia transacción, sin volver a leerlas.
+ */
+@Slf4j
+@Service
+public class ServiceRatingService {
+
+    private final ServiceRatingRepository ratingRepository;
+    private final TransactionTemplate newTransaction;
+
+    public ServiceRatingService(ServiceRatingRepository ratingRepository,
+            PlatformTransactionManager transactionManager) {
+        this.ratingRepository = ratingRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the rating aggregates of the given services, creating the
+     * missing ones from their reviews.
+     *
+     * @param serviceIds The service identifiers
+     * @return Aggregates by service id
+     */
+    public Map<Long, ServiceRatingEntity> getRatings(Collection<Long> serviceIds) {
+        Map<Long, ServiceRatingEntity> ratings = new HashMap<>();
+        if (serviceIds.isEmpty()) {
+            return ratings;
+        }
+        ratingRepository.findByServiceIdIn(serviceIds).forEach(r -> ratings.put(r.getServiceId(), r));
+        List<Long> missing = serviceIds.stream().filter(id -> !ratings.containsKey(id)).distinct().toList();
+        if (!missing.isEmpty()) {
+            missing.forEach(this::prepare);
+            ratingRepository.findByServiceIdIn(missing).forEach(r -> ratings.put(r.getServiceId(), r));
+        }
+        return ratings;
+    }
+
+    /**
+     * Makes sure the service has its aggregate row. The row is built from the
+     * committed reviews in a separate transaction, so callers must run this
+     * before they write any review of the service: otherwise the count would
+     * wait on their own uncommitted rows.
+     *
+     * @param serviceId The service identifier
+     */
+    public void prepare(Long serviceId) {
+        if (ratingRepository.existsById(serviceId)) {
+            return;
+        }
+        try {
+            newTransaction.executeWithoutResult(status -> ratingRepository.initialize(serviceId));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Rating aggregate of service = {} created concurrently", serviceId);
+        }
+    }
+
+    /** Records a new review of the service. {@link #prepare} must have run first. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void added(Long serviceId, int rating) {
+        apply(serviceId, 1, rating, histogram(rating, 1));
+    }
+
+    /** Records that a review of the service went from one rating to another. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void changed(Long serviceId, int oldRating, int newRating) {
+        if (oldRating == newRating) {
+            return;
+        }
+        long[] stars = histogram(oldRating, -1);
+        addStar(stars, newRating, 1);
+        apply(serviceId, 0, (long) newRating - oldRating, stars);
+    }
+
+    /** Records that a review of the service was deleted. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removed(Long serviceId, int rating) {
+        apply(serviceId, -1, -rating, histogram(rating, -1));
+    }
+
+    private void apply(Long serviceId, long count, long sum, long[] stars) {
+        if (ratingRepository.adjust(serviceId, count, sum, stars[0], stars[1], stars[2], stars[3], stars[4]) == 0) {
+            // Only reached when prepare was skipped; the row is built from the reviews later on
+            log.warn("Rating aggregate of service = {} does not exist yet", serviceId);
+        }
+    }
+
+    private static long[] histogram(int rating, long delta) {
+        long[] stars = new long[5];
+        addStar(stars, rating, delta);
+        return stars;
+    }
+
+    // Ratings outside 1-5 predate validation and only count towards the total and sum
+    private static void addStar(long[] stars, int rating, long delta) {
+        if (rating >= 1 && rating <= 5) {
+            stars[rating - 1] += delta;
+        }
+    }
+}
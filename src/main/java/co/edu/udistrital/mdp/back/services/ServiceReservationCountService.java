@@ -0,0 +1,86 @@
+package co.edu.udistrital.mdp.back.services;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceReservationCountRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Contadores de reservas por servicio y estado. Las reservas y el cierre del
+ * día los ajustan en la misma transacción en que cambian los estados; al
+ * arrancar se normalizan los estados antiguos y se recalculan los contadores.
+ */
+@Slf4j
+@Service
+public class ServiceReservationCountService {
+
+    private final ServiceReservationCountRepository countRepository;
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate newTransaction;
+
+    public ServiceReservationCountService(ServiceReservationCountRepository countRepository,
+            ReservationRepository reservationRepository, PlatformTransactionManager transactionManager) {
+        this.countRepository = countRepository;
+        this.reservationRepository = reservationRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Estados de texto libre de versiones anteriores y contadores que nunca se crearon o se desviaron
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void migrate() {
+        int normalized = reservationRepository.normalizeLegacyStatuses();
+        if (normalized > 0) {
+            log.info("Normalized the status of {} legacy reservations", normalized);
+        }
+        int cleared = reservationRepository.clearUnknownStatuses();
+        if (cleared > 0) {
+            log.warn("Cleared the unknown status of {} reservations", cleared);
+        }
+        int created = countRepository.createMissingRows();
+        int corrected = countRepository.reconcile();
+        if (created > 0 || corrected > 0) {
+            log.info("Created {} and corrected {} service reservation counters", created, corrected);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the counter of the service and status. A missing
+     * counter is created first, in its own transaction and before anything is
+     * locked here, so a concurrent first reservation only finds it already there.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void adjust(Long serviceId, ReservationStatus status, long delta) {
+        if (serviceId == null || status == null || delta == 0) {
+            return;
+        }
+        if (!countRepository.existsByService_IdAndStatus(serviceId, status)) {
+            if (delta < 0) {
+                // Nothing was counted yet; the startup reconcile covers it
+                return;
+            }
+            try {
+                newTransaction.executeWithoutResult(s -> countRepository.insertIfAbsent(serviceId, status.name()));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Reservation counter of service = {} and status = {} created concurrently",
+                        serviceId, status);
+            }
+        }
+        if (countRepository.addToTotal(serviceId, status, delta) == 0) {
+            // A service saved in this same transaction is not visible to the new one
+            countRepository.insertIfAbsent(serviceId, status.name());
+            countRepository.addToTotal(serviceId, status, delta);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceReservationCountEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
-import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRatingRepository;
 import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceReservationCountRepository;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,12 +22,16 @@ public class ServiceService {
     private static final String SERVICE_NOT_FOUND_MESSAGE = "Service not found";
 
     private final ServiceRepository serviceRepository;
-    private final ReservationRepository reservationRepository;
+    private final ServiceReservationCountRepository reservationCountRepository;
+    private final ServiceRatingRepository ratingRepository;
 
     // Constructor injection
-    public ServiceService(ServiceRepository serviceRepository, ReservationRepository reservationRepository) {
+    public ServiceService(ServiceRepository serviceRepository,
+            ServiceReservationCountRepository reservationCountRepository,
+            ServiceRatingRepository ratingRepository) {
         this.serviceRepository = serviceRepository;
-        this.reservationRepository = reservationRepository;
+        this.reservationCountRepository = reservationCountRepository;
+        this.ratingRepository = ratingRepository;
     }
 
     // Validar que el precio sea mayor o igual a 0
@@ -35,7 +44,7 @@ public class ServiceService {
     // Obtener todos los servicios
     @Transactional(readOnly = true)
     public List<ServiceEntity> getAllServices() {
-        return serviceRepository.findAll();
+        return serviceRepository.findAllWithMultimedia();
     }
 
     // Obtener un servicio por su ID
@@ -49,7 +58,13 @@ public class ServiceService {
     @Transactional
     public ServiceEntity save(ServiceEntity service) throws IllegalOperationException {
         validatePrice(service.getPrice());
-        return serviceRepository.save(service);
+        boolean creating = service.getId() == null;
+        ServiceEntity saved = serviceRepository.save(service);
+        if (creating) {
+            // Zero counters up front, so its reservations only ever update them
+            reservationCountRepository.createRows(saved.getId());
+        }
+        return saved;
     }
 
     // Actualizar un servicio
@@ -73,12 +88,30 @@ public class ServiceService {
         ServiceEntity service = serviceRepository.findById(serviceId)
                 .orElseThrow(() -> new EntityNotFoundException(SERVICE_NOT_FOUND_MESSAGE));
 
-        int activeReservations = reservationRepository.countByService_IdAndReservationStatus(serviceId, "SCHEDULED");
+        long activeReservations = reservationCountRepository.sumTotals(serviceId, ReservationStatus.activeStatuses());
 
         if (activeReservations > 0) {
             throw new IllegalOperationException("Cannot delete service with active reservations");
         }
 
+        reservationCountRepository.deleteByService_Id(serviceId);
+        ratingRepository.deleteById(serviceId);
         serviceRepository.delete(service);
     }
+
+    // Conteo de reservas por estado, leído de los contadores mantenidos por ReservationService
+    @Transactional(readOnly = true)
+    public Map<ReservationStatus, Long> getReservationCounts(Long serviceId) throws EntityNotFoundException {
+        if (!serviceRepository.existsById(serviceId)) {
+            throw new EntityNotFoundException(SERVICE_NOT_FOUND_MESSAGE);
+        }
+        Map<ReservationStatus, Long> counts = new EnumMap<>(ReservationStatus.class);
+        for (ReservationStatus status : ReservationStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (ServiceReservationCountEntity count : reservationCountRepository.findByService_Id(serviceId)) {
+            counts.put(count.getStatus(), count.getTotal());
+        }
+        return counts;
+    }
 }
\ No newline at end of file
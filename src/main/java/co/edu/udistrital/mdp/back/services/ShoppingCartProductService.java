@@ -6,10 +6,11 @@ import java.util.Optional;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
-import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
 import co.edu.udistrital.mdp.back.repositories.ProductRepository;
 import co.edu.udistrital.mdp.back.repositories.ShoppingCartRepository;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,9 @@ public class ShoppingCartProductService {
     // Campos final para inyección por constructor
     private final ShoppingCartRepository shoppingCartRepository;
     private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    // Los productos de un carrito son sus líneas: todo cambio pasa por el servicio del carrito
+    private final ShoppingCartService shoppingCartService;
 
     @Transactional
     public ProductEntity addProduct(Long shoppingCartId, Long productId) 
@@ -34,9 +38,7 @@ public class ShoppingCartProductService {
         log.info("Starting process to associate product with id = {} to shopping cart with id = {}", 
                 productId, shoppingCartId);
         
-        Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId);
-        if (shoppingCartEntity.isEmpty())
-            throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
+        shoppingCartService.lockForUpdate(shoppingCartId);
 
         Optional<ProductEntity> productEntity = productRepository.findById(productId);
         if (productEntity.isEmpty())
@@ -46,11 +48,9 @@ public class ShoppingCartProductService {
             throw new IllegalOperationException("Cannot add product without stock to cart");
         }
 
-        if (!shoppingCartEntity.get().getProducts().contains(productEntity.get())) {
-            shoppingCartEntity.get().getProducts().add(productEntity.get());
-            double newTotal = shoppingCartEntity.get().getTotal() + productEntity.get().getPrice();
-            shoppingCartEntity.get().setTotal(newTotal);
-            shoppingCartRepository.save(shoppingCartEntity.get());
+        // Associating is adding one unit; a product already in the cart keeps its line
+        if (cartItemRepository.findByShoppingCart_IdAndProduct_Id(shoppingCartId, productId).isEmpty()) {
+            shoppingCartService.addProductToCart(shoppingCartId, productId);
         }
 
         log.info("Finishing process to associate product with id = {} to shopping cart with id = {}", 
@@ -62,12 +62,13 @@ public class ShoppingCartProductService {
     public List<ProductEntity> getProducts(Long shoppingCartId) throws EntityNotFoundException {
         log.info("Starting process to query all products of shopping cart with id = {}", shoppingCartId);
         
-        Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId);
-        if (shoppingCartEntity.isEmpty())
+        if (!shoppingCartRepository.existsById(shoppingCartId))
             throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
 
         log.info("Finishing process to query all products of shopping cart with id = {}", shoppingCartId);
-        return shoppingCartEntity.get().getProducts();
+        return cartItemRepository.findByShoppingCart_Id(shoppingCartId).stream()
+                .map(CartItemEntity::getProduct)
+                .toList();
     }
 
     @Transactional
@@ -76,8 +77,7 @@ public class ShoppingCartProductService {
         log.info("Starting process to query product with id = {} of shopping cart with id = {}", 
                 productId, shoppingCartId);
         
-        Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId);
-        if (shoppingCartEntity.isEmpty())
+        if (!shoppingCartRepository.existsById(shoppingCartId))
             throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
 
         Optional<ProductEntity> productEntity = productRepository.findById(productId);
@@ -87,7 +87,7 @@ public class ShoppingCartProductService {
         log.info("Finishing process to query product with id = {} of shopping cart with id = {}", 
                 productId, shoppingCartId);
         
-        if (!shoppingCartEntity.get().getProducts().contains(productEntity.get()))
+        if (cartItemRepository.findByShoppingCart_IdAndProduct_Id(shoppingCartId, productId).isEmpty())
             throw new IllegalOperationException("The product is not associated to the shopping cart");
 
         return productEntity.get();
@@ -95,30 +95,16 @@ public class ShoppingCartProductService {
 
     @Transactional
     public List<ProductEntity> replaceProducts(Long shoppingCartId, List<ProductEntity> products) 
-            throws EntityNotFoundException {
+            throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to replace products associated with shopping cart with id = {}", 
                 shoppingCartId);
         
-        Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId);
-        if (shoppingCartEntity.isEmpty())
-            throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
-
-        double newTotal = 0.0;
-        for (ProductEntity product : products) {
-            Optional<ProductEntity> productEntity = productRepository.findById(product.getId());
-            if (productEntity.isEmpty())
-                throw new EntityNotFoundException(String.format(PRODUCT_NOT_FOUND, product.getId()));
-            
-            newTotal += productEntity.get().getPrice();
-        }
-
-        shoppingCartEntity.get().setProducts(products);
-        shoppingCartEntity.get().setTotal(newTotal);
-        shoppingCartRepository.save(shoppingCartEntity.get());
+        // Each product is linked once, so a repeated id is rejected rather than dropped
+        List<ProductEntity> replaced = shoppingCartService.replaceProductsInCart(shoppingCartId, products);
 
         log.info("Finishing process to replace products associated with shopping cart with id = {}", 
                 shoppingCartId);
-        return shoppingCartEntity.get().getProducts();
+        return replaced;
     }
 
     @Transactional
@@ -126,21 +112,9 @@ public class ShoppingCartProductService {
         log.info("Starting process to remove product with id = {} from shopping cart with id = {}", 
                 productId, shoppingCartId);
         
-        Optional<ShoppingCartEntity> shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId);
-        if (shoppingCartEntity.isEmpty())
-            throw new EntityNotFoundException(String.format(SHOPPING_CART_NOT_FOUND, shoppingCartId));
-
-        Optional<ProductEntity> productEntity = productRepository.findById(productId);
-        if (productEntity.isEmpty())
-            throw new EntityNotFoundException(String.format(PRODUCT_NOT_FOUND, productId));
-
-        shoppingCartEntity.get().getProducts().remove(productEntity.get());
-        
-        double newTotal = shoppingCartEntity.get().getTotal() - productEntity.get().getPrice();
-        shoppingCartEntity.get().setTotal(Math.max(0, newTotal));
-        shoppingCartRepository.save(shoppingCartEntity.get());
+        shoppingCartService.removeLineFromCart(shoppingCartId, productId);
 
         log.info("Finishing process to remove product with id = {} from shopping cart with id = {}", 
                 productId, shoppingCartId);
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,27 @@
 package co.edu.udistrital.mdp.back.services;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
 import co.edu.udistrital.mdp.back.repositories.ProductRepository;
 import co.edu.udistrital.mdp.back.repositories.ShoppingCartRepository;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
@@ -33,14 +45,21 @@ public class ShoppingCartService {
     private final ShoppingCartRepository shoppingCartRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    private final TransactionTemplate repriceTransaction;
 
     // Constructor para inyección de dependencias
     public ShoppingCartService(ShoppingCartRepository shoppingCartRepository,
             UserRepository userRepository,
-            ProductRepository productRepository) {
+            ProductRepository productRepository,
+            CartItemRepository cartItemRepository,
+            PlatformTransactionManager transactionManager) {
         this.shoppingCartRepository = shoppingCartRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.repriceTransaction = new TransactionTemplate(transactionManager);
+        this.repriceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     /**
@@ -61,9 +80,10 @@ public class ShoppingCartService {
      * @return The shopping cart found
      * @throws EntityNotFoundException If the shopping cart does not exist
      */
-    @Transactional
+    @Transactional(readOnly = true, isolation = Isolation.READ_COMMITTED)
     public ShoppingCartEntity getShoppingCart(Long shoppingCartId) throws EntityNotFoundException {
         log.info("Starting process to query shopping cart with id = {}", shoppingCartId);
+        repriceBeforeRead(shoppingCartId);
         ShoppingCartEntity shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId)
                 .orElseThrow(() -> new EntityNotFoundException(
                 SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX));
@@ -99,12 +119,14 @@ public class ShoppingCartService {
         }
 
         shoppingCartEntity.setUser(userEntity);
+        shoppingCartEntity.setLastActivity(LocalDateTime.now());
         log.info("Finishing process to create shopping cart");
         return shoppingCartRepository.save(shoppingCartEntity);
     }
 
     /**
-     * Updates a shopping cart
+     * Updates a shopping cart. The total is always computed on the server
+     * from the cart lines, so a total sent by the client is ignored.
      *
      * Business Rule: Cannot add non-existent products to cart
      *
@@ -119,27 +141,21 @@ public class ShoppingCartService {
     public ShoppingCartEntity updateShoppingCart(Long shoppingCartId, ShoppingCartEntity shoppingCart)
             throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to update shopping cart with id = {}", shoppingCartId);
+        ShoppingCartEntity shoppingCartEntity = lockForUpdate(shoppingCartId);
 
-        ShoppingCartEntity shoppingCartEntity = shoppingCartRepository.findById(shoppingCartId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX));
-
+        // An empty list leaves the products as they are (the cart DTO does not carry them)
         if (shoppingCart.getProducts() != null && !shoppingCart.getProducts().isEmpty()) {
-            for (ProductEntity product : shoppingCart.getProducts()) {
-                if (product.getId() == null) {
-                    throw new IllegalOperationException("Cannot add a product without ID to cart");
-                }
-                productRepository.findById(product.getId())
-                        .orElseThrow(() -> new IllegalOperationException(
-                        "Cannot add non-existent product with id = " + product.getId() + " to cart"));
-            }
+            List<ProductEntity> products = EntityLookup.findAllInOrder(productRepository, shoppingCart.getProducts(),
+                    "product", id -> new IllegalOperationException(
+                    "Cannot add non-existent product with id = " + id + " to cart"));
+            replaceLines(shoppingCartEntity, products);
         }
 
-        shoppingCartEntity.setTotal(shoppingCart.getTotal());
-        shoppingCartEntity.setProducts(shoppingCart.getProducts());
+        shoppingCartEntity.setLastActivity(LocalDateTime.now());
+        ShoppingCartEntity saved = shoppingCartRepository.save(shoppingCartEntity);
 
         log.info("Finishing process to update shopping cart with id = {}", shoppingCartId);
-        return shoppingCartRepository.save(shoppingCartEntity);
+        return saved;
     }
 
     /**
@@ -169,7 +185,7 @@ public class ShoppingCartService {
     }
 
     /**
-     * Adds a product to the shopping cart
+     * Adds one unit of a product to the shopping cart
      *
      * @param shoppingCartId The ID of the shopping cart
      * @param productId The ID of the product to add
@@ -180,50 +196,261 @@ public class ShoppingCartService {
     @Transactional
     public ShoppingCartEntity addProductToCart(Long shoppingCartId, Long productId)
             throws EntityNotFoundException, IllegalOperationException {
-        log.info("Starting process to add product with id = {} to cart with id = {}", productId, shoppingCartId);
+        return addProductToCart(shoppingCartId, productId, 1);
+    }
 
-        ShoppingCartEntity cart = shoppingCartRepository.findById(shoppingCartId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX));
+    /**
+     * Adds units of a product to the shopping cart. The cart keeps one line
+     * per product, so this inserts or updates a single row.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @param productId The ID of the product to add
+     * @param quantity Units to add
+     * @return The updated shopping cart
+     * @throws EntityNotFoundException If cart or product does not exist
+     * @throws IllegalOperationException If the quantity is not positive
+     */
+    @Transactional
+    public ShoppingCartEntity addProductToCart(Long shoppingCartId, Long productId, int quantity)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting process to add {} units of product with id = {} to cart with id = {}",
+                quantity, productId, shoppingCartId);
+
+        if (quantity <= 0) {
+            throw new IllegalOperationException("The quantity must be greater than 0");
+        }
+        ShoppingCartEntity cart = lockForUpdate(shoppingCartId);
 
         ProductEntity product = productRepository.findById(productId)
                 .orElseThrow(() -> new EntityNotFoundException(
                 PRODUCT_NOT_FOUND_PREFIX + productId + NOT_FOUND_SUFFIX));
 
-        cart.getProducts().add(product);
-        double newTotal = cart.getTotal() + product.getPrice();
-        cart.setTotal(newTotal);
+        CartItemEntity item = cartItemRepository.findByShoppingCart_IdAndProduct_Id(shoppingCartId, productId)
+                .orElse(null);
+        if (item == null) {
+            item = new CartItemEntity();
+            item.setShoppingCart(cart);
+            item.setProduct(product);
+            item.setUnitPrice(product.getPrice() != null ? product.getPrice() : 0.0);
+            item.setPriceVersion(product.getPriceVersion());
+            if (Hibernate.isInitialized(cart.getItems())) {
+                cart.getItems().add(item);
+            }
+            link(cart, product);
+        }
+        item.setQuantity(item.getQuantity() + quantity);
+        cartItemRepository.save(item);
+
+        cart.setTotal(toMoney(cart.getTotal() + item.getUnitPrice() * quantity));
+        cart.setLastActivity(LocalDateTime.now());
 
         log.info("Finishing process to add product to cart");
         return shoppingCartRepository.save(cart);
     }
 
     /**
-     * Removes a product from the shopping cart
+     * Removes one unit of a product from the shopping cart; the line is
+     * deleted when its last unit is removed
      *
      * @param shoppingCartId The ID of the shopping cart
      * @param productId The ID of the product to remove
      * @return The updated shopping cart
      * @throws EntityNotFoundException If cart or product does not exist
+     * @throws IllegalOperationException If the product is not in the cart
      */
     @Transactional
     public ShoppingCartEntity removeProductFromCart(Long shoppingCartId, Long productId)
-            throws EntityNotFoundException {
+            throws EntityNotFoundException, IllegalOperationException {
         log.info("Starting process to remove product with id = {} from cart with id = {}", productId, shoppingCartId);
+        ShoppingCartEntity cart = lockForUpdate(shoppingCartId);
 
-        ShoppingCartEntity cart = shoppingCartRepository.findById(shoppingCartId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX));
+        if (!productRepository.existsById(productId)) {
+            throw new EntityNotFoundException(PRODUCT_NOT_FOUND_PREFIX + productId + NOT_FOUND_SUFFIX);
+        }
 
-        ProductEntity product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                PRODUCT_NOT_FOUND_PREFIX + productId + NOT_FOUND_SUFFIX));
+        CartItemEntity item = cartItemRepository.findByShoppingCart_IdAndProduct_Id(shoppingCartId, productId)
+                .orElseThrow(() -> new IllegalOperationException(
+                PRODUCT_NOT_FOUND_PREFIX + productId + " is not in the shopping cart"));
 
-        cart.getProducts().remove(product);
-        double newTotal = cart.getTotal() - product.getPrice();
-        cart.setTotal(Math.max(0, newTotal));
+        if (item.getQuantity() > 1) {
+            item.setQuantity(item.getQuantity() - 1);
+            cartItemRepository.save(item);
+        } else {
+            if (Hibernate.isInitialized(cart.getItems())) {
+                cart.getItems().remove(item);
+            }
+            cartItemRepository.delete(item);
+            unlink(cart, productId);
+        }
+        cart.setTotal(toMoney(Math.max(0, cart.getTotal() - item.getUnitPrice())));
+        cart.setLastActivity(LocalDateTime.now());
 
         log.info("Finishing process to remove product from cart");
         return shoppingCartRepository.save(cart);
     }
+
+    /**
+     * Removes a product from the shopping cart together with all its units.
+     * A product that is not in the cart is left as it is.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @param productId The ID of the product to remove
+     * @return The updated shopping cart
+     * @throws EntityNotFoundException If cart or product does not exist
+     */
+    @Transactional
+    public ShoppingCartEntity removeLineFromCart(Long shoppingCartId, Long productId) throws EntityNotFoundException {
+        log.info("Starting process to remove all units of product with id = {} from cart with id = {}",
+                productId, shoppingCartId);
+        ShoppingCartEntity cart = lockForUpdate(shoppingCartId);
+
+        if (!productRepository.existsById(productId)) {
+            throw new EntityNotFoundException(PRODUCT_NOT_FOUND_PREFIX + productId + NOT_FOUND_SUFFIX);
+        }
+
+        cartItemRepository.findByShoppingCart_IdAndProduct_Id(shoppingCartId, productId).ifPresent(item -> {
+            if (Hibernate.isInitialized(cart.getItems())) {
+                cart.getItems().remove(item);
+            }
+            cartItemRepository.delete(item);
+            cart.setTotal(toMoney(Math.max(0, cart.getTotal() - item.getUnitPrice() * item.getQuantity())));
+        });
+        unlink(cart, productId);
+        cart.setLastActivity(LocalDateTime.now());
+
+        log.info("Finishing process to remove all units of product from cart");
+        return shoppingCartRepository.save(cart);
+    }
+
+    /**
+     * Leaves the shopping cart with exactly the given products. Products
+     * already in the cart keep their line; new ones get a line with one unit
+     * at the current price.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @param products Products carrying only their id
+     * @return The products of the cart, in the order received
+     * @throws EntityNotFoundException If the cart or a product does not exist
+     * @throws IllegalOperationException If a product is listed more than once
+     */
+    @Transactional
+    public List<ProductEntity> replaceProductsInCart(Long shoppingCartId, List<ProductEntity> products)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting process to replace products of cart with id = {}", shoppingCartId);
+        ShoppingCartEntity cart = lockForUpdate(shoppingCartId);
+
+        List<ProductEntity> resolved = EntityLookup.findAllInOrder(productRepository, products, "product",
+                id -> new EntityNotFoundException(PRODUCT_NOT_FOUND_PREFIX + id + NOT_FOUND_SUFFIX));
+        replaceLines(cart, resolved);
+        cart.setLastActivity(LocalDateTime.now());
+        shoppingCartRepository.save(cart);
+
+        log.info("Finishing process to replace products of cart with id = {}", shoppingCartId);
+        return resolved;
+    }
+
+    // Constant number of statements whatever the size of the cart
+    private void replaceLines(ShoppingCartEntity cart, List<ProductEntity> products) {
+        Long cartId = cart.getId();
+        List<Long> productIds = products.stream().map(ProductEntity::getId).toList();
+        if (productIds.isEmpty()) {
+            cartItemRepository.deleteByShoppingCartIds(List.of(cartId));
+        } else {
+            cartItemRepository.deleteOtherLines(cartId, productIds);
+            cartItemRepository.insertMissingLines(cartId, productIds);
+        }
+        productRepository.replaceCartProducts(cartId, productIds);
+        cart.setProducts(new ArrayList<>(products));
+        cart.setTotal(toMoney(cartItemRepository.sumTotal(cartId)));
+    }
+
+    // The lines are the contents of a cart; the product links only mirror them
+    private void link(ShoppingCartEntity cart, ProductEntity product) {
+        productRepository.linkProducts(cart.getId(), List.of(product.getId()));
+        if (Hibernate.isInitialized(cart.getProducts()) && !cart.getProducts().contains(product)) {
+            cart.getProducts().add(product);
+        }
+    }
+
+    private void unlink(ShoppingCartEntity cart, Long productId) {
+        productRepository.unlinkProducts(cart.getId(), List.of(productId));
+        if (Hibernate.isInitialized(cart.getProducts())) {
+            cart.getProducts().removeIf(product -> productId.equals(product.getId()));
+        }
+    }
+
+    /**
+     * Returns the lines of a shopping cart
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @return The cart lines
+     * @throws EntityNotFoundException If the shopping cart does not exist
+     */
+    @Transactional(readOnly = true, isolation = Isolation.READ_COMMITTED)
+    public List<CartItemEntity> getItems(Long shoppingCartId) throws EntityNotFoundException {
+        repriceBeforeRead(shoppingCartId);
+        if (!shoppingCartRepository.existsById(shoppingCartId)) {
+            throw new EntityNotFoundException(SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX);
+        }
+        return cartItemRepository.findByShoppingCart_Id(shoppingCartId);
+    }
+
+    // Reads take no lock. Only a cart with stale prices is locked and repriced, in its own
+    // transaction; read committed lets the rest of the read see the result
+    private void repriceBeforeRead(Long shoppingCartId) {
+        if (cartItemRepository.existsStalePrice(shoppingCartId)) {
+            repriceTransaction.executeWithoutResult(status -> repriceIfStale(shoppingCartId));
+        }
+    }
+
+    /**
+     * Locks the cart row and brings its lines up to the current product
+     * prices. Every change of a cart starts here: with the lock as the
+     * first statement of the transaction, what is read afterwards includes
+     * every change committed before it, and stale lines are repriced under
+     * the lock, cart first and lines second like any other change.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @return The locked cart, with its total up to date
+     * @throws EntityNotFoundException If the shopping cart does not exist
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ShoppingCartEntity lockForUpdate(Long shoppingCartId) throws EntityNotFoundException {
+        shoppingCartRepository.findByIdForUpdate(shoppingCartId)
+                .orElseThrow(() -> new EntityNotFoundException(
+                SHOPPING_CART_NOT_FOUND_PREFIX + shoppingCartId + NOT_FOUND_SUFFIX));
+        reprice(shoppingCartId);
+        // Same instance unless the reprice cleared the persistence context
+        return shoppingCartRepository.findById(shoppingCartId).orElseThrow();
+    }
+
+    /**
+     * Brings the cart lines up to the current product prices when any of them
+     * changed since the line was priced, and recomputes the total from the
+     * lines. A cart with fresh prices costs the lock and a single version check.
+     *
+     * @param shoppingCartId The ID of the shopping cart
+     * @return Whether the cart had to be repriced
+     */
+    @Transactional
+    public boolean repriceIfStale(Long shoppingCartId) {
+        return shoppingCartRepository.findByIdForUpdate(shoppingCartId).isPresent() && reprice(shoppingCartId);
+    }
+
+    // Only under the cart lock
+    private boolean reprice(Long shoppingCartId) {
+        if (!cartItemRepository.existsStalePrice(shoppingCartId)) {
+            return false;
+        }
+        int repriced = cartItemRepository.refreshPrices(shoppingCartId);
+        double total = toMoney(cartItemRepository.sumTotal(shoppingCartId));
+        shoppingCartRepository.findById(shoppingCartId).ifPresent(cart -> cart.setTotal(total));
+        log.info("Repriced {} lines of shopping cart with id = {}", repriced, shoppingCartId);
+        return true;
+    }
+
+    // Los totales se acumulan en double; se redondean a centavos en cada cambio para que no se desvíen
+    static double toMoney(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
 }
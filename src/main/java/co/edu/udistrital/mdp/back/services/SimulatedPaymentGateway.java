@@ -0,0 +1,46 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Procesador de pagos local para desarrollo y pruebas de carga: responde
+ * después de una latencia configurable y rechaza una fracción de los cobros.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.gateway", havingValue = "simulator", matchIfMissing = true)
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+
+    public SimulatedPaymentGateway(@Value("${payments.simulator.latency-ms:200}") long latencyMillis,
+            @Value("${payments.simulator.jitter-ms:100}") long jitterMillis,
+            @Value("${payments.simulator.failure-rate:0.1}") double failureRate) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.failureRate = Math.min(1.0, Math.max(0.0, failureRate));
+    }
+
+    @Override
+    public Result charge(Charge charge) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.declined("Interrupted before the processor answered");
+            }
+        }
+        if (random.nextDouble() < failureRate) {
+            return Result.declined("Declined by simulator");
+        }
+        return Result.approved("SIM-" + charge.paymentId());
+    }
+}
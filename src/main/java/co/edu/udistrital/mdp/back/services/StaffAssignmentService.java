@@ -0,0 +1,461 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
+import co.edu.udistrital.mdp.back.entities.StaffShiftEntity;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.DatedStaffSlot;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.StaffSlot;
+import co.edu.udistrital.mdp.back.repositories.ReservationSeriesRepository;
+import co.edu.udistrital.mdp.back.repositories.StaffMemberRepository;
+import co.edu.udistrital.mdp.back.repositories.StaffShiftRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Elige qué miembro del personal atiende cada nueva reserva. La plantilla de
+ * cada sede y la agenda de cada día se guardan en memoria; la agenda se
+ * actualiza al confirmar la transacción y la asignación elegida se verifica
+ * contra la base de datos antes de usarla.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StaffAssignmentService {
+
+    private static final String NO_STAFF_AVAILABLE = "No staff member is available for that service and time.";
+
+    static final int MAX_CACHED_BRANCHES = 256;
+    static final int MAX_CACHED_DAYS = 512;
+    // Past this many explored nodes the search gives way to a greedy pass over the same demands
+    static final int MAX_SEARCH_NODES = 5_000;
+
+    private final StaffMemberRepository staffMemberRepository;
+    private final StaffShiftRepository staffShiftRepository;
+    private final ReservationRepository reservationRepository;
+    // Series are read directly: ReservationSeriesService asks this service to check new series
+    private final ReservationSeriesRepository seriesRepository;
+
+    private final Map<Long, List<StaffInfo>> rosters = lruMap(MAX_CACHED_BRANCHES);
+    private final Map<DayKey, DaySchedule> days = lruMap(MAX_CACHED_DAYS);
+
+    /** Minutes of the day, end exclusive. */
+    record TimeRange(int start, int end) {
+        boolean overlaps(TimeRange other) {
+            return start < other.end && other.start < end;
+        }
+
+        static TimeRange of(LocalTime start, LocalTime end) {
+            return new TimeRange(start.getHour() * 60 + start.getMinute(), end.getHour() * 60 + end.getMinute());
+        }
+    }
+
+    record StaffInfo(Long id, Set<Long> serviceIds, Map<DayOfWeek, List<TimeRange>> shifts) {
+        boolean canTake(Demand demand, DayOfWeek day) {
+            if (demand.serviceId() != null && !serviceIds.contains(demand.serviceId())) {
+                return false;
+            }
+            for (TimeRange shift : shifts.getOrDefault(day, List.of())) {
+                if (shift.start() <= demand.range().start() && demand.range().end() <= shift.end()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Something that needs a staff member: the new reservation or a series occurrence. */
+    record Demand(Long serviceId, TimeRange range) {
+    }
+
+    private record DayKey(Long branchId, LocalDate date) {
+    }
+
+    // Busy ranges per staff member for one branch and day
+    private static final class DaySchedule {
+        private final Map<Long, List<TimeRange>> busy = new HashMap<>();
+
+        synchronized void add(Long staffId, TimeRange range) {
+            busy.computeIfAbsent(staffId, k -> new ArrayList<>()).add(range);
+        }
+
+        synchronized Map<Long, List<TimeRange>> snapshot() {
+            Map<Long, List<TimeRange>> copy = new HashMap<>();
+            busy.forEach((staffId, ranges) -> copy.put(staffId, new ArrayList<>(ranges)));
+            return copy;
+        }
+    }
+
+    /**
+     * Picks the staff member for a new reservation. Returns null when the
+     * branch has no staff registered, in which case the caller keeps the
+     * branch-level overlap rules. The caller must hold the branch row lock
+     * ({@code BranchRepository.findByIdForUpdate}) until it saves the
+     * reservation, so no other booking can take the staff member in between.
+     */
+    @Transactional
+    public StaffMemberEntity assignStaff(ReservationEntity reservation) throws IllegalOperationException {
+        if (reservation.getBranch() == null || reservation.getBranch().getId() == null
+                || reservation.getReservationDate() == null
+                || reservation.getStartTime() == null || reservation.getEndTime() == null) {
+            return null;
+        }
+        Long branchId = reservation.getBranch().getId();
+        List<StaffInfo> roster = roster(branchId);
+        if (roster.isEmpty()) {
+            return null;
+        }
+
+        LocalDate date = reservation.getReservationDate();
+        TimeRange range = TimeRange.of(reservation.getStartTime(), reservation.getEndTime());
+        ServiceEntity service = reservation.getService();
+        Demand target = new Demand(service != null ? service.getId() : null, range);
+        List<Demand> floating = seriesDemands(branchId, date, date).getOrDefault(date, List.of());
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Long staffId = solve(roster, date.getDayOfWeek(), day(branchId, date).snapshot(), target, floating);
+            if (staffId != null && !reservationRepository.existsStaffOverlapping(staffId, date,
+                    reservation.getStartTime(), reservation.getEndTime())) {
+                afterCommit(() -> {
+                    DaySchedule schedule = days.get(new DayKey(branchId, date));
+                    if (schedule != null) {
+                        schedule.add(staffId, range);
+                    }
+                });
+                return staffMemberRepository.getReferenceById(staffId);
+            }
+            // The cached agenda can be stale either way (bookings from other nodes,
+            // or a reservation being moved); reload it once before giving up
+            days.remove(new DayKey(branchId, date));
+        }
+        throw new IllegalOperationException(NO_STAFF_AVAILABLE);
+    }
+
+    /**
+     * Checks that the staff of the branch can take every occurrence of a new
+     * series on the given dates, next to the bookings already assigned and the
+     * other series. Returns false when the branch has no staff registered, in
+     * which case the caller keeps the branch-level overlap rules. As in
+     * {@link #assignStaff}, the caller must hold the branch row lock.
+     */
+    @Transactional
+    public boolean checkSeries(ReservationSeriesEntity series, List<LocalDate> dates) throws IllegalOperationException {
+        Long branchId = series.getBranch().getId();
+        List<StaffInfo> roster = roster(branchId);
+        if (roster.isEmpty()) {
+            return false;
+        }
+        if (dates.isEmpty()) {
+            return true;
+        }
+
+        // Read from the database rather than the cached agendas: a year of days would flood the cache
+        Map<LocalDate, Map<Long, List<TimeRange>>> busyByDate = new HashMap<>();
+        for (DatedStaffSlot slot : reservationRepository.findStaffSlotsOnDates(branchId, dates)) {
+            if (slot.getStartTime() != null && slot.getEndTime() != null) {
+                busyByDate.computeIfAbsent(slot.getReservationDate(), k -> new HashMap<>())
+                        .computeIfAbsent(slot.getStaffId(), k -> new ArrayList<>())
+                        .add(TimeRange.of(slot.getStartTime(), slot.getEndTime()));
+            }
+        }
+        Map<LocalDate, List<Demand>> floatingByDate = seriesDemands(branchId, dates.get(0), dates.get(dates.size() - 1));
+
+        ServiceEntity service = series.getService();
+        Demand occurrence = new Demand(service != null ? service.getId() : null,
+                TimeRange.of(series.getStartTime(), series.getEndTime()));
+        for (LocalDate date : dates) {
+            if (solve(roster, date.getDayOfWeek(), busyByDate.getOrDefault(date, Map.of()), occurrence,
+                    floatingByDate.getOrDefault(date, List.of())) == null) {
+                throw new IllegalOperationException("No staff member is available for the series on " + date + ".");
+            }
+        }
+        return true;
+    }
+
+    /** Drops the cached agenda of a day once the current transaction commits. */
+    public void evictDay(Long branchId, LocalDate date) {
+        if (branchId != null && date != null) {
+            afterCommit(() -> days.remove(new DayKey(branchId, date)));
+        }
+    }
+
+    /** Drops the cached roster and agendas of a branch once the current transaction commits. */
+    public void evictBranch(Long branchId) {
+        afterCommit(() -> {
+            rosters.remove(branchId);
+            synchronized (days) {
+                days.keySet().removeIf(key -> key.branchId().equals(branchId));
+            }
+        });
+    }
+
+    // =========================================================
+    // Búsqueda con restricciones
+    // =========================================================
+
+    /**
+     * Assigns the target and every series occurrence that overlaps it, most
+     * constrained demand first, with forward checking. Returns the staff id
+     * for the target or null if there is no valid assignment.
+     */
+    static Long solve(List<StaffInfo> staff, DayOfWeek day, Map<Long, List<TimeRange>> busy, Demand target,
+            List<Demand> floating) {
+        List<Long> targetCandidates = candidates(staff, day, busy, target);
+        if (targetCandidates.isEmpty()) {
+            return null;
+        }
+
+        List<Demand> demands = new ArrayList<>();
+        List<List<Long>> domains = new ArrayList<>();
+        demands.add(target);
+        domains.add(targetCandidates);
+        for (Demand demand : floating) {
+            if (!demand.range().overlaps(target.range())) {
+                continue;
+            }
+            List<Long> domain = candidates(staff, day, busy, demand);
+            // Already impossible without the new booking, so it cannot block it
+            if (!domain.isEmpty()) {
+                demands.add(demand);
+                domains.add(domain);
+            }
+        }
+        if (demands.size() == 1) {
+            return targetCandidates.get(0);
+        }
+
+        int[] order = new int[demands.size()];
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < demands.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort(Comparator.comparingInt(i -> domains.get(i).size()));
+        for (int i = 0; i < order.length; i++) {
+            order[i] = indexes.get(i);
+        }
+
+        Long[] assignment = new Long[demands.size()];
+        int[] nodes = { 0 };
+        if (search(order, 0, demands, domains, assignment, nodes)) {
+            return assignment[0];
+        }
+        return nodes[0] > MAX_SEARCH_NODES ? greedy(order, demands, domains) : null;
+    }
+
+    // Most constrained first, first free candidate each; null unless every demand gets someone
+    private static Long greedy(int[] order, List<Demand> demands, List<List<Long>> domains) {
+        Long[] assignment = new Long[demands.size()];
+        for (int current : order) {
+            for (Long staffId : domains.get(current)) {
+                if (!conflicts(current, staffId, demands, assignment)) {
+                    assignment[current] = staffId;
+                    break;
+                }
+            }
+            if (assignment[current] == null) {
+                return null;
+            }
+        }
+        return assignment[0];
+    }
+
+    // Skilled, on shift and free, least loaded first
+    private static List<Long> candidates(List<StaffInfo> staff, DayOfWeek day, Map<Long, List<TimeRange>> busy,
+            Demand demand) {
+        List<StaffInfo> fit = new ArrayList<>();
+        for (StaffInfo member : staff) {
+            if (member.canTake(demand, day) && isFree(busy.get(member.id()), demand.range())) {
+                fit.add(member);
+            }
+        }
+        fit.sort(Comparator.<StaffInfo>comparingInt(m -> busy.getOrDefault(m.id(), List.of()).size())
+                .thenComparing(StaffInfo::id));
+        List<Long> ids = new ArrayList<>(fit.size());
+        for (StaffInfo member : fit) {
+            ids.add(member.id());
+        }
+        return ids;
+    }
+
+    private static boolean isFree(List<TimeRange> ranges, TimeRange range) {
+        if (ranges != null) {
+            for (TimeRange taken : ranges) {
+                if (taken.overlaps(range)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean search(int[] order, int depth, List<Demand> demands, List<List<Long>> domains,
+            Long[] assignment, int[] nodes) {
+        if (depth == order.length) {
+            return true;
+        }
+        int current = order[depth];
+        for (Long staffId : domains.get(current)) {
+            if (++nodes[0] > MAX_SEARCH_NODES) {
+                return false;
+            }
+            if (conflicts(current, staffId, demands, assignment)) {
+                continue;
+            }
+            assignment[current] = staffId;
+            if (stillSolvable(order, depth + 1, demands, domains, assignment)
+                    && search(order, depth + 1, demands, domains, assignment, nodes)) {
+                return true;
+            }
+            assignment[current] = null;
+        }
+        return false;
+    }
+
+    private static boolean conflicts(int index, Long staffId, List<Demand> demands, Long[] assignment) {
+        for (int other = 0; other < assignment.length; other++) {
+            if (other != index && staffId.equals(assignment[other])
+                    && demands.get(other).range().overlaps(demands.get(index).range())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Forward check: every pending demand must still have a usable candidate
+    private static boolean stillSolvable(int[] order, int from, List<Demand> demands, List<List<Long>> domains,
+            Long[] assignment) {
+        for (int depth = from; depth < order.length; depth++) {
+            int pending = order[depth];
+            boolean any = false;
+            for (Long staffId : domains.get(pending)) {
+                if (!conflicts(pending, staffId, demands, assignment)) {
+                    any = true;
+                    break;
+                }
+            }
+            if (!any) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // =========================================================
+    // Cachés
+    // =========================================================
+
+    private List<StaffInfo> roster(Long branchId) {
+        List<StaffInfo> roster = rosters.get(branchId);
+        if (roster == null) {
+            roster = loadRoster(branchId);
+            rosters.put(branchId, roster);
+        }
+        return roster;
+    }
+
+    private List<StaffInfo> loadRoster(Long branchId) {
+        // Members first, so the shifts' staff references resolve from the persistence context
+        List<StaffMemberEntity> members = staffMemberRepository.findWithSkillsByBranchId(branchId);
+
+        Map<Long, Map<DayOfWeek, List<TimeRange>>> shiftsByStaff = new HashMap<>();
+        for (StaffShiftEntity shift : staffShiftRepository.findByStaff_Branch_Id(branchId)) {
+            if (shift.getStartTime() == null || shift.getEndTime() == null) {
+                continue;
+            }
+            shiftsByStaff.computeIfAbsent(shift.getStaff().getId(), k -> new EnumMap<>(DayOfWeek.class))
+                    .computeIfAbsent(shift.getDayOfWeek(), k -> new ArrayList<>())
+                    .add(TimeRange.of(shift.getStartTime(), shift.getEndTime()));
+        }
+
+        List<StaffInfo> roster = new ArrayList<>();
+        for (StaffMemberEntity member : members) {
+            Set<Long> serviceIds = new HashSet<>();
+            for (ServiceEntity skill : member.getSkills()) {
+                serviceIds.add(skill.getId());
+            }
+            roster.add(new StaffInfo(member.getId(), serviceIds,
+                    shiftsByStaff.getOrDefault(member.getId(), Map.of())));
+        }
+        log.info("Loaded staff roster for branch = {} with {} members", branchId, roster.size());
+        return Collections.unmodifiableList(roster);
+    }
+
+    private DaySchedule day(Long branchId, LocalDate date) {
+        DayKey key = new DayKey(branchId, date);
+        DaySchedule schedule = days.get(key);
+        if (schedule == null) {
+            schedule = new DaySchedule();
+            for (StaffSlot slot : reservationRepository.findStaffSlots(branchId, date)) {
+                if (slot.getStartTime() != null && slot.getEndTime() != null) {
+                    schedule.add(slot.getStaffId(), TimeRange.of(slot.getStartTime(), slot.getEndTime()));
+                }
+            }
+            days.put(key, schedule);
+        }
+        return schedule;
+    }
+
+    // Series occurrences are not pinned to anyone, so they compete for the same staff
+    private Map<LocalDate, List<Demand>> seriesDemands(Long branchId, LocalDate from, LocalDate to) {
+        Map<LocalDate, List<Demand>> demands = new HashMap<>();
+        for (ReservationSeriesEntity series : seriesRepository.findActiveInWindow(branchId, from, to)) {
+            if (series.getFrequency() == null || series.getStartTime() == null || series.getEndTime() == null) {
+                continue;
+            }
+            ServiceEntity service = series.getService();
+            Demand demand = new Demand(service != null ? service.getId() : null,
+                    TimeRange.of(series.getStartTime(), series.getEndTime()));
+            for (LocalDate date : series.getFrequency().datesBetween(series.getStartDate(), series.getEndDate(),
+                    from, to)) {
+                demands.computeIfAbsent(date, k -> new ArrayList<>()).add(demand);
+            }
+        }
+        return demands;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
+import co.edu.udistrital.mdp.back.entities.StaffShiftEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.BranchRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import co.edu.udistrital.mdp.back.repositories.StaffMemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StaffMemberService {
+
+    private static final String STAFF_NOT_FOUND_MESSAGE = "No staff member found with ID: ";
+
+    private final StaffMemberRepository staffMemberRepository;
+    private final BranchRepository branchRepository;
+    private final ServiceRepository serviceRepository;
+    private final ReservationRepository reservationRepository;
+    private final StaffAssignmentService staffAssignmentService;
+
+    @Transactional
+    public StaffMemberEntity createStaffMember(Long branchId, StaffMemberEntity staff)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting staff member creation process for branch = {}", branchId);
+        BranchEntity branch = branchRepository.findById(branchId)
+                .orElseThrow(() -> new EntityNotFoundException("Branch not found with id " + branchId));
+
+        validateStaffMember(staff);
+        staff.setBranch(branch);
+        staff.setSkills(resolveSkills(staff.getSkills()));
+        for (StaffShiftEntity shift : staff.getShifts()) {
+            shift.setStaff(staff);
+        }
+
+        StaffMemberEntity saved = staffMemberRepository.save(staff);
+        staffAssignmentService.evictBranch(branchId);
+        log.info("Staff member creation process finished with id = {}", saved.getId());
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public List<StaffMemberEntity> getStaffMembers(Long branchId) throws EntityNotFoundException {
+        if (!branchRepository.existsById(branchId)) {
+            throw new EntityNotFoundException("Branch not found with id " + branchId);
+        }
+        return staffMemberRepository.findByBranch_Id(branchId);
+    }
+
+    @Transactional(readOnly = true)
+    public StaffMemberEntity getStaffMember(Long branchId, Long staffId) throws EntityNotFoundException {
+        StaffMemberEntity staff = staffMemberRepository.findById(staffId)
+                .orElseThrow(() -> new EntityNotFoundException(STAFF_NOT_FOUND_MESSAGE + staffId));
+        if (staff.getBranch() == null || !staff.getBranch().getId().equals(branchId)) {
+            throw new EntityNotFoundException(STAFF_NOT_FOUND_MESSAGE + staffId);
+        }
+        return staff;
+    }
+
+    // Reemplaza nombre, servicios y turnos; las reservas ya asignadas se conservan
+    @Transactional
+    public StaffMemberEntity updateStaffMember(Long branchId, Long staffId, StaffMemberEntity staff)
+            throws EntityNotFoundException, IllegalOperationException {
+        log.info("Starting staff member update process with id = {}", staffId);
+        StaffMemberEntity existing = getStaffMember(branchId, staffId);
+        validateStaffMember(staff);
+
+        existing.setName(staff.getName());
+        existing.setSkills(resolveSkills(staff.getSkills()));
+        existing.getShifts().clear();
+        for (StaffShiftEntity shift : staff.getShifts()) {
+            shift.setStaff(existing);
+            existing.getShifts().add(shift);
+        }
+
+        StaffMemberEntity updated = staffMemberRepository.save(existing);
+        staffAssignmentService.evictBranch(branchId);
+        log.info("Staff member update process finished with id = {}", staffId);
+        return updated;
+    }
+
+    @Transactional
+    public void deleteStaffMember(Long branchId, Long staffId) throws EntityNotFoundException {
+        log.info("Starting staff member deletion process with id = {}", staffId);
+        getStaffMember(branchId, staffId);
+        reservationRepository.clearStaff(staffId);
+        staffMemberRepository.deleteById(staffId);
+        staffAssignmentService.evictBranch(branchId);
+        log.info("Staff member deletion process finished with id = {}", staffId);
+    }
+
+    private void validateStaffMember(StaffMemberEntity staff) throws IllegalOperationException {
+        if (staff.getName() == null || staff.getName().trim().isEmpty()) {
+            throw new IllegalOperationException("The staff member name is required.");
+        }
+        for (StaffShiftEntity shift : staff.getShifts()) {
+            if (shift.getDayOfWeek() == null || shift.getStartTime() == null || shift.getEndTime() == null) {
+                throw new IllegalOperationException("Each shift needs a day, a start time and an end time.");
+            }
+            if (!shift.getEndTime().isAfter(shift.getStartTime())) {
+                throw new IllegalOperationException("The shift end time must be after the start time.");
+            }
+        }
+    }
+
+    private List<ServiceEntity> resolveSkills(List<ServiceEntity> skills) throws EntityNotFoundException {
+        List<Long> ids = new ArrayList<>();
+        for (ServiceEntity skill : skills) {
+            if (skill.getId() != null && !ids.contains(skill.getId())) {
+                ids.add(skill.getId());
+            }
+        }
+        List<ServiceEntity> found = serviceRepository.findAllById(ids);
+        if (found.size() != ids.size()) {
+            throw new EntityNotFoundException("One or more services were not found.");
+        }
+        return new ArrayList<>(found);
+    }
+}
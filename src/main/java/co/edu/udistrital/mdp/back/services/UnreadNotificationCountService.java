@@ -0,0 +1,247 @@
+package co.edu.udistrital.mdp.back.services;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.UserNotificationCountEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationCountRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Contadores de notificaciones sin leer por usuario. Los servicios de
+ * notificaciones los ajustan en la misma transacción en que cambian la tabla
+ * de unión (los vínculos en bloque se crean aquí mismo, para contar sólo las
+ * filas nuevas), las lecturas pasan por una caché corta y una tarea periódica
+ * corrige los contadores que se hayan desviado.
+ */
+@Slf4j
+@Service
+public class UnreadNotificationCountService {
+
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    private final UserNotificationCountRepository countRepository;
+    private final UserRepository userRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransaction;
+    private final long cacheTtlMillis;
+    private final int chunkSize;
+    private final Map<Long, Cached> cache = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Cached>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                    return size() > MAX_CACHED_USERS;
+                }
+            });
+
+    private record Cached(long unread, long expiresAt) {
+    }
+
+    public record ReconcileResult(int checked, int corrected) {
+    }
+
+    public UnreadNotificationCountService(UserNotificationCountRepository countRepository,
+            UserRepository userRepository, UserNotificationRepository userNotificationRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${notifications.unread-count.cache-ttl-ms:30000}") long cacheTtlMillis,
+            @Value("${notifications.unread-count.reconcile-chunk-size:500}") int chunkSize) {
+        this.countRepository = countRepository;
+        this.userRepository = userRepository;
+        this.userNotificationRepository = userNotificationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cacheTtlMillis = Math.max(0, cacheTtlMillis);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Returns how many notifications the user has not read.
+     *
+     * @param userId The user identifier
+     * @throws EntityNotFoundException If the user does not exist
+     */
+    public long getUnreadCount(Long userId) throws EntityNotFoundException {
+        long now = System.currentTimeMillis();
+        Cached cached = cache.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.unread();
+        }
+        UserNotificationCountEntity counter = countRepository.findById(userId).orElse(null);
+        if (counter == null) {
+            counter = initialize(userId);
+        }
+        long unread = Math.max(0, counter.getUnread());
+        cache.put(userId, new Cached(unread, now + cacheTtlMillis));
+        return unread;
+    }
+
+    // First read of a user: the counter starts from the join table. A link committed
+    // while it is being created can be missed; the reconciler catches it.
+    private UserNotificationCountEntity initialize(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+        try {
+            newTransaction.executeWithoutResult(status -> countRepository.initialize(userId));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Unread counter of user = {} created concurrently", userId);
+        }
+        return countRepository.findById(userId).orElseThrow();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void linked(Long userId) {
+        countRepository.addToUnread(userId, 1);
+        evictAfterCommit(List.of(userId));
+    }
+
+    /**
+     * Links the users to the notification and counts it as unread only for
+     * the ones that were not linked to it yet.
+     *
+     * @param notificationId The notification
+     * @param userIds The recipients
+     * @return The users that were not linked before
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> link(Long notificationId, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> linked = new HashSet<>(userNotificationRepository.findLinkedUserIds(notificationId, userIds));
+        List<Long> added = userIds.stream().filter(userId -> !linked.contains(userId)).distinct().toList();
+        if (added.isEmpty()) {
+            return added;
+        }
+        int rows = userNotificationRepository.link(notificationId, added);
+        if (rows == added.size()) {
+            countRepository.incrementAll(added);
+        } else {
+            // A user was deleted or linked concurrently: their counters are counted again from the join table
+            countRepository.reconcile(added);
+        }
+        evictAfterCommit(added);
+        return added;
+    }
+
+    /** Records that {@code count} of the user's notifications were just marked read. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void read(Long userId, int count) {
+        if (count == 0) {
+            return;
+        }
+        countRepository.addToUnread(userId, -count);
+        evictAfterCommit(List.of(userId));
+    }
+
+    /** Call before a notification is marked read, or unlinked, for all its recipients. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void leavingAll(Long notificationId) {
+        if (countRepository.decrementUnreadRecipients(notificationId) > 0) {
+            clearAfterCommit();
+        }
+    }
+
+    /** Call before the notifications are deleted with all their links. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void leavingAll(Collection<Long> notificationIds) {
+        if (!notificationIds.isEmpty() && countRepository.subtractUnreadOf(notificationIds) > 0) {
+            clearAfterCommit();
+        }
+    }
+
+    /** Call before the user is unlinked from the notification. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void leaving(Long userId, Long notificationId) {
+        if (countRepository.decrementIfUnread(userId, notificationId) > 0) {
+            evictAfterCommit(List.of(userId));
+        }
+    }
+
+    /** Drops every counter; each is counted again from the join table when next read. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void resetAll() {
+        countRepository.deleteAllInBatch();
+        clearAfterCommit();
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.unread-count.reconcile-interval-ms:3600000}",
+            initialDelayString = "${notifications.unread-count.reconcile-interval-ms:3600000}")
+    public void reconcileScheduled() {
+        reconcile();
+    }
+
+    /**
+     * Compares every counter with the join table and fixes the ones that
+     * drifted, a chunk of users per transaction.
+     */
+    public ReconcileResult reconcile() {
+        int checked = 0;
+        int corrected = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> userIds = countRepository.findUserIds(afterId, PageRequest.of(0, chunkSize));
+            if (userIds.isEmpty()) {
+                break;
+            }
+            Integer fixed = transactionTemplate.execute(status -> countRepository.reconcile(userIds));
+            checked += userIds.size();
+            corrected += fixed == null ? 0 : fixed;
+            afterId = userIds.get(userIds.size() - 1);
+            if (userIds.size() < chunkSize) {
+                break;
+            }
+        }
+        if (corrected > 0) {
+            cache.clear();
+            log.warn("Corrected {} of {} unread notification counters", corrected, checked);
+        }
+        return new ReconcileResult(checked, corrected);
+    }
+
+    private void evictAfterCommit(Collection<Long> userIds) {
+        afterCommit(() -> userIds.forEach(cache::remove));
+    }
+
+    private void clearAfterCommit() {
+        afterCommit(cache::clear);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
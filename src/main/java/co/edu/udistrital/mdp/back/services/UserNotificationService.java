@@ -5,10 +5,13 @@ import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class UserNotificationService {
@@ -18,10 +21,15 @@ public class UserNotificationService {
 
     private final UserRepository userRepository;
     private final NotificationRepository notificationRepository;
+    private final UserNotificationRepository userNotificationRepository;
+    private final UnreadNotificationCountService unreadCounts;
 
-    public UserNotificationService(UserRepository userRepository, NotificationRepository notificationRepository) {
+    public UserNotificationService(UserRepository userRepository, NotificationRepository notificationRepository,
+            UserNotificationRepository userNotificationRepository, UnreadNotificationCountService unreadCounts) {
         this.userRepository = userRepository;
         this.notificationRepository = notificationRepository;
+        this.userNotificationRepository = userNotificationRepository;
+        this.unreadCounts = unreadCounts;
     }
 
     @Transactional
@@ -31,25 +39,51 @@ public class UserNotificationService {
         NotificationEntity notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND));
 
-        user.getNotifications().add(notification);
-        userRepository.save(user);
+        // Straight to the join table, so the user's other links keep their read state
+        if (userNotificationRepository.linkUser(notificationId, user.getId())) {
+            notification.setRead(false);
+            unreadCounts.linked(userId);
+        }
         return notification;
     }
 
     public List<NotificationEntity> getNotifications(Long userId) throws EntityNotFoundException {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND));
-        return user.getNotifications();
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException(USER_NOT_FOUND);
+        }
+        return notificationRepository.findByUsers_Id(userId);
+    }
+
+    public List<NotificationEntity> getNotifications(Long userId, boolean onlyUnread) throws EntityNotFoundException {
+        if (!onlyUnread) {
+            return getNotifications(userId);
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException(USER_NOT_FOUND);
+        }
+        return notificationRepository.findUnreadByUserId(userId);
+    }
+
+    // Sale del contador del usuario, no de contar sus filas
+    public long getUnreadCount(Long userId) throws EntityNotFoundException {
+        return unreadCounts.getUnreadCount(userId);
+    }
+
+    // Ids de las notificaciones que el usuario aún no ha leído
+    public Set<Long> getUnreadIds(Long userId) {
+        return new HashSet<>(userNotificationRepository.findUnreadNotificationIds(userId));
     }
 
     @Transactional
     public void removeNotificationFromUser(Long userId, Long notificationId) throws EntityNotFoundException {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND));
-        NotificationEntity notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new EntityNotFoundException(NOTIFICATION_NOT_FOUND));
-
-        user.getNotifications().remove(notification);
-        userRepository.save(user);
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException(USER_NOT_FOUND);
+        }
+        if (!notificationRepository.existsById(notificationId)) {
+            throw new EntityNotFoundException(NOTIFICATION_NOT_FOUND);
+        }
+        // Removing from the bag would rewrite the user's other rows and lose their read state
+        unreadCounts.leaving(userId, notificationId);
+        userNotificationRepository.unlink(userId, notificationId);
     }
 }
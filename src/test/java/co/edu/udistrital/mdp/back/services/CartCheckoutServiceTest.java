@@ -0,0 +1,168 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.OrderDetailEntity;
+import co.edu.udistrital.mdp.back.entities.OrderEntity;
+import co.edu.udistrital.mdp.back.entities.OrderStatus;
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.entities.ProductEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.CartCheckoutService.Checkout;
+
+@DataJpaTest
+@Transactional
+@Import({ CartCheckoutService.class, ShoppingCartService.class, PaymentService.class, PaymentLedgerService.class,
+        CartWriteBehindStore.class })
+class CartCheckoutServiceTest {
+
+    @Autowired
+    private CartCheckoutService cartCheckoutService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private UserEntity user;
+    private ShoppingCartEntity cart;
+    private ProductEntity shampoo;
+    private ProductEntity brush;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from PaymentEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from OrderDetailEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from OrderEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        user = new UserEntity();
+        user.setName("Juan Pérez");
+        user.setEmail("juan.perez@example.com");
+        entityManager.persist(user);
+
+        cart = new ShoppingCartEntity();
+        cart.setUser(user);
+        entityManager.persist(cart);
+
+        shampoo = product("Shampoo", 12.5, 5);
+        brush = product("Cepillo", 3.3, 10);
+    }
+
+    private ProductEntity product(String name, double price, int stock) {
+        ProductEntity product = new ProductEntity();
+        product.setName(name);
+        product.setPrice(price);
+        product.setStock(stock);
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void addLine(ProductEntity product, int quantity) {
+        CartItemEntity item = new CartItemEntity();
+        item.setShoppingCart(cart);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(product.getPrice());
+        entityManager.persist(item);
+        cart.setTotal(ShoppingCartService.toMoney(cart.getTotal() + quantity * product.getPrice()));
+    }
+
+    private long countOrders() {
+        return entityManager.getEntityManager().createQuery("select count(o) from OrderEntity o", Long.class)
+                .getSingleResult();
+    }
+
+    @Test
+    void testCheckout() {
+        addLine(shampoo, 2);
+        addLine(brush, 3);
+
+        Checkout checkout = cartCheckoutService.checkout(cart.getId(), "cash");
+
+        assertEquals(34.9, checkout.total());
+        assertEquals(2, checkout.lines());
+
+        entityManager.clear();
+        OrderEntity order = entityManager.find(OrderEntity.class, checkout.orderId());
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+        assertEquals(34.9, order.getTotalAmount());
+        assertEquals(user.getId(), order.getUser().getId());
+
+        List<OrderDetailEntity> details = entityManager.getEntityManager()
+                .createQuery("select d from OrderDetailEntity d where d.order.id = :id order by d.product.id",
+                        OrderDetailEntity.class)
+                .setParameter("id", order.getId())
+                .getResultList();
+        assertEquals(2, details.size());
+        assertEquals(2, details.get(0).getQuantity());
+        assertEquals(25.0, details.get(0).getSubtotal());
+        assertEquals(9.9, details.get(1).getSubtotal());
+
+        PaymentEntity payment = entityManager.find(PaymentEntity.class, checkout.paymentId());
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+        assertEquals(34.9, payment.getAmount());
+        assertEquals(order.getId(), payment.getOrder().getId());
+
+        assertEquals(3, entityManager.find(ProductEntity.class, shampoo.getId()).getStock());
+        assertEquals(7, entityManager.find(ProductEntity.class, brush.getId()).getStock());
+
+        ShoppingCartEntity emptied = entityManager.find(ShoppingCartEntity.class, cart.getId());
+        assertTrue(emptied.getItems().isEmpty());
+        assertEquals(0.0, emptied.getTotal());
+    }
+
+    @Test
+    void testCheckoutEmptyCart() {
+        assertThrows(IllegalOperationException.class, () -> cartCheckoutService.checkout(cart.getId(), "cash"));
+        assertEquals(0, countOrders());
+    }
+
+    @Test
+    void testCheckoutWithoutStock() {
+        // El primer producto en reservarse es el que no alcanza, así que no se toca nada
+        addLine(shampoo, 6);
+        addLine(brush, 1);
+
+        assertThrows(IllegalOperationException.class, () -> cartCheckoutService.checkout(cart.getId(), "cash"));
+
+        entityManager.clear();
+        assertEquals(0, countOrders());
+        assertEquals(5, entityManager.find(ProductEntity.class, shampoo.getId()).getStock());
+        assertEquals(10, entityManager.find(ProductEntity.class, brush.getId()).getStock());
+    }
+
+    @Test
+    void testCheckoutInvalidMethod() {
+        addLine(brush, 1);
+        assertThrows(IllegalOperationException.class, () -> cartCheckoutService.checkout(cart.getId(), "bitcoin"));
+    }
+
+    @Test
+    void testCheckoutInvalidCart() {
+        assertThrows(EntityNotFoundException.class, () -> cartCheckoutService.checkout(0L, "cash"));
+    }
+}
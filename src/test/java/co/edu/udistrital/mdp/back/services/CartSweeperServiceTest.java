@@ -0,0 +1,134 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.entities.ProductEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.services.CartSweeperService.SweepResult;
+
+// Bloques de 2 para que el barrido recorra varias páginas
+@DataJpaTest(properties = { "carts.sweeper.idle-days=30", "carts.sweeper.chunk-size=2" })
+@Transactional
+@Import({ CartSweeperService.class, CartWriteBehindStore.class, ShoppingCartService.class })
+class CartSweeperServiceTest {
+
+    @Autowired
+    private CartSweeperService cartSweeperService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ProductEntity product;
+    private ShoppingCartEntity idleWithItems;
+    private ShoppingCartEntity idleEmpty;
+    private ShoppingCartEntity idleOther;
+    private ShoppingCartEntity idleWithPayment;
+    private ShoppingCartEntity active;
+    private ShoppingCartEntity untracked;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createNativeQuery("DELETE FROM product_entity_shopping_carts").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from PaymentEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        product = new ProductEntity();
+        product.setName("Shampoo");
+        product.setPrice(10.0);
+        product.setStock(5);
+        entityManager.persist(product);
+
+        LocalDateTime old = LocalDateTime.now().minusDays(45);
+        idleWithItems = cart(old);
+        idleEmpty = cart(old);
+        idleOther = cart(old);
+        idleWithPayment = cart(old);
+        active = cart(LocalDateTime.now().minusDays(2));
+        untracked = cart(null);
+
+        CartItemEntity item = new CartItemEntity();
+        item.setShoppingCart(idleWithItems);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setUnitPrice(10.0);
+        entityManager.persist(item);
+        product.getShoppingCarts().add(idleWithItems);
+
+        PaymentEntity payment = new PaymentEntity();
+        payment.setAmount(10.0);
+        payment.setMethod("cash");
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setShoppingCart(idleWithPayment);
+        entityManager.persist(payment);
+        entityManager.flush();
+    }
+
+    private ShoppingCartEntity cart(LocalDateTime lastActivity) {
+        ShoppingCartEntity cart = new ShoppingCartEntity();
+        cart.setLastActivity(lastActivity);
+        entityManager.persist(cart);
+        return cart;
+    }
+
+    private boolean exists(ShoppingCartEntity cart) {
+        return entityManager.find(ShoppingCartEntity.class, cart.getId()) != null;
+    }
+
+    @Test
+    void testSweep() {
+        SweepResult result = cartSweeperService.sweep();
+
+        assertEquals(3, result.carts());
+        assertEquals(1, result.items());
+        assertEquals(1, result.productLinks());
+
+        entityManager.clear();
+        assertFalse(exists(idleWithItems));
+        assertFalse(exists(idleEmpty));
+        assertFalse(exists(idleOther));
+        assertTrue(exists(idleWithPayment));
+        assertTrue(exists(active));
+    }
+
+    @Test
+    void testSweepStartsTrackingUntrackedCarts() {
+        cartSweeperService.sweep();
+
+        entityManager.clear();
+        ShoppingCartEntity tracked = entityManager.find(ShoppingCartEntity.class, untracked.getId());
+        assertNotNull(tracked);
+        assertNotNull(tracked.getLastActivity());
+    }
+
+    @Test
+    void testSweepTwiceReclaimsNothing() {
+        cartSweeperService.sweep();
+        SweepResult result = cartSweeperService.sweep();
+
+        assertEquals(0, result.carts());
+        assertEquals(0, result.items());
+    }
+}
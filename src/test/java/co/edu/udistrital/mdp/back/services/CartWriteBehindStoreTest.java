@@ -0,0 +1,217 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.ProductEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore.CartView;
+import co.edu.udistrital.mdp.back.services.CartWriteBehindStore.Metrics;
+
+// Solo dos carritos en memoria para probar el desalojo
+@DataJpaTest(properties = { "carts.write-behind.enabled=true", "carts.write-behind.max-carts=2",
+        "carts.write-behind.max-dirty-carts=0" })
+@Transactional
+@Import({ CartWriteBehindStore.class, ShoppingCartService.class })
+class CartWriteBehindStoreTest {
+
+    @Autowired
+    private CartWriteBehindStore cartStore;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private List<ShoppingCartEntity> cartList = new ArrayList<>();
+    private List<ProductEntity> productList = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        for (int i = 0; i < 2; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Producto " + i);
+            product.setPrice(10.0 + i * 5);
+            product.setStock(100);
+            entityManager.persist(product);
+            productList.add(product);
+        }
+        for (int i = 0; i < 3; i++) {
+            ShoppingCartEntity cart = new ShoppingCartEntity();
+            cart.setTotal(0.0);
+            entityManager.persist(cart);
+            cartList.add(cart);
+        }
+    }
+
+    private List<CartItemEntity> storedItems(Long cartId) {
+        entityManager.flush();
+        entityManager.clear();
+        return entityManager.getEntityManager()
+                .createQuery("select i from CartItemEntity i where i.shoppingCart.id = :cartId", CartItemEntity.class)
+                .setParameter("cartId", cartId)
+                .getResultList();
+    }
+
+    @Test
+    void testChangesAreCoalescedUntilFlush() throws EntityNotFoundException, IllegalOperationException {
+        Long cartId = cartList.get(0).getId();
+        Long productId = productList.get(0).getId();
+
+        cartStore.addItem(cartId, productId, 1);
+        cartStore.addItem(cartId, productId, 2);
+        CartView view = cartStore.addItem(cartId, productList.get(1).getId(), 1);
+
+        assertEquals(45.0, view.total());
+        assertTrue(storedItems(cartId).isEmpty());
+
+        cartStore.flush(cartId);
+
+        List<CartItemEntity> items = storedItems(cartId);
+        assertEquals(2, items.size());
+        CartItemEntity first = items.stream().filter(i -> i.getProduct().getId().equals(productId)).findFirst()
+                .orElseThrow();
+        assertEquals(3, first.getQuantity());
+        assertEquals(45.0, entityManager.find(ShoppingCartEntity.class, cartId).getTotal());
+    }
+
+    @Test
+    void testRemoveLastUnitDeletesLineOnFlush() throws EntityNotFoundException, IllegalOperationException {
+        Long cartId = cartList.get(0).getId();
+        Long productId = productList.get(0).getId();
+        cartStore.addItem(cartId, productId, 1);
+        cartStore.flush(cartId);
+        assertEquals(1, storedItems(cartId).size());
+
+        CartView view = cartStore.removeItem(cartId, productId);
+        assertTrue(view.lines().isEmpty());
+        cartStore.flush(cartId);
+
+        assertTrue(storedItems(cartId).isEmpty());
+        assertEquals(0.0, entityManager.find(ShoppingCartEntity.class, cartId).getTotal());
+    }
+
+    @Test
+    void testRemoveProductNotInCart() throws EntityNotFoundException {
+        Long cartId = cartList.get(0).getId();
+        assertThrows(IllegalOperationException.class, () -> cartStore.removeItem(cartId, productList.get(0).getId()));
+    }
+
+    @Test
+    void testInvalidCartAndProduct() {
+        assertThrows(EntityNotFoundException.class, () -> cartStore.addItem(0L, productList.get(0).getId(), 1));
+        assertThrows(EntityNotFoundException.class, () -> cartStore.addItem(cartList.get(0).getId(), 0L, 1));
+        assertThrows(IllegalOperationException.class,
+                () -> cartStore.addItem(cartList.get(0).getId(), productList.get(0).getId(), 0));
+    }
+
+    @Test
+    void testRepricedCartIsWrittenAndReloaded() throws EntityNotFoundException, IllegalOperationException {
+        Long cartId = cartList.get(0).getId();
+        ProductEntity product = productList.get(0);
+        assertEquals(20.0, cartStore.addItem(cartId, product.getId(), 2).total());
+
+        product.setPrice(12.0);
+        product.setPriceVersion(product.getPriceVersion() + 1);
+        entityManager.flush();
+        cartStore.dropCartsWith(product.getId());
+
+        // Written at the cached price, then repriced from the database when loaded again
+        assertEquals(24.0, cartStore.getCart(cartId).total());
+        assertEquals(24.0, entityManager.find(ShoppingCartEntity.class, cartId).getTotal());
+    }
+
+    @Test
+    void testWriteThroughWritesCachedLinesFirst() throws EntityNotFoundException, IllegalOperationException {
+        Long cartId = cartList.get(0).getId();
+        Long productId = productList.get(0).getId();
+        cartStore.addItem(cartId, productId, 2);
+
+        // La escritura ve las líneas en memoria ya guardadas, y después el carrito se vuelve a cargar
+        int stored = cartStore.writeThrough(cartId, () -> storedItems(cartId).get(0).getQuantity());
+
+        assertEquals(2, stored);
+        assertEquals(0, cartStore.getMetrics().cachedCarts());
+        assertEquals(0, cartStore.getMetrics().dirtyCarts());
+        assertEquals(20.0, cartStore.getCart(cartId).total());
+    }
+
+    @Test
+    void testDiscardWritesBeforeDropping() throws EntityNotFoundException, IllegalOperationException {
+        Long cartId = cartList.get(0).getId();
+        cartStore.addItem(cartId, productList.get(1).getId(), 1);
+
+        cartStore.discard(cartId);
+
+        assertEquals(1, storedItems(cartId).size());
+        assertEquals(0, cartStore.getMetrics().cachedCarts());
+    }
+
+    @Test
+    void testEvictionFlushesLeastRecentlyUsedCart() throws EntityNotFoundException, IllegalOperationException {
+        Long productId = productList.get(0).getId();
+        for (ShoppingCartEntity cart : cartList) {
+            cartStore.addItem(cart.getId(), productId, 1);
+        }
+
+        Metrics metrics = cartStore.getMetrics();
+        assertEquals(2, metrics.cachedCarts());
+        assertEquals(2, metrics.dirtyCarts());
+        assertEquals(1, storedItems(cartList.get(0).getId()).size());
+        assertTrue(storedItems(cartList.get(2).getId()).isEmpty());
+    }
+
+    @Test
+    void testFlushDirtyWritesEveryCart() throws EntityNotFoundException, IllegalOperationException {
+        Long productId = productList.get(1).getId();
+        cartStore.addItem(cartList.get(0).getId(), productId, 2);
+        cartStore.addItem(cartList.get(1).getId(), productId, 1);
+
+        cartStore.flushDirty();
+
+        assertEquals(2, storedItems(cartList.get(0).getId()).get(0).getQuantity());
+        assertEquals(1, storedItems(cartList.get(1).getId()).get(0).getQuantity());
+        Metrics metrics = cartStore.getMetrics();
+        assertEquals(0, metrics.dirtyCarts());
+        assertEquals(2, metrics.flushedCarts());
+    }
+
+    @Test
+    void testLoadsExistingItems() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        CartItemEntity item = new CartItemEntity();
+        item.setShoppingCart(cart);
+        item.setProduct(productList.get(0));
+        item.setQuantity(2);
+        item.setUnitPrice(8.0);
+        entityManager.persist(item);
+
+        CartView view = cartStore.addItem(cart.getId(), productList.get(0).getId(), 1);
+
+        // Conserva el precio con el que se agregó la línea
+        assertEquals(24.0, view.total());
+    }
+}
@@ -0,0 +1,156 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService.Progress;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService.Segment;
+import co.edu.udistrital.mdp.back.services.NotificationBroadcastService.Status;
+
+// Sin transacción de prueba: el envío corre en otro hilo y debe ver los usuarios confirmados.
+// Bloques de 2 para que el envío recorra varios.
+@DataJpaTest(properties = "notifications.broadcast.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ NotificationBroadcastService.class, UnreadNotificationCountService.class,
+        NotificationStreamHub.class })
+class NotificationBroadcastServiceTest {
+
+    private static final String DOMAIN = "broadcast.dogspa.test";
+
+    @Autowired
+    private NotificationBroadcastService broadcastService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserNotificationRepository userNotificationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        for (int i = 0; i < 5; i++) {
+            user("cliente" + i + "@" + DOMAIN, i * 10);
+        }
+        user("otro@example.com", 100);
+    }
+
+    @AfterEach
+    void clearData() {
+        userNotificationRepository.deleteAllInBatch();
+        notificationRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM person_entity WHERE email LIKE ? OR email = ?", "%@" + DOMAIN,
+                "otro@example.com");
+    }
+
+    private void user(String email, int points) {
+        UserEntity user = new UserEntity();
+        user.setName(email);
+        user.setEmail(email);
+        user.setLoyaltypoints(points);
+        userRepository.save(user);
+    }
+
+    private Progress await(Long notificationId) throws Exception {
+        for (int i = 0; i < 200; i++) {
+            Progress progress = broadcastService.getProgress(notificationId);
+            if (progress.status() == Status.COMPLETED || progress.status() == Status.FAILED
+                    || progress.status() == Status.CANCELLED) {
+                return progress;
+            }
+            Thread.sleep(50);
+        }
+        fail("Broadcast did not finish");
+        return null;
+    }
+
+    private long linked(Long notificationId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM person_entity_notifications WHERE notifications_id = ? AND is_read = false",
+                Long.class, notificationId);
+    }
+
+    @Test
+    void testBroadcastToDomain() throws Exception {
+        Progress queued = broadcastService.broadcast("Promo de baño", new Segment(null, null, "@" + DOMAIN));
+        assertEquals(5, queued.targeted());
+
+        Progress done = await(queued.notificationId());
+        assertEquals(Status.COMPLETED, done.status());
+        assertEquals(5, done.delivered());
+        assertEquals(3, done.chunks());
+        assertNotNull(done.finishedAt());
+        assertEquals(5, linked(queued.notificationId()));
+    }
+
+    @Test
+    void testBroadcastToLoyaltySegment() throws Exception {
+        Progress queued = broadcastService.broadcast("Solo clientes frecuentes",
+                new Segment(20, 40, DOMAIN.toUpperCase()));
+
+        Progress done = await(queued.notificationId());
+        assertEquals(3, done.delivered());
+        assertEquals(3, linked(queued.notificationId()));
+    }
+
+    @Test
+    void testBroadcastStopsWhenNotificationDeleted() throws Exception {
+        // Se elimina en la misma transacción que la crea: ningún bloque llega a encontrarla
+        Progress queued = new TransactionTemplate(transactionManager).execute(status -> {
+            Progress started = broadcastService.broadcast("Promo retirada", new Segment(null, null, DOMAIN));
+            notificationRepository.deleteById(started.notificationId());
+            return started;
+        });
+
+        Progress done = await(queued.notificationId());
+        assertEquals(Status.CANCELLED, done.status());
+        assertEquals(0, done.delivered());
+        assertEquals(0, linked(queued.notificationId()));
+        assertFalse(broadcastService.isInFlight(queued.notificationId()));
+    }
+
+    @Test
+    void testBroadcastWithoutUsers() {
+        assertThrows(IllegalOperationException.class,
+                () -> broadcastService.broadcast("Nadie", new Segment(1000, null, DOMAIN)));
+        assertEquals(0, notificationRepository.count());
+    }
+
+    @Test
+    void testBroadcastInvalidSegment() {
+        assertThrows(IllegalOperationException.class,
+                () -> broadcastService.broadcast("Hola", new Segment(50, 10, null)));
+        assertThrows(IllegalOperationException.class, () -> broadcastService.broadcast(" ", Segment.all()));
+    }
+
+    @Test
+    void testProgressOfUnknownBroadcast() {
+        assertThrows(EntityNotFoundException.class, () -> broadcastService.getProgress(0L));
+    }
+}
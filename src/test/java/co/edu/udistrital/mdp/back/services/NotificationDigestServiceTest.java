@@ -0,0 +1,145 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+
+import java.util.List;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.services.NotificationDigestService.Submission;
+
+// Ventana larga: las pruebas cierran la ventana pasando la hora a flush
+@DataJpaTest(properties = { "notifications.digest.enabled=true", "notifications.digest.window-ms=60000",
+        "notifications.digest.max-lines=3" })
+@Transactional
+@Import({ NotificationDigestService.class, NotificationService.class, UnreadNotificationCountService.class,
+        NotificationStreamHub.class, NotificationBroadcastService.class })
+class NotificationDigestServiceTest {
+
+    private static final long AFTER_WINDOW = 61_000;
+
+    @Autowired
+    private NotificationDigestService digestService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @SpyBean
+    private NotificationService notificationService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private UserEntity alice;
+    private UserEntity bob;
+    private UserEntity carol;
+
+    @BeforeEach
+    void setUp() {
+        // Nada de una prueba anterior debe quedar esperando
+        digestService.flush(Long.MAX_VALUE);
+        entityManager.getEntityManager().createQuery("delete from UserNotificationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from NotificationEntity").executeUpdate();
+        alice = user("alice@digest.dogspa.test");
+        bob = user("bob@digest.dogspa.test");
+        carol = user("carol@digest.dogspa.test");
+    }
+
+    private UserEntity user(String email) {
+        UserEntity user = new UserEntity();
+        user.setName(email);
+        user.setEmail(email);
+        entityManager.persist(user);
+        return user;
+    }
+
+    @Test
+    void testCoalescesBurstPerUser() {
+        long now = System.currentTimeMillis();
+        Submission submission = digestService.submit("Reserva confirmada", List.of(alice.getId(), bob.getId()));
+        assertTrue(submission.buffered());
+        assertEquals(2, submission.users());
+        digestService.submit("Pago recibido", List.of(alice.getId(), bob.getId()));
+        digestService.submit("Pedido enviado", List.of(carol.getId()));
+
+        assertEquals(0, digestService.flush(now));
+        assertEquals(0, notificationRepository.count());
+
+        // Alice y Bob acumularon lo mismo, así que comparten un resumen
+        assertEquals(2, digestService.flush(now + AFTER_WINDOW));
+        entityManager.flush();
+
+        List<NotificationEntity> aliceNotifications = notificationRepository.findByUsers_Id(alice.getId());
+        assertEquals(1, aliceNotifications.size());
+        String digest = aliceNotifications.get(0).getMessage();
+        assertTrue(digest.startsWith("2 notificaciones nuevas:"));
+        assertTrue(digest.contains("Reserva confirmada"));
+        assertTrue(digest.contains("Pago recibido"));
+        assertEquals(aliceNotifications.get(0).getId(),
+                notificationRepository.findByUsers_Id(bob.getId()).get(0).getId());
+
+        List<NotificationEntity> carolNotifications = notificationRepository.findByUsers_Id(carol.getId());
+        assertEquals("Pedido enviado", carolNotifications.get(0).getMessage());
+        assertEquals(0, digestService.getMetrics().pendingUsers());
+    }
+
+    @Test
+    void testDigestCapsLines() {
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            digestService.submit("Cambio " + i, List.of(alice.getId()));
+        }
+        digestService.flush(now + AFTER_WINDOW);
+
+        String digest = notificationRepository.findByUsers_Id(alice.getId()).get(0).getMessage();
+        assertTrue(digest.startsWith("5 notificaciones nuevas:"));
+        assertTrue(digest.contains("Cambio 3"));
+        assertFalse(digest.contains("Cambio 4"));
+        assertTrue(digest.endsWith("y 2 más"));
+    }
+
+    @Test
+    void testFailedDigestIsRequeued() {
+        long now = System.currentTimeMillis();
+        long requeued = digestService.getMetrics().requeued();
+        digestService.submit("Reserva confirmada", List.of(alice.getId()));
+        doThrow(new DataAccessResourceFailureException("Database down"))
+                .doCallRealMethod()
+                .when(notificationService).createNotification(anyString(), anyList());
+
+        assertEquals(0, digestService.flush(now + AFTER_WINDOW));
+        assertEquals(1, digestService.getMetrics().pendingUsers());
+
+        // Lo que llega mientras tanto sale en el mismo resumen, después de lo que falló
+        digestService.submit("Pago recibido", List.of(alice.getId()));
+        assertEquals(1, digestService.flush(now + 3 * AFTER_WINDOW));
+
+        String digest = notificationRepository.findByUsers_Id(alice.getId()).get(0).getMessage();
+        assertTrue(digest.startsWith("2 notificaciones nuevas:"));
+        assertTrue(digest.indexOf("Reserva confirmada") < digest.indexOf("Pago recibido"));
+        assertEquals(1, digestService.getMetrics().requeued() - requeued);
+    }
+
+    @Test
+    void testSubmitInvalid() {
+        assertThrows(IllegalOperationException.class, () -> digestService.submit(" ", List.of(alice.getId())));
+        assertThrows(EntityNotFoundException.class, () -> digestService.submit("Hola", List.of(0L)));
+    }
+}
@@ -0,0 +1,127 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.entities.UserNotificationCountEntity;
+import co.edu.udistrital.mdp.back.entities.UserNotificationEntity;
+import co.edu.udistrital.mdp.back.services.NotificationPurgeService.PurgeResult;
+
+// Bloques de 2 y sin pausa para que la purga recorra varios bloques rápido
+@DataJpaTest(properties = { "notifications.retention.read-days=30", "notifications.retention.max-days=180",
+        "notifications.purge.chunk-size=2", "notifications.purge.pause-ms=0" })
+@Transactional
+@Import({ NotificationPurgeService.class, UnreadNotificationCountService.class })
+class NotificationPurgeServiceTest {
+
+    @Autowired
+    private NotificationPurgeService purgeService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private UserEntity user;
+    private NotificationEntity oldRead;
+    private NotificationEntity oldUnread;
+    private NotificationEntity expiredUnread;
+    private NotificationEntity recentRead;
+    private NotificationEntity oldWithoutUsers;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from UserNotificationCountEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from UserNotificationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from NotificationEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        user = new UserEntity();
+        user.setName("Juan Pérez");
+        user.setEmail("juan.perez@example.com");
+        entityManager.persist(user);
+
+        oldRead = notification(40, true);
+        oldUnread = notification(40, false);
+        expiredUnread = notification(200, false);
+        recentRead = notification(5, true);
+        oldWithoutUsers = new NotificationEntity();
+        oldWithoutUsers.setMessage("Sin destinatarios");
+        oldWithoutUsers.setDate(Date.valueOf(LocalDate.now().minusDays(40)));
+        entityManager.persist(oldWithoutUsers);
+
+        UserNotificationCountEntity counter = new UserNotificationCountEntity();
+        counter.setUserId(user.getId());
+        counter.setUnread(2);
+        entityManager.persist(counter);
+        entityManager.flush();
+    }
+
+    private NotificationEntity notification(int daysAgo, boolean read) {
+        NotificationEntity notification = new NotificationEntity();
+        notification.setMessage("Hace " + daysAgo + " días");
+        notification.setDate(Date.valueOf(LocalDate.now().minusDays(daysAgo)));
+        notification.setRead(read);
+        entityManager.persist(notification);
+
+        UserNotificationEntity link = new UserNotificationEntity();
+        link.setUserId(user.getId());
+        link.setNotificationId(notification.getId());
+        link.setRead(read);
+        entityManager.persist(link);
+        return notification;
+    }
+
+    private boolean exists(NotificationEntity notification) {
+        return entityManager.find(NotificationEntity.class, notification.getId()) != null;
+    }
+
+    @Test
+    void testPurge() {
+        PurgeResult result = purgeService.purge();
+
+        assertEquals(3, result.notifications());
+        assertEquals(2, result.links());
+        assertEquals(2, result.chunks());
+        assertTrue(result.complete());
+
+        entityManager.clear();
+        assertFalse(exists(oldRead));
+        assertFalse(exists(expiredUnread));
+        assertFalse(exists(oldWithoutUsers));
+        assertTrue(exists(oldUnread));
+        assertTrue(exists(recentRead));
+        assertNotNull(entityManager.find(UserNotificationEntity.class,
+                new UserNotificationEntity.Key(user.getId(), oldUnread.getId())));
+        assertEquals(1, entityManager.find(UserNotificationCountEntity.class, user.getId()).getUnread());
+    }
+
+    @Test
+    void testPurgeTwiceDeletesNothing() {
+        long runs = purgeService.getMetrics().runs();
+        purgeService.purge();
+        PurgeResult result = purgeService.purge();
+
+        assertEquals(0, result.notifications());
+        assertEquals(0, result.chunks());
+        assertEquals(runs + 2, purgeService.getMetrics().runs());
+        assertSame(result, purgeService.getMetrics().lastRun());
+    }
+}
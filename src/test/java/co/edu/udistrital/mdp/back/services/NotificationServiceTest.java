@@ -4,6 +4,7 @@ import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +26,10 @@ class NotificationServiceTest {
 
     @MockBean private NotificationRepository notificationRepository;
     @MockBean private UserRepository userRepository;
+    @MockBean private UserNotificationRepository userNotificationRepository;
+    @MockBean private UnreadNotificationCountService unreadCounts;
+    @MockBean private NotificationStreamHub streamHub;
+    @MockBean private NotificationBroadcastService broadcastService;
 
     private UserEntity u1;
     private UserEntity u2;
@@ -60,26 +65,32 @@ class NotificationServiceTest {
     @DisplayName("createNotification: sin usuarios encontrados -> EntityNotFoundException")
     void createNotification_noUsers_throws() {
         List<Long> ids = List.of(99L);
-        List<UserEntity> emptyList = List.of();
+        List<Long> emptyList = List.of();
 
-        when(userRepository.findAllById(ids)).thenReturn(emptyList);
+        when(userRepository.findExistingIds(ids)).thenReturn(emptyList);
 
         assertThrows(EntityNotFoundException.class,
                 () -> service.createNotification("Hi!", ids));
 
-        verify(userRepository).findAllById(ids);
+        verify(userRepository).findExistingIds(ids);
         verifyNoInteractions(notificationRepository);
+        verify(unreadCounts, never()).link(any(), any());
     }
 
     @Test
-    @DisplayName("createNotification: OK guarda con fecha, read = false y usuarios asignados")
+    @DisplayName("createNotification: OK guarda con fecha, read = false y vincula los usuarios en bloque")
     void createNotification_ok() throws Exception {
-        List<Long> userIds = List.of(1L, 2L);
-        List<UserEntity> users = List.of(u1, u2);
+        List<Long> userIds = List.of(1L, 2L, 3L);
+        List<Long> existing = List.of(u1.getId(), u2.getId());
         
-        when(userRepository.findAllById(userIds)).thenReturn(users);
+        when(userRepository.findExistingIds(userIds)).thenReturn(existing);
+        when(unreadCounts.link(5L, existing)).thenReturn(existing);
         when(notificationRepository.save(any(NotificationEntity.class)))
-                .thenAnswer(inv -> inv.getArgument(0));
+                .thenAnswer(inv -> {
+                    NotificationEntity n = inv.getArgument(0);
+                    n.setId(5L);
+                    return n;
+                });
 
         NotificationEntity saved = service.createNotification("Nuevo aviso", userIds);
 
@@ -88,10 +99,12 @@ class NotificationServiceTest {
         assertNotNull(saved.getDate());
         assertTrue(saved.getDate() instanceof Date);
         assertEquals(Boolean.FALSE, saved.getRead());
-        assertEquals(users, saved.getUsers());
 
-        verify(userRepository).findAllById(userIds);
+        verify(userRepository).findExistingIds(userIds);
+        verify(userRepository, never()).findAllById(any());
         verify(notificationRepository).save(any(NotificationEntity.class));
+        verify(unreadCounts).link(5L, existing);
+        verify(streamHub).publishAfterCommit(saved, existing);
     }
 
     @Test
@@ -126,20 +139,45 @@ class NotificationServiceTest {
         assertEquals(Boolean.TRUE, n.getRead());
         verify(notificationRepository).findById(notificationId);
         verify(notificationRepository).save(n);
+        verify(userNotificationRepository).markReadForAll(notificationId);
+    }
+
+    @Test
+    @DisplayName("markAsReadForUser: usuario sin esa notificación -> EntityNotFoundException")
+    void markAsReadForUser_notLinked() {
+        when(userNotificationRepository.markRead(1L, 10L)).thenReturn(0);
+
+        assertThrows(EntityNotFoundException.class, () -> service.markAsReadForUser(10L, 1L));
+
+        verify(userNotificationRepository).markRead(1L, 10L);
+        verifyNoInteractions(notificationRepository, unreadCounts);
+    }
+
+    @Test
+    @DisplayName("markAllAsReadForUser: un solo UPDATE sobre la tabla de unión")
+    void markAllAsReadForUser_singleUpdate() {
+        when(userNotificationRepository.markAllRead(1L)).thenReturn(3);
+
+        assertEquals(3, service.markAllAsReadForUser(1L));
+
+        verify(userNotificationRepository).markAllRead(1L);
+        verify(unreadCounts).read(1L, 3);
+        verify(userNotificationRepository, never()).findUnreadNotificationIds(1L);
+        verifyNoInteractions(notificationRepository);
     }
 
     @Test
-    @DisplayName("getUserNotifications: onlyUnread=true usa findByUserIdAndReadFalse")
+    @DisplayName("getUserNotifications: onlyUnread=true usa findUnreadByUserId")
     void getUserNotifications_onlyUnread() {
         Long userId = 1L;
         List<NotificationEntity> emptyList = List.of();
         
-        when(notificationRepository.findByUsers_IdAndReadFalse(userId)).thenReturn(emptyList);
+        when(notificationRepository.findUnreadByUserId(userId)).thenReturn(emptyList);
 
         List<NotificationEntity> result = service.getUserNotifications(userId, true);
 
         assertNotNull(result);
-        verify(notificationRepository).findByUsers_IdAndReadFalse(userId);
+        verify(notificationRepository).findUnreadByUserId(userId);
         verifyNoMoreInteractions(notificationRepository);
         verifyNoInteractions(userRepository);
     }
@@ -164,13 +202,13 @@ class NotificationServiceTest {
     @DisplayName("deleteNotification: no existe -> EntityNotFoundException")
     void deleteNotification_notFound() {
         Long notificationId = 77L;
-        when(notificationRepository.findById(notificationId)).thenReturn(Optional.empty());
+        when(notificationRepository.lockById(notificationId)).thenReturn(null);
 
         EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class, 
                 () -> service.deleteNotification(notificationId));
         assertNotNull(thrown);
 
-        verify(notificationRepository).findById(notificationId);
+        verify(notificationRepository).lockById(notificationId);
         verifyNoMoreInteractions(notificationRepository);
     }
 
@@ -182,16 +220,38 @@ class NotificationServiceTest {
         n.setId(notificationId);
         n.setRead(false);
 
+        when(notificationRepository.lockById(notificationId)).thenReturn(notificationId);
         when(notificationRepository.findById(notificationId)).thenReturn(Optional.of(n));
+        when(userNotificationRepository.existsUnread(notificationId)).thenReturn(true);
 
         IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, 
                 () -> service.deleteNotification(notificationId));
         assertNotNull(thrown);
 
+        verify(notificationRepository).lockById(notificationId);
         verify(notificationRepository).findById(notificationId);
         verifyNoMoreInteractions(notificationRepository);
     }
 
+    @Test
+    @DisplayName("deleteNotification: envío masivo en curso -> IllegalArgumentException")
+    void deleteNotification_broadcastInFlight_forbidden() {
+        Long notificationId = 13L;
+        NotificationEntity n = new NotificationEntity();
+        n.setId(notificationId);
+        n.setRead(false);
+
+        // Aún sin filas vinculadas: existsUnread sería false
+        when(notificationRepository.lockById(notificationId)).thenReturn(notificationId);
+        when(notificationRepository.findById(notificationId)).thenReturn(Optional.of(n));
+        when(broadcastService.isInFlight(notificationId)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> service.deleteNotification(notificationId));
+
+        verify(userNotificationRepository, never()).unlinkAll(notificationId);
+        verify(notificationRepository, never()).delete(n);
+    }
+
     @Test
     @DisplayName("deleteNotification: leída -> elimina")
     void deleteNotification_read_ok() throws Exception {
@@ -200,11 +260,13 @@ class NotificationServiceTest {
         n.setId(notificationId);
         n.setRead(true);
 
+        when(notificationRepository.lockById(notificationId)).thenReturn(notificationId);
         when(notificationRepository.findById(notificationId)).thenReturn(Optional.of(n));
 
         service.deleteNotification(notificationId);
 
         verify(notificationRepository).findById(notificationId);
+        verify(userNotificationRepository).unlinkAll(notificationId);
         verify(notificationRepository).delete(n);
     }
 
@@ -0,0 +1,180 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationCountRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import co.edu.udistrital.mdp.back.services.NotificationStreamHub.NotificationEvent;
+
+// Sin transacción de prueba: se publica después del commit. Latido corto y colas de 2 eventos.
+@DataJpaTest(properties = { "notifications.stream.heartbeat-ms=100", "notifications.stream.buffer-size=2" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ NotificationStreamHub.class, NotificationService.class, UnreadNotificationCountService.class,
+        NotificationBroadcastService.class })
+class NotificationStreamHubTest {
+
+    @Autowired
+    private NotificationStreamHub streamHub;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserNotificationRepository userNotificationRepository;
+
+    @Autowired
+    private UserNotificationCountRepository countRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserEntity alice;
+
+    /** Keeps what the hub sends instead of writing it to a response. */
+    static class CapturingEmitter extends SseEmitter {
+        final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            sent.add(text.toString());
+        }
+
+        // Messages until one contains the text, or everything sent within the timeout
+        List<String> until(String text) throws InterruptedException {
+            List<String> seen = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                String message = sent.poll(100, TimeUnit.MILLISECONDS);
+                if (message != null) {
+                    seen.add(message);
+                    if (message.contains(text)) {
+                        return seen;
+                    }
+                }
+            }
+            fail("Never sent: " + text);
+            return seen;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        alice = new UserEntity();
+        alice.setName("alice");
+        alice.setEmail("alice@stream.dogspa.test");
+        alice = userRepository.save(alice);
+    }
+
+    @AfterEach
+    void clearData() {
+        streamHub.stop();
+        countRepository.deleteAllInBatch();
+        userNotificationRepository.deleteAllInBatch();
+        notificationRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM person_entity WHERE email LIKE ?", "%@stream.dogspa.test");
+    }
+
+    @Test
+    void testPublishesAfterCommit() throws Exception {
+        CapturingEmitter emitter = new CapturingEmitter();
+        assertTrue(streamHub.subscribe(alice.getId(), null, emitter));
+
+        NotificationEntity notification = notificationService.createNotification("Cita mañana",
+                List.of(alice.getId()));
+
+        List<String> seen = emitter.until("id:" + notification.getId() + "\n");
+        assertTrue(seen.get(seen.size() - 1).contains("Cita mañana"));
+        assertEquals(1, streamHub.getMetrics().connections());
+    }
+
+    @Test
+    void testResumesFromLastEventId() throws Exception {
+        NotificationEntity first = notificationService.createNotification("Primera", List.of(alice.getId()));
+        NotificationEntity second = notificationService.createNotification("Segunda", List.of(alice.getId()));
+
+        CapturingEmitter emitter = new CapturingEmitter();
+        streamHub.subscribe(alice.getId(), first.getId(), emitter);
+        List<String> seen = emitter.until("id:" + second.getId() + "\n");
+
+        NotificationEntity third = notificationService.createNotification("Tercera", List.of(alice.getId()));
+        seen.addAll(emitter.until("id:" + third.getId() + "\n"));
+
+        assertTrue(seen.stream().noneMatch(message -> message.contains("id:" + first.getId() + "\n")));
+        assertEquals(1, seen.stream().filter(message -> message.contains("id:" + second.getId() + "\n")).count());
+    }
+
+    @Test
+    void testSendsHeartbeats() throws Exception {
+        CapturingEmitter emitter = new CapturingEmitter();
+        streamHub.subscribe(alice.getId(), null, emitter);
+        emitter.until("heartbeat");
+    }
+
+    @Test
+    void testDropsSlowStream() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter stuck = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                sending.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        long droppedBefore = streamHub.getMetrics().dropped();
+        try {
+            streamHub.subscribe(alice.getId(), null, stuck);
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+            for (long id = 1; id <= 3; id++) {
+                streamHub.publish(new NotificationEvent(id, "Promo " + id, null), List.of(alice.getId()));
+            }
+
+            assertEquals(droppedBefore + 1, streamHub.getMetrics().dropped());
+            assertEquals(0, streamHub.getMetrics().connections());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testSubscribeUnknownUser() {
+        assertThrows(EntityNotFoundException.class, () -> streamHub.subscribe(0L, null));
+    }
+}
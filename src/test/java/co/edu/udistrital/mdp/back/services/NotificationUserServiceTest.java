@@ -3,6 +3,7 @@ package co.edu.udistrital.mdp.back.services;
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,7 +16,7 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
-@Import(NotificationUserService.class)
+@Import({ NotificationUserService.class, UnreadNotificationCountService.class })
 class NotificationUserServiceTest {
 
     @Autowired
@@ -27,6 +28,9 @@ class NotificationUserServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserNotificationRepository userNotificationRepository;
+
     private NotificationEntity notification;
     private UserEntity user;
 
@@ -57,4 +61,19 @@ class NotificationUserServiceTest {
         List<UserEntity> users = notificationUserService.getUsers(notification.getId());
         assertTrue(users.isEmpty());
     }
+
+    @Test
+    void testAddUserKeepsReadStateOfOtherNotifications() throws Exception {
+        NotificationEntity second = new NotificationEntity();
+        second.setMessage("Mantenimiento programado");
+        notificationRepository.save(second);
+
+        notificationUserService.addUserToNotification(notification.getId(), user.getId());
+        userNotificationRepository.markRead(user.getId(), notification.getId());
+
+        notificationUserService.addUserToNotification(second.getId(), user.getId());
+        userRepository.flush();
+
+        assertEquals(List.of(second.getId()), userNotificationRepository.findUnreadNotificationIds(user.getId()));
+    }
 }
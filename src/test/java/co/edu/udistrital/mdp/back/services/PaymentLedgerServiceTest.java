@@ -0,0 +1,145 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentLedgerEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.PaymentLedgerService.DailyTotal;
+
+@DataJpaTest
+@Transactional
+@Import({ PaymentService.class, PaymentLedgerService.class })
+class PaymentLedgerServiceTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentLedgerService ledgerService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ShoppingCartEntity shoppingCart;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        // El libro y los totales no se borran (las filas vacías se confirman aparte), así que se comparan diferencias
+        entityManager.getEntityManager().createQuery("delete from PaymentEntity").executeUpdate();
+        shoppingCart = new ShoppingCartEntity();
+        entityManager.persist(shoppingCart);
+    }
+
+    private PaymentEntity create(String method, double amount) {
+        PaymentEntity payment = new PaymentEntity();
+        payment.setMethod(method);
+        payment.setAmount(amount);
+        payment.setShoppingCart(shoppingCart);
+        return paymentService.createPayment(payment);
+    }
+
+    private DailyTotal total(String method, PaymentStatus status) {
+        return ledgerService.getDailyTotals(today, today, method).stream()
+                .filter(t -> t.status() == status)
+                .findFirst()
+                .orElse(new DailyTotal(today, method, status, 0, 0.0));
+    }
+
+    @Test
+    void testTransitionsAreRecorded() {
+        PaymentEntity payment = create("cash", 100.0);
+        paymentService.processPayment(payment.getId());
+        paymentService.completePayment(payment.getId());
+
+        List<PaymentLedgerEntity> entries = ledgerService.getEntries(payment.getId());
+        assertEquals(List.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING, PaymentStatus.COMPLETED),
+                entries.stream().map(PaymentLedgerEntity::getStatus).toList());
+        assertEquals(100.0, entries.get(2).getAmount());
+    }
+
+    @Test
+    void testRejectedTransitionIsNotRecorded() {
+        PaymentEntity payment = create("cash", 100.0);
+        assertFalse(paymentService.tryTransition(payment.getId(), PaymentStatus.COMPLETED));
+        assertEquals(1, ledgerService.getEntries(payment.getId()).size());
+    }
+
+    @Test
+    void testDailyTotals() {
+        DailyTotal before = total("nequi", PaymentStatus.COMPLETED);
+
+        for (double amount : new double[] { 10.5, 20.25 }) {
+            PaymentEntity payment = create("nequi", amount);
+            paymentService.processPayment(payment.getId());
+            paymentService.completePayment(payment.getId());
+        }
+        create("nequi", 99.0);
+
+        DailyTotal after = total("nequi", PaymentStatus.COMPLETED);
+        assertEquals(2, after.payments() - before.payments());
+        assertEquals(30.75, after.amount() - before.amount(), 0.001);
+        assertTrue(ledgerService.getDailyTotals(today, today, "nequi").stream()
+                .allMatch(t -> t.method().equals("nequi")));
+    }
+
+    @Test
+    void testBatchTransitionIsRecorded() {
+        PaymentEntity first = create("pse", 10.0);
+        PaymentEntity second = create("pse", 20.0);
+        PaymentEntity pending = create("pse", 30.0);
+        paymentService.processPayment(first.getId());
+        paymentService.processPayment(second.getId());
+        DailyTotal before = total("pse", PaymentStatus.FAILED);
+
+        int changed = paymentService.transitionAll(List.of(first.getId(), second.getId(), pending.getId()),
+                PaymentStatus.FAILED);
+
+        assertEquals(2, changed);
+        assertEquals(PaymentStatus.FAILED, ledgerService.getEntries(first.getId()).get(2).getStatus());
+        assertEquals(1, ledgerService.getEntries(pending.getId()).size());
+        DailyTotal after = total("pse", PaymentStatus.FAILED);
+        assertEquals(2, after.payments() - before.payments());
+        assertEquals(30.0, after.amount() - before.amount(), 0.001);
+    }
+
+    @Test
+    void testUpdateRecordsCorrection() {
+        PaymentEntity payment = create("daviplata", 40.0);
+        DailyTotal oldMethod = total("daviplata", PaymentStatus.PENDING);
+        DailyTotal newMethod = total("paypal", PaymentStatus.PENDING);
+
+        PaymentEntity update = new PaymentEntity();
+        update.setMethod("paypal");
+        update.setAmount(55.0);
+        paymentService.updatePayment(payment.getId(), update);
+
+        List<PaymentLedgerEntity> entries = ledgerService.getEntries(payment.getId());
+        assertEquals(List.of(40.0, -40.0, 55.0), entries.stream().map(PaymentLedgerEntity::getAmount).toList());
+        assertEquals(-1, total("daviplata", PaymentStatus.PENDING).payments() - oldMethod.payments());
+        assertEquals(-40.0, total("daviplata", PaymentStatus.PENDING).amount() - oldMethod.amount(), 0.001);
+        assertEquals(1, total("paypal", PaymentStatus.PENDING).payments() - newMethod.payments());
+        assertEquals(55.0, total("paypal", PaymentStatus.PENDING).amount() - newMethod.amount(), 0.001);
+    }
+
+    @Test
+    void testDailyTotalsInvalidRange() {
+        assertThrows(IllegalOperationException.class,
+                () -> ledgerService.getDailyTotals(today, today.minusDays(1), null));
+    }
+}
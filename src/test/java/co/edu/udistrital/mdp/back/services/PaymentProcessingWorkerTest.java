@@ -0,0 +1,183 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.PaymentRepository;
+import co.edu.udistrital.mdp.back.services.PaymentProcessingWorker.Metrics;
+
+// Un solo trabajador y una cola de 4 para poder llenarla; los hilos confirman sus propias transacciones
+@DataJpaTest(properties = { "payments.worker.enabled=true", "payments.worker.threads=1",
+        "payments.worker.queue-capacity=4", "payments.gateway=test" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ PaymentProcessingWorker.class, PaymentService.class, PaymentLedgerService.class,
+        PaymentProcessingWorkerTest.TestGateway.class })
+class PaymentProcessingWorkerTest {
+
+    // Rechaza los cobros desde 500, falla con 13 y tarda lo suficiente para que la cola se llene
+    static class TestGateway implements PaymentGateway {
+        @Override
+        public Result charge(Charge charge) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (charge.amount() == 13.0) {
+                throw new IllegalStateException("Read timed out");
+            }
+            return charge.amount() >= 500 ? Result.declined("Over limit") : Result.approved("OK");
+        }
+    }
+
+    @Autowired
+    private PaymentProcessingWorker paymentWorker;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @AfterEach
+    void clearData() throws InterruptedException {
+        awaitIdle();
+        paymentRepository.deleteAllInBatch();
+    }
+
+    private PaymentEntity payment(double amount) {
+        PaymentEntity payment = new PaymentEntity();
+        payment.setMethod("cash");
+        payment.setAmount(amount);
+        payment.setStatus(PaymentStatus.PENDING);
+        return paymentRepository.save(payment);
+    }
+
+    private PaymentStatus statusOf(PaymentEntity payment) {
+        return paymentRepository.findById(payment.getId()).orElseThrow().getStatus();
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Metrics metrics = paymentWorker.getMetrics();
+            if (metrics.queueDepth() == 0 && metrics.inFlight() == 0) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Payment worker did not drain its queue");
+    }
+
+    @Test
+    void testProcessApprovedAndDeclined() throws InterruptedException {
+        PaymentEntity approved = payment(100.0);
+        PaymentEntity declined = payment(800.0);
+        Metrics before = paymentWorker.getMetrics();
+
+        assertTrue(paymentWorker.submit(approved.getId()));
+        assertTrue(paymentWorker.submit(declined.getId()));
+        awaitIdle();
+
+        assertEquals(PaymentStatus.COMPLETED, statusOf(approved));
+        assertEquals(PaymentStatus.FAILED, statusOf(declined));
+        Metrics after = paymentWorker.getMetrics();
+        assertEquals(1, after.completed() - before.completed());
+        assertEquals(1, after.failed() - before.failed());
+        assertTrue(after.throughputPerSecond() > 0);
+    }
+
+    @Test
+    void testFullQueueRejects() throws InterruptedException {
+        List<PaymentEntity> payments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            payments.add(payment(10.0));
+        }
+
+        // A lo sumo uno en curso y 4 en la cola
+        int accepted = 0;
+        for (PaymentEntity payment : payments) {
+            if (paymentWorker.submit(payment.getId())) {
+                accepted++;
+            }
+        }
+        assertTrue(accepted <= 5);
+        awaitIdle();
+
+        long pending = payments.stream().filter(p -> statusOf(p) == PaymentStatus.PENDING).count();
+        assertEquals(10 - accepted, pending);
+    }
+
+    @Test
+    void testEnqueuePendingFeedsRejectedPayments() throws InterruptedException {
+        PaymentEntity first = payment(10.0);
+        PaymentEntity second = payment(20.0);
+
+        assertEquals(2, paymentWorker.enqueuePending());
+        awaitIdle();
+
+        assertEquals(PaymentStatus.COMPLETED, statusOf(first));
+        assertEquals(PaymentStatus.COMPLETED, statusOf(second));
+        assertEquals(0, paymentWorker.enqueuePending());
+    }
+
+    @Test
+    void testGatewayErrorLeavesPaymentProcessing() throws InterruptedException {
+        PaymentEntity payment = payment(13.0);
+        Metrics before = paymentWorker.getMetrics();
+
+        assertTrue(paymentWorker.submit(payment.getId()));
+        awaitIdle();
+        assertEquals(PaymentStatus.PROCESSING, statusOf(payment));
+        assertEquals(0, paymentWorker.enqueuePending());
+
+        // Vencido el plazo, el alimentador lo vuelve a tomar
+        LocalDateTime expired = LocalDateTime.now().minusHours(1);
+        PaymentEntity stored = paymentRepository.findById(payment.getId()).orElseThrow();
+        stored.setClaimedAt(expired);
+        paymentRepository.save(stored);
+        assertEquals(1, paymentWorker.enqueuePending());
+        awaitIdle();
+
+        PaymentEntity retaken = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertEquals(PaymentStatus.PROCESSING, retaken.getStatus());
+        assertTrue(retaken.getClaimedAt().isAfter(expired));
+        assertEquals(2, paymentWorker.getMetrics().unresolved() - before.unresolved());
+    }
+
+    @Test
+    void testSkipsCancelledPayment() throws Exception {
+        // El primero ocupa al trabajador mientras el segundo se cancela en la cola
+        PaymentEntity busy = payment(10.0);
+        PaymentEntity cancelled = payment(10.0);
+        paymentWorker.submit(busy.getId());
+        paymentWorker.submit(cancelled.getId());
+        paymentService.cancelPayment(cancelled.getId());
+        awaitIdle();
+
+        assertEquals(PaymentStatus.COMPLETED, statusOf(busy));
+        assertEquals(PaymentStatus.CANCELLED, statusOf(cancelled));
+    }
+
+    @Test
+    void testSubmitNonPendingPayment() {
+        PaymentEntity payment = payment(10.0);
+        payment.setStatus(PaymentStatus.CANCELLED);
+        paymentRepository.save(payment);
+        assertThrows(IllegalOperationException.class, () -> paymentWorker.submitPayment(payment.getId()));
+    }
+}
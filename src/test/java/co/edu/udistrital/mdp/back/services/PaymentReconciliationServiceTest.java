@@ -0,0 +1,121 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.transaction.Transactional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
+import co.edu.udistrital.mdp.back.services.PaymentReconciliationService.FileResult;
+import co.edu.udistrital.mdp.back.services.PaymentReconciliationService.Result;
+
+// Bloques de 2 para que el archivo se concilie en varias consultas
+@DataJpaTest(properties = { "payments.reconciliation.batch-size=2", "payments.reconciliation.date-window-days=3" })
+@Transactional
+@Import({ PaymentReconciliationService.class, PaymentService.class, PaymentLedgerService.class })
+class PaymentReconciliationServiceTest {
+
+    @Autowired
+    private PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        entityManager.getEntityManager().createQuery("delete from PaymentEntity").executeUpdate();
+    }
+
+    private PaymentEntity payment(double amount, PaymentStatus status) {
+        PaymentEntity payment = new PaymentEntity();
+        payment.setMethod("cash");
+        payment.setAmount(amount);
+        payment.setStatus(status);
+        payment.setDate(LocalDateTime.now());
+        entityManager.persist(payment);
+        return payment;
+    }
+
+    private PaymentStatus statusOf(PaymentEntity payment) {
+        return entityManager.find(PaymentEntity.class, payment.getId()).getStatus();
+    }
+
+    private String row(PaymentEntity payment, double amount, String status, LocalDate settledOn) {
+        return payment.getId() + "," + amount + "," + status + "," + settledOn + "\n";
+    }
+
+    @Test
+    void testReconcile() throws Exception {
+        PaymentEntity toComplete = payment(100.0, PaymentStatus.PROCESSING);
+        PaymentEntity matched = payment(50.0, PaymentStatus.COMPLETED);
+        PaymentEntity wrongAmount = payment(70.0, PaymentStatus.COMPLETED);
+        PaymentEntity cancelled = payment(30.0, PaymentStatus.CANCELLED);
+        PaymentEntity toFail = payment(40.0, PaymentStatus.PROCESSING);
+        PaymentEntity late = payment(20.0, PaymentStatus.COMPLETED);
+        entityManager.flush();
+
+        String file = "payment_id,amount,status,settled_on\n"
+                + row(toComplete, 100.0, "settled", today)
+                + row(matched, 50.0, "settled", today)
+                + row(wrongAmount, 75.0, "settled", today)
+                + row(cancelled, 30.0, "settled", today)
+                + row(toFail, 40.0, "declined", today)
+                + row(late, 20.0, "settled", today.plusDays(10))
+                + (late.getId() + 1000) + ",10.0,settled," + today + "\n"
+                + "abc,1.0,settled," + today + "\n";
+        StringWriter report = new StringWriter();
+
+        Result result = reconciliationService.reconcile(new StringReader(file), report);
+
+        assertEquals(8, result.lines());
+        assertEquals(1, result.matched());
+        assertEquals(2, result.corrected());
+        assertEquals(5, result.discrepancies());
+        assertEquals(1, result.malformed());
+
+        entityManager.clear();
+        assertEquals(PaymentStatus.COMPLETED, statusOf(toComplete));
+        assertEquals(PaymentStatus.FAILED, statusOf(toFail));
+        assertEquals(PaymentStatus.CANCELLED, statusOf(cancelled));
+
+        String lines = report.toString();
+        assertTrue(lines.contains(wrongAmount.getId() + ",AMOUNT_MISMATCH,70.0,75.0"));
+        assertTrue(lines.contains(cancelled.getId() + ",STATUS_CONFLICT,cancelled,completed"));
+        assertTrue(lines.contains(late.getId() + ",DATE_MISMATCH"));
+        assertTrue(lines.contains((late.getId() + 1000) + ",MISSING_PAYMENT"));
+        assertTrue(lines.contains(toComplete.getId() + ",STATUS_CORRECTED,processing,completed"));
+        assertTrue(lines.contains("MALFORMED_LINE"));
+    }
+
+    @Test
+    void testReconcileFile(@TempDir Path inbox) throws Exception {
+        PaymentEntity payment = payment(10.0, PaymentStatus.PROCESSING);
+        entityManager.flush();
+        Path file = inbox.resolve("settlement.csv");
+        Files.writeString(file, "payment_id,amount,status,settled_on\n" + row(payment, 10.0, "settled", today));
+
+        FileResult result = reconciliationService.reconcileFile(file);
+
+        assertEquals(1, result.result().corrected());
+        assertFalse(Files.exists(file));
+        assertTrue(Files.exists(inbox.resolve("processed").resolve("settlement.csv")));
+        assertTrue(Files.readString(Path.of(result.report())).contains("STATUS_CORRECTED"));
+    }
+}
@@ -16,16 +16,19 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
 import co.edu.udistrital.mdp.back.entities.PaymentEntity;
+import co.edu.udistrital.mdp.back.entities.PaymentStatus;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.PaymentService.PaymentFilter;
+import co.edu.udistrital.mdp.back.services.PaymentService.PaymentPage;
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @DataJpaTest
 @Transactional
-@Import(PaymentService.class)
+@Import({ PaymentService.class, PaymentLedgerService.class })
 class PaymentServiceTest {
 
     @Autowired
@@ -63,7 +66,7 @@ class PaymentServiceTest {
             PaymentEntity entity = factory.manufacturePojo(PaymentEntity.class);
             entity.setMethod("credit_card");
             entity.setAmount(100.0 + i * 50);
-            entity.setStatus("pending");
+            entity.setStatus(PaymentStatus.PENDING);
             entity.setDate(LocalDateTime.now());
             entity.setShoppingCart(shoppingCart);
             entityManager.persist(entity);
@@ -85,7 +88,7 @@ class PaymentServiceTest {
         PaymentEntity entity = entityManager.find(PaymentEntity.class, result.getId());
         assertEquals("pse", entity.getMethod());
         assertEquals(250.0, entity.getAmount());
-        assertEquals("pending", entity.getStatus());
+        assertEquals(PaymentStatus.PENDING, entity.getStatus());
     }
 
     @Test
@@ -193,7 +196,7 @@ class PaymentServiceTest {
 
     private void throwUpdateCompletedPayment() throws IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
-        entity.setStatus("completed");
+        entity.setStatus(PaymentStatus.COMPLETED);
         entityManager.persist(entity);
         PaymentEntity updateEntity = new PaymentEntity();
         updateEntity.setAmount(500.0);
@@ -224,7 +227,7 @@ void testUpdateInvalidPayment() {
 
     private void throwDeleteCompletedPayment() throws IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
-        entity.setStatus("completed");
+        entity.setStatus(PaymentStatus.COMPLETED);
         entityManager.persist(entity);
         paymentService.deletePayment(entity.getId());
     }
@@ -238,7 +241,7 @@ void testUpdateInvalidPayment() {
     void testProcessPayment() throws EntityNotFoundException, IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
         PaymentEntity result = paymentService.processPayment(entity.getId());
-        assertEquals("processing", result.getStatus());
+        assertEquals(PaymentStatus.PROCESSING, result.getStatus());
     }
 
     @Test
@@ -248,18 +251,47 @@ void testUpdateInvalidPayment() {
 
     private void throwProcessNonPendingPayment() throws IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
-        entity.setStatus("completed");
+        entity.setStatus(PaymentStatus.COMPLETED);
         entityManager.persist(entity);
         paymentService.processPayment(entity.getId());
     }
 
+    @Test
+    void testProcessPaymentTwice() throws EntityNotFoundException, IllegalOperationException {
+        Long id = paymentList.get(0).getId();
+        paymentService.processPayment(id);
+        assertThrows(IllegalOperationException.class, () -> paymentService.processPayment(id));
+        assertEquals(PaymentStatus.PROCESSING, entityManager.find(PaymentEntity.class, id).getStatus());
+    }
+
+    @Test
+    void testFailPayment() throws EntityNotFoundException, IllegalOperationException {
+        PaymentEntity entity = paymentList.get(0);
+        paymentService.processPayment(entity.getId());
+        PaymentEntity result = paymentService.failPayment(entity.getId());
+        assertEquals(PaymentStatus.FAILED, result.getStatus());
+    }
+
+    @Test
+    void testTryTransitionNotAllowed() {
+        // De pendiente no se puede pasar directo a completado
+        Long id = paymentList.get(0).getId();
+        assertFalse(paymentService.tryTransition(id, PaymentStatus.COMPLETED));
+        assertEquals(PaymentStatus.PENDING, entityManager.find(PaymentEntity.class, id).getStatus());
+    }
+
+    @Test
+    void testTransitionInvalidPayment() {
+        assertThrows(EntityNotFoundException.class, () -> paymentService.processPayment(0L));
+    }
+
     @Test
     void testCompletePayment() throws EntityNotFoundException, IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
-        entity.setStatus("processing");
+        entity.setStatus(PaymentStatus.PROCESSING);
         entityManager.persist(entity);
         PaymentEntity result = paymentService.completePayment(entity.getId());
-        assertEquals("completed", result.getStatus());
+        assertEquals(PaymentStatus.COMPLETED, result.getStatus());
     }
 
     @Test
@@ -276,7 +308,7 @@ void testUpdateInvalidPayment() {
     void testCancelPayment() throws EntityNotFoundException, IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
         PaymentEntity result = paymentService.cancelPayment(entity.getId());
-        assertEquals("cancelled", result.getStatus());
+        assertEquals(PaymentStatus.CANCELLED, result.getStatus());
     }
 
     @Test
@@ -286,7 +318,7 @@ void testUpdateInvalidPayment() {
 
     private void throwCancelCompletedPayment() throws IllegalOperationException {
         PaymentEntity entity = paymentList.get(0);
-        entity.setStatus("completed");
+        entity.setStatus(PaymentStatus.COMPLETED);
         entityManager.persist(entity);
         paymentService.cancelPayment(entity.getId());
     }
@@ -299,6 +331,59 @@ void testUpdateInvalidPayment() {
         assertEquals(3, payments.size());
     }
 
+    @Test
+    void testSearchPaymentsPages() {
+        PaymentFilter filter = new PaymentFilter(shoppingCart.getId(), null, null, null, null);
+
+        PaymentPage first = paymentService.searchPayments(filter, null, 2);
+        assertEquals(2, first.payments().size());
+        assertEquals(paymentList.get(2).getId(), first.payments().get(0).getId());
+        assertNotNull(first.nextCursor());
+
+        PaymentPage second = paymentService.searchPayments(filter, first.nextCursor(), 2);
+        assertEquals(1, second.payments().size());
+        assertEquals(paymentList.get(0).getId(), second.payments().get(0).getId());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void testSearchPaymentsByStatusAndMethod() {
+        PaymentEntity entity = paymentList.get(1);
+        entity.setStatus(PaymentStatus.COMPLETED);
+        entity.setMethod("pse");
+        entityManager.persist(entity);
+        entityManager.flush();
+
+        PaymentPage page = paymentService.searchPayments(
+                new PaymentFilter(null, PaymentStatus.COMPLETED, "PSE", null, null), null, 10);
+        assertEquals(1, page.payments().size());
+        assertEquals(entity.getId(), page.payments().get(0).getId());
+
+        page = paymentService.searchPayments(
+                new PaymentFilter(null, null, null, LocalDateTime.now().plusDays(1), null), null, 10);
+        assertTrue(page.payments().isEmpty());
+    }
+
+    @Test
+    void testMigrateLegacyStatuses() throws EntityNotFoundException {
+        PaymentEntity legacy = paymentList.get(0);
+        PaymentEntity unknown = paymentList.get(1);
+        entityManager.getEntityManager().createNativeQuery("UPDATE payment SET status = ' Paid' WHERE id = :id")
+                .setParameter("id", legacy.getId()).executeUpdate();
+        entityManager.getEntityManager().createNativeQuery("UPDATE payment SET status = 'on_hold' WHERE id = :id")
+                .setParameter("id", unknown.getId()).executeUpdate();
+        entityManager.clear();
+
+        paymentService.migrate();
+
+        assertEquals(PaymentStatus.COMPLETED, paymentService.getPayment(legacy.getId()).getStatus());
+        assertNull(paymentService.getPayment(unknown.getId()).getStatus());
+        PaymentEntity updateEntity = new PaymentEntity();
+        updateEntity.setAmount(500.0);
+        assertThrows(IllegalOperationException.class,
+                () -> paymentService.updatePayment(unknown.getId(), updateEntity));
+    }
+
     @Test
     void testGetPaymentsByInvalidShoppingCart() {
         assertThrows(EntityNotFoundException.class, this::throwGetPaymentsByInvalidShoppingCart);
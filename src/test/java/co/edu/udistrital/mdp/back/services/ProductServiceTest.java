@@ -27,6 +27,9 @@ class ProductServiceTest {
     @MockBean
     private OrderDetailRepository orderDetailRepository;
 
+    @MockBean
+    private CartWriteBehindStore cartStore;
+
     private ProductEntity sample;
 
     @BeforeEach
@@ -243,6 +246,27 @@ class ProductServiceTest {
         assertEquals(8, result.getStock());
     }
 
+    @Test
+    @DisplayName("update sube la versión de precio solo si el precio cambia")
+    void update_priceChange_bumpsPriceVersion() {
+        ProductEntity existing = new ProductEntity();
+        existing.setId(1L);
+        existing.setPrice(10.0);
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(productRepository.save(any(ProductEntity.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        ProductEntity samePrice = new ProductEntity();
+        samePrice.setPrice(10.0);
+        assertEquals(0L, productService.update(1L, samePrice).getPriceVersion());
+        verifyNoInteractions(cartStore);
+
+        ProductEntity newPrice = new ProductEntity();
+        newPrice.setPrice(11.0);
+        assertEquals(1L, productService.update(1L, newPrice).getPriceVersion());
+        verify(cartStore).repriced(1L);
+    }
+
     @Test
     @DisplayName("update lanza IllegalArgumentException si stock < reservado")
     void update_stockLessThanReserved_throwsException() {
@@ -23,7 +23,7 @@ import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @DataJpaTest
 @Transactional
-@Import(ProductShoppingCartService.class)
+@Import({ ProductShoppingCartService.class, ShoppingCartService.class })
 class ProductShoppingCartServiceTest {
 
     @Autowired
@@ -45,6 +45,7 @@ class ProductShoppingCartServiceTest {
     }
 
     private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from UserEntity").executeUpdate();
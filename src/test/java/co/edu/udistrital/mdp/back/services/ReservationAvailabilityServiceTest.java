@@ -0,0 +1,228 @@
+package co.edu.udistrital.mdp.back.services;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.BranchRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ReservationRepository.BookedSlot;
+import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = ReservationAvailabilityService.class)
+class ReservationAvailabilityServiceTest {
+
+    @Autowired
+    private ReservationAvailabilityService availabilityService;
+
+    @MockBean private BranchRepository branchRepository;
+    @MockBean private ServiceRepository serviceRepository;
+    @MockBean private ReservationRepository reservationRepository;
+    @MockBean private ReservationSeriesService reservationSeriesService;
+
+    private final LocalDate tomorrow = LocalDate.now().plusDays(1);
+
+    private ServiceEntity bath;
+    private BranchEntity norte;
+    private BranchEntity norte2;
+    private BranchEntity sur;
+
+    @BeforeEach
+    void setUp() {
+        bath = new ServiceEntity();
+        bath.setId(1L);
+        bath.setName("Baño completo");
+        bath.setDuration(60);
+
+        norte = branch(10L, "Norte Pets", "Norte");
+        norte2 = branch(11L, "Norte Pets 2", "norte");
+        sur = branch(12L, "Sur Spa", "Sur");
+
+        when(serviceRepository.findById(1L)).thenReturn(Optional.of(bath));
+        when(branchRepository.findById(10L)).thenReturn(Optional.of(norte));
+        when(branchRepository.findByServices_Id(1L)).thenReturn(List.of(sur, norte, norte2));
+        when(reservationRepository.findBookedSlots(any(), any(), any())).thenReturn(new ArrayList<>());
+    }
+
+    private BranchEntity branch(Long id, String name, String zone) {
+        BranchEntity b = new BranchEntity();
+        b.setId(id);
+        b.setName(name);
+        b.setZone(zone);
+        return b;
+    }
+
+    private BookedSlot booked(LocalDate date, int fromHour, int toHour) {
+        return new BookedSlot() {
+            public LocalDate getReservationDate() { return date; }
+            public LocalTime getStartTime() { return LocalTime.of(fromHour, 0); }
+            public LocalTime getEndTime() { return LocalTime.of(toHour, 0); }
+        };
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: sedes de la misma zona van primero")
+    void findNearestFreeSlots_sameZoneFirst() {
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+
+        assertEquals(3, result.size());
+        assertEquals("Norte", result.get(0).zone());
+        assertEquals("norte", result.get(1).zone());
+        assertEquals(12L, result.get(2).branchId());
+        assertEquals(LocalTime.of(8, 0), result.get(0).startTime());
+        assertEquals(LocalTime.of(9, 0), result.get(0).endTime());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: salta los huecos demasiado cortos y los días llenos")
+    void findNearestFreeSlots_skipsBookedTime() {
+        when(reservationRepository.findBookedSlots(eq(10L), any(), any())).thenReturn(List.of(
+                booked(tomorrow, 8, 18),
+                booked(tomorrow.plusDays(1), 8, 10),
+                booked(tomorrow.plusDays(1), 10, 12)));
+
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+
+        var norteSlot = result.stream().filter(s -> s.branchId().equals(10L)).findFirst().orElseThrow();
+        assertEquals(tomorrow.plusDays(1), norteSlot.date());
+        assertEquals(LocalTime.of(12, 0), norteSlot.startTime());
+        // norte2 está libre desde mañana temprano, así que queda primero dentro de la zona
+        assertEquals(11L, result.get(0).branchId());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: las ocurrencias de series recurrentes ocupan agenda")
+    void findNearestFreeSlots_seriesOccupySlots() {
+        var series = new co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity();
+        when(reservationSeriesService.getBranchOccurrences(eq(11L), any(), any())).thenReturn(List.of(
+                new ReservationSeriesService.Occurrence(series, tomorrow, LocalTime.of(8, 0), LocalTime.of(9, 30))));
+
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+
+        var norte2Slot = result.stream().filter(s -> s.branchId().equals(11L)).findFirst().orElseThrow();
+        assertEquals(LocalTime.of(9, 30), norte2Slot.startTime());
+        assertEquals(10L, result.get(0).branchId());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: respeta el límite sin consultar zonas lejanas")
+    void findNearestFreeSlots_stopsAtLimit() {
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 2);
+
+        assertEquals(2, result.size());
+        assertTrue(result.stream().noneMatch(s -> s.branchId().equals(12L)));
+        verify(reservationRepository, never()).findBookedSlots(eq(12L), any(), any());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: los horarios empiezan en la grilla de 15 minutos")
+    void findNearestFreeSlots_alignsToGrid() {
+        var series = new co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity();
+        when(reservationSeriesService.getBranchOccurrences(eq(10L), any(), any())).thenReturn(List.of(
+                new ReservationSeriesService.Occurrence(series, tomorrow, LocalTime.of(8, 0), LocalTime.of(9, 20))));
+
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+
+        var norteSlot = result.stream().filter(s -> s.branchId().equals(10L)).findFirst().orElseThrow();
+        assertEquals(LocalTime.of(9, 30), norteSlot.startTime());
+        assertEquals(LocalTime.of(10, 30), norteSlot.endTime());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: p99 bajo 50 ms con 50 sedes y 14 días")
+    void findNearestFreeSlots_latencyTarget() {
+        // 50 sedes en la zona preferida, así que se consultan todas; cada consulta tarda 1 ms simulado.
+        // Hasta el día 13 sólo quedan huecos de 15 minutos: se recorre todo el horizonte.
+        List<BranchEntity> branches = new ArrayList<>();
+        for (long id = 100; id < 150; id++) {
+            branches.add(branch(id, "Sede " + id, "Norte"));
+        }
+        when(branchRepository.findByServices_Id(1L)).thenReturn(branches);
+        List<BookedSlot> busy = new ArrayList<>();
+        for (int day = 0; day < 13; day++) {
+            for (int hour = 8; hour < 18; hour++) {
+                int from = hour;
+                LocalDate date = tomorrow.plusDays(day);
+                busy.add(new BookedSlot() {
+                    public LocalDate getReservationDate() { return date; }
+                    public LocalTime getStartTime() { return LocalTime.of(from, 0); }
+                    public LocalTime getEndTime() { return LocalTime.of(from, 45); }
+                });
+            }
+        }
+        when(reservationRepository.findBookedSlots(any(), any(), any())).thenAnswer(inv -> {
+            Thread.sleep(1);
+            return busy;
+        });
+
+        for (int i = 0; i < 20; i++) {
+            availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+        }
+        int runs = 200;
+        long[] elapsed = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long startedAt = System.nanoTime();
+            var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 5);
+            elapsed[i] = System.nanoTime() - startedAt;
+            assertEquals(5, result.size());
+            assertEquals(tomorrow.plusDays(13), result.get(0).date());
+        }
+        Arrays.sort(elapsed);
+        long p99Millis = elapsed[(int) Math.ceil(runs * 0.99) - 1] / 1_000_000;
+        assertTrue(p99Millis < 50, "p99 was " + p99Millis + " ms");
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: sin huecos en el horizonte -> lista vacía")
+    void findNearestFreeSlots_noAvailability() {
+        List<BookedSlot> full = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            full.add(booked(tomorrow.plusDays(i), 8, 18));
+        }
+        when(reservationRepository.findBookedSlots(any(), any(), any())).thenReturn(full);
+
+        var result = availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 3, 5);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: servicio o sede inexistente -> EntityNotFoundException")
+    void findNearestFreeSlots_notFound() {
+        when(serviceRepository.findById(99L)).thenReturn(Optional.empty());
+        when(branchRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> availabilityService.findNearestFreeSlots(99L, 10L, tomorrow, 14, 5));
+        assertThrows(EntityNotFoundException.class,
+                () -> availabilityService.findNearestFreeSlots(1L, 99L, tomorrow, 14, 5));
+    }
+
+    @Test
+    @DisplayName("findNearestFreeSlots: horizonte o límite inválidos -> IllegalOperationException")
+    void findNearestFreeSlots_invalidArguments() {
+        assertThrows(IllegalOperationException.class,
+                () -> availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 0, 5));
+        assertThrows(IllegalOperationException.class,
+                () -> availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 60, 5));
+        assertThrows(IllegalOperationException.class,
+                () -> availabilityService.findNearestFreeSlots(1L, 10L, tomorrow, 14, 0));
+        verifyNoInteractions(reservationRepository);
+    }
+}
@@ -0,0 +1,217 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceReservationCountEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.entities.UserNotificationCountEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.ServiceReservationCountRepository;
+import co.edu.udistrital.mdp.back.services.ReservationClosingService.BranchClosing;
+
+// Bloques de 2 para que el cierre recorra varias páginas
+@DataJpaTest(properties = "reservations.closing.chunk-size=2")
+@Transactional
+@Import({ ReservationClosingService.class, ServiceReservationCountService.class, UnreadNotificationCountService.class,
+        NotificationStreamHub.class, NotificationDigestService.class, NotificationService.class,
+        NotificationBroadcastService.class })
+class ReservationClosingServiceTest {
+
+    @Autowired
+    private ReservationClosingService reservationClosingService;
+
+    @Autowired
+    private ServiceReservationCountRepository reservationCountRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDate closedDay = LocalDate.of(2024, 3, 1);
+
+    private BranchEntity branch;
+    private ServiceEntity service;
+    private UserEntity user;
+    private ReservationEntity confirmed;
+    private ReservationEntity scheduled;
+    private ReservationEntity cancelled;
+    private ReservationEntity nextDay;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from ReservationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ServiceReservationCountEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from BranchEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        branch = new BranchEntity();
+        branch.setName("Sucursal Central");
+        entityManager.persist(branch);
+
+        service = new ServiceEntity();
+        service.setName("Baño completo");
+        entityManager.persist(service);
+
+        user = new UserEntity();
+        user.setName("Juan Pérez");
+        user.setEmail("juan.perez@example.com");
+        entityManager.persist(user);
+
+        confirmed = reservation(closedDay, 9, ReservationStatus.CONFIRMED);
+        reservation(closedDay.minusDays(1), 9, ReservationStatus.CONFIRMED);
+        scheduled = reservation(closedDay, 10, ReservationStatus.SCHEDULED);
+        reservation(closedDay, 11, ReservationStatus.SCHEDULED);
+        reservation(closedDay, 12, ReservationStatus.SCHEDULED);
+        cancelled = reservation(closedDay, 13, ReservationStatus.CANCELLED);
+        nextDay = reservation(closedDay.plusDays(1), 9, ReservationStatus.SCHEDULED);
+
+        count(ReservationStatus.SCHEDULED, 4);
+        count(ReservationStatus.CONFIRMED, 2);
+        count(ReservationStatus.CANCELLED, 1);
+    }
+
+    private ReservationEntity reservation(LocalDate date, int hour, ReservationStatus status) {
+        ReservationEntity reservation = new ReservationEntity();
+        reservation.setReservationDate(date);
+        reservation.setStartTime(LocalTime.of(hour, 0));
+        reservation.setEndTime(LocalTime.of(hour + 1, 0));
+        reservation.setReservationStatus(status);
+        reservation.setBranch(branch);
+        reservation.setService(service);
+        reservation.setUser(user);
+        entityManager.persist(reservation);
+        return reservation;
+    }
+
+    private void count(ReservationStatus status, long total) {
+        ServiceReservationCountEntity count = new ServiceReservationCountEntity();
+        count.setService(service);
+        count.setStatus(status);
+        count.setTotal(total);
+        entityManager.persist(count);
+    }
+
+    private Map<ReservationStatus, Long> counts() {
+        entityManager.clear();
+        Map<ReservationStatus, Long> counts = new EnumMap<>(ReservationStatus.class);
+        for (ServiceReservationCountEntity count : reservationCountRepository.findByService_Id(service.getId())) {
+            counts.put(count.getStatus(), count.getTotal());
+        }
+        return counts;
+    }
+
+    @Test
+    void testCloseDay() {
+        List<BranchClosing> result = reservationClosingService.closeDay(closedDay, branch.getId());
+
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).completed());
+        assertEquals(3, result.get(0).noShow());
+
+        entityManager.clear();
+        assertEquals(ReservationStatus.COMPLETED,
+                entityManager.find(ReservationEntity.class, confirmed.getId()).getReservationStatus());
+        assertEquals(ReservationStatus.NO_SHOW,
+                entityManager.find(ReservationEntity.class, scheduled.getId()).getReservationStatus());
+        assertEquals(ReservationStatus.CANCELLED,
+                entityManager.find(ReservationEntity.class, cancelled.getId()).getReservationStatus());
+        assertEquals(ReservationStatus.SCHEDULED,
+                entityManager.find(ReservationEntity.class, nextDay.getId()).getReservationStatus());
+    }
+
+    @Test
+    void testCloseDayMovesCounters() {
+        reservationClosingService.closeDay(closedDay, branch.getId());
+
+        Map<ReservationStatus, Long> counts = counts();
+        assertEquals(1L, counts.get(ReservationStatus.SCHEDULED));
+        assertEquals(0L, counts.get(ReservationStatus.CONFIRMED));
+        assertEquals(2L, counts.get(ReservationStatus.COMPLETED));
+        assertEquals(3L, counts.get(ReservationStatus.NO_SHOW));
+        assertEquals(1L, counts.get(ReservationStatus.CANCELLED));
+    }
+
+    @Test
+    void testCloseDaySendsOneNotificationPerBranch() {
+        reservationClosingService.closeDay(closedDay, branch.getId());
+
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(1, entityManager.find(UserEntity.class, user.getId()).getNotifications().size());
+    }
+
+    @Test
+    void testCloseDayKeepsUnreadCounterInStep() {
+        UserNotificationCountEntity counter = new UserNotificationCountEntity();
+        counter.setUserId(user.getId());
+        entityManager.persist(counter);
+
+        reservationClosingService.closeDay(closedDay, branch.getId());
+
+        entityManager.flush();
+        entityManager.clear();
+        long unreadRows = entityManager.getEntityManager()
+                .createQuery("select count(un) from UserNotificationEntity un where un.userId = :userId and un.read = false",
+                        Long.class)
+                .setParameter("userId", user.getId())
+                .getSingleResult();
+        assertEquals(1, unreadRows);
+        assertEquals(unreadRows, entityManager.find(UserNotificationCountEntity.class, user.getId()).getUnread());
+    }
+
+    @Test
+    void testCloseDayAllBranches() {
+        List<BranchClosing> result = reservationClosingService.closeDay(closedDay, null);
+
+        assertEquals(1, result.size());
+        assertEquals(branch.getId(), result.get(0).branchId());
+    }
+
+    @Test
+    void testCloseDayTwiceChangesNothing() {
+        reservationClosingService.closeDay(closedDay, branch.getId());
+        List<BranchClosing> result = reservationClosingService.closeDay(closedDay, branch.getId());
+
+        assertEquals(0, result.get(0).completed());
+        assertEquals(0, result.get(0).noShow());
+        // Nothing was closed the second time, so nobody gets a second notification
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(1, entityManager.find(UserEntity.class, user.getId()).getNotifications().size());
+    }
+
+    @Test
+    void testCloseFutureDay() {
+        assertThrows(IllegalOperationException.class,
+                () -> reservationClosingService.closeDay(LocalDate.now().plusDays(1), branch.getId()));
+    }
+
+    @Test
+    void testCloseDayInvalidBranch() {
+        assertThrows(EntityNotFoundException.class, () -> reservationClosingService.closeDay(closedDay, 999L));
+    }
+}
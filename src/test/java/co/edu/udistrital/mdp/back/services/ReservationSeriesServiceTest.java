@@ -0,0 +1,185 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.RecurrenceFrequency;
+import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+
+@DataJpaTest
+@Transactional
+@Import({ ReservationSeriesService.class, StaffAssignmentService.class })
+class ReservationSeriesServiceTest {
+
+    @Autowired
+    private ReservationSeriesService reservationSeriesService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDate monday = LocalDate.of(2030, 1, 7);
+
+    private BranchEntity branch;
+    private ReservationSeriesEntity biweekly;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from ReservationSeriesEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ReservationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from BranchEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        branch = new BranchEntity();
+        branch.setName("Sucursal Central");
+        branch.setPhone("3105555555");
+        branch.setZone("Norte");
+        entityManager.persist(branch);
+
+        biweekly = newSeries(RecurrenceFrequency.BIWEEKLY, monday, LocalTime.of(10, 0), LocalTime.of(11, 0));
+        entityManager.persist(biweekly);
+    }
+
+    private ReservationSeriesEntity newSeries(RecurrenceFrequency frequency, LocalDate start,
+            LocalTime from, LocalTime to) {
+        ReservationSeriesEntity series = new ReservationSeriesEntity();
+        series.setFrequency(frequency);
+        series.setStartDate(start);
+        series.setStartTime(from);
+        series.setEndTime(to);
+        series.setPetName("Firulais");
+        series.setBranch(branch);
+        return series;
+    }
+
+    @Test
+    void testWeeklyDatesStartInsideWindow() {
+        List<LocalDate> dates = RecurrenceFrequency.WEEKLY.datesBetween(monday, null,
+                monday.plusDays(10), monday.plusDays(30));
+        assertEquals(List.of(monday.plusDays(14), monday.plusDays(21), monday.plusDays(28)), dates);
+    }
+
+    @Test
+    void testMonthlyDatesKeepDayOfMonth() {
+        LocalDate jan31 = LocalDate.of(2030, 1, 31);
+        List<LocalDate> dates = RecurrenceFrequency.MONTHLY.datesBetween(jan31, null,
+                LocalDate.of(2030, 2, 1), LocalDate.of(2030, 3, 31));
+        assertEquals(List.of(LocalDate.of(2030, 2, 28), LocalDate.of(2030, 3, 31)), dates);
+    }
+
+    @Test
+    void testGetOccurrencesOnlyInsideWindow() {
+        // Ventana de dos años después del inicio: solo se expanden las ocurrencias de la ventana
+        LocalDate from = monday.plusYears(2);
+        var occurrences = reservationSeriesService.getOccurrences(biweekly.getId(), from, from.plusDays(27));
+
+        assertEquals(2, occurrences.size());
+        for (var occurrence : occurrences) {
+            assertFalse(occurrence.date().isBefore(from));
+            assertEquals(0, java.time.temporal.ChronoUnit.DAYS.between(monday, occurrence.date()) % 14);
+        }
+    }
+
+    @Test
+    void testGetOccurrencesWindowTooLarge() {
+        assertThrows(IllegalOperationException.class,
+                () -> reservationSeriesService.getOccurrences(biweekly.getId(), monday, monday.plusYears(2)));
+    }
+
+    @Test
+    void testCreateSeries() {
+        ReservationSeriesEntity series = newSeries(RecurrenceFrequency.WEEKLY, monday, LocalTime.of(14, 0),
+                LocalTime.of(15, 0));
+
+        ReservationSeriesEntity result = reservationSeriesService.createSeries(series);
+
+        assertNotNull(result.getId());
+        var occurrences = reservationSeriesService.getBranchOccurrences(branch.getId(), monday, monday.plusDays(13));
+        assertEquals(3, occurrences.size());
+    }
+
+    @Test
+    void testCreateSeriesOverlappingSeries() {
+        // Semanal a la misma hora choca con la quincenal en el primer lunes
+        ReservationSeriesEntity series = newSeries(RecurrenceFrequency.WEEKLY, monday.plusDays(7),
+                LocalTime.of(10, 30), LocalTime.of(11, 30));
+
+        assertThrows(IllegalOperationException.class, () -> reservationSeriesService.createSeries(series));
+    }
+
+    @Test
+    void testCreateSeriesOverlappingReservation() {
+        ReservationEntity reservation = new ReservationEntity();
+        reservation.setReservationDate(monday.plusDays(28));
+        reservation.setStartTime(LocalTime.of(15, 0));
+        reservation.setEndTime(LocalTime.of(16, 0));
+        reservation.setReservationStatus(ReservationStatus.SCHEDULED);
+        reservation.setBranch(branch);
+        entityManager.persist(reservation);
+
+        ReservationSeriesEntity series = newSeries(RecurrenceFrequency.WEEKLY, monday, LocalTime.of(15, 30),
+                LocalTime.of(16, 30));
+
+        assertThrows(IllegalOperationException.class, () -> reservationSeriesService.createSeries(series));
+    }
+
+    @Test
+    void testCreateSeriesInvalidTimes() {
+        ReservationSeriesEntity series = newSeries(RecurrenceFrequency.WEEKLY, monday, LocalTime.of(12, 0),
+                LocalTime.of(10, 0));
+
+        assertThrows(IllegalOperationException.class, () -> reservationSeriesService.createSeries(series));
+    }
+
+    @Test
+    void testOverlaps() {
+        assertTrue(reservationSeriesService.overlaps(branch.getId(), monday.plusDays(14),
+                LocalTime.of(10, 30), LocalTime.of(11, 30)));
+        assertFalse(reservationSeriesService.overlaps(branch.getId(), monday.plusDays(7),
+                LocalTime.of(10, 30), LocalTime.of(11, 30)));
+    }
+
+    @Test
+    void testEndSeries() {
+        ReservationSeriesEntity result = reservationSeriesService.endSeries(biweekly.getId(), monday.plusDays(20));
+        assertEquals(monday.plusDays(20), result.getEndDate());
+
+        var occurrences = reservationSeriesService.getOccurrences(biweekly.getId(), monday, monday.plusDays(60));
+        assertEquals(2, occurrences.size());
+
+        assertThrows(IllegalOperationException.class,
+                () -> reservationSeriesService.endSeries(biweekly.getId(), monday.plusDays(40)));
+    }
+
+    @Test
+    void testDeleteSeries() {
+        reservationSeriesService.deleteSeries(biweekly.getId());
+        assertNull(entityManager.find(ReservationSeriesEntity.class, biweekly.getId()));
+    }
+
+    @Test
+    void testGetInvalidSeries() {
+        assertThrows(EntityNotFoundException.class, () -> reservationSeriesService.getSeries(999L));
+    }
+}
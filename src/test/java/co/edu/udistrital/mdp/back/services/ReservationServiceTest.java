@@ -16,20 +16,30 @@ import org.springframework.context.annotation.Import;
 
 import co.edu.udistrital.mdp.back.entities.BranchEntity;
 import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.repositories.ServiceReservationCountRepository;
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @DataJpaTest
 @Transactional
-@Import(ReservationService.class)
+@Import({ ReservationService.class, ReservationSeriesService.class, StaffAssignmentService.class,
+        ServiceReservationCountService.class })
 class ReservationServiceTest {
 
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private ServiceReservationCountService reservationCounts;
+
+    @Autowired
+    private ServiceReservationCountRepository reservationCountRepository;
+
     @Autowired
     private TestEntityManager entityManager;
 
@@ -39,6 +49,7 @@ class ReservationServiceTest {
 
     private BranchEntity branch;
     private UserEntity user;
+    private ServiceEntity service;
 
     @BeforeEach
     void setUp() {
@@ -48,6 +59,8 @@ class ReservationServiceTest {
 
     private void clearData() {
         entityManager.getEntityManager().createQuery("delete from ReservationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ServiceReservationCountEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ServiceEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from BranchEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from UserEntity").executeUpdate();
     }
@@ -66,12 +79,18 @@ class ReservationServiceTest {
         user.setPassword("1234");
         entityManager.persist(user);
 
+        service = new ServiceEntity();
+        service.setName("Baño completo");
+        service.setPrice(20000.0);
+        service.setDuration(45);
+        entityManager.persist(service);
+
         for (int i = 0; i < 3; i++) {
             ReservationEntity entity = new ReservationEntity();
             entity.setReservationDate(LocalDate.now().plusDays(i));
             entity.setStartTime(LocalTime.of(10 + i, 0));
             entity.setEndTime(LocalTime.of(11 + i, 0));
-            entity.setReservationStatus("CONFIRMED");
+            entity.setReservationStatus(ReservationStatus.CONFIRMED);
             entity.setBranch(branch);
             entity.setUser(user);
             entityManager.persist(entity);
@@ -86,7 +105,7 @@ class ReservationServiceTest {
         newEntity.setReservationDate(LocalDate.now().plusDays(1));
         newEntity.setStartTime(LocalTime.of(9, 0));
         newEntity.setEndTime(LocalTime.of(10, 0));
-        newEntity.setReservationStatus("PENDING");
+        newEntity.setReservationStatus(ReservationStatus.SCHEDULED);
         newEntity.setBranch(branch);
         newEntity.setUser(user);
 
@@ -105,7 +124,7 @@ class ReservationServiceTest {
         newEntity.setReservationDate(LocalDate.now());
         newEntity.setStartTime(LocalTime.of(12, 0));
         newEntity.setEndTime(LocalTime.of(10, 0));
-        newEntity.setReservationStatus("INVALID");
+        newEntity.setReservationStatus(ReservationStatus.SCHEDULED);
         newEntity.setBranch(branch);
         newEntity.setUser(user);
 
@@ -113,6 +132,98 @@ class ReservationServiceTest {
                 () -> reservationService.createReservation(newEntity));
     }
 
+    @Test
+    void testCreateReservationDefaultsToScheduled() throws IllegalOperationException {
+        ReservationEntity newEntity = new ReservationEntity();
+        newEntity.setReservationDate(LocalDate.now().plusDays(1));
+        newEntity.setStartTime(LocalTime.of(9, 0));
+        newEntity.setEndTime(LocalTime.of(10, 0));
+        newEntity.setBranch(branch);
+        newEntity.setUser(user);
+
+        ReservationEntity result = reservationService.createReservation(newEntity);
+        assertEquals(ReservationStatus.SCHEDULED, result.getReservationStatus());
+    }
+
+    @Test
+    void testCreateReservationInFinalStatus() {
+        ReservationEntity newEntity = new ReservationEntity();
+        newEntity.setReservationDate(LocalDate.now().plusDays(1));
+        newEntity.setStartTime(LocalTime.of(9, 0));
+        newEntity.setEndTime(LocalTime.of(10, 0));
+        newEntity.setReservationStatus(ReservationStatus.COMPLETED);
+        newEntity.setBranch(branch);
+        newEntity.setUser(user);
+
+        assertThrows(IllegalOperationException.class,
+                () -> reservationService.createReservation(newEntity));
+    }
+
+    @Test
+    void testStatusCountersFollowTransitions() throws IllegalOperationException {
+        ReservationEntity newEntity = new ReservationEntity();
+        newEntity.setReservationDate(LocalDate.now().plusDays(1));
+        newEntity.setStartTime(LocalTime.of(9, 0));
+        newEntity.setEndTime(LocalTime.of(10, 0));
+        newEntity.setBranch(branch);
+        newEntity.setUser(user);
+        newEntity.setService(service);
+
+        ReservationEntity created = reservationService.createReservation(newEntity);
+        assertEquals(1L, reservationCountRepository.sumTotals(service.getId(), ReservationStatus.activeStatuses()));
+
+        reservationService.changeStatus(created.getId(), ReservationStatus.CONFIRMED);
+        assertEquals(1L, reservationCountRepository.sumTotals(service.getId(), ReservationStatus.activeStatuses()));
+
+        reservationService.changeStatus(created.getId(), ReservationStatus.COMPLETED);
+        assertEquals(0L, reservationCountRepository.sumTotals(service.getId(), ReservationStatus.activeStatuses()));
+        assertEquals(1L, reservationCountRepository.sumTotals(service.getId(),
+                java.util.EnumSet.of(ReservationStatus.COMPLETED)));
+
+        reservationService.deleteReservation(created.getId());
+        assertEquals(0L, reservationCountRepository.sumTotals(service.getId(),
+                java.util.EnumSet.allOf(ReservationStatus.class)));
+    }
+
+    @Test
+    void testMigrateBackfillsMissingCounters() {
+        for (ReservationEntity reservation : reservationList) {
+            reservation.setService(service);
+        }
+        entityManager.flush();
+
+        reservationCounts.migrate();
+
+        assertEquals(5, reservationCountRepository.findByService_Id(service.getId()).size());
+        assertEquals(3L, reservationCountRepository.sumTotals(service.getId(),
+                java.util.EnumSet.of(ReservationStatus.CONFIRMED)));
+        assertEquals(3L, reservationCountRepository.sumTotals(service.getId(),
+                java.util.EnumSet.allOf(ReservationStatus.class)));
+    }
+
+    @Test
+    void testChangeStatusInvalidTransition() throws IllegalOperationException {
+        Long entityId = reservationList.get(0).getId();
+        reservationService.changeStatus(entityId, ReservationStatus.CANCELLED);
+
+        assertThrows(IllegalOperationException.class,
+                () -> reservationService.changeStatus(entityId, ReservationStatus.CONFIRMED));
+    }
+
+    @Test
+    void testCreateReservationOverlapping() {
+        ReservationEntity existing = reservationList.get(0);
+        ReservationEntity newEntity = new ReservationEntity();
+        newEntity.setReservationDate(existing.getReservationDate());
+        newEntity.setStartTime(existing.getStartTime().plusMinutes(30));
+        newEntity.setEndTime(existing.getEndTime().plusMinutes(30));
+        newEntity.setBranch(branch);
+        newEntity.setUser(user);
+
+        assertThrows(IllegalOperationException.class,
+                () -> reservationService.createReservation(newEntity));
+    }
+
     @Test
     void testGetReservations() {
         List<ReservationEntity> list = reservationService.getAllReservations();
@@ -149,21 +260,44 @@ class ReservationServiceTest {
         update.setReservationDate(LocalDate.now().plusDays(2));
         update.setStartTime(LocalTime.of(14, 0));
         update.setEndTime(LocalTime.of(15, 0));
-        update.setReservationStatus("UPDATED");
+        update.setReservationStatus(ReservationStatus.COMPLETED);
         update.setBranch(branch);
         update.setUser(user);
 
         ReservationEntity updated = reservationService.updateReservation(entityId, update);
-        assertEquals("UPDATED", updated.getReservationStatus());
+        assertEquals(ReservationStatus.COMPLETED, updated.getReservationStatus());
         assertEquals(LocalTime.of(14, 0), updated.getStartTime());
     }
 
+    @Test
+    void testUpdateReservationOverlapping() throws IllegalOperationException {
+        ReservationEntity entity = reservationList.get(1);
+
+        ReservationEntity shifted = new ReservationEntity();
+        shifted.setReservationDate(entity.getReservationDate());
+        shifted.setStartTime(LocalTime.of(11, 30));
+        shifted.setEndTime(LocalTime.of(12, 30));
+        shifted.setBranch(branch);
+        shifted.setUser(user);
+        // Overlapping only its own previous slot is fine
+        assertEquals(LocalTime.of(11, 30), reservationService.updateReservation(entity.getId(), shifted).getStartTime());
+
+        ReservationEntity taken = new ReservationEntity();
+        taken.setReservationDate(reservationList.get(0).getReservationDate());
+        taken.setStartTime(LocalTime.of(10, 30));
+        taken.setEndTime(LocalTime.of(11, 30));
+        taken.setBranch(branch);
+        taken.setUser(user);
+        assertThrows(IllegalOperationException.class,
+                () -> reservationService.updateReservation(entity.getId(), taken));
+    }
+
     @Test
     void testUpdateInvalidReservation() {
         Long invalidId = 999L;
         
         ReservationEntity updated = new ReservationEntity();
-        updated.setReservationStatus("UPDATED");
+        updated.setReservationStatus(ReservationStatus.COMPLETED);
 
         assertThrows(jakarta.persistence.EntityNotFoundException.class,
                 () -> reservationService.updateReservation(invalidId, updated));
@@ -180,7 +314,7 @@ class ReservationServiceTest {
         update.setStartTime(LocalTime.of(12, 0));
         update.setEndTime(LocalTime.of(10, 0));
         update.setReservationDate(LocalDate.now());
-        update.setReservationStatus("ERROR");
+        update.setReservationStatus(ReservationStatus.CONFIRMED);
         update.setBranch(branch);
         update.setUser(user);
 
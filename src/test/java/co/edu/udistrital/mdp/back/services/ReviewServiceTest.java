@@ -16,15 +16,19 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
 import co.edu.udistrital.mdp.back.entities.ReviewEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
 import co.edu.udistrital.mdp.back.repositories.ReviewRepository;
+import co.edu.udistrital.mdp.back.repositories.ReviewRepository.ReviewView;
+import co.edu.udistrital.mdp.back.services.ReviewService.ReviewPage;
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
 @DataJpaTest
 @Transactional
-@Import(ReviewService.class)
+@Import({ ReviewService.class, ServiceRatingService.class })
 class ReviewServiceTest {
 
     @Autowired
@@ -161,4 +165,92 @@ class ReviewServiceTest {
     void testDeleteInvalidReview() {
         assertThrows(EntityNotFoundException.class, () -> reviewService.deleteReview(999L));
     }
+
+    private ServiceEntity insertServiceReviews() {
+        ServiceEntity service = new ServiceEntity();
+        service.setName("Baño");
+        service.setPrice(20.0);
+        entityManager.persist(service);
+
+        UserEntity author = new UserEntity();
+        author.setName("Juan Pérez");
+        author.setEmail("juan.perez@example.com");
+        entityManager.persist(author);
+
+        LocalDate today = LocalDate.now();
+        serviceReview(service, author, 5, today.minusDays(10));
+        serviceReview(service, author, 2, today.minusDays(5));
+        serviceReview(service, author, 4, today.minusDays(5));
+        return service;
+    }
+
+    private void serviceReview(ServiceEntity service, UserEntity author, int rating, LocalDate date) {
+        ReviewEntity review = new ReviewEntity();
+        review.setService(service);
+        review.setAuthor(author);
+        review.setRating(rating);
+        review.setComments("Rating " + rating);
+        review.setReviewDate(date);
+        entityManager.persist(review);
+    }
+
+    @Test
+    void testGetReviewPageByDate() {
+        ServiceEntity service = insertServiceReviews();
+
+        ReviewPage first = reviewService.getReviewPage(service.getId(), "date", null, 2);
+        assertEquals(2, first.reviews().size());
+        // Misma fecha: la de id mayor primero
+        assertEquals(4, first.reviews().get(0).getRating());
+        assertEquals(2, first.reviews().get(1).getRating());
+        assertEquals("Juan Pérez", first.reviews().get(0).getAuthorName());
+        assertNotNull(first.nextCursor());
+
+        ReviewPage second = reviewService.getReviewPage(service.getId(), "date", first.nextCursor(), 2);
+        assertEquals(1, second.reviews().size());
+        assertEquals(5, second.reviews().get(0).getRating());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void testGetReviewPageByRating() {
+        ServiceEntity service = insertServiceReviews();
+
+        ReviewPage first = reviewService.getReviewPage(service.getId(), "rating", null, 2);
+        assertEquals(List.of(5, 4), first.reviews().stream().map(ReviewView::getRating).toList());
+
+        ReviewPage second = reviewService.getReviewPage(service.getId(), "rating", first.nextCursor(), 2);
+        assertEquals(List.of(2), second.reviews().stream().map(ReviewView::getRating).toList());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void testGetReviewPageAllServices() {
+        insertServiceReviews();
+
+        ReviewPage page = reviewService.getReviewPage(null, "date", null, 50);
+        assertEquals(reviewList.size() + 3, page.reviews().size());
+        assertNull(page.nextCursor());
+        assertNull(page.reviews().get(0).getAuthorId());
+    }
+
+    @Test
+    void testGetReviewPageInvalidSort() {
+        assertThrows(IllegalOperationException.class, () -> reviewService.getReviewPage(null, "comments", null, 10));
+    }
+
+    @Test
+    void testGetReviewPageInvalidCursor() {
+        assertThrows(IllegalOperationException.class, () -> reviewService.getReviewPage(null, "date", "5_3", 10));
+        assertThrows(IllegalOperationException.class, () -> reviewService.getReviewPage(null, "rating", "abc", 10));
+    }
+
+    @Test
+    void testGetReviewViews() {
+        ServiceEntity service = insertServiceReviews();
+
+        List<ReviewView> views = reviewService.getReviewViews(service.getId());
+        assertEquals(3, views.size());
+        assertTrue(views.stream().allMatch(v -> "Juan Pérez".equals(v.getAuthorName())));
+    }
 }
@@ -0,0 +1,155 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import co.edu.udistrital.mdp.back.entities.ReviewEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.ServiceRatingEntity;
+import co.edu.udistrital.mdp.back.repositories.ReviewRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRatingRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+
+// Sin transacción de prueba: el agregado se crea en una transacción aparte a partir de las reseñas confirmadas
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ ReviewService.class, ServiceRatingService.class })
+class ServiceRatingServiceTest {
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private ServiceRatingService serviceRatingService;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ServiceRatingRepository ratingRepository;
+
+    @Autowired
+    private ServiceRepository serviceRepository;
+
+    private ServiceEntity bath;
+    private ServiceEntity haircut;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        bath = service("Baño");
+        haircut = service("Corte");
+    }
+
+    @AfterEach
+    void clearData() {
+        reviewRepository.deleteAllInBatch();
+        ratingRepository.deleteAllInBatch();
+        serviceRepository.deleteAllInBatch();
+    }
+
+    private ServiceEntity service(String name) {
+        ServiceEntity service = new ServiceEntity();
+        service.setName(name);
+        service.setPrice(20.0);
+        return serviceRepository.save(service);
+    }
+
+    private ReviewEntity review(ServiceEntity service, int rating) {
+        ReviewEntity review = new ReviewEntity();
+        review.setService(service);
+        review.setRating(rating);
+        review.setComments("Comment " + rating);
+        review.setReviewDate(LocalDate.now());
+        return review;
+    }
+
+    private ServiceRatingEntity rating(ServiceEntity service) {
+        return ratingRepository.findById(service.getId()).orElseThrow();
+    }
+
+    @Test
+    void testCreateReviewsUpdatesAggregate() {
+        reviewService.createReview(review(bath, 5));
+        reviewService.createReview(review(bath, 4));
+        reviewService.createReview(review(bath, 5));
+
+        ServiceRatingEntity rating = rating(bath);
+        assertEquals(3, rating.getRatingCount());
+        assertEquals(14, rating.getRatingSum());
+        assertArrayEquals(new long[] { 0, 0, 0, 1, 2 }, rating.getHistogram());
+        assertEquals(14.0 / 3, rating.getAverage());
+    }
+
+    @Test
+    void testUpdateReviewMovesRating() {
+        ReviewEntity created = reviewService.createReview(review(bath, 2));
+
+        reviewService.updateReview(created.getId(), review(bath, 4));
+
+        ServiceRatingEntity rating = rating(bath);
+        assertEquals(1, rating.getRatingCount());
+        assertEquals(4, rating.getRatingSum());
+        assertArrayEquals(new long[] { 0, 0, 0, 1, 0 }, rating.getHistogram());
+    }
+
+    @Test
+    void testDeleteReviewRemovesRating() {
+        ReviewEntity created = reviewService.createReview(review(bath, 3));
+        reviewService.createReview(review(bath, 1));
+
+        reviewService.deleteReview(created.getId());
+
+        ServiceRatingEntity rating = rating(bath);
+        assertEquals(1, rating.getRatingCount());
+        assertEquals(1, rating.getRatingSum());
+        assertArrayEquals(new long[] { 1, 0, 0, 0, 0 }, rating.getHistogram());
+    }
+
+    @Test
+    void testAggregateStartsFromExistingReviews() {
+        // Reseñas guardadas antes de que existiera el agregado
+        reviewRepository.save(review(bath, 3));
+        reviewRepository.save(review(bath, 5));
+
+        reviewService.createReview(review(bath, 1));
+
+        ServiceRatingEntity rating = rating(bath);
+        assertEquals(3, rating.getRatingCount());
+        assertEquals(9, rating.getRatingSum());
+        assertArrayEquals(new long[] { 1, 0, 1, 0, 1 }, rating.getHistogram());
+    }
+
+    @Test
+    void testGetRatings() {
+        reviewRepository.save(review(haircut, 4));
+        reviewService.createReview(review(bath, 2));
+
+        Map<Long, ServiceRatingEntity> ratings = serviceRatingService.getRatings(List.of(bath.getId(), haircut.getId()));
+
+        assertEquals(2, ratings.size());
+        assertEquals(2.0, ratings.get(bath.getId()).getAverage());
+        assertEquals(1, ratings.get(haircut.getId()).getRatingCount());
+        assertEquals(4.0, ratings.get(haircut.getId()).getAverage());
+    }
+
+    @Test
+    void testGetRatingsOfServiceWithoutReviews() {
+        ServiceRatingEntity rating = serviceRatingService.getRatings(List.of(haircut.getId())).get(haircut.getId());
+
+        assertEquals(0, rating.getRatingCount());
+        assertEquals(0.0, rating.getAverage());
+    }
+}
@@ -1,16 +1,20 @@
 package co.edu.udistrital.mdp.back.services;
 
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
 import co.edu.udistrital.mdp.back.entities.ServiceEntity;
 import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
 import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
 import co.edu.udistrital.mdp.back.repositories.OrderDetailRepository;
 import co.edu.udistrital.mdp.back.repositories.ReservationRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceRatingRepository;
 import co.edu.udistrital.mdp.back.repositories.ServiceRepository;
+import co.edu.udistrital.mdp.back.repositories.ServiceReservationCountRepository;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,6 +29,8 @@ class ServiceServiceTest {
 
     @MockBean private ServiceRepository serviceRepository;
     @MockBean private ReservationRepository reservationRepository;
+    @MockBean private ServiceReservationCountRepository reservationCountRepository;
+    @MockBean private ServiceRatingRepository ratingRepository;
     @MockBean private OrderDetailRepository orderDetailRepository; // inyectado en el service (aunque no se use aquí)
 
     private ServiceEntity grooming;
@@ -38,6 +44,19 @@ class ServiceServiceTest {
         // agrega otros campos si tu entidad los requiere obligatoriamente
     }
 
+    // -------- getAllServices --------
+
+    @Test
+    @DisplayName("getAllServices: trae la multimedia en la misma consulta")
+    void getAllServices_fetchesMultimedia() {
+        when(serviceRepository.findAllWithMultimedia()).thenReturn(List.of(grooming));
+
+        assertEquals(List.of(grooming), serviceService.getAllServices());
+
+        verify(serviceRepository).findAllWithMultimedia();
+        verify(serviceRepository, never()).findAll();
+    }
+
     // -------- save --------
 
     @Test
@@ -91,37 +110,66 @@ class ServiceServiceTest {
 
         verify(serviceRepository).findById(99L);
         verifyNoMoreInteractions(serviceRepository);
-        verifyNoInteractions(reservationRepository, orderDetailRepository);
+        verifyNoInteractions(reservationRepository, reservationCountRepository, orderDetailRepository);
     }
 
     @Test
-    @DisplayName("delete: con reservas activas (SCHEDULED) -> IllegalOperationException")
+    @DisplayName("delete: con reservas activas (SCHEDULED/CONFIRMED) -> IllegalOperationException")
     void delete_withActiveReservations_throws() {
         when(serviceRepository.findById(1L)).thenReturn(Optional.of(grooming));
-        when(reservationRepository.countByService_IdAndReservationStatus(1L, "SCHEDULED")).thenReturn(3);
+        when(reservationCountRepository.sumTotals(1L, ReservationStatus.activeStatuses())).thenReturn(3L);
 
         assertThrows(IllegalOperationException.class, () -> serviceService.delete(1L));
 
         verify(serviceRepository).findById(1L);
-        verify(reservationRepository).countByService_IdAndReservationStatus(1L, "SCHEDULED");
-        verifyNoMoreInteractions(serviceRepository, reservationRepository);
-        verifyNoInteractions(orderDetailRepository);
+        verify(reservationCountRepository).sumTotals(1L, ReservationStatus.activeStatuses());
+        verifyNoMoreInteractions(serviceRepository, reservationCountRepository);
+        verifyNoInteractions(reservationRepository, orderDetailRepository);
     }
 
     @Test
     @DisplayName("delete: sin reservas activas -> elimina el servicio")
     void delete_noActiveReservations_ok() throws Exception {
         when(serviceRepository.findById(1L)).thenReturn(Optional.of(grooming));
-        when(reservationRepository.countByService_IdAndReservationStatus(1L, "SCHEDULED")).thenReturn(0);
+        when(reservationCountRepository.sumTotals(1L, ReservationStatus.activeStatuses())).thenReturn(0L);
 
         serviceService.delete(1L);
 
         verify(serviceRepository).findById(1L);
-        verify(reservationRepository).countByService_IdAndReservationStatus(1L, "SCHEDULED");
+        verify(reservationCountRepository).sumTotals(1L, ReservationStatus.activeStatuses());
+        verify(reservationCountRepository).deleteByService_Id(1L);
+        verify(ratingRepository).deleteById(1L);
         verify(serviceRepository).delete(grooming);
-        verifyNoMoreInteractions(serviceRepository, reservationRepository);
-        verifyNoInteractions(orderDetailRepository);
+        verifyNoMoreInteractions(serviceRepository, reservationCountRepository);
+        verifyNoInteractions(reservationRepository, orderDetailRepository);
     }
+
+    // -------- getReservationCounts --------
+
+    @Test
+    @DisplayName("getReservationCounts: lee los contadores y completa con ceros")
+    void getReservationCounts_readsCounters() {
+        var scheduled = new co.edu.udistrital.mdp.back.entities.ServiceReservationCountEntity();
+        scheduled.setStatus(ReservationStatus.SCHEDULED);
+        scheduled.setTotal(4);
+        when(serviceRepository.existsById(1L)).thenReturn(true);
+        when(reservationCountRepository.findByService_Id(1L)).thenReturn(java.util.List.of(scheduled));
+
+        var counts = serviceService.getReservationCounts(1L);
+
+        assertEquals(ReservationStatus.values().length, counts.size());
+        assertEquals(4L, counts.get(ReservationStatus.SCHEDULED));
+        assertEquals(0L, counts.get(ReservationStatus.CANCELLED));
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    @DisplayName("getReservationCounts: servicio no existe -> EntityNotFoundException")
+    void getReservationCounts_notFound_throws() {
+        when(serviceRepository.existsById(99L)).thenReturn(false);
+        assertThrows(EntityNotFoundException.class, () -> serviceService.getReservationCounts(99L));
+    }
+
     @Test
     @DisplayName("save lanza IllegalOperationException si el precio es negativo")
     void save_invalidPrice_throwsException() {
@@ -143,8 +191,8 @@ class ServiceServiceTest {
         ServiceEntity s = new ServiceEntity();
         s.setId(1L);
         when(serviceRepository.findById(1L)).thenReturn(Optional.of(s));
-        when(reservationRepository.countByService_IdAndReservationStatus(1L, "SCHEDULED"))
-            .thenReturn(2);
+        when(reservationCountRepository.sumTotals(1L, ReservationStatus.activeStatuses()))
+            .thenReturn(2L);
         assertThrows(IllegalOperationException.class, () -> serviceService.delete(1L));
     }
 
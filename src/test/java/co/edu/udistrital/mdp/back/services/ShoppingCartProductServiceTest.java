@@ -7,6 +7,8 @@ import java.util.List;
 
 import jakarta.transaction.Transactional;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
@@ -22,9 +25,10 @@ import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
-@DataJpaTest
+// Estadísticas de Hibernate para contar sentencias en el benchmark de reemplazo
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @Transactional
-@Import(ShoppingCartProductService.class)
+@Import({ ShoppingCartProductService.class, ShoppingCartService.class })
 class ShoppingCartProductServiceTest {
 
     @Autowired
@@ -46,6 +50,7 @@ class ShoppingCartProductServiceTest {
     }
 
     private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from UserEntity").executeUpdate();
@@ -68,11 +73,23 @@ class ShoppingCartProductServiceTest {
             productList.add(entity);
             entity.getShoppingCarts().add(shoppingCart);
             shoppingCart.getProducts().add(entity);
+            persistLine(entity);
         }
         shoppingCart.setTotal(330.0);
         entityManager.flush();
     }
 
+    // Los productos del carrito son sus líneas; el vínculo solo las refleja
+    private void persistLine(ProductEntity product) {
+        CartItemEntity item = new CartItemEntity();
+        item.setShoppingCart(shoppingCart);
+        item.setProduct(product);
+        item.setQuantity(1);
+        item.setUnitPrice(product.getPrice());
+        item.setPriceVersion(product.getPriceVersion());
+        entityManager.persist(item);
+    }
+
     @Test
     void testAddProduct() throws EntityNotFoundException, IllegalOperationException {
         ProductEntity newProduct = factory.manufacturePojo(ProductEntity.class);
@@ -237,6 +254,53 @@ class ShoppingCartProductServiceTest {
         assertEquals(expectedTotal, updatedCart.getTotal());
     }
 
+    @Test
+    void testReplaceProductsBenchmark() throws EntityNotFoundException {
+        // Carrito con 203 productos; el reemplazo conserva 150, quita 53 y agrega 50
+        List<ProductEntity> catalog = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            ProductEntity entity = factory.manufacturePojo(ProductEntity.class);
+            entity.setPrice(10.0);
+            entity.setStock(5);
+            entityManager.persist(entity);
+            catalog.add(entity);
+        }
+        for (int i = 0; i < 200; i++) {
+            catalog.get(i).getShoppingCarts().add(shoppingCart);
+            persistLine(catalog.get(i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ProductEntity> replacement = new ArrayList<>();
+        for (int i = 50; i < 250; i++) {
+            ProductEntity reference = new ProductEntity();
+            reference.setId(catalog.get(i).getId());
+            replacement.add(reference);
+        }
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<ProductEntity> result = shoppingCartProductService.replaceProducts(shoppingCart.getId(), replacement);
+        entityManager.flush();
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(200, result.size());
+        Number linked = (Number) entityManager.getEntityManager()
+                .createNativeQuery("SELECT COUNT(*) FROM product_entity_shopping_carts WHERE shopping_carts_id = ?1")
+                .setParameter(1, shoppingCart.getId())
+                .getSingleResult();
+        assertEquals(200, linked.intValue());
+        assertEquals(200, shoppingCartProductService.getProducts(shoppingCart.getId()).size());
+        // Cantidad de sentencias constante: no hay una consulta ni una fila reescrita por producto
+        assertTrue(statements <= 12, "Replacing a 200-item cart used " + statements + " statements");
+
+        entityManager.clear();
+        assertEquals(2000.0, entityManager.find(ShoppingCartEntity.class, shoppingCart.getId()).getTotal());
+    }
+
     @Test
     void testReplaceProductsInvalidShoppingCart() {
         List<ProductEntity> newList = new ArrayList<>();
@@ -262,6 +326,18 @@ class ShoppingCartProductServiceTest {
                 () -> shoppingCartProductService.replaceProducts(validCartId, newList));
     }
 
+    @Test
+    void testReplaceProductsRepeated() {
+        ProductEntity product = productList.get(0);
+        List<ProductEntity> newList = new ArrayList<>();
+        newList.add(product);
+        newList.add(product);
+        Long validCartId = shoppingCart.getId();
+
+        assertThrows(IllegalOperationException.class,
+                () -> shoppingCartProductService.replaceProducts(validCartId, newList));
+    }
+
     @Test
     void testRemoveProduct() throws EntityNotFoundException {
         ProductEntity product = productList.get(0);
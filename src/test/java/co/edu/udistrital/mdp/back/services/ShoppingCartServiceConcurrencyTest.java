@@ -0,0 +1,147 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
+import co.edu.udistrital.mdp.back.entities.ProductEntity;
+import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
+import co.edu.udistrital.mdp.back.repositories.CartItemRepository;
+import co.edu.udistrital.mdp.back.repositories.ProductRepository;
+import co.edu.udistrital.mdp.back.repositories.ShoppingCartRepository;
+
+// Sin transacción de prueba: cada llamada al servicio confirma la suya, como en producción
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ShoppingCartService.class)
+class ShoppingCartServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int ADDS_PER_THREAD = 5;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ShoppingCartRepository shoppingCartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ShoppingCartEntity cart;
+    private List<ProductEntity> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Las 64 transacciones hacen fila por el mismo carrito; el segundo por defecto de H2 no alcanza
+        jdbcTemplate.execute("SET DEFAULT_LOCK_TIMEOUT 10000");
+        clearData();
+        cart = shoppingCartRepository.save(new ShoppingCartEntity());
+        products.add(product("Shampoo", 1.5));
+        products.add(product("Cepillo", 2.25));
+    }
+
+    @AfterEach
+    void clearData() {
+        cartItemRepository.deleteAllInBatch();
+        shoppingCartRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+    }
+
+    private ProductEntity product(String name, double price) {
+        ProductEntity product = new ProductEntity();
+        product.setName(name);
+        product.setPrice(price);
+        product.setStock(1000);
+        return productRepository.save(product);
+    }
+
+    @Test
+    void testParallelAddsAreNotLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Long productId = products.get(i % 2).getId();
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int n = 0; n < ADDS_PER_THREAD; n++) {
+                    shoppingCartService.addProductToCart(cart.getId(), productId);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int perProduct = THREADS / 2 * ADDS_PER_THREAD;
+        List<CartItemEntity> items = cartItemRepository.findByShoppingCart_Id(cart.getId());
+        assertEquals(2, items.size());
+        for (CartItemEntity item : items) {
+            assertEquals(perProduct, item.getQuantity());
+        }
+        assertEquals(perProduct * 1.5 + perProduct * 2.25,
+                shoppingCartRepository.findById(cart.getId()).orElseThrow().getTotal());
+    }
+
+    @Test
+    void testParallelAddsAndRemoves() throws Exception {
+        Long productId = products.get(0).getId();
+        for (int i = 0; i < THREADS; i++) {
+            shoppingCartService.addProductToCart(cart.getId(), productId);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean add = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (add) {
+                    shoppingCartService.addProductToCart(cart.getId(), productId, 2);
+                } else {
+                    shoppingCartService.removeProductFromCart(cart.getId(), productId);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 64 iniciales + 32 × 2 agregadas − 32 quitadas
+        List<CartItemEntity> items = cartItemRepository.findByShoppingCart_Id(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(96, items.get(0).getQuantity());
+        assertEquals(144.0, shoppingCartRepository.findById(cart.getId()).orElseThrow().getTotal());
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
+import co.edu.udistrital.mdp.back.entities.CartItemEntity;
 import co.edu.udistrital.mdp.back.entities.ProductEntity;
 import co.edu.udistrital.mdp.back.entities.ShoppingCartEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
@@ -46,6 +47,7 @@ class ShoppingCartServiceTest {
     }
 
     private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from CartItemEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ShoppingCartEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from ProductEntity").executeUpdate();
         entityManager.getEntityManager().createQuery("delete from UserEntity").executeUpdate();
@@ -145,15 +147,39 @@ class ShoppingCartServiceTest {
     }
 
     @Test
-    void testUpdateShoppingCart() throws EntityNotFoundException, IllegalOperationException {
+    void testUpdateShoppingCartIgnoresClientTotal() throws EntityNotFoundException, IllegalOperationException {
         ShoppingCartEntity entity = cartList.get(0);
+        shoppingCartService.addProductToCart(entity.getId(), productList.get(0).getId());
+
         ShoppingCartEntity updateEntity = new ShoppingCartEntity();
-        updateEntity.setTotal(150.0);
+        updateEntity.setTotal(1.0);
         updateEntity.setProducts(new ArrayList<>());
 
         ShoppingCartEntity result = shoppingCartService.updateShoppingCart(entity.getId(), updateEntity);
 
-        assertEquals(150.0, result.getTotal());
+        assertEquals(productList.get(0).getPrice(), result.getTotal());
+    }
+
+    @Test
+    void testUpdateShoppingCartReplacesProducts() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity entity = cartList.get(0);
+        ShoppingCartEntity updateEntity = new ShoppingCartEntity();
+        updateEntity.setTotal(125.0);
+        List<ProductEntity> products = new ArrayList<>();
+        products.add(productList.get(0));
+        products.add(productList.get(1));
+        updateEntity.setProducts(products);
+
+        ShoppingCartEntity result = shoppingCartService.updateShoppingCart(entity.getId(), updateEntity);
+
+        assertEquals(2, result.getProducts().size());
+        assertEquals(2, shoppingCartService.getItems(entity.getId()).size());
+        assertEquals(productList.get(0).getPrice() + productList.get(1).getPrice(), result.getTotal());
+        Number linked = (Number) entityManager.getEntityManager()
+                .createNativeQuery("SELECT COUNT(*) FROM product_entity_shopping_carts WHERE shopping_carts_id = ?1")
+                .setParameter(1, entity.getId())
+                .getSingleResult();
+        assertEquals(2, linked.intValue());
     }
 
     @Test
@@ -209,10 +235,86 @@ class ShoppingCartServiceTest {
 
         ShoppingCartEntity result = shoppingCartService.addProductToCart(cart.getId(), product.getId());
 
+        List<CartItemEntity> items = shoppingCartService.getItems(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(product.getId(), items.get(0).getProduct().getId());
+        assertEquals(1, items.get(0).getQuantity());
         assertTrue(result.getProducts().contains(product));
         assertEquals(product.getPrice(), result.getTotal());
     }
 
+    @Test
+    void testAddSameProductKeepsOneLine() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        ProductEntity product = productList.get(1);
+
+        shoppingCartService.addProductToCart(cart.getId(), product.getId(), 2);
+        ShoppingCartEntity result = shoppingCartService.addProductToCart(cart.getId(), product.getId(), 3);
+
+        List<CartItemEntity> items = shoppingCartService.getItems(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(5, items.get(0).getQuantity());
+        assertEquals(product.getPrice() * 5, result.getTotal());
+    }
+
+    @Test
+    void testAddProductKeepsPriceSnapshot() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        ProductEntity product = productList.get(0);
+        double originalPrice = product.getPrice();
+
+        shoppingCartService.addProductToCart(cart.getId(), product.getId());
+        product.setPrice(originalPrice * 2);
+        ShoppingCartEntity result = shoppingCartService.addProductToCart(cart.getId(), product.getId());
+
+        assertEquals(originalPrice, shoppingCartService.getItems(cart.getId()).get(0).getUnitPrice());
+        assertEquals(originalPrice * 2, result.getTotal());
+    }
+
+    @Test
+    void testAddProductRoundsTotal() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        ProductEntity product = productList.get(0);
+        product.setPrice(0.1);
+
+        shoppingCartService.addProductToCart(cart.getId(), product.getId());
+        shoppingCartService.addProductToCart(cart.getId(), product.getId());
+        ShoppingCartEntity result = shoppingCartService.addProductToCart(cart.getId(), product.getId());
+
+        assertEquals(0.3, result.getTotal());
+    }
+
+    @Test
+    void testPriceChangeRepricesCartOnRead() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        ProductEntity product = productList.get(0);
+        shoppingCartService.addProductToCart(cart.getId(), product.getId(), 2);
+        shoppingCartService.addProductToCart(cart.getId(), productList.get(1).getId());
+
+        ProductEntity changed = entityManager.find(ProductEntity.class, product.getId());
+        changed.setPrice(20.0);
+        changed.setPriceVersion(changed.getPriceVersion() + 1);
+        entityManager.flush();
+
+        assertTrue(shoppingCartService.repriceIfStale(cart.getId()));
+        assertFalse(shoppingCartService.repriceIfStale(cart.getId()));
+
+        ShoppingCartEntity result = shoppingCartService.getShoppingCart(cart.getId());
+        assertEquals(40.0 + productList.get(1).getPrice(), result.getTotal());
+        CartItemEntity line = shoppingCartService.getItems(cart.getId()).get(0);
+        assertEquals(20.0, line.getUnitPrice());
+    }
+
+    @Test
+    void testAddProductInvalidQuantity() {
+        Long cartId = cartList.get(0).getId();
+        Long productId = productList.get(0).getId();
+
+        assertThrows(IllegalOperationException.class,
+                () -> shoppingCartService.addProductToCart(cartId, productId, 0)
+        );
+    }
+
     @Test
     void testAddInvalidProductToCart() {
         ShoppingCartEntity cart = cartList.get(0);
@@ -241,17 +343,40 @@ class ShoppingCartServiceTest {
         ProductEntity product = productList.get(0);
 
         // Primero añadir el producto
-        cart.getProducts().add(product);
-        cart.setTotal(product.getPrice());
-        entityManager.persist(cart);
+        shoppingCartService.addProductToCart(cart.getId(), product.getId());
 
         // Luego removerlo
         ShoppingCartEntity result = shoppingCartService.removeProductFromCart(cart.getId(), product.getId());
 
+        assertTrue(shoppingCartService.getItems(cart.getId()).isEmpty());
         assertFalse(result.getProducts().contains(product));
         assertEquals(0.0, result.getTotal());
     }
 
+    @Test
+    void testRemoveOneUnitFromCart() throws EntityNotFoundException, IllegalOperationException {
+        ShoppingCartEntity cart = cartList.get(0);
+        ProductEntity product = productList.get(2);
+
+        shoppingCartService.addProductToCart(cart.getId(), product.getId(), 3);
+        ShoppingCartEntity result = shoppingCartService.removeProductFromCart(cart.getId(), product.getId());
+
+        List<CartItemEntity> items = shoppingCartService.getItems(cart.getId());
+        assertEquals(1, items.size());
+        assertEquals(2, items.get(0).getQuantity());
+        assertEquals(product.getPrice() * 2, result.getTotal());
+    }
+
+    @Test
+    void testRemoveProductNotInCart() {
+        Long cartId = cartList.get(0).getId();
+        Long productId = productList.get(0).getId();
+
+        assertThrows(IllegalOperationException.class,
+                () -> shoppingCartService.removeProductFromCart(cartId, productId)
+        );
+    }
+
     @Test
     void testRemoveInvalidProductFromCart() {
         ShoppingCartEntity cart = cartList.get(0);
@@ -0,0 +1,288 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import co.edu.udistrital.mdp.back.entities.BranchEntity;
+import co.edu.udistrital.mdp.back.entities.RecurrenceFrequency;
+import co.edu.udistrital.mdp.back.entities.ReservationEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationSeriesEntity;
+import co.edu.udistrital.mdp.back.entities.ReservationStatus;
+import co.edu.udistrital.mdp.back.entities.ServiceEntity;
+import co.edu.udistrital.mdp.back.entities.StaffMemberEntity;
+import co.edu.udistrital.mdp.back.entities.StaffShiftEntity;
+import co.edu.udistrital.mdp.back.exceptions.IllegalOperationException;
+import co.edu.udistrital.mdp.back.services.StaffAssignmentService.Demand;
+import co.edu.udistrital.mdp.back.services.StaffAssignmentService.StaffInfo;
+import co.edu.udistrital.mdp.back.services.StaffAssignmentService.TimeRange;
+
+@DataJpaTest
+@Transactional
+@Import({ StaffAssignmentService.class, ReservationSeriesService.class })
+class StaffAssignmentServiceTest {
+
+    @Autowired
+    private StaffAssignmentService staffAssignmentService;
+
+    @Autowired
+    private ReservationSeriesService reservationSeriesService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDate monday = LocalDate.of(2030, 1, 7);
+
+    private BranchEntity branch;
+    private ServiceEntity bath;
+    private ServiceEntity haircut;
+    private StaffMemberEntity ana;
+    private StaffMemberEntity luis;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        insertData();
+    }
+
+    private void clearData() {
+        entityManager.getEntityManager().createQuery("delete from ReservationSeriesEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from ReservationEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from StaffShiftEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from StaffMemberEntity").executeUpdate();
+        entityManager.getEntityManager().createQuery("delete from BranchEntity").executeUpdate();
+    }
+
+    private void insertData() {
+        branch = new BranchEntity();
+        branch.setName("Sucursal Central");
+        branch.setPhone("3105555555");
+        branch.setZone("Norte");
+        entityManager.persist(branch);
+
+        bath = new ServiceEntity();
+        bath.setName("Baño completo");
+        entityManager.persist(bath);
+
+        haircut = new ServiceEntity();
+        haircut.setName("Corte de pelo");
+        entityManager.persist(haircut);
+
+        // Ana solo baña; Luis baña y corta
+        ana = staff("Ana", List.of(bath));
+        luis = staff("Luis", List.of(bath, haircut));
+    }
+
+    private StaffMemberEntity staff(String name, List<ServiceEntity> skills) {
+        StaffMemberEntity member = new StaffMemberEntity();
+        member.setName(name);
+        member.setBranch(branch);
+        member.setSkills(new ArrayList<>(skills));
+        StaffShiftEntity shift = new StaffShiftEntity();
+        shift.setDayOfWeek(DayOfWeek.MONDAY);
+        shift.setStartTime(LocalTime.of(8, 0));
+        shift.setEndTime(LocalTime.of(18, 0));
+        shift.setStaff(member);
+        member.getShifts().add(shift);
+        entityManager.persist(member);
+        return member;
+    }
+
+    private ReservationEntity reservation(ServiceEntity service, LocalDate date, int fromHour, int toHour) {
+        ReservationEntity reservation = new ReservationEntity();
+        reservation.setReservationDate(date);
+        reservation.setStartTime(LocalTime.of(fromHour, 0));
+        reservation.setEndTime(LocalTime.of(toHour, 0));
+        reservation.setReservationStatus(ReservationStatus.SCHEDULED);
+        reservation.setBranch(branch);
+        reservation.setService(service);
+        return reservation;
+    }
+
+    @Test
+    void testAssignStaffWithoutStaffReturnsNull() {
+        BranchEntity empty = new BranchEntity();
+        empty.setName("Sucursal Sur");
+        entityManager.persist(empty);
+
+        ReservationEntity reservation = reservation(bath, monday, 10, 11);
+        reservation.setBranch(empty);
+
+        assertNull(staffAssignmentService.assignStaff(reservation));
+    }
+
+    @Test
+    void testAssignStaffBySkill() {
+        StaffMemberEntity result = staffAssignmentService.assignStaff(reservation(haircut, monday, 10, 11));
+        assertEquals(luis.getId(), result.getId());
+    }
+
+    @Test
+    void testAssignStaffSkipsBusyMember() {
+        ReservationEntity booked = reservation(haircut, monday, 10, 11);
+        booked.setStaff(luis);
+        entityManager.persist(booked);
+
+        StaffMemberEntity result = staffAssignmentService.assignStaff(reservation(bath, monday, 10, 11));
+        assertEquals(ana.getId(), result.getId());
+    }
+
+    @Test
+    void testAssignStaffOutsideShift() {
+        // 2030-01-08 es martes y nadie tiene turno
+        assertThrows(IllegalOperationException.class,
+                () -> staffAssignmentService.assignStaff(reservation(bath, monday.plusDays(1), 10, 11)));
+        assertThrows(IllegalOperationException.class,
+                () -> staffAssignmentService.assignStaff(reservation(bath, monday, 17, 19)));
+    }
+
+    @Test
+    void testAssignStaffWhenEveryoneIsBusy() {
+        ReservationEntity first = reservation(bath, monday, 9, 11);
+        first.setStaff(ana);
+        entityManager.persist(first);
+        ReservationEntity second = reservation(bath, monday, 10, 12);
+        second.setStaff(luis);
+        entityManager.persist(second);
+
+        assertThrows(IllegalOperationException.class,
+                () -> staffAssignmentService.assignStaff(reservation(bath, monday, 10, 11)));
+    }
+
+    @Test
+    void testAssignStaffLeavesRoomForSeries() {
+        // Luis tiene menos carga, pero es el único que puede cubrir el corte semanal de las 10
+        ReservationEntity earlier = reservation(bath, monday, 8, 9);
+        earlier.setStaff(ana);
+        entityManager.persist(earlier);
+
+        ReservationSeriesEntity series = new ReservationSeriesEntity();
+        series.setFrequency(RecurrenceFrequency.WEEKLY);
+        series.setStartDate(monday);
+        series.setStartTime(LocalTime.of(10, 0));
+        series.setEndTime(LocalTime.of(11, 0));
+        series.setBranch(branch);
+        series.setService(haircut);
+        entityManager.persist(series);
+
+        StaffMemberEntity result = staffAssignmentService.assignStaff(reservation(bath, monday, 10, 11));
+        assertEquals(ana.getId(), result.getId());
+
+        ReservationEntity booked = reservation(bath, monday, 10, 11);
+        booked.setStaff(ana);
+        entityManager.persist(booked);
+
+        // La agenda en memoria todavía no la ve; la verificación contra la base de datos sí
+        assertThrows(IllegalOperationException.class,
+                () -> staffAssignmentService.assignStaff(reservation(bath, monday, 10, 11)));
+    }
+
+    private ReservationSeriesEntity bathSeries(int fromHour, int toHour) {
+        ReservationSeriesEntity series = new ReservationSeriesEntity();
+        series.setFrequency(RecurrenceFrequency.WEEKLY);
+        series.setStartDate(monday);
+        series.setStartTime(LocalTime.of(fromHour, 0));
+        series.setEndTime(LocalTime.of(toHour, 0));
+        series.setBranch(branch);
+        series.setService(bath);
+        return series;
+    }
+
+    @Test
+    void testCreateSeriesAtStaffedBranch() {
+        // Ana ya tiene el baño de las 10, pero Luis puede tomar la serie
+        ReservationEntity booked = reservation(bath, monday, 10, 11);
+        booked.setStaff(ana);
+        entityManager.persist(booked);
+
+        ReservationSeriesEntity result = reservationSeriesService.createSeries(bathSeries(10, 11));
+        assertNotNull(result.getId());
+    }
+
+    @Test
+    void testCreateSeriesAtStaffedBranchWithoutFreeStaff() {
+        // Dos semanas después, los dos están ocupados a la hora de la serie
+        for (StaffMemberEntity member : List.of(ana, luis)) {
+            ReservationEntity booked = reservation(bath, monday.plusDays(14), 10, 11);
+            booked.setStaff(member);
+            entityManager.persist(booked);
+        }
+
+        ReservationSeriesEntity series = bathSeries(10, 11);
+        assertThrows(IllegalOperationException.class, () -> reservationSeriesService.createSeries(series));
+    }
+
+    @Test
+    void testCreateSeriesAtStaffedBranchCompetingWithSeries() {
+        // Una serie ya ocupa a uno de los dos; una tercera no cabe
+        reservationSeriesService.createSeries(bathSeries(10, 11));
+        reservationSeriesService.createSeries(bathSeries(10, 11));
+
+        ReservationSeriesEntity third = bathSeries(10, 11);
+        assertThrows(IllegalOperationException.class, () -> reservationSeriesService.createSeries(third));
+    }
+
+    @Test
+    void testSolveManyBookingsWithinLatencyBudget() {
+        // 30 personas y 400 reservas de 30 minutos en un día, con series que compiten por el personal
+        Random random = new Random(42);
+        List<StaffInfo> staff = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            Set<Long> skills = new HashSet<>();
+            skills.add(1 + id % 5);
+            skills.add(1 + (id * 7) % 5);
+            Map<DayOfWeek, List<TimeRange>> shifts = new EnumMap<>(DayOfWeek.class);
+            shifts.put(DayOfWeek.MONDAY, List.of(new TimeRange(8 * 60, 18 * 60)));
+            staff.add(new StaffInfo(id, skills, shifts));
+        }
+        List<Demand> floating = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int start = 8 * 60 + random.nextInt(19) * 30;
+            floating.add(new Demand(1L + random.nextInt(5), new TimeRange(start, start + 30)));
+        }
+
+        Map<Long, List<TimeRange>> busy = new HashMap<>();
+        int assigned = 0;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < 400; i++) {
+            int start = 8 * 60 + random.nextInt(19) * 30;
+            Demand demand = new Demand(1L + random.nextInt(5), new TimeRange(start, start + 30));
+            Long staffId = StaffAssignmentService.solve(staff, DayOfWeek.MONDAY, busy, demand, floating);
+            if (staffId != null) {
+                busy.computeIfAbsent(staffId, k -> new ArrayList<>()).add(demand.range());
+                assigned++;
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+        // Sin dobles reservas para nadie
+        for (List<TimeRange> ranges : busy.values()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                for (int j = i + 1; j < ranges.size(); j++) {
+                    assertFalse(ranges.get(i).overlaps(ranges.get(j)));
+                }
+            }
+        }
+        assertTrue(assigned > 300, "Assigned only " + assigned + " of 400 reservations");
+        // Holgado a propósito: atrapa una búsqueda que explota, no mide la máquina de CI
+        assertTrue(elapsedMillis < 2_000, "Solving 400 bookings took " + elapsedMillis + " ms");
+    }
+}
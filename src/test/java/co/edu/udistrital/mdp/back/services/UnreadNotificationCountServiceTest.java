@@ -0,0 +1,181 @@
+package co.edu.udistrital.mdp.back.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import co.edu.udistrital.mdp.back.entities.NotificationEntity;
+import co.edu.udistrital.mdp.back.entities.UserEntity;
+import co.edu.udistrital.mdp.back.exceptions.EntityNotFoundException;
+import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationCountRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserRepository;
+import co.edu.udistrital.mdp.back.services.UnreadNotificationCountService.ReconcileResult;
+
+// Sin transacción de prueba: el primer conteo se crea en su propia transacción y debe ver los vínculos confirmados
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ NotificationService.class, UnreadNotificationCountService.class, NotificationStreamHub.class,
+        NotificationBroadcastService.class })
+class UnreadNotificationCountServiceTest {
+
+    @Autowired
+    private UnreadNotificationCountService unreadCounts;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserNotificationRepository userNotificationRepository;
+
+    @Autowired
+    private UserNotificationCountRepository countRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UserEntity alice;
+    private UserEntity bob;
+
+    @BeforeEach
+    void setUp() {
+        clearData();
+        alice = user("alice@unread.dogspa.test");
+        bob = user("bob@unread.dogspa.test");
+    }
+
+    @AfterEach
+    void clearData() {
+        countRepository.deleteAllInBatch();
+        userNotificationRepository.deleteAllInBatch();
+        notificationRepository.deleteAllInBatch();
+        jdbcTemplate.update("DELETE FROM person_entity WHERE email LIKE ?", "%@unread.dogspa.test");
+    }
+
+    private UserEntity user(String email) {
+        UserEntity user = new UserEntity();
+        user.setName(email);
+        user.setEmail(email);
+        return userRepository.save(user);
+    }
+
+    @Test
+    void testCountFollowsCreateAndRead() {
+        assertEquals(0, unreadCounts.getUnreadCount(alice.getId()));
+
+        NotificationEntity first = notificationService.createNotification("Cita mañana",
+                List.of(alice.getId(), bob.getId()));
+        notificationService.createNotification("Promo", List.of(alice.getId()));
+
+        assertEquals(2, unreadCounts.getUnreadCount(alice.getId()));
+        // Sin contador todavía: se cuenta desde la tabla de unión
+        assertEquals(1, unreadCounts.getUnreadCount(bob.getId()));
+
+        notificationService.markAsReadForUser(first.getId(), alice.getId());
+        notificationService.markAsReadForUser(first.getId(), alice.getId());
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+        assertEquals(1, unreadCounts.getUnreadCount(bob.getId()));
+
+        assertEquals(1, notificationService.markAllAsReadForUser(alice.getId()));
+        assertEquals(0, unreadCounts.getUnreadCount(alice.getId()));
+    }
+
+    @Test
+    void testCountFollowsMarkReadForAllAndRemove() {
+        unreadCounts.getUnreadCount(alice.getId());
+        unreadCounts.getUnreadCount(bob.getId());
+        NotificationEntity first = notificationService.createNotification("Cita mañana",
+                List.of(alice.getId(), bob.getId()));
+        NotificationEntity second = notificationService.createNotification("Promo",
+                List.of(alice.getId(), bob.getId()));
+
+        notificationService.markAsRead(first.getId());
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+        assertEquals(1, unreadCounts.getUnreadCount(bob.getId()));
+
+        notificationService.removeUserFromNotification(second.getId(), bob.getId());
+        assertEquals(0, unreadCounts.getUnreadCount(bob.getId()));
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+    }
+
+    @Test
+    void testRelinkCountsOnlyNewRecipients() {
+        unreadCounts.getUnreadCount(alice.getId());
+        unreadCounts.getUnreadCount(bob.getId());
+        NotificationEntity notification = notificationService.createNotification("Cita mañana",
+                List.of(alice.getId()));
+
+        List<Long> added = new TransactionTemplate(transactionManager).execute(
+                status -> unreadCounts.link(notification.getId(), List.of(alice.getId(), bob.getId())));
+
+        assertEquals(List.of(bob.getId()), added);
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+        assertEquals(1, unreadCounts.getUnreadCount(bob.getId()));
+        assertEquals(1, unreadRows(alice));
+    }
+
+    @Test
+    void testReconcileFixesDriftedCounters() {
+        notificationService.createNotification("Cita mañana", List.of(alice.getId()));
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+        assertEquals(0, unreadCounts.getUnreadCount(bob.getId()));
+
+        jdbcTemplate.update("UPDATE user_notification_count SET unread = 42 WHERE users_id = ?", alice.getId());
+
+        ReconcileResult result = unreadCounts.reconcile();
+        assertEquals(2, result.checked());
+        assertEquals(1, result.corrected());
+        assertEquals(1, unreadCounts.getUnreadCount(alice.getId()));
+
+        assertEquals(0, unreadCounts.reconcile().corrected());
+    }
+
+    private long unreadRows(UserEntity user) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM person_entity_notifications WHERE users_id = ? AND is_read = false", Long.class,
+                user.getId());
+    }
+
+    @Test
+    void testCountMatchesJoinTableWhenUsersAreAdded() {
+        unreadCounts.getUnreadCount(alice.getId());
+        NotificationEntity first = notificationService.createNotification("Cita mañana", List.of(bob.getId()));
+        NotificationEntity second = notificationService.createNotification("Promo", List.of(bob.getId()));
+
+        notificationService.addUserToNotification(first.getId(), alice.getId());
+        notificationService.markAsReadForUser(first.getId(), alice.getId());
+        notificationService.addUserToNotification(second.getId(), alice.getId());
+        // Agregarlo otra vez no crea otra fila ni mueve el contador
+        notificationService.addUserToNotification(second.getId(), alice.getId());
+
+        assertEquals(1, unreadRows(alice));
+        assertEquals(unreadRows(alice), countRepository.findById(alice.getId()).orElseThrow().getUnread());
+    }
+
+    @Test
+    void testCountOfUnknownUser() {
+        assertThrows(EntityNotFoundException.class, () -> unreadCounts.getUnreadCount(0L));
+    }
+}
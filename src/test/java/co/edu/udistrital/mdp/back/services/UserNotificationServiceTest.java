@@ -3,6 +3,7 @@ package co.edu.udistrital.mdp.back.services;
 import co.edu.udistrital.mdp.back.entities.NotificationEntity;
 import co.edu.udistrital.mdp.back.entities.UserEntity;
 import co.edu.udistrital.mdp.back.repositories.NotificationRepository;
+import co.edu.udistrital.mdp.back.repositories.UserNotificationRepository;
 import co.edu.udistrital.mdp.back.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,11 +12,12 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
-@Import(UserNotificationService.class)
+@Import({ UserNotificationService.class, UnreadNotificationCountService.class })
 class UserNotificationServiceTest {
 
     @Autowired
@@ -27,6 +29,9 @@ class UserNotificationServiceTest {
     @Autowired
     private NotificationRepository notificationRepository;
 
+    @Autowired
+    private UserNotificationRepository userNotificationRepository;
+
     private UserEntity user;
     private NotificationEntity notification;
 
@@ -57,4 +62,58 @@ class UserNotificationServiceTest {
         List<NotificationEntity> notifications = userNotificationService.getNotifications(user.getId());
         assertTrue(notifications.isEmpty());
     }
+
+    @Test
+    void testReadStateIsPerUser() throws Exception {
+        UserEntity other = new UserEntity();
+        other.setEmail("other@udistrital.com");
+        other.setName("Camila");
+        userRepository.save(other);
+
+        NotificationEntity second = new NotificationEntity();
+        second.setMessage("Recordatorio de cita");
+        notificationRepository.save(second);
+
+        userNotificationService.addNotificationToUser(user.getId(), notification.getId());
+        userNotificationService.addNotificationToUser(user.getId(), second.getId());
+        userNotificationService.addNotificationToUser(other.getId(), notification.getId());
+
+        assertEquals(2, userNotificationRepository.markAllRead(user.getId()));
+
+        assertTrue(userNotificationService.getUnreadIds(user.getId()).isEmpty());
+        assertEquals(Set.of(notification.getId()), userNotificationService.getUnreadIds(other.getId()));
+        assertEquals(1, userNotificationService.getNotifications(other.getId(), true).size());
+    }
+
+    @Test
+    void testRemoveKeepsReadStateOfOtherNotifications() throws Exception {
+        NotificationEntity second = new NotificationEntity();
+        second.setMessage("Recordatorio de cita");
+        notificationRepository.save(second);
+
+        userNotificationService.addNotificationToUser(user.getId(), notification.getId());
+        userNotificationService.addNotificationToUser(user.getId(), second.getId());
+        userNotificationRepository.markRead(user.getId(), second.getId());
+
+        userNotificationService.removeNotificationFromUser(user.getId(), notification.getId());
+
+        assertEquals(1, userNotificationService.getNotifications(user.getId()).size());
+        assertTrue(userNotificationService.getUnreadIds(user.getId()).isEmpty());
+    }
+
+    @Test
+    void testAddKeepsReadStateOfOtherNotifications() throws Exception {
+        NotificationEntity second = new NotificationEntity();
+        second.setMessage("Recordatorio de cita");
+        notificationRepository.save(second);
+
+        userNotificationService.addNotificationToUser(user.getId(), notification.getId());
+        userNotificationRepository.markRead(user.getId(), notification.getId());
+
+        userNotificationService.addNotificationToUser(user.getId(), second.getId());
+        userRepository.flush();
+
+        assertEquals(Set.of(second.getId()), userNotificationService.getUnreadIds(user.getId()));
+        assertEquals(2, userNotificationService.getNotifications(user.getId()).size());
+    }
 }